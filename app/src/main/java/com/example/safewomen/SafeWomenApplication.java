@@ -2,10 +2,21 @@ package com.example.safewomen;
 
 import android.app.Application;
 
+import com.example.safewomen.api.ApiClient;
 import com.example.safewomen.repositories.AlertRepository;
 import com.example.safewomen.repositories.ContactRepository;
+import com.example.safewomen.repositories.FrequentPlaceRepository;
 import com.example.safewomen.repositories.LocationHistoryRepository;
+import com.example.safewomen.repositories.RecordingCatalogRepository;
+import com.example.safewomen.repositories.RecordingSegmentRepository;
+import com.example.safewomen.repositories.SafetyZoneRepository;
+import com.example.safewomen.repositories.ScheduledRuleRepository;
+import com.example.safewomen.repositories.SecurePathRepository;
+import com.example.safewomen.repositories.SmsDispatchRepository;
+import com.example.safewomen.repositories.SosSnapshotRepository;
+import com.example.safewomen.utils.NetworkMonitor;
 import com.example.safewomen.utils.PreferenceManager;
+import com.example.safewomen.utils.SyncScheduler;
 
 public class SafeWomenApplication extends Application {
     @Override
@@ -14,10 +25,32 @@ public class SafeWomenApplication extends Application {
         
         // Initialize PreferenceManager
         PreferenceManager.init(this);
+
+        // HTTP cache location, before any repository makes a request
+        ApiClient.init(this);
+
+        // Connectivity stream and deferred sync, before the repositories that use them
+        NetworkMonitor.init(this);
+        SyncScheduler.init(this);
         
         // Initialize repositories
         LocationHistoryRepository.init(this);
         AlertRepository.init(this);
         ContactRepository.init(this);
+        SosSnapshotRepository.init(this);
+        SmsDispatchRepository.init(this);
+        RecordingSegmentRepository.init(this);
+        RecordingCatalogRepository.init(this);
+        SafetyZoneRepository.init(this);
+        FrequentPlaceRepository.init(this);
+        ScheduledRuleRepository.init(this);
+        SecurePathRepository.init(this);
+
+        if (PreferenceManager.getInstance().isLoggedIn()) {
+            SafetyZoneRepository.getInstance().loadServerZones();
+        }
+
+        // Pick up fixes recorded while the app was not running
+        FrequentPlaceRepository.getInstance().refresh();
     }
 } 
\ No newline at end of file
@@ -1,9 +1,13 @@
 package com.example.safewomen.api;
 
+import android.content.Context;
+import android.util.Log;
 
-
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import retrofit2.Retrofit;
@@ -15,16 +19,45 @@ public class ApiClient {
     // Update this to your PHP server URL
     private static final String BASE_URL = "https://your-php-server.com/safewomen/api/";
     private static Retrofit retrofit = null;
+    private static OkHttpClient httpClient = null;
+
+    private static final String TAG = "ApiClient";
+    private static final long CACHE_SIZE_BYTES = 10L * 1024 * 1024;
+    private static Context appContext = null;
+    private static Cache cache = null;
+    private static final HttpCacheStats cacheStats = new HttpCacheStats();
+    private static BatchMultiplexer batchMultiplexer = null;
+
+    /**
+     * Gives the client a place for its HTTP cache; call before the first request
+     */
+    public static synchronized void init(Context context) {
+        appContext = context.getApplicationContext();
+    }
 
     public static Retrofit getClient() {
         if (retrofit == null) {
-            OkHttpClient.Builder httpClient = new OkHttpClient.Builder()
+            retrofit = new Retrofit.Builder()
+                    .baseUrl(BASE_URL)
+                    .addConverterFactory(GsonConverterFactory.create())
+                    .client(getHttpClient())
+                    .build();
+        }
+        return retrofit;
+    }
+
+    /**
+     * Shared OkHttp client, for connections Retrofit doesn't cover such as WebSockets
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
                     .connectTimeout(30, TimeUnit.SECONDS)
                     .readTimeout(30, TimeUnit.SECONDS)
                     .writeTimeout(30, TimeUnit.SECONDS);
 
             // Add auth token to all requests if available
-            httpClient.addInterceptor(chain -> {
+            builder.addInterceptor(chain -> {
                 Request original = chain.request();
                 String token = PreferenceManager.getInstance().getAuthToken();
 
@@ -39,12 +72,54 @@ public class ApiClient {
                 return chain.proceed(original);
             });
 
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .client(httpClient.build())
-                    .build();
+            // Without a context (not initialized) requests simply go uncached
+            if (appContext != null) {
+                cache = new Cache(new File(appContext.getCacheDir(), "http"), CACHE_SIZE_BYTES);
+                HttpCachePolicy cachePolicy = new HttpCachePolicy(cacheStats);
+                builder.cache(cache)
+                        .addInterceptor(cachePolicy.application())
+                        .addNetworkInterceptor(cachePolicy.network());
+            }
+
+            httpClient = builder.build();
         }
-        return retrofit;
+        return httpClient;
+    }
+
+    /**
+     * Shared multiplexer for small form POSTs, so operations from different callers share batches
+     */
+    public static synchronized BatchMultiplexer getBatchMultiplexer() {
+        if (batchMultiplexer == null) {
+            batchMultiplexer = new BatchMultiplexer(getClient().create(ApiService.class));
+        }
+        return batchMultiplexer;
+    }
+
+    public static HttpCacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    /**
+     * Drop every cached response, e.g. on logout; blocking
+     */
+    public static void clearCache() {
+        Cache current;
+        synchronized (ApiClient.class) {
+            current = cache;
+        }
+        if (current == null) return;
+        try {
+            current.evictAll();
+        } catch (IOException e) {
+            Log.e(TAG, "Error clearing HTTP cache", e);
+        }
+    }
+
+    /**
+     * WebSocket endpoint for live location during an SOS, on the same host as the API
+     */
+    public static String getLiveLocationUrl() {
+        return BASE_URL.replaceFirst("^http", "ws") + "live_location";
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.example.safewomen.api;
+
+import com.example.safewomen.models.AlertHistoryItem;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.UserEntity;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Typed readers for the data fields of API responses, for use with ResponseDecoder.
+ * Unknown fields are skipped, so the server can add fields without breaking old clients.
+ */
+public final class ApiReaders {
+
+    private ApiReaders() {}
+
+    public static final ResponseDecoder.ValueReader<AlertHistoryItem> ALERT_HISTORY_ITEM = reader -> {
+        AlertHistoryItem alert = new AlertHistoryItem();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    alert.setId(ResponseDecoder.readString(reader));
+                    break;
+                case "type":
+                    alert.setType(ResponseDecoder.readString(reader));
+                    break;
+                case "status":
+                    alert.setStatus(ResponseDecoder.readString(reader));
+                    break;
+                case "latitude":
+                    alert.setLatitude(ResponseDecoder.readDouble(reader));
+                    break;
+                case "longitude":
+                    alert.setLongitude(ResponseDecoder.readDouble(reader));
+                    break;
+                case "address":
+                    alert.setAddress(ResponseDecoder.readString(reader));
+                    break;
+                case "timestamp":
+                    alert.setTimestamp(ResponseDecoder.readString(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return alert;
+    };
+
+    public static final ResponseDecoder.ValueReader<List<AlertHistoryItem>> ALERT_HISTORY =
+            ResponseDecoder.listOf(ALERT_HISTORY_ITEM);
+
+    public static final ResponseDecoder.ValueReader<EmergencyContactEntity> CONTACT = reader -> {
+        String id = null;
+        String name = null;
+        String phone = null;
+        String relationship = null;
+        boolean primary = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = ResponseDecoder.readString(reader);
+                    break;
+                case "name":
+                    name = ResponseDecoder.readString(reader);
+                    break;
+                case "phone":
+                    phone = ResponseDecoder.readString(reader);
+                    break;
+                case "relationship":
+                    relationship = ResponseDecoder.readString(reader);
+                    break;
+                case "is_primary":
+                    primary = ResponseDecoder.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null) throw new IOException("Contact without id");
+        return new EmergencyContactEntity(id, name, phone, relationship, primary, "synced");
+    };
+
+    public static final ResponseDecoder.ValueReader<List<EmergencyContactEntity>> CONTACTS =
+            ResponseDecoder.listOf(CONTACT);
+
+    /**
+     * Just the "id" of an object, e.g. the contact echoed back by add_contact.php
+     */
+    public static final ResponseDecoder.ValueReader<String> ID = reader -> {
+        String id = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("id".equals(reader.nextName())) {
+                id = ResponseDecoder.readString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return id;
+    };
+
+    /**
+     * The signed-in user returned by login, register and password reset
+     */
+    public static final ResponseDecoder.ValueReader<UserEntity> USER = reader -> {
+        String id = null;
+        String name = null;
+        String email = null;
+        String phone = "";
+        String authToken = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = ResponseDecoder.readString(reader);
+                    break;
+                case "name":
+                    name = ResponseDecoder.readString(reader);
+                    break;
+                case "email":
+                    email = ResponseDecoder.readString(reader);
+                    break;
+                case "phone":
+                    String value = ResponseDecoder.readString(reader);
+                    phone = value != null ? value : "";
+                    break;
+                case "auth_token":
+                    authToken = ResponseDecoder.readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null || authToken == null) throw new IOException("User without id or token");
+        return new UserEntity(id, name, email, phone, authToken, System.currentTimeMillis());
+    };
+}
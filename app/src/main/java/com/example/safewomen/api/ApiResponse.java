@@ -0,0 +1,45 @@
+package com.example.safewomen.api;
+
+/**
+ * The { "success", "message", <data> } envelope every PHP endpoint answers with
+ */
+public class ApiResponse<T> {
+    private final boolean success;
+    private final String message;
+    private final T data;
+
+    ApiResponse(boolean success, String message, T data) {
+        this.success = success;
+        this.message = message;
+        this.data = data;
+    }
+
+    /**
+     * A failed response made up on the client, e.g. for an HTTP error status
+     */
+    public static <T> ApiResponse<T> failure(String message) {
+        return new ApiResponse<>(false, message, null);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * The server's message, or the fallback when it sent none
+     */
+    public String getMessage(String fallback) {
+        return message != null ? message : fallback;
+    }
+
+    /**
+     * The decoded data field, or null if the response didn't contain it
+     */
+    public T getData() {
+        return data;
+    }
+}
@@ -1,13 +1,16 @@
 package com.example.safewomen.api;
 
 import java.util.Map;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.http.Body;
 import retrofit2.http.Field;
 import retrofit2.http.FieldMap;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.GET;
 import retrofit2.http.POST;
+import retrofit2.http.Path;
 import retrofit2.http.Query;
 import retrofit2.http.QueryMap;
 
@@ -15,6 +18,12 @@ import retrofit2.http.QueryMap;
  * Retrofit interface for API endpoints
  */
 public interface ApiService {
+    // Endpoints that are also sent by name through BatchMultiplexer
+    String ADD_CONTACT = "add_contact.php";
+    String UPDATE_CONTACT = "update_contact.php";
+    String UPDATE_LOCATION = "update_location.php";
+    String UPDATE_ALERT_STATUS = "update_alert_status.php";
+
     // Authentication endpoints
     @FormUrlEncoded
     @POST("login.php")
@@ -41,11 +50,11 @@ public interface ApiService {
     Call<ResponseBody> getContacts();
 
     @FormUrlEncoded
-    @POST("add_contact.php")
+    @POST(ADD_CONTACT)
     Call<ResponseBody> addContact(@FieldMap Map<String, String> params);
 
     @FormUrlEncoded
-    @POST("update_contact.php")
+    @POST(UPDATE_CONTACT)
     Call<ResponseBody> updateContact(@FieldMap Map<String, String> params);
 
     @FormUrlEncoded
@@ -70,12 +79,24 @@ public interface ApiService {
 
     // Location endpoints
     @FormUrlEncoded
-    @POST("update_location.php")
+    @POST(UPDATE_LOCATION)
     Call<ResponseBody> updateLocation(@FieldMap Map<String, String> params);
 
     @GET("get_safe_zones.php")
     Call<ResponseBody> getSafeZones();
 
+    // Secure path endpoints
+    @GET("get_secure_paths.php")
+    Call<ResponseBody> getSecurePaths(@Query("since") long since);
+
+    @FormUrlEncoded
+    @POST("save_secure_path.php")
+    Call<ResponseBody> saveSecurePath(@FieldMap Map<String, String> params);
+
+    @FormUrlEncoded
+    @POST("delete_secure_path.php")
+    Call<ResponseBody> deleteSecurePath(@FieldMap Map<String, String> params);
+
     // Settings endpoints
     @GET("get_settings.php")
     Call<ResponseBody> getSettings();
@@ -114,7 +135,7 @@ public interface ApiService {
     Call<ResponseBody> createAlert(@FieldMap Map<String, String> params);
 
     @FormUrlEncoded
-    @POST("update_alert_status.php")
+    @POST(UPDATE_ALERT_STATUS)
     Call<ResponseBody> updateAlertStatus(@FieldMap Map<String, String> params);
     @FormUrlEncoded
     @POST("request_password_reset.php")
@@ -129,4 +150,31 @@ public interface ApiService {
     @POST("delete_account.php")
     Call<ResponseBody> deleteAccount(@FieldMap Map<String, String> params);
 
+    // Evidence upload endpoints; init is idempotent per segment and returns the committed offset
+    @FormUrlEncoded
+    @POST("evidence_upload_init.php")
+    Call<ResponseBody> initEvidenceUpload(@FieldMap Map<String, String> params);
+
+    @POST("evidence_upload_chunk.php")
+    Call<ResponseBody> uploadEvidenceChunk(@Query("upload_id") String uploadId, @Query("offset") long offset,
+                                           @Query("sha256") String sha256, @Body RequestBody chunk);
+
+    @FormUrlEncoded
+    @POST("evidence_upload_complete.php")
+    Call<ResponseBody> completeEvidenceUpload(@FieldMap Map<String, String> params);
+
+    // Batching; see BatchMultiplexer for the contract
+    @GET("capabilities.php")
+    Call<ResponseBody> getCapabilities();
+
+    @POST("batch.php")
+    Call<ResponseBody> batch(@Body RequestBody operations);
+
+    /**
+     * Any form endpoint by name, for operations sent outside a batch
+     */
+    @FormUrlEncoded
+    @POST("{endpoint}")
+    Call<ResponseBody> post(@Path(value = "endpoint", encoded = true) String endpoint,
+                            @FieldMap Map<String, String> params);
 }
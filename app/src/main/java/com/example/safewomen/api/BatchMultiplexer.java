@@ -0,0 +1,491 @@
+package com.example.safewomen.api;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.safewomen.utils.Clock;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Collects small form POSTs made within a short window and sends them to
+ * batch.php as one request, so a burst of location fixes or contact edits
+ * pays for one round trip instead of one each.
+ *
+ * Contract, request:  { "operations": [ { "id", "endpoint", "params": { ... } } ] }
+ *           response: { "success", "results": [ { "id", "status", "body": { ... } } ] }
+ * Each body is what the endpoint would have answered on its own, so callers
+ * handle per-operation results exactly like the individual responses.
+ *
+ * Batching is only used for endpoints listed by capabilities.php; anything
+ * else, or everything when the server doesn't advertise batch support, is
+ * sent as individual calls.
+ */
+public class BatchMultiplexer {
+    private static final String TAG = "BatchMultiplexer";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    static final long WINDOW_MS = 250;
+    private static final int DEFAULT_MAX_OPERATIONS = 20;
+    private static final long CAPABILITIES_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    // After a network error the capability check is retried sooner
+    private static final long CAPABILITIES_RETRY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Per-operation result, like a Retrofit callback
+     */
+    public interface ResultCallback {
+        void onResponse(Response<ResponseBody> response);
+        void onFailure(Throwable t);
+    }
+
+    public static class Operation {
+        final String endpoint;
+        final Map<String, String> params;
+        final ResultCallback callback;
+
+        public Operation(String endpoint, Map<String, String> params, ResultCallback callback) {
+            this.endpoint = endpoint;
+            this.params = params;
+            this.callback = callback;
+        }
+    }
+
+    private final ApiService apiService;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<Operation> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    // What capabilities.php last said; guarded by this
+    private Set<String> batchEndpoints = Collections.emptySet();
+    private int maxOperations = DEFAULT_MAX_OPERATIONS;
+    private long capabilitiesExpireAt = 0;
+
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedOperations = new AtomicLong();
+    private final AtomicLong individualCalls = new AtomicLong();
+
+    public BatchMultiplexer(ApiService apiService) {
+        this(apiService, Clock.SYSTEM);
+    }
+
+    BatchMultiplexer(ApiService apiService, Clock clock) {
+        this.apiService = apiService;
+        this.clock = clock;
+    }
+
+    /**
+     * Queue an operation; it's sent at the end of the current window, or as
+     * soon as a full batch has been collected. The callback runs on the main thread.
+     */
+    public void enqueue(String endpoint, Map<String, String> params, ResultCallback callback) {
+        Operation operation = new Operation(endpoint, params, onMainThread(callback));
+        synchronized (this) {
+            pending.add(operation);
+            if (pending.size() >= maxOperations) {
+                if (scheduledFlush != null) scheduledFlush.cancel(false);
+                scheduledFlush = null;
+                scheduler.execute(this::flush);
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Send operations the caller has already collected, e.g. a sync worker's
+     * backlog, without waiting for a window. Blocking; callbacks run on the
+     * calling thread before this returns.
+     */
+    public void execute(List<Operation> operations) {
+        send(operations, false);
+    }
+
+    private void flush() {
+        List<Operation> batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        // Individual calls are handed to OkHttp so the scheduler only waits on batches
+        send(batch, true);
+    }
+
+    private void send(List<Operation> all, boolean async) {
+        operations.addAndGet(all.size());
+        Set<String> endpoints = batchEndpoints();
+        int limit;
+        synchronized (this) {
+            limit = maxOperations;
+        }
+
+        List<Operation> batchable = new ArrayList<>();
+        for (Operation operation : all) {
+            if (endpoints.contains(operation.endpoint)) {
+                batchable.add(operation);
+            } else {
+                sendIndividually(operation, async);
+            }
+        }
+
+        for (int start = 0; start < batchable.size(); start += limit) {
+            List<Operation> chunk = batchable.subList(start, Math.min(start + limit, batchable.size()));
+            if (chunk.size() == 1) {
+                // Wrapping a single operation only adds overhead
+                sendIndividually(chunk.get(0), async);
+            } else {
+                sendBatch(chunk, async);
+            }
+        }
+    }
+
+    /**
+     * @param async Enqueue the call instead of waiting for it, so a status update
+     *              isn't held up behind slower calls from the same window
+     */
+    private void sendIndividually(Operation operation, boolean async) {
+        individualCalls.incrementAndGet();
+        Call<ResponseBody> call = apiService.post(operation.endpoint, operation.params);
+        if (async) {
+            call.enqueue(new Callback<ResponseBody>() {
+                @Override
+                public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                    operation.callback.onResponse(response);
+                }
+
+                @Override
+                public void onFailure(Call<ResponseBody> call, Throwable t) {
+                    operation.callback.onFailure(t);
+                }
+            });
+            return;
+        }
+
+        Response<ResponseBody> response;
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            operation.callback.onFailure(e);
+            return;
+        }
+        operation.callback.onResponse(response);
+    }
+
+    private void sendBatch(List<Operation> chunk, boolean async) {
+        Response<ResponseBody> response;
+        try {
+            response = apiService.batch(RequestBody.create(JSON, encode(chunk))).execute();
+        } catch (IOException e) {
+            Log.w(TAG, "Batch of " + chunk.size() + " failed: " + e.getMessage());
+            for (Operation operation : chunk) {
+                operation.callback.onFailure(e);
+            }
+            return;
+        }
+
+        int code = response.code();
+        if (isUnsupported(code)) {
+            // The server stopped supporting batches; don't try again until the next capability check
+            Log.w(TAG, "batch.php answered " + code + ", falling back to individual calls");
+            readErrorBody(response);
+            markUnsupported();
+            for (Operation operation : chunk) {
+                sendIndividually(operation, async);
+            }
+            return;
+        }
+        if (!response.isSuccessful() || response.body() == null) {
+            // Same outcome for every operation, e.g. an expired token
+            String errorText = readErrorBody(response);
+            for (Operation operation : chunk) {
+                operation.callback.onResponse(Response.error(code, ResponseBody.create(JSON, errorText)));
+            }
+            return;
+        }
+
+        batches.incrementAndGet();
+        batchedOperations.addAndGet(chunk.size());
+        Map<String, Response<ResponseBody>> results;
+        try {
+            results = decodeResults(response.body());
+        } catch (IOException e) {
+            Log.e(TAG, "Malformed batch response", e);
+            for (Operation operation : chunk) {
+                operation.callback.onFailure(e);
+            }
+            return;
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Response<ResponseBody> result = results.get(String.valueOf(i));
+            if (result != null) {
+                chunk.get(i).callback.onResponse(result);
+            } else {
+                chunk.get(i).callback.onFailure(new IOException("No result for operation in batch"));
+            }
+        }
+    }
+
+    /**
+     * Endpoints the server accepts in a batch; empty when batching is unsupported
+     * or the capabilities couldn't be fetched
+     */
+    private Set<String> batchEndpoints() {
+        synchronized (this) {
+            if (clock.currentTimeMillis() < capabilitiesExpireAt) {
+                return batchEndpoints;
+            }
+        }
+
+        Set<String> endpoints = new HashSet<>();
+        int limit = DEFAULT_MAX_OPERATIONS;
+        long ttl = CAPABILITIES_TTL_MS;
+        try {
+            Response<ResponseBody> response = apiService.getCapabilities().execute();
+            if (response.isSuccessful() && response.body() != null) {
+                limit = decodeCapabilities(response.body(), endpoints);
+            } else if (!isUnsupported(response.code())) {
+                // Server trouble or an expired token says nothing about batch support
+                ttl = CAPABILITIES_RETRY_MS;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not fetch capabilities: " + e.getMessage());
+            ttl = CAPABILITIES_RETRY_MS;
+        }
+
+        synchronized (this) {
+            batchEndpoints = Collections.unmodifiableSet(endpoints);
+            maxOperations = Math.max(2, limit);
+            capabilitiesExpireAt = clock.currentTimeMillis() + ttl;
+            Log.d(TAG, endpoints.isEmpty() ? "Batching unavailable"
+                    : "Batching " + endpoints.size() + " endpoints, up to " + maxOperations + " per request");
+            return batchEndpoints;
+        }
+    }
+
+    // An older server without the endpoint
+    private static boolean isUnsupported(int code) {
+        return code == 404 || code == 405 || code == 501;
+    }
+
+    private synchronized void markUnsupported() {
+        batchEndpoints = Collections.emptySet();
+        capabilitiesExpireAt = clock.currentTimeMillis() + CAPABILITIES_TTL_MS;
+    }
+
+    // { "success", "batch": { "max_operations", "endpoints": [ ... ] } }; returns max_operations
+    private static int decodeCapabilities(ResponseBody body, Set<String> endpoints) throws IOException {
+        ApiResponse<Integer> result = ResponseDecoder.decode(body, "batch", reader -> {
+            int limit = DEFAULT_MAX_OPERATIONS;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "max_operations":
+                        limit = ResponseDecoder.readInt(reader);
+                        break;
+                    case "endpoints":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            String endpoint = ResponseDecoder.readString(reader);
+                            if (endpoint != null) endpoints.add(endpoint);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return limit;
+        });
+        if (!result.isSuccess() || result.getData() == null) {
+            endpoints.clear();
+            return DEFAULT_MAX_OPERATIONS;
+        }
+        return result.getData();
+    }
+
+    private static String encode(List<Operation> chunk) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject().name("operations").beginArray();
+            for (int i = 0; i < chunk.size(); i++) {
+                Operation operation = chunk.get(i);
+                writer.beginObject()
+                        .name("id").value(String.valueOf(i))
+                        .name("endpoint").value(operation.endpoint)
+                        .name("params").beginObject();
+                for (Map.Entry<String, String> param : operation.params.entrySet()) {
+                    writer.name(param.getKey()).value(param.getValue());
+                }
+                writer.endObject().endObject();
+            }
+            writer.endArray().endObject();
+        }
+        return out.toString();
+    }
+
+    /**
+     * The results keyed by operation id, each as the response the endpoint would
+     * have given on its own. Only the small per-operation bodies are re-serialized.
+     */
+    private static Map<String, Response<ResponseBody>> decodeResults(ResponseBody body) throws IOException {
+        ApiResponse<Map<String, Response<ResponseBody>>> result = ResponseDecoder.decode(body, "results", reader -> {
+            Map<String, Response<ResponseBody>> results = new HashMap<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String id = null;
+                int status = 200;
+                String json = "{}";
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "id":
+                            id = ResponseDecoder.readString(reader);
+                            break;
+                        case "status":
+                            status = ResponseDecoder.readInt(reader);
+                            break;
+                        case "body":
+                            json = copyValue(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (id != null) {
+                    results.put(id, toResponse(status, json));
+                }
+            }
+            reader.endArray();
+            return results;
+        });
+        if (!result.isSuccess() || result.getData() == null) {
+            throw new IOException("Batch rejected: " + result.getMessage("no results"));
+        }
+        return result.getData();
+    }
+
+    private static Response<ResponseBody> toResponse(int status, String json) {
+        ResponseBody body = ResponseBody.create(JSON, json);
+        if (status >= 200 && status < 300) {
+            return Response.success(status, body);
+        }
+        // Response.error needs an error code; anything else odd counts as a bad gateway
+        return Response.error(status >= 400 ? status : 502, body);
+    }
+
+    private static String copyValue(JsonReader reader) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.setLenient(true);
+            copyValue(reader, writer);
+        }
+        return out.toString();
+    }
+
+    private static void copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    writer.name(reader.nextName());
+                    copyValue(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copyValue(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                // Keep the literal so large ids don't lose precision
+                writer.jsonValue(reader.nextString());
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                throw new IOException("Unexpected token " + token);
+        }
+    }
+
+    private static String readErrorBody(Response<ResponseBody> response) {
+        try (ResponseBody errorBody = response.errorBody() != null ? response.errorBody() : response.body()) {
+            return errorBody != null ? errorBody.string() : "{}";
+        } catch (IOException e) {
+            return "{}";
+        }
+    }
+
+    private ResultCallback onMainThread(ResultCallback callback) {
+        return new ResultCallback() {
+            @Override
+            public void onResponse(Response<ResponseBody> response) {
+                mainHandler.post(() -> callback.onResponse(response));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                mainHandler.post(() -> callback.onFailure(t));
+            }
+        };
+    }
+
+    public long getOperationCount() { return operations.get(); }
+    public long getBatchCount() { return batches.get(); }
+    public long getBatchedOperationCount() { return batchedOperations.get(); }
+    public long getIndividualCallCount() { return individualCalls.get(); }
+
+    @Override
+    public String toString() {
+        return TAG + ": " + operations.get() + " operations, " + batchedOperations.get() + " in "
+                + batches.get() + " batches, " + individualCalls.get() + " individual calls";
+    }
+}
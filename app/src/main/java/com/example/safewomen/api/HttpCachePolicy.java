@@ -0,0 +1,145 @@
+package com.example.safewomen.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Client-side freshness rules for the read endpoints. The PHP backend sends
+ * session no-cache headers, so the network interceptor replaces them with a
+ * per-endpoint policy while keeping the server's ETag and Last-Modified; the
+ * OkHttp cache then revalidates with If-None-Match / If-Modified-Since and a
+ * 304 costs headers only. The application interceptor falls back to a stale
+ * copy when the server is unreachable or failing, and counts cache outcomes.
+ */
+public class HttpCachePolicy {
+    private static final String TAG = "HttpCachePolicy";
+
+    /**
+     * How long a response may be used without asking, and how long it may stand in during errors
+     */
+    static class Freshness {
+        final int maxAgeSeconds;
+        final int staleIfErrorSeconds;
+
+        Freshness(int maxAgeSeconds, int staleIfErrorSeconds) {
+            this.maxAgeSeconds = maxAgeSeconds;
+            this.staleIfErrorSeconds = staleIfErrorSeconds;
+        }
+
+        String cacheControl() {
+            // max-age=0 rather than no-cache: both revalidate every use, but OkHttp
+            // won't serve a no-cache response as stale, even with max-stale
+            return "private, max-age=" + maxAgeSeconds;
+        }
+    }
+
+    private static final int DAY = 24 * 60 * 60;
+
+    private static final Map<String, Freshness> POLICIES = new HashMap<>();
+    static {
+        // Edited by the user from this and other devices: always revalidate
+        POLICIES.put("get_contacts.php", new Freshness(0, 7 * DAY));
+        POLICIES.put("get_settings.php", new Freshness(0, 7 * DAY));
+        POLICIES.put("get_secure_paths.php", new Freshness(0, 7 * DAY));
+        // Curated on the server and slow to change
+        POLICIES.put("get_safe_zones.php", new Freshness(15 * 60, 7 * DAY));
+        POLICIES.put("get_safety_resources.php", new Freshness(DAY, 30 * DAY));
+    }
+
+    private final HttpCacheStats stats;
+
+    public HttpCachePolicy(HttpCacheStats stats) {
+        this.stats = stats;
+    }
+
+    static Freshness policyFor(Request request) {
+        if (!"GET".equals(request.method())) return null;
+        List<String> segments = request.url().pathSegments();
+        return POLICIES.get(segments.get(segments.size() - 1));
+    }
+
+    /**
+     * Network interceptor: applies the endpoint's policy to what gets stored
+     */
+    public Interceptor network() {
+        return chain -> {
+            Request request = chain.request();
+            Response response = chain.proceed(request);
+            Freshness freshness = policyFor(request);
+            if (freshness == null) return response;
+
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .header("Cache-Control", freshness.cacheControl())
+                    // Responses belong to the signed-in user; a different token must not match them
+                    .header("Vary", "Authorization")
+                    .build();
+        };
+    }
+
+    /**
+     * Application interceptor: stale-if-error fallback and hit-rate accounting
+     */
+    public Interceptor application() {
+        return chain -> {
+            Request request = chain.request();
+            Freshness freshness = policyFor(request);
+            if (freshness == null) return chain.proceed(request);
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                Response stale = staleFromCache(chain, request, freshness);
+                if (stale == null) throw e;
+                Log.w(TAG, "Serving stale " + request.url().encodedPath() + " after " + e.getMessage());
+                return stale;
+            }
+
+            if (response.code() >= 500) {
+                Response stale = staleFromCache(chain, request, freshness);
+                if (stale != null) {
+                    Log.w(TAG, "Serving stale " + request.url().encodedPath() + " after server error " + response.code());
+                    response.close();
+                    return stale;
+                }
+            }
+
+            stats.record(response);
+            return response;
+        };
+    }
+
+    // A cached copy within the stale-if-error window, or null
+    private Response staleFromCache(Interceptor.Chain chain, Request request, Freshness freshness) {
+        Request cacheOnly = request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(freshness.staleIfErrorSeconds, TimeUnit.SECONDS)
+                        .build())
+                .build();
+        try {
+            Response cached = chain.proceed(cacheOnly);
+            // 504 is OkHttp's answer for "not in the cache"
+            if (cached.code() == 504) {
+                cached.close();
+                return null;
+            }
+            stats.recordStale();
+            return cached;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.safewomen.api;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+
+/**
+ * Cache outcomes of the policy-covered GET endpoints since the process started
+ */
+public class HttpCacheStats {
+    private static final String TAG = "HttpCacheStats";
+    private static final int LOG_EVERY = 50;
+
+    private final AtomicLong hits = new AtomicLong();       // Served from cache, no network
+    private final AtomicLong validated = new AtomicLong();  // 304: headers over the network, body from cache
+    private final AtomicLong misses = new AtomicLong();     // Full body downloaded
+    private final AtomicLong stale = new AtomicLong();      // Stale copy served because the network failed
+
+    void record(Response response) {
+        Response network = response.networkResponse();
+        if (response.cacheResponse() != null && network == null) {
+            hits.incrementAndGet();
+        } else if (response.cacheResponse() != null && network.code() == 304) {
+            validated.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        if (getRequestCount() % LOG_EVERY == 0) {
+            Log.d(TAG, toString());
+        }
+    }
+
+    void recordStale() {
+        stale.incrementAndGet();
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getValidatedCount() { return validated.get(); }
+    public long getMissCount() { return misses.get(); }
+    public long getStaleCount() { return stale.get(); }
+
+    public long getRequestCount() {
+        return hits.get() + validated.get() + misses.get() + stale.get();
+    }
+
+    /**
+     * Share of requests answered without downloading the body
+     */
+    public double getHitRate() {
+        long total = getRequestCount();
+        return total == 0 ? 0 : (double) (hits.get() + validated.get() + stale.get()) / total;
+    }
+
+    @Override
+    public String toString() {
+        return "HTTP cache: " + getRequestCount() + " requests, " + hits.get() + " hits, "
+                + validated.get() + " revalidated, " + misses.get() + " misses, " + stale.get()
+                + " stale, hit rate " + Math.round(getHitRate() * 100) + "%";
+    }
+}
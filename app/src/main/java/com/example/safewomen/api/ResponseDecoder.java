@@ -0,0 +1,189 @@
+package com.example.safewomen.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Decodes API responses straight from the response stream with Gson's
+ * JsonReader. Nothing is buffered into a String or a JSONObject tree: the
+ * envelope is read field by field, the data field goes to a typed reader,
+ * and anything else is skipped without being materialized.
+ */
+public final class ResponseDecoder {
+
+    /**
+     * Reads one value at the reader's current position
+     */
+    public interface ValueReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Reads one top-level field other than success and message, consuming its value
+     */
+    public interface FieldReader {
+        void read(String name, JsonReader reader) throws IOException;
+    }
+
+    private ResponseDecoder() {}
+
+    /**
+     * Decode the envelope and, if present, the named data field. Closes the body.
+     * @throws IOException On network errors and on malformed or mistyped JSON
+     */
+    public static <T> ApiResponse<T> decode(ResponseBody body, String dataField, ValueReader<T> dataReader)
+            throws IOException {
+        DataField<T> data = new DataField<>(dataField, dataReader);
+        ApiResponse<Void> envelope = decodeFields(body, data);
+        return new ApiResponse<>(envelope.isSuccess(), envelope.getMessage(), data.value);
+    }
+
+    /**
+     * Decode the envelope and hand every other top-level field to the field
+     * reader, for endpoints that answer with loose fields next to success
+     * instead of one data object. Closes the body.
+     * @throws IOException On network errors and on malformed or mistyped JSON
+     */
+    public static ApiResponse<Void> decodeFields(ResponseBody body, FieldReader fieldReader) throws IOException {
+        try (JsonReader reader = new JsonReader(body.charStream())) {
+            // PHP sometimes emits numbers as strings and the reverse; the typed readers cope
+            reader.setLenient(true);
+
+            boolean success = false;
+            String message = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("success".equals(name)) {
+                    success = readBoolean(reader);
+                } else if ("message".equals(name)) {
+                    message = readString(reader);
+                } else {
+                    fieldReader.read(name, reader);
+                }
+            }
+            reader.endObject();
+            return new ApiResponse<>(success, message, null);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // JsonReader reports unexpected token types as IllegalStateException
+            throw new IOException("Malformed response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decode only success and message. Closes the body.
+     */
+    public static ApiResponse<Void> decodeStatus(ResponseBody body) throws IOException {
+        return decode(body, null, null);
+    }
+
+    /**
+     * Reader for a JSON array of items
+     */
+    public static <T> ValueReader<List<T>> listOf(ValueReader<T> itemReader) {
+        return reader -> {
+            List<T> items = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                items.add(itemReader.read(reader));
+            }
+            reader.endArray();
+            return items;
+        };
+    }
+
+    /**
+     * A string, or null; numbers and booleans are returned as their text
+     */
+    public static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * true, 1 and "1"/"true" are true; null is false
+     */
+    public static boolean readBoolean(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        } else if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        String value = reader.nextString();
+        return "1".equals(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * A number, quoted or not; null and empty strings read as 0
+     */
+    public static double readDouble(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        } else if (token == JsonToken.STRING) {
+            String value = reader.nextString();
+            return value.isEmpty() ? 0 : Double.parseDouble(value);
+        }
+        return reader.nextDouble();
+    }
+
+    public static int readInt(JsonReader reader) throws IOException {
+        return (int) readDouble(reader);
+    }
+
+    /**
+     * Like readDouble, but exact for values beyond a double's 53 bits
+     */
+    public static long readLong(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        String value = reader.nextString();
+        if (value.isEmpty()) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            // Written with a fraction or an exponent
+            return (long) Double.parseDouble(value);
+        }
+    }
+
+    // The one data field of decode(); everything else is skipped
+    private static class DataField<T> implements FieldReader {
+        private final String name;
+        private final ValueReader<T> reader;
+        T value;
+
+        DataField(String name, ValueReader<T> reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+
+        @Override
+        public void read(String field, JsonReader jsonReader) throws IOException {
+            if (reader != null && field.equals(name) && jsonReader.peek() != JsonToken.NULL) {
+                value = reader.read(jsonReader);
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+    }
+}
@@ -22,12 +22,27 @@ public interface AlertDao {
     @Query("SELECT * FROM alerts WHERE status = 'active' LIMIT 1")
     LiveData<AlertEntity> getActiveAlert();
 
-    @Query("SELECT * FROM alerts WHERE status = 'pending'")
-    List<AlertEntity> getPendingAlerts();
+    @Query("SELECT * FROM alerts WHERE id = :alertId OR serverId = :alertId LIMIT 1")
+    AlertEntity getByLocalOrServerId(String alertId);
+
+    // Oldest first, so alerts reach the server in the order they were raised
+    @Query("SELECT * FROM alerts WHERE syncStatus = 'pending' ORDER BY timestamp ASC LIMIT :limit")
+    List<AlertEntity> getPendingAlerts(int limit);
+
+    @Query("UPDATE alerts SET serverId = :serverId WHERE id = :alertId")
+    void setServerId(String alertId, String serverId);
+
+    // The server has the location as of updatedAt; a later fix leaves it pending
+    @Query("UPDATE alerts SET locationPending = 0 WHERE id = :alertId AND updatedAt = :updatedAt")
+    int clearLocationPendingIfUnchanged(String alertId, long updatedAt);
+
+    // Only applies if nothing changed locally since the upload started
+    @Query("UPDATE alerts SET syncStatus = :syncStatus WHERE id = :alertId AND updatedAt = :updatedAt")
+    int updateSyncStatusIfUnchanged(String alertId, long updatedAt, String syncStatus);
 
     @Update
     void update(AlertEntity alert);
 
     @Query("DELETE FROM alerts")
     void clear();
-}
\ No newline at end of file
+}
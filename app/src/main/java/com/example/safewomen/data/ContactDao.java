@@ -22,6 +22,9 @@ public interface ContactDao {
     @Query("SELECT * FROM contacts ORDER BY isPrimary DESC, name ASC")
     LiveData<List<EmergencyContactEntity>> getAllContacts();
 
+    @Query("SELECT * FROM contacts ORDER BY isPrimary DESC, name ASC")
+    List<EmergencyContactEntity> getAllContactsSync();
+
     @Query("SELECT * FROM contacts WHERE syncStatus = 'pending'")
     List<EmergencyContactEntity> getPendingContacts();
 
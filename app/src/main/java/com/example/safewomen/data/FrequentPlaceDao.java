@@ -0,0 +1,26 @@
+package com.example.safewomen.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.safewomen.models.entities.FrequentPlaceEntity;
+
+import java.util.List;
+
+@Dao
+public interface FrequentPlaceDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<FrequentPlaceEntity> places);
+
+    @Query("SELECT * FROM frequent_places ORDER BY totalDwellMs DESC")
+    List<FrequentPlaceEntity> getAllPlaces();
+
+    @Query("SELECT * FROM frequent_places ORDER BY totalDwellMs DESC")
+    LiveData<List<FrequentPlaceEntity>> observePlaces();
+
+    @Query("DELETE FROM frequent_places")
+    void clear();
+}
@@ -6,6 +6,7 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
+import com.example.safewomen.models.LocationPoint;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
 
 import java.util.List;
@@ -38,4 +39,7 @@ public interface LocationHistoryDao {
     @Query("SELECT * FROM location_history ORDER BY timestamp DESC")
     List<LocationHistoryEntity> getAllLocationsForExport();
 
+    @Query("SELECT latitude, longitude, timestamp FROM location_history WHERE timestamp > :since ORDER BY timestamp ASC")
+    List<LocationPoint> getPointsSince(long since);
+
 }
\ No newline at end of file
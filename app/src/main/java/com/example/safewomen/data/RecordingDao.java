@@ -0,0 +1,56 @@
+package com.example.safewomen.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.safewomen.models.entities.RecordingEntity;
+
+import java.util.List;
+
+@Dao
+public interface RecordingDao {
+    // Only uploaded recordings unrelated to any SOS may be evicted
+    String EVICTABLE = "sosId IS NULL AND alertId IS NULL AND uploadState = 'uploaded'";
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(RecordingEntity recording);
+
+    @Query("DELETE FROM recordings WHERE filePath = :filePath")
+    void delete(String filePath);
+
+    @Query("DELETE FROM recordings WHERE filePath IN (:filePaths)")
+    void deleteAll(List<String> filePaths);
+
+    @Query("SELECT filePath FROM recordings")
+    List<String> getAllPaths();
+
+    // Newest first
+    @Query("SELECT * FROM recordings ORDER BY createdAt DESC, filePath DESC LIMIT :limit")
+    List<RecordingEntity> getFirstPage(int limit);
+
+    // Keyset page after the last row of the previous page, so deep pages cost the same as the first
+    @Query("SELECT * FROM recordings WHERE createdAt < :createdAt OR (createdAt = :createdAt AND filePath < :filePath) "
+            + "ORDER BY createdAt DESC, filePath DESC LIMIT :limit")
+    List<RecordingEntity> getPageAfter(long createdAt, String filePath, int limit);
+
+    @Query("UPDATE recordings SET uploadState = :uploadState WHERE filePath = :filePath")
+    void setUploadState(String filePath, String uploadState);
+
+    @Query("UPDATE recordings SET lastAccessedAt = :accessedAt WHERE filePath = :filePath")
+    void touch(String filePath, long accessedAt);
+
+    @Query("SELECT COALESCE(SUM(sizeBytes), 0) FROM recordings")
+    long getTotalBytes();
+
+    @Query("SELECT COUNT(*) FROM recordings")
+    int getCount();
+
+    @Query("SELECT COALESCE(SUM(sizeBytes), 0) FROM recordings WHERE " + EVICTABLE)
+    long getEvictableBytes();
+
+    // Least recently used first
+    @Query("SELECT * FROM recordings WHERE " + EVICTABLE + " ORDER BY lastAccessedAt ASC LIMIT :limit")
+    List<RecordingEntity> getEvictionCandidates(int limit);
+}
@@ -0,0 +1,56 @@
+package com.example.safewomen.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.example.safewomen.models.entities.RecordingSegmentEntity;
+
+import java.util.List;
+
+@Dao
+public interface RecordingSegmentDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(RecordingSegmentEntity segment);
+
+    @Update
+    void update(RecordingSegmentEntity segment);
+
+    @Query("SELECT * FROM recording_segments WHERE id = :segmentId")
+    RecordingSegmentEntity getById(String segmentId);
+
+    @Query("SELECT * FROM recording_segments WHERE filePath = :filePath LIMIT 1")
+    RecordingSegmentEntity getByFilePath(String filePath);
+
+    @Query("DELETE FROM recording_segments WHERE id = :segmentId")
+    void delete(String segmentId);
+
+    // Segment manifest of one session, in recording order
+    @Query("SELECT * FROM recording_segments WHERE sessionId = :sessionId ORDER BY segmentIndex ASC")
+    LiveData<List<RecordingSegmentEntity>> observeSession(String sessionId);
+
+    // Finished segments not yet off the device, oldest first
+    @Query("SELECT * FROM recording_segments WHERE status IN ('closed', 'interrupted') ORDER BY startedAt ASC LIMIT :limit")
+    List<RecordingSegmentEntity> getUploadable(int limit);
+
+    // Next segment to upload: the active SOS first, then other SOS recordings, oldest first
+    @Query("SELECT * FROM recording_segments WHERE status IN ('closed', 'interrupted') "
+            + "ORDER BY (sosId = :activeSosId) DESC, (sosId IS NULL) ASC, startedAt ASC LIMIT 1")
+    RecordingSegmentEntity getNextUploadable(String activeSosId);
+
+    @Query("UPDATE recording_segments SET uploadId = :uploadId, uploadedBytes = :uploadedBytes WHERE id = :segmentId")
+    void setUploadProgress(String segmentId, String uploadId, long uploadedBytes);
+
+    @Query("UPDATE recording_segments SET sha256 = :sha256 WHERE id = :segmentId")
+    void setSha256(String segmentId, String sha256);
+
+    @Query("UPDATE recording_segments SET status = :status WHERE id = :segmentId")
+    void setStatus(String segmentId, String status);
+
+    // Segments whose recorder died with the process; the rest of the session is still intact
+    @Query("UPDATE recording_segments SET status = 'interrupted' WHERE status = 'recording'")
+    int markInterrupted();
+}
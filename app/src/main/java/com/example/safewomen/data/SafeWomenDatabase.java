@@ -5,10 +5,18 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.safewomen.models.entities.AlertEntity;
 import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.FrequentPlaceEntity;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
+import com.example.safewomen.models.entities.RecordingEntity;
+import com.example.safewomen.models.entities.RecordingSegmentEntity;
+import com.example.safewomen.models.entities.ScheduledRuleEntity;
+import com.example.safewomen.models.entities.SecurePathEntity;
+import com.example.safewomen.models.entities.SmsDispatchEntity;
 import com.example.safewomen.models.entities.UserEntity;
 import com.example.safewomen.models.entities.UserSettingsEntity;
 
@@ -17,8 +25,14 @@ import com.example.safewomen.models.entities.UserSettingsEntity;
         EmergencyContactEntity.class,
         UserEntity.class,
         LocationHistoryEntity.class,
-        UserSettingsEntity.class
-}, version = 1, exportSchema = false)public abstract class SafeWomenDatabase extends RoomDatabase {
+        UserSettingsEntity.class,
+        ScheduledRuleEntity.class,
+        FrequentPlaceEntity.class,
+        SecurePathEntity.class,
+        SmsDispatchEntity.class,
+        RecordingSegmentEntity.class,
+        RecordingEntity.class
+}, version = 14, exportSchema = false)public abstract class SafeWomenDatabase extends RoomDatabase {
     private static SafeWomenDatabase instance;
 
     public abstract AlertDao alertDao();
@@ -26,13 +40,109 @@ import com.example.safewomen.models.entities.UserSettingsEntity;
     public abstract AuthDao authDao();
     public abstract LocationHistoryDao locationHistoryDao();
     public abstract SettingsDao settingsDao();
+    public abstract ScheduledRuleDao scheduledRuleDao();
+    public abstract FrequentPlaceDao frequentPlaceDao();
+    public abstract SecurePathDao securePathDao();
+    public abstract SmsDispatchDao smsDispatchDao();
+    public abstract RecordingSegmentDao recordingSegmentDao();
+    public abstract RecordingDao recordingDao();
+
+    // From 6 on the alerts table is the outbox of alerts not yet on the server,
+    // and sms_dispatches and the recording manifest hold evidence; none of it may be dropped
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `recording_segments` (`id` TEXT NOT NULL, "
+                    + "`sessionId` TEXT, `sosId` TEXT, `type` TEXT, `segmentIndex` INTEGER NOT NULL, "
+                    + "`filePath` TEXT, `startedAt` INTEGER NOT NULL, `endedAt` INTEGER NOT NULL, "
+                    + "`sizeBytes` INTEGER NOT NULL, `status` TEXT, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recording_segments_sessionId_segmentIndex` "
+                    + "ON `recording_segments` (`sessionId`, `segmentIndex`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recording_segments_status` "
+                    + "ON `recording_segments` (`status`)");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `recording_segments` ADD COLUMN `sha256` TEXT");
+            db.execSQL("ALTER TABLE `recording_segments` ADD COLUMN `uploadId` TEXT");
+            db.execSQL("ALTER TABLE `recording_segments` ADD COLUMN `uploadedBytes` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            // Filled from the files on disk by the first catalog scan
+            db.execSQL("CREATE TABLE IF NOT EXISTS `recordings` (`filePath` TEXT NOT NULL, `name` TEXT, "
+                    + "`type` TEXT, `sizeBytes` INTEGER NOT NULL, `durationMs` INTEGER NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL, `sosId` TEXT, `alertId` TEXT, `uploadState` TEXT, "
+                    + "PRIMARY KEY(`filePath`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recordings_createdAt_filePath` "
+                    + "ON `recordings` (`createdAt`, `filePath`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recordings_sosId` ON `recordings` (`sosId`)");
+        }
+    };
+
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `recordings` ADD COLUMN `lastAccessedAt` INTEGER NOT NULL DEFAULT 0");
+            // Never opened since; eviction order falls back to age
+            db.execSQL("UPDATE `recordings` SET `lastAccessedAt` = `createdAt`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recordings_lastAccessedAt` "
+                    + "ON `recordings` (`lastAccessedAt`)");
+        }
+    };
+
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `recording_segments` ADD COLUMN `gapBeforeMs` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `scheduled_rules` ADD COLUMN `stopLatitude` REAL NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `scheduled_rules` ADD COLUMN `stopLongitude` REAL NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `scheduled_rules` ADD COLUMN `stopSince` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `scheduled_rules` ADD COLUMN `stopAlerted` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `alerts` ADD COLUMN `locationKnown` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `alerts` ADD COLUMN `locationPending` INTEGER NOT NULL DEFAULT 0");
+            // Alerts raised before any fix were stored at 0,0
+            db.execSQL("UPDATE `alerts` SET `locationKnown` = 1 WHERE `latitude` != 0 OR `longitude` != 0");
+        }
+    };
+
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `sms_dispatches` ADD COLUMN `cancelled` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `sms_dispatches` SET `cancelled` = 1 WHERE `status` = 'cancelled'");
+        }
+    };
+
     public static synchronized SafeWomenDatabase getInstance(Context context) {
         if (instance == null) {
             instance = Room.databaseBuilder(
                             context.getApplicationContext(),
                             SafeWomenDatabase.class,
                             "safewomen_db")
-                    .fallbackToDestructiveMigration()
+                    .addMigrations(MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10,
+                            MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13, MIGRATION_13_14)
+                    // Older schemas predate the outbox; dropping them only loses cached and past rows
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3, 4, 5)
                     .build();
         }
         return instance;
@@ -0,0 +1,37 @@
+package com.example.safewomen.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.safewomen.models.entities.ScheduledRuleEntity;
+
+import java.util.List;
+
+@Dao
+public interface ScheduledRuleDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(ScheduledRuleEntity rule);
+
+    @Query("SELECT * FROM scheduled_rules ORDER BY name ASC")
+    LiveData<List<ScheduledRuleEntity>> observeRules();
+
+    @Query("SELECT * FROM scheduled_rules WHERE enabled = 1")
+    List<ScheduledRuleEntity> getEnabledRules();
+
+    @Query("UPDATE scheduled_rules SET enabled = :enabled, updatedAt = :updatedAt WHERE id = :ruleId")
+    void setEnabled(String ruleId, boolean enabled, long updatedAt);
+
+    // Leaves updatedAt alone so the rule engine keeps its compiled state
+    @Query("UPDATE scheduled_rules SET stopLatitude = :latitude, stopLongitude = :longitude, "
+            + "stopSince = :since, stopAlerted = :alerted WHERE id = :ruleId")
+    void updateStop(String ruleId, double latitude, double longitude, long since, boolean alerted);
+
+    @Query("DELETE FROM scheduled_rules WHERE id = :ruleId")
+    void deleteById(String ruleId);
+
+    @Query("DELETE FROM scheduled_rules")
+    void clear();
+}
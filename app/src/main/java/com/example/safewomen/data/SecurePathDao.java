@@ -0,0 +1,40 @@
+package com.example.safewomen.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.safewomen.models.entities.SecurePathEntity;
+
+import java.util.List;
+
+@Dao
+public interface SecurePathDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(SecurePathEntity path);
+
+    @Query("SELECT * FROM secure_paths WHERE syncStatus != 'pending_delete' ORDER BY name ASC")
+    LiveData<List<SecurePathEntity>> observePaths();
+
+    @Query("SELECT * FROM secure_paths WHERE id = :pathId")
+    SecurePathEntity getById(String pathId);
+
+    // Candidate corridors whose bounding box contains the point
+    @Query("SELECT * FROM secure_paths WHERE minLatitude <= :latitude AND maxLatitude >= :latitude " +
+            "AND minLongitude <= :longitude AND maxLongitude >= :longitude AND syncStatus != 'pending_delete'")
+    List<SecurePathEntity> getPathsContaining(double latitude, double longitude);
+
+    @Query("SELECT * FROM secure_paths WHERE syncStatus = 'pending' OR syncStatus = 'pending_delete'")
+    List<SecurePathEntity> getPendingPaths();
+
+    @Query("UPDATE secure_paths SET syncStatus = :status WHERE id = :pathId")
+    void updateSyncStatus(String pathId, String status);
+
+    @Query("DELETE FROM secure_paths WHERE id = :pathId")
+    void deleteById(String pathId);
+
+    @Query("DELETE FROM secure_paths")
+    void clear();
+}
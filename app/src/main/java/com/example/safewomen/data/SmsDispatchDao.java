@@ -0,0 +1,57 @@
+package com.example.safewomen.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.example.safewomen.models.entities.SmsDispatchEntity;
+
+import java.util.List;
+
+@Dao
+public interface SmsDispatchDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<SmsDispatchEntity> dispatches);
+
+    @Update
+    void update(SmsDispatchEntity dispatch);
+
+    @Query("SELECT * FROM sms_dispatches WHERE id = :dispatchId")
+    SmsDispatchEntity getById(String dispatchId);
+
+    // Next message due, earliest first, then in contact order
+    @Query("SELECT * FROM sms_dispatches WHERE status = 'queued' AND cancelled = 0 "
+            + "ORDER BY nextAttemptAt ASC, priority ASC LIMIT 1")
+    SmsDispatchEntity getNextQueued();
+
+    @Query("SELECT * FROM sms_dispatches WHERE sosId = :sosId ORDER BY priority ASC")
+    LiveData<List<SmsDispatchEntity>> observeDispatches(String sosId);
+
+    // Unfinished messages of older SOSes, or of the latest one once it's too old to be worth sending
+    @Query("UPDATE sms_dispatches SET status = 'failed', lastError = 'Expired' "
+            + "WHERE status IN ('queued', 'sending') AND (createdAt < :since "
+            + "OR sosId != (SELECT sosId FROM sms_dispatches ORDER BY createdAt DESC LIMIT 1))")
+    void expireUnfinished(long since);
+
+    // Sends of the latest SOS whose outcome was lost with the process
+    @Query("UPDATE sms_dispatches SET status = 'queued' WHERE status = 'sending' AND cancelled = 0 "
+            + "AND createdAt >= :since "
+            + "AND sosId = (SELECT sosId FROM sms_dispatches ORDER BY createdAt DESC LIMIT 1)")
+    void requeueSending(long since);
+
+    // Marks the whole SOS, so messages with the carrier right now aren't retried if they fail
+    @Query("UPDATE sms_dispatches SET cancelled = 1 WHERE sosId = :sosId")
+    void markCancelled(String sosId);
+
+    @Query("UPDATE sms_dispatches SET status = 'cancelled' WHERE sosId = :sosId AND status = 'queued'")
+    void cancelQueued(String sosId);
+
+    @Query("DELETE FROM sms_dispatches WHERE createdAt < :olderThan")
+    void deleteOlderThan(long olderThan);
+
+    @Query("DELETE FROM sms_dispatches")
+    void clear();
+}
@@ -1,10 +1,12 @@
 package com.example.safewomen.fragments;
 
 import android.Manifest;
+import android.app.TimePickerDialog;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.text.format.DateFormat;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -19,8 +21,11 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.example.safewomen.R;
 import com.example.safewomen.databinding.FragmentMapBinding;
+import com.example.safewomen.models.SafetyZone;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
 import com.example.safewomen.services.LocationTrackingService;
+import com.example.safewomen.utils.TrackRenderer;
+import com.example.safewomen.utils.TrackSimplifier;
 import com.example.safewomen.viewmodels.LocationViewModel;
 import com.example.safewomen.viewmodels.MapViewModel;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -31,9 +36,14 @@ import com.google.android.gms.maps.model.CircleOptions;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.snackbar.Snackbar;
 
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -47,12 +57,17 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
             Manifest.permission.ACCESS_FINE_LOCATION,
             Manifest.permission.ACCESS_COARSE_LOCATION
     };
+    // Above this many points history is drawn as polylines instead of one marker per fix
+    private static final int DENSE_TRACK_THRESHOLD = 50;
+    private static final float TRACK_WIDTH_PX = 8f;
 
     private FragmentMapBinding binding;
     private LocationViewModel locationViewModel;
     private MapViewModel mapViewModel;
     private GoogleMap googleMap;
     private boolean locationPermissionGranted = false;
+    private TrackRenderer trackRenderer;
+    private TileOverlay heatmapOverlay;
 
     // Map of markers to location entities for easy lookup
     private final Map<Marker, LocationHistoryEntity> markerMap = new HashMap<>();
@@ -109,6 +124,10 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
         googleMap.getUiSettings().setCompassEnabled(true);
         googleMap.getUiSettings().setMapToolbarEnabled(true);
 
+        // Polyline renderer for dense history, switching detail level when the camera settles
+        trackRenderer = new TrackRenderer(googleMap, Color.rgb(33, 150, 243), TRACK_WIDTH_PX);
+        googleMap.setOnCameraIdleListener(() -> trackRenderer.onCameraIdle());
+
         // Set up map click listeners
         googleMap.setOnMarkerClickListener(marker -> {
             LocationHistoryEntity location = markerMap.get(marker);
@@ -120,6 +139,9 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
             return false;
         });
 
+        // Long press a place to set up a scheduled safety rule
+        googleMap.setOnMapLongClickListener(this::showRuleOptions);
+
         // Load location history
         mapViewModel.loadLocationHistory();
 
@@ -173,12 +195,16 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
                 updateMapWithSafetyZones();
             } else {
                 // Clear safety zones by redrawing the map
-                googleMap.clear();
-                markerMap.clear();
+                clearMap();
                 updateMapWithLocationHistory();
             }
         });
 
+        // Heatmap switch
+        binding.switchHeatmap.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            updateHeatmapOverlay();
+        });
+
         // My location FAB
         binding.fabMyLocation.setOnClickListener(v -> {
             if (googleMap != null && locationPermissionGranted) {
@@ -204,6 +230,20 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
             }
         });
 
+        // Observe simplified tracks, computed in the background by the ViewModel
+        mapViewModel.getTrackLevels().observe(getViewLifecycleOwner(), levels -> {
+            if (levels != null && trackRenderer != null && isDenseHistoryShown()) {
+                trackRenderer.setLevels(levels);
+            }
+        });
+
+        // Only tiles touched by new fixes were re-rendered, so the map can drop its copies cheaply
+        mapViewModel.getHeatmapInvalidations().observe(getViewLifecycleOwner(), invalidated -> {
+            if (heatmapOverlay != null && invalidated != null && invalidated != 0) {
+                heatmapOverlay.clearTileCache();
+            }
+        });
+
         // Observe selected location
         mapViewModel.getSelectedLocation().observe(getViewLifecycleOwner(), this::showLocationDetails);
 
@@ -230,25 +270,23 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
         if (googleMap == null || !binding.switchShowHistory.isChecked()) return;
 
         // Clear existing markers
-        googleMap.clear();
-        markerMap.clear();
+        clearMap();
 
         List<LocationHistoryEntity> locations = mapViewModel.getLocationHistory().getValue();
         if (locations == null || locations.isEmpty()) return;
 
-        // Add markers for each location
-        for (LocationHistoryEntity location : locations) {
-            LatLng position = new LatLng(location.getLatitude(), location.getLongitude());
-
-            MarkerOptions markerOptions = new MarkerOptions()
-                    .position(position)
-                    .title(formatDate(location.getTimestamp()))
-                    .snippet(location.getAddress())
-                    .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE));
-
-            Marker marker = googleMap.addMarker(markerOptions);
-            if (marker != null) {
-                markerMap.put(marker, location);
+        if (locations.size() > DENSE_TRACK_THRESHOLD) {
+            // Dense history: draw tracks and mark only the newest and oldest fixes
+            TrackSimplifier.TrackLevels levels = mapViewModel.getTrackLevels().getValue();
+            if (levels != null) {
+                trackRenderer.setLevels(levels);
+            }
+            addHistoryMarker(locations.get(0));
+            addHistoryMarker(locations.get(locations.size() - 1));
+        } else {
+            // Add markers for each location
+            for (LocationHistoryEntity location : locations) {
+                addHistoryMarker(location);
             }
         }
 
@@ -265,13 +303,60 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
         }
     }
 
+    // Clears all map objects; the heatmap overlay is re-added if enabled
+    private void clearMap() {
+        googleMap.clear();
+        markerMap.clear();
+        if (trackRenderer != null) {
+            trackRenderer.forget();
+        }
+        heatmapOverlay = null;
+        updateHeatmapOverlay();
+    }
+
+    private void updateHeatmapOverlay() {
+        if (googleMap == null) return;
+
+        if (binding.switchHeatmap.isChecked()) {
+            if (heatmapOverlay == null) {
+                heatmapOverlay = googleMap.addTileOverlay(new TileOverlayOptions()
+                        .tileProvider(mapViewModel.getHeatmapTileProvider())
+                        .fadeIn(true));
+            }
+        } else if (heatmapOverlay != null) {
+            heatmapOverlay.remove();
+            heatmapOverlay = null;
+        }
+    }
+
+    private void addHistoryMarker(LocationHistoryEntity location) {
+        LatLng position = new LatLng(location.getLatitude(), location.getLongitude());
+
+        MarkerOptions markerOptions = new MarkerOptions()
+                .position(position)
+                .title(formatDate(location.getTimestamp()))
+                .snippet(location.getAddress())
+                .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE));
+
+        Marker marker = googleMap.addMarker(markerOptions);
+        if (marker != null) {
+            markerMap.put(marker, location);
+        }
+    }
+
+    private boolean isDenseHistoryShown() {
+        List<LocationHistoryEntity> locations = mapViewModel.getLocationHistory().getValue();
+        return binding != null && binding.switchShowHistory.isChecked()
+                && locations != null && locations.size() > DENSE_TRACK_THRESHOLD;
+    }
+
     private void updateMapWithSafetyZones() {
         if (googleMap == null || !binding.switchSafetyZones.isChecked()) return;
 
-        List<MapViewModel.SafetyZone> safetyZones = mapViewModel.getSafetyZones().getValue();
+        List<SafetyZone> safetyZones = mapViewModel.getSafetyZones().getValue();
         if (safetyZones == null || safetyZones.isEmpty()) return;
 
-        for (MapViewModel.SafetyZone zone : safetyZones) {
+        for (SafetyZone zone : safetyZones) {
             // Determine color based on safety rating
             int color;
             if (zone.getSafetyRating() >= 0.7f) {
@@ -285,13 +370,22 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
                 color = Color.argb(70, 255, 0, 0);
             }
 
-            // Add circle for safety zone
-            googleMap.addCircle(new CircleOptions()
-                    .center(zone.getCenter())
-                    .radius(zone.getRadiusMeters())
-                    .strokeWidth(2)
-                    .strokeColor(color)
-                    .fillColor(color));
+            if (zone.isPolygon()) {
+                // Add polygon for safety zone
+                googleMap.addPolygon(new PolygonOptions()
+                        .addAll(zone.getPolygon())
+                        .strokeWidth(2)
+                        .strokeColor(color)
+                        .fillColor(color));
+            } else {
+                // Add circle for safety zone
+                googleMap.addCircle(new CircleOptions()
+                        .center(zone.getCenter())
+                        .radius(zone.getRadiusMeters())
+                        .strokeWidth(2)
+                        .strokeColor(color)
+                        .fillColor(color));
+            }
         }
     }
 
@@ -339,6 +433,47 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
             binding.bottomSheetLocationDetails.setVisibility(View.GONE);
         });
     }
+    private void showRuleOptions(LatLng latLng) {
+        String[] options = {
+                "Alert if I'm not here by a time",
+                "Alert if I stop too long outside a safe zone"
+        };
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Add safety rule")
+                .setItems(options, (dialog, which) -> {
+                    if (which == 0) {
+                        showArriveByPicker(latLng);
+                    } else {
+                        showMaxStopPicker();
+                    }
+                })
+                .show();
+    }
+
+    private void showArriveByPicker(LatLng target) {
+        Calendar now = Calendar.getInstance();
+        new TimePickerDialog(requireContext(), (picker, hourOfDay, minute) -> {
+            mapViewModel.addArriveByRule(target, hourOfDay, minute);
+            Snackbar.make(binding.getRoot(), "Safety rule added", Snackbar.LENGTH_SHORT).show();
+        }, now.get(Calendar.HOUR_OF_DAY), now.get(Calendar.MINUTE),
+                DateFormat.is24HourFormat(requireContext())).show();
+    }
+
+    private void showMaxStopPicker() {
+        int[] minutes = {10, 20, 30, 60};
+        String[] labels = new String[minutes.length];
+        for (int i = 0; i < minutes.length; i++) {
+            labels[i] = minutes[i] + " minutes";
+        }
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Alert if I stop for more than")
+                .setItems(labels, (dialog, which) -> {
+                    mapViewModel.addMaxStopRule(minutes[which]);
+                    Snackbar.make(binding.getRoot(), "Safety rule added", Snackbar.LENGTH_SHORT).show();
+                })
+                .show();
+    }
+
     private void shareLocation(LocationHistoryEntity location) {
         if (location == null) return;
 
@@ -489,6 +624,8 @@ public class MapFragment extends androidx.fragment.app.Fragment implements OnMap
 
     @Override
     public void onDestroyView() {
+        trackRenderer = null;
+        heatmapOverlay = null;
         binding.mapView.onDestroy();
         binding = null;
         super.onDestroyView();
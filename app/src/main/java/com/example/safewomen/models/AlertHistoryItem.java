@@ -0,0 +1,41 @@
+package com.example.safewomen.models;
+
+/**
+ * One alert as returned by get_alert_history.php
+ */
+public class AlertHistoryItem {
+    private String id;
+    private String type;
+    private String status;      // "active", "resolved", "cancelled"
+    private double latitude;
+    private double longitude;
+    private String address;
+    private String timestamp;   // Server time, "yyyy-MM-dd HH:mm:ss"; sorts as text
+
+    public AlertHistoryItem() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public double getLatitude() { return latitude; }
+    public void setLatitude(double latitude) { this.latitude = latitude; }
+
+    public double getLongitude() { return longitude; }
+    public void setLongitude(double longitude) { this.longitude = longitude; }
+
+    public String getAddress() { return address; }
+    public void setAddress(String address) { this.address = address; }
+
+    public String getTimestamp() { return timestamp; }
+    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+
+    public boolean isActive() {
+        return "active".equals(status);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.safewomen.models;
+
+/**
+ * Lightweight projection of a location history row, used where addresses are not needed
+ */
+public class LocationPoint {
+    private final double latitude;
+    private final double longitude;
+    private final long timestamp;
+
+    public LocationPoint(double latitude, double longitude, long timestamp) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timestamp = timestamp;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
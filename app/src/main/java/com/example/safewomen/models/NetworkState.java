@@ -0,0 +1,74 @@
+package com.example.safewomen.models;
+
+/**
+ * Snapshot of the default network as reported by NetworkMonitor. Two states are
+ * equal when they'd lead to the same decisions, so bandwidth only counts by class.
+ */
+public class NetworkState {
+    public static final NetworkState OFFLINE = new NetworkState(false, false, 0, 0);
+
+    public enum Bandwidth { NONE, POOR, MODERATE, GOOD }
+
+    // Link estimates in kbps from NetworkCapabilities; rough, but enough to tell 2G from LTE
+    private static final int POOR_BELOW_KBPS = 150;
+    private static final int GOOD_FROM_KBPS = 2000;
+
+    private final boolean online;
+    private final boolean metered;
+    private final int downstreamKbps;
+    private final int upstreamKbps;
+
+    public NetworkState(boolean online, boolean metered, int downstreamKbps, int upstreamKbps) {
+        this.online = online;
+        this.metered = metered;
+        this.downstreamKbps = downstreamKbps;
+        this.upstreamKbps = upstreamKbps;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public boolean isMetered() {
+        return metered;
+    }
+
+    public int getDownstreamKbps() {
+        return downstreamKbps;
+    }
+
+    public int getUpstreamKbps() {
+        return upstreamKbps;
+    }
+
+    /**
+     * Uploads are what we mostly do, so the class follows the upstream estimate
+     */
+    public Bandwidth getBandwidth() {
+        if (!online) return Bandwidth.NONE;
+        // Some devices don't estimate; don't hold work back for that
+        if (upstreamKbps <= 0) return Bandwidth.MODERATE;
+        if (upstreamKbps < POOR_BELOW_KBPS) return Bandwidth.POOR;
+        if (upstreamKbps < GOOD_FROM_KBPS) return Bandwidth.MODERATE;
+        return Bandwidth.GOOD;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NetworkState)) return false;
+        NetworkState other = (NetworkState) o;
+        return online == other.online && metered == other.metered && getBandwidth() == other.getBandwidth();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (online ? 1 : 0) + (metered ? 1 : 0)) + getBandwidth().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (!online) return "offline";
+        return (metered ? "metered" : "unmetered") + ", " + downstreamKbps + "/" + upstreamKbps + " kbps";
+    }
+}
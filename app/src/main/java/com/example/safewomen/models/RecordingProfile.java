@@ -0,0 +1,65 @@
+package com.example.safewomen.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encoder settings for one recording segment. Ladders run from best to cheapest.
+ */
+public class RecordingProfile {
+    public static final List<RecordingProfile> VIDEO_LADDER = Collections.unmodifiableList(Arrays.asList(
+            new RecordingProfile("video_high", 1280, 720, 30, 10000000, 128000, 44100),
+            new RecordingProfile("video_medium", 1280, 720, 24, 4000000, 96000, 44100),
+            new RecordingProfile("video_low", 640, 480, 24, 1500000, 64000, 22050),
+            new RecordingProfile("video_minimal", 320, 240, 15, 500000, 32000, 22050)));
+
+    public static final List<RecordingProfile> AUDIO_LADDER = Collections.unmodifiableList(Arrays.asList(
+            new RecordingProfile("audio_high", 0, 0, 0, 0, 128000, 44100),
+            new RecordingProfile("audio_medium", 0, 0, 0, 0, 96000, 44100),
+            new RecordingProfile("audio_low", 0, 0, 0, 0, 64000, 22050),
+            new RecordingProfile("audio_minimal", 0, 0, 0, 0, 32000, 16000)));
+
+    private final String name;
+    private final int videoWidth;
+    private final int videoHeight;
+    private final int frameRate;
+    private final int videoBitRate;
+    private final int audioBitRate;
+    private final int audioSampleRate;
+
+    public RecordingProfile(String name, int videoWidth, int videoHeight, int frameRate,
+                            int videoBitRate, int audioBitRate, int audioSampleRate) {
+        this.name = name;
+        this.videoWidth = videoWidth;
+        this.videoHeight = videoHeight;
+        this.frameRate = frameRate;
+        this.videoBitRate = videoBitRate;
+        this.audioBitRate = audioBitRate;
+        this.audioSampleRate = audioSampleRate;
+    }
+
+    public String getName() { return name; }
+    public int getVideoWidth() { return videoWidth; }
+    public int getVideoHeight() { return videoHeight; }
+    public int getFrameRate() { return frameRate; }
+    public int getVideoBitRate() { return videoBitRate; }
+    public int getAudioBitRate() { return audioBitRate; }
+    public int getAudioSampleRate() { return audioSampleRate; }
+
+    /**
+     * Combined bitrate in bits per second
+     */
+    public int getTotalBitRate() {
+        return videoBitRate + audioBitRate;
+    }
+
+    public long getBytesPerSecond() {
+        return getTotalBitRate() / 8;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.safewomen.models;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A circular or polygonal area with a safety rating
+ */
+public class SafetyZone {
+    public enum Source {
+        SERVER,     // Loaded from get_safe_zones.php
+        USER,       // Marked safe/unsafe by the user
+        GENERATED   // Derived from location history
+    }
+
+    private final String id;
+    private final Source source;
+    private final LatLng center;
+    private final double radiusMeters;
+    private final float safetyRating; // 0.0 to 1.0, where 1.0 is completely safe
+    private final List<LatLng> polygon; // null for circular zones
+
+    public SafetyZone(LatLng center, double radiusMeters, float safetyRating) {
+        this(UUID.randomUUID().toString(), Source.USER, center, radiusMeters, safetyRating);
+    }
+
+    public SafetyZone(String id, Source source, LatLng center, double radiusMeters, float safetyRating) {
+        this.id = id;
+        this.source = source;
+        this.center = center;
+        this.radiusMeters = radiusMeters;
+        this.safetyRating = safetyRating;
+        this.polygon = null;
+    }
+
+    public SafetyZone(String id, Source source, List<LatLng> polygon, float safetyRating) {
+        this.id = id;
+        this.source = source;
+        this.polygon = Collections.unmodifiableList(new ArrayList<>(polygon));
+        this.safetyRating = safetyRating;
+        this.center = centroid(polygon);
+        this.radiusMeters = 0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public LatLng getCenter() {
+        return center;
+    }
+
+    public double getRadiusMeters() {
+        return radiusMeters;
+    }
+
+    public float getSafetyRating() {
+        return safetyRating;
+    }
+
+    public boolean isPolygon() {
+        return polygon != null;
+    }
+
+    public List<LatLng> getPolygon() {
+        return polygon;
+    }
+
+    private static LatLng centroid(List<LatLng> points) {
+        double lat = 0;
+        double lng = 0;
+        for (LatLng point : points) {
+            lat += point.latitude;
+            lng += point.longitude;
+        }
+        int count = Math.max(1, points.size());
+        return new LatLng(lat / count, lng / count);
+    }
+}
@@ -1,60 +1,74 @@
 package com.example.safewomen.models;
 
+import com.example.safewomen.utils.GeoUtils;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A saved route the user considers safe, with a corridor of bufferMeters on either side
+ */
 public class SecurePath {
-    private int id;
-    private String userId;
-    private double latitude;
-    private double longitude;
-    private String description;
-    private String dateMarked;
-    private boolean confirmed;
+    private final String id;
+    private final String name;
+    private final List<LatLng> points;
+    private final double bufferMeters;
+    private final long updatedAt;
 
-    public double getLatitude() {
-        return latitude;
+    public SecurePath(String id, String name, List<LatLng> points, double bufferMeters, long updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.points = Collections.unmodifiableList(new ArrayList<>(points));
+        this.bufferMeters = bufferMeters;
+        this.updatedAt = updatedAt;
     }
 
-    public void setLatitude(double latitude) {
-        this.latitude = latitude;
+    public String getId() {
+        return id;
     }
 
-    public double getLongitude() {
-        return longitude;
+    public String getName() {
+        return name;
     }
 
-    public void setLongitude(double longitude) {
-        this.longitude = longitude;
+    public List<LatLng> getPoints() {
+        return points;
     }
 
-    public String getDescription() {
-        return description;
+    public double getBufferMeters() {
+        return bufferMeters;
     }
 
-    public void setDescription(String description) {
-        this.description = description;
+    public long getUpdatedAt() {
+        return updatedAt;
     }
 
-    public String getDateMarked() {
-        return dateMarked;
-    }
-    public void setDateMarked(String dateMarked) {
-        this.dateMarked = dateMarked;
-    }
-    public boolean isConfirmed() {
-        return confirmed;
-    }
-    public void setConfirmed(boolean confirmed) {
-        this.confirmed = confirmed;
-    }
-    public int getId() {
-        return id;
-    }
-    public void setId(int id) {
-        this.id = id;
-    }
-    public String getUserId() {
-        return userId;
+    /**
+     * Distance from a point to the nearest segment of the route
+     * @return Distance in meters
+     */
+    public double distanceMeters(double latitude, double longitude) {
+        if (points.size() == 1) {
+            LatLng only = points.get(0);
+            return GeoUtils.approxDistanceMeters(latitude, longitude, only.latitude, only.longitude);
+        }
+
+        double best = Double.MAX_VALUE;
+        for (int i = 1; i < points.size(); i++) {
+            LatLng a = points.get(i - 1);
+            LatLng b = points.get(i);
+            best = Math.min(best, GeoUtils.distanceToSegmentMeters(latitude, longitude,
+                    a.latitude, a.longitude, b.latitude, b.longitude));
+        }
+        return best;
     }
-    public void setUserId(String userId) {
-        this.userId = userId;
+
+    /**
+     * Whether a point lies inside the route corridor
+     */
+    public boolean contains(double latitude, double longitude) {
+        return distanceMeters(latitude, longitude) <= bufferMeters;
     }
-}
\ No newline at end of file
+}
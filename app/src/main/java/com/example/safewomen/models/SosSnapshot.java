@@ -0,0 +1,91 @@
+package com.example.safewomen.models;
+
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.LocationHistoryEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything an SOS needs from local storage, prepared ahead of time so that
+ * triggering is an in-memory read. Immutable; updates produce a new snapshot.
+ */
+public class SosSnapshot {
+    public static final SosSnapshot EMPTY = new SosSnapshot(Collections.<EmergencyContactEntity>emptyList(), null);
+
+    private final List<EmergencyContactEntity> contacts;
+    private final EmergencyContactEntity primaryContact;
+    private final LocationHistoryEntity lastLocation;
+    private final String message;
+
+    public SosSnapshot(List<EmergencyContactEntity> contacts, LocationHistoryEntity lastLocation) {
+        this.contacts = Collections.unmodifiableList(new ArrayList<>(contacts));
+        this.primaryContact = findPrimary(this.contacts);
+        this.lastLocation = lastLocation;
+        this.message = buildMessage(lastLocation);
+    }
+
+    /**
+     * Same contacts with a newer location
+     */
+    public SosSnapshot withLocation(LocationHistoryEntity location) {
+        return new SosSnapshot(contacts, location);
+    }
+
+    /**
+     * Same location with a new contact list
+     */
+    public SosSnapshot withContacts(List<EmergencyContactEntity> newContacts) {
+        return new SosSnapshot(newContacts, lastLocation);
+    }
+
+    public List<EmergencyContactEntity> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * The contact to call: the primary one, or the first if none is marked primary
+     */
+    public EmergencyContactEntity getPrimaryContact() {
+        return primaryContact;
+    }
+
+    public LocationHistoryEntity getLastLocation() {
+        return lastLocation;
+    }
+
+    /**
+     * Emergency SMS text including the last known location
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    private static EmergencyContactEntity findPrimary(List<EmergencyContactEntity> contacts) {
+        for (EmergencyContactEntity contact : contacts) {
+            if (contact.isPrimary()) {
+                return contact;
+            }
+        }
+        return contacts.isEmpty() ? null : contacts.get(0);
+    }
+
+    private static String buildMessage(LocationHistoryEntity location) {
+        String message = "EMERGENCY: I need help!";
+
+        // Add location information if available
+        if (location != null) {
+            message += " My current location: ";
+            if (location.getAddress() != null && !location.getAddress().isEmpty()) {
+                message += location.getAddress();
+            } else {
+                message += "Lat: " + location.getLatitude() + ", Long: " + location.getLongitude();
+            }
+
+            // Add Google Maps link
+            message += " https://maps.google.com/?q=" + location.getLatitude() + "," + location.getLongitude();
+        }
+        return message;
+    }
+}
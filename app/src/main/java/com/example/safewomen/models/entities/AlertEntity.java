@@ -2,44 +2,67 @@ package com.example.safewomen.models.entities;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "alerts")
+@Entity(tableName = "alerts", indices = {@Index("syncStatus"), @Index("serverId")})
 public class AlertEntity {
     @PrimaryKey
     @NonNull
-    private String id;
+    private String id;             // Local id, also sent as the idempotency key
 
     private long timestamp;
-    private double latitude;
+    private double latitude;       // Only meaningful when locationKnown
     private double longitude;
     private String address;
+    private boolean locationKnown; // False when raised before any fix; the first fix is attached later
+    private boolean locationPending; // Location changed since the server last got it
+    private String type;
     private String status;
+    private String serverId;       // Null until the server has the alert
+    private String syncStatus;     // "pending", "synced", "failed"
+    private long updatedAt;        // Guards against a sync overwriting a newer local change
     // Constructors
     public AlertEntity() {}
-    public AlertEntity(String id, long timestamp, double latitude, double longitude, String address, String status) {
+    public AlertEntity(@NonNull String id, long timestamp, double latitude, double longitude, String address,
+                       boolean locationKnown, String type, String status, String serverId, String syncStatus,
+                       long updatedAt) {
         this.id = id;
         this.timestamp = timestamp;
         this.latitude = latitude;
         this.longitude = longitude;
         this.address = address;
+        this.locationKnown = locationKnown;
+        this.type = type;
         this.status = status;
-        //
+        this.serverId = serverId;
+        this.syncStatus = syncStatus;
+        this.updatedAt = updatedAt;
     }
     // Getters and Setters
+    @NonNull
     public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
+    public void setId(@NonNull String id) { this.id = id; }
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     public double getLatitude() { return latitude; }
     public void setLatitude(double latitude) { this.latitude = latitude; }
     public double getLongitude() { return longitude; }
-    public void setLongitude(double longitude) { this.
-            longitude = longitude; }
-   public  String getAddress() { return address; }
+    public void setLongitude(double longitude) { this.longitude = longitude; }
+    public String getAddress() { return address; }
     public void setAddress(String address) { this.address = address; }
+    public boolean isLocationKnown() { return locationKnown; }
+    public void setLocationKnown(boolean locationKnown) { this.locationKnown = locationKnown; }
+    public boolean isLocationPending() { return locationPending; }
+    public void setLocationPending(boolean locationPending) { this.locationPending = locationPending; }
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
-
-
-}
\ No newline at end of file
+    public String getServerId() { return serverId; }
+    public void setServerId(String serverId) { this.serverId = serverId; }
+    public String getSyncStatus() { return syncStatus; }
+    public void setSyncStatus(String syncStatus) { this.syncStatus = syncStatus; }
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+}
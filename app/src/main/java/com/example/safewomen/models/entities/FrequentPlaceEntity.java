@@ -0,0 +1,69 @@
+package com.example.safewomen.models.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "frequent_places")
+public class FrequentPlaceEntity {
+    @PrimaryKey
+    @NonNull
+    private String id;
+    private double latitude;
+    private double longitude;
+    private double radiusMeters;
+    private int pointCount;
+    private int visitCount;
+    private long totalDwellMs;
+    private long firstSeen;
+    private long lastSeen;
+    private long updatedAt;
+
+    public FrequentPlaceEntity() {}
+
+    public FrequentPlaceEntity(@NonNull String id, double latitude, double longitude, double radiusMeters,
+                               int pointCount, int visitCount, long totalDwellMs,
+                               long firstSeen, long lastSeen, long updatedAt) {
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radiusMeters = radiusMeters;
+        this.pointCount = pointCount;
+        this.visitCount = visitCount;
+        this.totalDwellMs = totalDwellMs;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.updatedAt = updatedAt;
+    }
+
+    @NonNull
+    public String getId() { return id; }
+    public void setId(@NonNull String id) { this.id = id; }
+
+    public double getLatitude() { return latitude; }
+    public void setLatitude(double latitude) { this.latitude = latitude; }
+
+    public double getLongitude() { return longitude; }
+    public void setLongitude(double longitude) { this.longitude = longitude; }
+
+    public double getRadiusMeters() { return radiusMeters; }
+    public void setRadiusMeters(double radiusMeters) { this.radiusMeters = radiusMeters; }
+
+    public int getPointCount() { return pointCount; }
+    public void setPointCount(int pointCount) { this.pointCount = pointCount; }
+
+    public int getVisitCount() { return visitCount; }
+    public void setVisitCount(int visitCount) { this.visitCount = visitCount; }
+
+    public long getTotalDwellMs() { return totalDwellMs; }
+    public void setTotalDwellMs(long totalDwellMs) { this.totalDwellMs = totalDwellMs; }
+
+    public long getFirstSeen() { return firstSeen; }
+    public void setFirstSeen(long firstSeen) { this.firstSeen = firstSeen; }
+
+    public long getLastSeen() { return lastSeen; }
+    public void setLastSeen(long lastSeen) { this.lastSeen = lastSeen; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+}
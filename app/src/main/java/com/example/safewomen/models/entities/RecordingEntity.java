@@ -0,0 +1,71 @@
+package com.example.safewomen.models.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Catalog entry for one recording file, kept in step with the recordings directory
+ */
+@Entity(tableName = "recordings",
+        indices = {@Index({"createdAt", "filePath"}), @Index("sosId"), @Index("lastAccessedAt")})
+public class RecordingEntity {
+    @PrimaryKey
+    @NonNull
+    private String filePath;
+    private String name;
+    private String type;           // "audio", "video" or "unknown"
+    private long sizeBytes;
+    private long durationMs;
+    private long createdAt;
+    private long lastAccessedAt;   // Opened or shared; eviction goes least recently used first
+    private String sosId;          // SOS the recording was made for, if any
+    private String alertId;
+    private String uploadState;    // "local", "pending", "uploaded", "failed"
+
+    public RecordingEntity() {}
+
+    public RecordingEntity(@NonNull String filePath, String name, String type, long sizeBytes,
+                           long durationMs, long createdAt, String uploadState) {
+        this.filePath = filePath;
+        this.name = name;
+        this.type = type;
+        this.sizeBytes = sizeBytes;
+        this.durationMs = durationMs;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = createdAt;
+        this.uploadState = uploadState;
+    }
+
+    @NonNull
+    public String getFilePath() { return filePath; }
+    public void setFilePath(@NonNull String filePath) { this.filePath = filePath; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    public long getLastAccessedAt() { return lastAccessedAt; }
+    public void setLastAccessedAt(long lastAccessedAt) { this.lastAccessedAt = lastAccessedAt; }
+
+    public String getSosId() { return sosId; }
+    public void setSosId(String sosId) { this.sosId = sosId; }
+
+    public String getAlertId() { return alertId; }
+    public void setAlertId(String alertId) { this.alertId = alertId; }
+
+    public String getUploadState() { return uploadState; }
+    public void setUploadState(String uploadState) { this.uploadState = uploadState; }
+}
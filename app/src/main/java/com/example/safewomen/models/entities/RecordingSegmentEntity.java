@@ -0,0 +1,87 @@
+package com.example.safewomen.models.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One closed-or-open segment of an emergency recording session
+ */
+@Entity(tableName = "recording_segments",
+        indices = {@Index({"sessionId", "segmentIndex"}), @Index("status")})
+public class RecordingSegmentEntity {
+    @PrimaryKey
+    @NonNull
+    private String id;
+    private String sessionId;      // One per start of the recorder
+    private String sosId;          // SOS that started the recording, if any
+    private String type;           // "audio" or "video"
+    private int segmentIndex;
+    private String filePath;
+    private long startedAt;
+    private long endedAt;
+    private long gapBeforeMs;      // Capture lost between the previous segment of the track and this one
+    private long sizeBytes;
+    private String status;         // "recording", "closed", "interrupted", "uploaded", "failed"
+    private String sha256;         // Of the whole file, computed before the first upload
+    private String uploadId;
+    private long uploadedBytes;    // Last offset acknowledged by the server
+
+    public RecordingSegmentEntity() {}
+
+    public RecordingSegmentEntity(@NonNull String id, String sessionId, String sosId, String type,
+                                  int segmentIndex, String filePath, long startedAt, String status) {
+        this.id = id;
+        this.sessionId = sessionId;
+        this.sosId = sosId;
+        this.type = type;
+        this.segmentIndex = segmentIndex;
+        this.filePath = filePath;
+        this.startedAt = startedAt;
+        this.status = status;
+    }
+
+    @NonNull
+    public String getId() { return id; }
+    public void setId(@NonNull String id) { this.id = id; }
+
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getSosId() { return sosId; }
+    public void setSosId(String sosId) { this.sosId = sosId; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public int getSegmentIndex() { return segmentIndex; }
+    public void setSegmentIndex(int segmentIndex) { this.segmentIndex = segmentIndex; }
+
+    public String getFilePath() { return filePath; }
+    public void setFilePath(String filePath) { this.filePath = filePath; }
+
+    public long getStartedAt() { return startedAt; }
+    public void setStartedAt(long startedAt) { this.startedAt = startedAt; }
+
+    public long getEndedAt() { return endedAt; }
+    public void setEndedAt(long endedAt) { this.endedAt = endedAt; }
+
+    public long getGapBeforeMs() { return gapBeforeMs; }
+    public void setGapBeforeMs(long gapBeforeMs) { this.gapBeforeMs = gapBeforeMs; }
+
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public String getUploadId() { return uploadId; }
+    public void setUploadId(String uploadId) { this.uploadId = uploadId; }
+
+    public long getUploadedBytes() { return uploadedBytes; }
+    public void setUploadedBytes(long uploadedBytes) { this.uploadedBytes = uploadedBytes; }
+}
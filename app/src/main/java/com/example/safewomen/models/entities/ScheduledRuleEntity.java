@@ -0,0 +1,89 @@
+package com.example.safewomen.models.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "scheduled_rules")
+public class ScheduledRuleEntity {
+    public static final String TYPE_ARRIVE_BY = "arrive_by"; // "alert if I'm not home by 10pm"
+    public static final String TYPE_MAX_STOP = "max_stop";   // "alert if I stop for 20 minutes outside a safe zone"
+
+    @PrimaryKey
+    @NonNull
+    private String id;
+    private String type;
+    private String name;
+    private boolean enabled;
+    private double latitude;       // arrive_by target
+    private double longitude;      // arrive_by target
+    private double radiusMeters;   // arrive_by target radius
+    private int deadlineMinuteOfDay; // arrive_by deadline, minutes after local midnight
+    private int durationMinutes;   // max_stop allowed stop duration
+    private long updatedAt;
+    // max_stop: the stop in progress, kept so it survives process death; stopSince 0 = none
+    private double stopLatitude;
+    private double stopLongitude;
+    private long stopSince;
+    private boolean stopAlerted;
+
+    public ScheduledRuleEntity() {}
+
+    public ScheduledRuleEntity(@NonNull String id, String type, String name, boolean enabled,
+                               double latitude, double longitude, double radiusMeters,
+                               int deadlineMinuteOfDay, int durationMinutes, long updatedAt) {
+        this.id = id;
+        this.type = type;
+        this.name = name;
+        this.enabled = enabled;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radiusMeters = radiusMeters;
+        this.deadlineMinuteOfDay = deadlineMinuteOfDay;
+        this.durationMinutes = durationMinutes;
+        this.updatedAt = updatedAt;
+    }
+
+    @NonNull
+    public String getId() { return id; }
+    public void setId(@NonNull String id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public double getLatitude() { return latitude; }
+    public void setLatitude(double latitude) { this.latitude = latitude; }
+
+    public double getLongitude() { return longitude; }
+    public void setLongitude(double longitude) { this.longitude = longitude; }
+
+    public double getRadiusMeters() { return radiusMeters; }
+    public void setRadiusMeters(double radiusMeters) { this.radiusMeters = radiusMeters; }
+
+    public int getDeadlineMinuteOfDay() { return deadlineMinuteOfDay; }
+    public void setDeadlineMinuteOfDay(int deadlineMinuteOfDay) { this.deadlineMinuteOfDay = deadlineMinuteOfDay; }
+
+    public int getDurationMinutes() { return durationMinutes; }
+    public void setDurationMinutes(int durationMinutes) { this.durationMinutes = durationMinutes; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public double getStopLatitude() { return stopLatitude; }
+    public void setStopLatitude(double stopLatitude) { this.stopLatitude = stopLatitude; }
+
+    public double getStopLongitude() { return stopLongitude; }
+    public void setStopLongitude(double stopLongitude) { this.stopLongitude = stopLongitude; }
+
+    public long getStopSince() { return stopSince; }
+    public void setStopSince(long stopSince) { this.stopSince = stopSince; }
+
+    public boolean isStopAlerted() { return stopAlerted; }
+    public void setStopAlerted(boolean stopAlerted) { this.stopAlerted = stopAlerted; }
+}
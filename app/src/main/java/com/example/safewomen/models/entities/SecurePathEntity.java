@@ -0,0 +1,75 @@
+package com.example.safewomen.models.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "secure_paths",
+        indices = {
+                @Index({"minLatitude", "maxLatitude"}),
+                @Index({"minLongitude", "maxLongitude"})
+        })
+public class SecurePathEntity {
+    @PrimaryKey
+    @NonNull
+    private String id;
+    private String name;
+    private String encodedPolyline;
+    private double bufferMeters;
+    // Bounding box of the corridor, i.e. the route widened by its buffer
+    private double minLatitude;
+    private double maxLatitude;
+    private double minLongitude;
+    private double maxLongitude;
+    private long updatedAt;
+    private String syncStatus; // "synced", "pending", "pending_delete"
+
+    public SecurePathEntity() {}
+
+    public SecurePathEntity(@NonNull String id, String name, String encodedPolyline, double bufferMeters,
+                            double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                            long updatedAt, String syncStatus) {
+        this.id = id;
+        this.name = name;
+        this.encodedPolyline = encodedPolyline;
+        this.bufferMeters = bufferMeters;
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+        this.updatedAt = updatedAt;
+        this.syncStatus = syncStatus;
+    }
+
+    @NonNull
+    public String getId() { return id; }
+    public void setId(@NonNull String id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getEncodedPolyline() { return encodedPolyline; }
+    public void setEncodedPolyline(String encodedPolyline) { this.encodedPolyline = encodedPolyline; }
+
+    public double getBufferMeters() { return bufferMeters; }
+    public void setBufferMeters(double bufferMeters) { this.bufferMeters = bufferMeters; }
+
+    public double getMinLatitude() { return minLatitude; }
+    public void setMinLatitude(double minLatitude) { this.minLatitude = minLatitude; }
+
+    public double getMaxLatitude() { return maxLatitude; }
+    public void setMaxLatitude(double maxLatitude) { this.maxLatitude = maxLatitude; }
+
+    public double getMinLongitude() { return minLongitude; }
+    public void setMinLongitude(double minLongitude) { this.minLongitude = minLongitude; }
+
+    public double getMaxLongitude() { return maxLongitude; }
+    public void setMaxLongitude(double maxLongitude) { this.maxLongitude = maxLongitude; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public String getSyncStatus() { return syncStatus; }
+    public void setSyncStatus(String syncStatus) { this.syncStatus = syncStatus; }
+}
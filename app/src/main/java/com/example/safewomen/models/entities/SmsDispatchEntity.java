@@ -0,0 +1,100 @@
+package com.example.safewomen.models.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One emergency SMS to one contact, tracked from queueing to delivery
+ */
+@Entity(tableName = "sms_dispatches",
+        indices = {@Index({"status", "nextAttemptAt"}), @Index("sosId")})
+public class SmsDispatchEntity {
+    @PrimaryKey
+    @NonNull
+    private String id;
+    private String sosId;
+    private String contactName;
+    private String phone;
+    private String message;
+    private int priority;          // Position in the contact list; primary contact first
+    private String status;         // "queued", "sending", "sent", "delivered", "failed", "cancelled"
+    private int attempts;
+    private int parts;             // Multipart messages report sent/delivered once per part
+    private int partsSent;
+    private int partsDelivered;
+    private long createdAt;
+    private long nextAttemptAt;
+    private long sentAt;
+    private long deliveredAt;
+    private String lastError;
+    private boolean cancelled;     // The SOS was cancelled; no further attempts, whatever the status
+
+    public SmsDispatchEntity() {}
+
+    public SmsDispatchEntity(@NonNull String id, String sosId, String contactName, String phone,
+                             String message, int priority, String status, long createdAt) {
+        this.id = id;
+        this.sosId = sosId;
+        this.contactName = contactName;
+        this.phone = phone;
+        this.message = message;
+        this.priority = priority;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+
+    @NonNull
+    public String getId() { return id; }
+    public void setId(@NonNull String id) { this.id = id; }
+
+    public String getSosId() { return sosId; }
+    public void setSosId(String sosId) { this.sosId = sosId; }
+
+    public String getContactName() { return contactName; }
+    public void setContactName(String contactName) { this.contactName = contactName; }
+
+    public String getPhone() { return phone; }
+    public void setPhone(String phone) { this.phone = phone; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public int getPriority() { return priority; }
+    public void setPriority(int priority) { this.priority = priority; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public int getParts() { return parts; }
+    public void setParts(int parts) { this.parts = parts; }
+
+    public int getPartsSent() { return partsSent; }
+    public void setPartsSent(int partsSent) { this.partsSent = partsSent; }
+
+    public int getPartsDelivered() { return partsDelivered; }
+    public void setPartsDelivered(int partsDelivered) { this.partsDelivered = partsDelivered; }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    public long getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(long nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public long getSentAt() { return sentAt; }
+    public void setSentAt(long sentAt) { this.sentAt = sentAt; }
+
+    public long getDeliveredAt() { return deliveredAt; }
+    public void setDeliveredAt(long deliveredAt) { this.deliveredAt = deliveredAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public boolean isCancelled() { return cancelled; }
+    public void setCancelled(boolean cancelled) { this.cancelled = cancelled; }
+}
@@ -0,0 +1,32 @@
+package com.example.safewomen.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.safewomen.repositories.ScheduledRuleRepository;
+
+/**
+ * Receiver for exact alarms scheduled by the rule engine
+ */
+public class RuleAlarmReceiver extends BroadcastReceiver {
+    private static final String TAG = "RuleAlarmReceiver";
+
+    public static final String ACTION_RULE_ALARM = "com.example.safewomen.RULE_ALARM";
+    public static final String EXTRA_RULE_ID = "rule_id";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_RULE_ALARM.equals(intent.getAction())) return;
+
+        String ruleId = intent.getStringExtra(EXTRA_RULE_ID);
+        if (ruleId == null) return;
+
+        Log.d(TAG, "Alarm for rule " + ruleId);
+
+        // Evaluation touches the database, so finish off the main thread
+        final PendingResult pendingResult = goAsync();
+        ScheduledRuleRepository.getInstance().handleAlarm(ruleId, pendingResult::finish);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.safewomen.receivers;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.telephony.SmsManager;
+import android.telephony.SmsMessage;
+import android.util.Log;
+
+import com.example.safewomen.repositories.SmsDispatchRepository;
+
+/**
+ * Receiver for sent and delivery reports of emergency SMS
+ */
+public class SmsStatusReceiver extends BroadcastReceiver {
+    private static final String TAG = "SmsStatusReceiver";
+
+    public static final String ACTION_SMS_SENT = "com.example.safewomen.SMS_SENT";
+    public static final String ACTION_SMS_DELIVERED = "com.example.safewomen.SMS_DELIVERED";
+    public static final String EXTRA_DISPATCH_ID = "dispatch_id";
+    public static final String EXTRA_ATTEMPT = "attempt";
+
+    // GSM TP-Status ranges: completed below 0x20, still trying below 0x40, failed above
+    private static final int STATUS_TEMPORARY_ERROR = 0x20;
+    private static final int STATUS_PERMANENT_ERROR = 0x40;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String dispatchId = intent.getStringExtra(EXTRA_DISPATCH_ID);
+        int attempt = intent.getIntExtra(EXTRA_ATTEMPT, -1);
+        if (dispatchId == null || attempt < 0) return;
+
+        SmsDispatchRepository repository = SmsDispatchRepository.getInstance();
+        if (ACTION_SMS_SENT.equals(intent.getAction())) {
+            int resultCode = getResultCode();
+            boolean success = resultCode == Activity.RESULT_OK;
+            repository.onSent(dispatchId, attempt, success, success ? null : describeSendError(resultCode));
+        } else if (ACTION_SMS_DELIVERED.equals(intent.getAction())) {
+            int status = deliveryStatus(intent);
+            if (status >= STATUS_TEMPORARY_ERROR && status < STATUS_PERMANENT_ERROR) {
+                // The carrier is still retrying; wait for the final report
+                return;
+            }
+            repository.onDelivered(dispatchId, attempt, status < STATUS_TEMPORARY_ERROR);
+        }
+    }
+
+    // TP-Status from the report PDU; falls back to the result code when there is none
+    private int deliveryStatus(Intent intent) {
+        byte[] pdu = intent.getByteArrayExtra("pdu");
+        if (pdu != null) {
+            try {
+                SmsMessage message = SmsMessage.createFromPdu(pdu, intent.getStringExtra("format"));
+                if (message != null) {
+                    return message.getStatus();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error parsing delivery report", e);
+            }
+        }
+        return getResultCode() == Activity.RESULT_OK ? 0 : STATUS_PERMANENT_ERROR;
+    }
+
+    private static String describeSendError(int resultCode) {
+        switch (resultCode) {
+            case SmsManager.RESULT_ERROR_NO_SERVICE:
+                return "No service";
+            case SmsManager.RESULT_ERROR_RADIO_OFF:
+                return "Radio off";
+            case SmsManager.RESULT_ERROR_NULL_PDU:
+                return "Null PDU";
+            case SmsManager.RESULT_ERROR_GENERIC_FAILURE:
+                return "Generic failure";
+            default:
+                return "Send error " + resultCode;
+        }
+    }
+}
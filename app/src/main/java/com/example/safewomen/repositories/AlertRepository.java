@@ -3,32 +3,75 @@ package com.example.safewomen.repositories;
 import android.content.Context;
 import android.util.Log;
 
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
 import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiReaders;
+import com.example.safewomen.api.ApiResponse;
 import com.example.safewomen.api.ApiService;
+import com.example.safewomen.api.BatchMultiplexer;
+import com.example.safewomen.api.ResponseDecoder;
+import com.example.safewomen.data.AlertDao;
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.models.AlertHistoryItem;
+import com.example.safewomen.models.entities.AlertEntity;
+import com.example.safewomen.utils.NetworkMonitor;
 import com.example.safewomen.utils.PreferenceManager;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.example.safewomen.utils.RequestCoalescer;
+import com.example.safewomen.workers.AlertSyncWorker;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
+/**
+ * Repository for SOS alerts. Alerts are written locally first and uploaded by an
+ * outbox drain, so raising one never waits on the network.
+ */
 public class AlertRepository {
     private static final String TAG = "AlertRepository";
     private static AlertRepository instance;
     private static Context appContext;
 
+    private static final int SYNC_BATCH_SIZE = 20;
+    private static final long SYNC_BACKOFF_SECONDS = 30;
+    private static final String SYNC_WORK_NAME = "alert_sync";
+    // Screens opened together share one history download
+    private static final long HISTORY_TTL_MS = 30 * 1000;
+
     private final ApiService apiService;
     private final PreferenceManager preferenceManager;
+    private final AlertDao alertDao;
+    private final Executor executor;
+    // Uploads block on the network, so they stay off the database executor
+    private final Executor syncExecutor;
+    private final WorkManager workManager;
+    private final NetworkMonitor networkMonitor;
+    // Keyed by user id
+    private final RequestCoalescer<String, List<AlertHistoryItem>> historyRequests =
+            new RequestCoalescer<>("alert_history", HISTORY_TTL_MS);
+
+    // Serializes uploads from the repository and from AlertSyncWorker
+    private final Object syncLock = new Object();
+    private final List<ServerIdListener> serverIdListeners = new CopyOnWriteArrayList<>();
 
     public static synchronized void init(Context context) {
         if (instance == null) {
@@ -52,80 +95,289 @@ public class AlertRepository {
             PreferenceManager.init(appContext);
         }
         this.preferenceManager = PreferenceManager.getInstance();
+        this.networkMonitor = NetworkMonitor.getInstance();
+        this.alertDao = SafeWomenDatabase.getInstance(appContext).alertDao();
+        this.executor = Executors.newSingleThreadExecutor();
+        this.syncExecutor = Executors.newSingleThreadExecutor();
+        this.workManager = WorkManager.getInstance(appContext);
+
+        // Finish uploading alerts raised before the app was last closed
+        executor.execute(() -> {
+            if (!alertDao.getPendingAlerts(1).isEmpty()) {
+                scheduleSync();
+            }
+        });
     }
 
     /**
-     * Create a new alert
+     * Record a new alert locally and upload it in the background. The callback
+     * gets the local alert id, which updateAlertStatus also accepts.
      */
     public void createAlert(double latitude, double longitude, String address, String type,
                             AlertCallback callback) {
-        Map<String, String> params = new HashMap<>();
-        params.put("user_id", preferenceManager.getUserId());
-        params.put("latitude", String.valueOf(latitude));
-        params.put("longitude", String.valueOf(longitude));
-        params.put("address", address);
-        params.put("type", type);
-        params.put("status", "active");
+        insertAlert(true, latitude, longitude, address, type, callback);
+    }
 
-        apiService.createAlert(params).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    try {
-                        String jsonString = response.body().string();
-                        JSONObject jsonObject = new JSONObject(jsonString);
-                        boolean success = jsonObject.getBoolean("success");
-                        String message = jsonObject.getString("message");
-
-                        if (success) {
-                            JSONObject alertJson = jsonObject.getJSONObject("alert");
-                            String alertId = alertJson.getString("id");
-                            callback.onSuccess(alertId, message);
-                        } else {
-                            callback.onError(message);
-                        }
-                    } catch (IOException | JSONException e) {
-                        Log.e(TAG, "Error parsing response", e);
-                        callback.onError("Error processing response: " + e.getMessage());
-                    }
-                } else {
-                    callback.onError("Server error: " + response.code());
+    /**
+     * Record an alert raised before any fix was available; attachLocation adds the first one
+     */
+    public void createAlertWithoutLocation(String type, AlertCallback callback) {
+        insertAlert(false, 0, 0, null, type, callback);
+    }
+
+    /**
+     * Give an alert recorded without a location its first fix. Alerts that already
+     * have a location keep it; live location covers where the user went next.
+     */
+    public void attachLocation(String alertId, double latitude, double longitude, String address) {
+        executor.execute(() -> {
+            AlertEntity alert = alertDao.getByLocalOrServerId(alertId);
+            if (alert == null || alert.isLocationKnown()) return;
+
+            alert.setLatitude(latitude);
+            alert.setLongitude(longitude);
+            alert.setAddress(address);
+            alert.setLocationKnown(true);
+            alert.setLocationPending(true);
+            alert.setSyncStatus("pending");
+            alert.setUpdatedAt(Math.max(System.currentTimeMillis(), alert.getUpdatedAt() + 1));
+            alertDao.update(alert);
+            historyRequests.invalidateAll();
+            requestSync();
+        });
+    }
+
+    private void insertAlert(boolean locationKnown, double latitude, double longitude, String address,
+                             String type, AlertCallback callback) {
+        executor.execute(() -> {
+            long now = System.currentTimeMillis();
+            AlertEntity alert = new AlertEntity("local_" + UUID.randomUUID().toString(), now,
+                    latitude, longitude, address, locationKnown, type, "active", null, "pending", now);
+            try {
+                alertDao.insert(alert);
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving alert", e);
+                if (callback != null) {
+                    callback.onError("Error saving alert: " + e.getMessage());
                 }
+                return;
             }
 
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                Log.e(TAG, "API call failed", t);
-                callback.onError("Network error: " + t.getMessage());
+            historyRequests.invalidateAll();
+            if (callback != null) {
+                callback.onSuccess(alert.getId(), "Alert recorded");
             }
+            requestSync();
         });
     }
 
     /**
-     * Update alert status
+     * Update alert status; alerts known locally are updated offline and synced later
      */
     public void updateAlertStatus(String alertId, String status, AlertCallback callback) {
+        executor.execute(() -> {
+            AlertEntity alert = alertDao.getByLocalOrServerId(alertId);
+            if (alert == null) {
+                // Alerts raised on another device only exist on the server
+                updateRemoteStatus(alertId, status, callback);
+                return;
+            }
+
+            alert.setStatus(status);
+            alert.setSyncStatus("pending");
+            alert.setUpdatedAt(Math.max(System.currentTimeMillis(), alert.getUpdatedAt() + 1));
+            alertDao.update(alert);
+            historyRequests.invalidateAll();
+
+            if (callback != null) {
+                callback.onSuccess(alertId, "Alert status updated");
+            }
+            requestSync();
+        });
+    }
+
+    /**
+     * Notified when an alert recorded locally gets its server id
+     */
+    public void addServerIdListener(ServerIdListener listener) {
+        serverIdListeners.add(listener);
+    }
+
+    public void removeServerIdListener(ServerIdListener listener) {
+        serverIdListeners.remove(listener);
+    }
+
+    /**
+     * Upload pending alerts in batches, oldest first (should be called from background thread)
+     * @return false if the server couldn't be reached and the sync should be retried later
+     */
+    public boolean syncPendingAlerts() {
+        synchronized (syncLock) {
+            while (true) {
+                List<AlertEntity> batch = alertDao.getPendingAlerts(SYNC_BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    return true;
+                }
+
+                for (AlertEntity alert : batch) {
+                    if (!uploadAlert(alert)) {
+                        return false;
+                    }
+                }
+                // The server's history now includes these
+                historyRequests.invalidateAll();
+                Log.d(TAG, "Synced batch of " + batch.size() + " alerts");
+            }
+        }
+    }
+
+    // Uploads right away when online; otherwise, or if that fails, AlertSyncWorker retries
+    private void requestSync() {
+        if (!networkMonitor.isOnline()) {
+            scheduleSync();
+            return;
+        }
+        syncExecutor.execute(() -> {
+            if (!syncPendingAlerts()) {
+                scheduleSync();
+            }
+        });
+    }
+
+    private void scheduleSync() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest syncWork = new OneTimeWorkRequest.Builder(AlertSyncWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, SYNC_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        workManager.enqueueUniqueWork(SYNC_WORK_NAME, ExistingWorkPolicy.KEEP, syncWork);
+    }
+
+    /**
+     * Create or update one alert on the server
+     * @return false on a transient failure; rejected alerts are marked failed and skipped
+     */
+    private boolean uploadAlert(AlertEntity alert) {
+        String serverId = alert.getServerId();
+
+        if (serverId == null) {
+            Map<String, String> params = new HashMap<>();
+            params.put("user_id", preferenceManager.getUserId());
+            // Without a fix the coordinates are left out rather than sent as 0,0
+            params.put("location_known", alert.isLocationKnown() ? "1" : "0");
+            if (alert.isLocationKnown()) {
+                params.put("latitude", String.valueOf(alert.getLatitude()));
+                params.put("longitude", String.valueOf(alert.getLongitude()));
+                params.put("address", alert.getAddress() != null ? alert.getAddress() : "");
+            }
+            params.put("type", alert.getType());
+            params.put("status", alert.getStatus());
+            params.put("timestamp", String.valueOf(alert.getTimestamp()));
+            // Lets the server drop duplicates when a response was lost and the upload is retried
+            params.put("idempotency_key", alert.getId());
+
+            ApiResponse<AlertHistoryItem> created = execute(apiService.createAlert(params), alert,
+                    "alert", ApiReaders.ALERT_HISTORY_ITEM);
+            if (created == null) return false;
+            if (!created.isSuccess()) return reject(alert, created);
+
+            AlertHistoryItem stored = created.getData();
+            if (stored == null || stored.getId() == null || stored.getId().isEmpty()) return reject(alert, created);
+
+            serverId = stored.getId();
+            alertDao.setServerId(alert.getId(), serverId);
+            for (ServerIdListener listener : serverIdListeners) {
+                listener.onServerId(alert.getId(), serverId);
+            }
+            if (alert.isLocationKnown()) {
+                alertDao.clearLocationPendingIfUnchanged(alert.getId(), alert.getUpdatedAt());
+            }
+
+            // A retried create may return the copy stored earlier, with an older status
+            if (stored.getStatus() == null || alert.getStatus().equals(stored.getStatus())) {
+                alertDao.updateSyncStatusIfUnchanged(alert.getId(), alert.getUpdatedAt(), "synced");
+                return true;
+            }
+        } else if (alert.isLocationPending()) {
+            // The first fix arrived after the alert reached the server
+            Map<String, String> params = new HashMap<>();
+            params.put("alert_id", serverId);
+            params.put("user_id", preferenceManager.getUserId());
+            params.put("latitude", String.valueOf(alert.getLatitude()));
+            params.put("longitude", String.valueOf(alert.getLongitude()));
+            params.put("address", alert.getAddress() != null ? alert.getAddress() : "");
+
+            ApiResponse<Void> located = execute(apiService.updateAlert(params), alert, null, null);
+            if (located == null) return false;
+            if (!located.isSuccess()) return reject(alert, located);
+            alertDao.clearLocationPendingIfUnchanged(alert.getId(), alert.getUpdatedAt());
+        }
+
+        Map<String, String> params = new HashMap<>();
+        params.put("alert_id", serverId);
+        params.put("status", alert.getStatus());
+        params.put("user_id", preferenceManager.getUserId());
+
+        ApiResponse<Void> updated = execute(apiService.updateAlertStatus(params), alert, null, null);
+        if (updated == null) return false;
+        if (!updated.isSuccess()) return reject(alert, updated);
+
+        alertDao.updateSyncStatusIfUnchanged(alert.getId(), alert.getUpdatedAt(), "synced");
+        return true;
+    }
+
+    // Decoded body, or null on a transient failure; client errors are returned as a failed response
+    private <T> ApiResponse<T> execute(Call<ResponseBody> call, AlertEntity alert,
+                                       String dataField, ResponseDecoder.ValueReader<T> dataReader) {
+        try {
+            Response<ResponseBody> response = call.execute();
+            if (response.isSuccessful() && response.body() != null) {
+                return ResponseDecoder.decode(response.body(), dataField, dataReader);
+            }
+
+            int code = response.code();
+            if (code >= 400 && code < 500 && code != 408 && code != 429) {
+                return ApiResponse.failure("Server error: " + code);
+            }
+            Log.w(TAG, "Server error " + code + " syncing alert " + alert.getId());
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error syncing alert " + alert.getId(), e);
+            return null;
+        }
+    }
+
+    private boolean reject(AlertEntity alert, ApiResponse<?> result) {
+        Log.w(TAG, "Server rejected alert " + alert.getId() + ": " + result.getMessage(""));
+        alertDao.updateSyncStatusIfUnchanged(alert.getId(), alert.getUpdatedAt(), "failed");
+        return true;
+    }
+
+    private void updateRemoteStatus(String alertId, String status, AlertCallback callback) {
         Map<String, String> params = new HashMap<>();
         params.put("alert_id", alertId);
         params.put("status", status);
         params.put("user_id", preferenceManager.getUserId());
 
-        apiService.updateAlertStatus(params).enqueue(new Callback<ResponseBody>() {
+        ApiClient.getBatchMultiplexer().enqueue(ApiService.UPDATE_ALERT_STATUS, params,
+                new BatchMultiplexer.ResultCallback() {
             @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+            public void onResponse(Response<ResponseBody> response) {
                 if (response.isSuccessful() && response.body() != null) {
                     try {
-                        String jsonString = response.body().string();
-                        JSONObject jsonObject = new JSONObject(jsonString);
-                        boolean success = jsonObject.getBoolean("success");
-                        String message = jsonObject.getString("message");
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (success) {
-                            callback.onSuccess(alertId, message);
+                        if (result.isSuccess()) {
+                            historyRequests.invalidateAll();
+                            callback.onSuccess(alertId, result.getMessage(""));
                         } else {
-                            callback.onError(message);
+                            callback.onError(result.getMessage("Failed to update alert"));
                         }
-                    } catch (IOException | JSONException e) {
+                    } catch (IOException e) {
                         Log.e(TAG, "Error parsing response", e);
                         callback.onError("Error processing response: " + e.getMessage());
                     }
@@ -135,7 +387,7 @@ public class AlertRepository {
             }
 
             @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
+            public void onFailure(Throwable t) {
                 Log.e(TAG, "API call failed", t);
                 callback.onError("Network error: " + t.getMessage());
             }
@@ -143,54 +395,86 @@ public class AlertRepository {
     }
 
     /**
-     * Get alert history
+     * Get alert history. Concurrent calls share one request and the result is reused
+     * for a short while; every caller gets its own list.
      */
     public void getAlertHistory(AlertHistoryCallback callback) {
         String userId = preferenceManager.getUserId();
+        historyRequests.get(String.valueOf(userId), done -> fetchAlertHistory(userId, done),
+                new RequestCoalescer.Callback<List<AlertHistoryItem>>() {
+                    @Override
+                    public void onSuccess(List<AlertHistoryItem> alerts) {
+                        callback.onSuccess(new ArrayList<>(alerts));
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        callback.onError(errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * One alert from the history, from the recent result when there is one
+     */
+    public void getAlertById(String alertId, AlertLookupCallback callback) {
+        getAlertHistory(new AlertHistoryCallback() {
+            @Override
+            public void onSuccess(List<AlertHistoryItem> alerts) {
+                for (AlertHistoryItem alert : alerts) {
+                    if (alertId.equals(alert.getId())) {
+                        callback.onSuccess(alert);
+                        return;
+                    }
+                }
+                callback.onError("Alert not found");
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                callback.onError(errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Coalescing counters for alert history reads
+     */
+    public RequestCoalescer<String, List<AlertHistoryItem>> getHistoryRequestStats() {
+        return historyRequests;
+    }
+
+    private void fetchAlertHistory(String userId, RequestCoalescer.Callback<List<AlertHistoryItem>> done) {
         apiService.getAlertHistory(userId).enqueue(new Callback<ResponseBody>() {
             @Override
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 if (response.isSuccessful() && response.body() != null) {
                     try {
-                        String jsonString = response.body().string();
-                        JSONObject jsonObject = new JSONObject(jsonString);
-                        boolean success = jsonObject.getBoolean("success");
-
-                        if (success) {
-                            JSONArray alertsArray = jsonObject.getJSONArray("alerts");
-                            List<Map<String, String>> alertsList = new ArrayList<>();
-
-                            for (int i = 0; i < alertsArray.length(); i++) {
-                                JSONObject alertJson = alertsArray.getJSONObject(i);
-                                Map<String, String> alert = new HashMap<>();
-                                alert.put("id", alertJson.getString("id"));
-                                alert.put("type", alertJson.getString("type"));
-                                alert.put("status", alertJson.getString("status"));
-                                alert.put("latitude", alertJson.getString("latitude"));
-                                alert.put("longitude", alertJson.getString("longitude"));
-                                alert.put("address", alertJson.getString("address"));
-                                alert.put("timestamp", alertJson.getString("timestamp"));
-                                alertsList.add(alert);
-                            }
-
-                            callback.onSuccess(alertsList);
+                        // Streamed into typed items; no String copy or JSON tree of the whole history
+                        ApiResponse<List<AlertHistoryItem>> result =
+                                ResponseDecoder.decode(response.body(), "alerts", ApiReaders.ALERT_HISTORY);
+
+                        if (result.isSuccess()) {
+                            List<AlertHistoryItem> alerts = result.getData();
+                            // Shared by every waiter and the memo, so it must not change
+                            done.onSuccess(Collections.unmodifiableList(
+                                    alerts != null ? alerts : new ArrayList<>()));
                         } else {
-                            String message = jsonObject.getString("message");
-                            callback.onError(message);
+                            done.onError(result.getMessage("Failed to load alert history"));
                         }
-                    } catch (IOException | JSONException e) {
+                    } catch (IOException e) {
                         Log.e(TAG, "Error parsing response", e);
-                        callback.onError("Error processing response: " + e.getMessage());
+                        done.onError("Error processing response: " + e.getMessage());
                     }
                 } else {
-                    callback.onError("Server error: " + response.code());
+                    done.onError("Server error: " + response.code());
                 }
             }
 
             @Override
             public void onFailure(Call<ResponseBody> call, Throwable t) {
                 Log.e(TAG, "API call failed", t);
-                callback.onError("Network error: " + t.getMessage());
+                done.onError("Network error: " + t.getMessage());
             }
         });
     }
@@ -203,11 +487,26 @@ public class AlertRepository {
         void onError(String errorMessage);
     }
 
+    /**
+     * Listener for server ids; called on the uploading thread
+     */
+    public interface ServerIdListener {
+        void onServerId(String localId, String serverId);
+    }
+
     /**
      * Callback interface for alert history
      */
     public interface AlertHistoryCallback {
-        void onSuccess(List<Map<String, String>> alerts);
+        void onSuccess(List<AlertHistoryItem> alerts);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Callback interface for a single alert
+     */
+    public interface AlertLookupCallback {
+        void onSuccess(AlertHistoryItem alert);
         void onError(String errorMessage);
     }
 }
@@ -6,17 +6,18 @@ import android.util.Log;
 import androidx.lifecycle.LiveData;
 
 import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiReaders;
+import com.example.safewomen.api.ApiResponse;
 import com.example.safewomen.api.ApiService;
+import com.example.safewomen.api.ResponseDecoder;
 import com.example.safewomen.data.AuthDao;
 import com.example.safewomen.data.SafeWomenDatabase;
 import com.example.safewomen.data.SettingsDao;
 import com.example.safewomen.models.entities.UserEntity;
 import com.example.safewomen.models.entities.UserSettingsEntity;
-import com.example.safewomen.utils.NetworkUtil;
+import com.example.safewomen.utils.NetworkMonitor;
 import com.example.safewomen.utils.PreferenceManager;
 
-import org.json.JSONObject;
-
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -74,27 +75,12 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
-
-                        if (jsonResponse.optBoolean("success", false)) {
-                            // Parse user data
-                            JSONObject userData = jsonResponse.getJSONObject("user");
-                            String userId = userData.getString("id");
-                            String name = userData.getString("name");
-                            String userEmail = userData.getString("email");
-                            String phone = userData.optString("phone", "");
-                            String authToken = userData.getString("auth_token");
-
-                            // Create user entity
-                            UserEntity user = new UserEntity(
-                                    userId,
-                                    name,
-                                    userEmail,
-                                    phone,
-                                    authToken,
-                                    System.currentTimeMillis()
-                            );
+                        ApiResponse<UserEntity> result = ResponseDecoder.decode(response.body(), "user", ApiReaders.USER);
+
+                        if (result.isSuccess() && result.getData() != null) {
+                            UserEntity user = result.getData();
+                            String userId = user.getId();
+                            String authToken = user.getAuth_token();
 
                             // Save user locally
                             executor.execute(() -> {
@@ -126,7 +112,7 @@ public class AuthRepository {
                             }
                         } else {
                             // Handle login error
-                            String message = jsonResponse.optString("message", "Login failed");
+                            String message = result.getMessage("Login failed");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -167,27 +153,12 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
-
-                        if (jsonResponse.optBoolean("success", false)) {
-                            // Parse user data
-                            JSONObject userData = jsonResponse.getJSONObject("user");
-                            String userId = userData.getString("id");
-                            String userName = userData.getString("name");
-                            String userEmail = userData.getString("email");
-                            String userPhone = userData.optString("phone", "");
-                            String authToken = userData.getString("auth_token");
-
-                            // Create user entity
-                            UserEntity user = new UserEntity(
-                                    userId,
-                                    userName,
-                                    userEmail,
-                                    userPhone,
-                                    authToken,
-                                    System.currentTimeMillis()
-                            );
+                        ApiResponse<UserEntity> result = ResponseDecoder.decode(response.body(), "user", ApiReaders.USER);
+
+                        if (result.isSuccess() && result.getData() != null) {
+                            UserEntity user = result.getData();
+                            String userId = user.getId();
+                            String authToken = user.getAuth_token();
 
                             // Save user locally
                             executor.execute(() -> {
@@ -216,7 +187,7 @@ public class AuthRepository {
                             }
                         } else {
                             // Handle registration error
-                            String message = jsonResponse.optString("message", "Registration failed");
+                            String message = result.getMessage("Registration failed");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -250,7 +221,7 @@ public class AuthRepository {
         String authToken = PreferenceManager.getInstance().getAuthToken();
 
         // Only attempt server logout if we have network
-        if (NetworkUtil.isOnline(appContext) && userId != null && authToken != null) {
+        if (NetworkMonitor.getInstance().isOnline() && userId != null && authToken != null) {
             Map<String, String> params = new HashMap<>();
             params.put("user_id", userId);
 
@@ -283,6 +254,8 @@ public class AuthRepository {
         executor.execute(() -> {
             authDao.clearUserData();
             settingsDao.clearSettings();
+            // Cached responses belong to the user who just left
+            ApiClient.clearCache();
         });
     }
 
@@ -306,10 +279,9 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Update local user data
                             executor.execute(() -> {
                                 UserEntity user = authDao.getUserById(userId);
@@ -325,7 +297,7 @@ public class AuthRepository {
                                 callback.onSuccess(null);
                             }
                         } else {
-                            String message = jsonResponse.optString("message", "Failed to update profile");
+                            String message = result.getMessage("Failed to update profile");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -362,18 +334,17 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Password reset request successful
-                            String message = jsonResponse.optString("message", "Reset code sent to your email");
+                            String message = result.getMessage("Reset code sent to your email");
                             if (callback != null) {
                                 callback.onSuccess(null); // No user entity for this operation
                             }
                         } else {
                             // Handle error
-                            String message = jsonResponse.optString("message", "Failed to send reset code");
+                            String message = result.getMessage("Failed to send reset code");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -413,31 +384,17 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<UserEntity> result = ResponseDecoder.decode(response.body(), "user", ApiReaders.USER);
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Password reset successful
-                            String message = jsonResponse.optString("message", "Password reset successful");
+                            String message = result.getMessage("Password reset successful");
 
                             // If the API returns user data after reset, we can update it
-                            if (jsonResponse.has("user")) {
-                                JSONObject userData = jsonResponse.getJSONObject("user");
-                                String userId = userData.getString("id");
-                                String name = userData.getString("name");
-                                String userEmail = userData.getString("email");
-                                String phone = userData.optString("phone", "");
-                                String authToken = userData.getString("auth_token");
-
-                                // Create user entity
-                                UserEntity user = new UserEntity(
-                                        userId,
-                                        name,
-                                        userEmail,
-                                        phone,
-                                        authToken,
-                                        System.currentTimeMillis()
-                                );
+                            if (result.getData() != null) {
+                                UserEntity user = result.getData();
+                                String userId = user.getId();
+                                String authToken = user.getAuth_token();
 
                                 // Save user locally
                                 executor.execute(() -> {
@@ -460,7 +417,7 @@ public class AuthRepository {
                             }
                         } else {
                             // Handle reset error
-                            String message = jsonResponse.optString("message", "Password reset failed");
+                            String message = result.getMessage("Password reset failed");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -514,17 +471,16 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Password changed successfully
                             if (callback != null) {
                                 callback.onSuccess(null);
                             }
                         } else {
                             // Handle error
-                            String message = jsonResponse.optString("message", "Failed to change password");
+                            String message = result.getMessage("Failed to change password");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -577,10 +533,9 @@ public class AuthRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Account deleted successfully, clear local data
                             clearLocalUserData();
 
@@ -589,7 +544,7 @@ public class AuthRepository {
                             }
                         } else {
                             // Handle error
-                            String message = jsonResponse.optString("message", "Failed to delete account");
+                            String message = result.getMessage("Failed to delete account");
                             if (callback != null) {
                                 callback.onError(message);
                             }
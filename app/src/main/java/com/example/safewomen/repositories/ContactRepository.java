@@ -10,20 +10,18 @@ import androidx.work.OneTimeWorkRequest;
 import androidx.work.WorkManager;
 
 import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiReaders;
+import com.example.safewomen.api.ApiResponse;
 import com.example.safewomen.api.ApiService;
+import com.example.safewomen.api.ResponseDecoder;
 import com.example.safewomen.data.ContactDao;
 import com.example.safewomen.data.SafeWomenDatabase;
 import com.example.safewomen.models.entities.EmergencyContactEntity;
-import com.example.safewomen.utils.NetworkLiveData;
-import com.example.safewomen.utils.NetworkUtil;
+import com.example.safewomen.utils.NetworkMonitor;
 import com.example.safewomen.utils.PreferenceManager;
+import com.example.safewomen.utils.SyncScheduler;
 import com.example.safewomen.workers.ContactSyncWorker;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +46,7 @@ public class ContactRepository {
     private final ApiService apiService;
     private final Executor executor;
     private final WorkManager workManager;
+    private final NetworkMonitor networkMonitor;
 
     public static synchronized void init(Application application) {
         if (instance == null) {
@@ -69,18 +68,15 @@ public class ContactRepository {
         apiService = ApiClient.getClient().create(ApiService.class);
         executor = Executors.newSingleThreadExecutor();
         workManager = WorkManager.getInstance(appContext);
+        networkMonitor = NetworkMonitor.getInstance();
 
         // Load contacts if user is logged in
         if (PreferenceManager.getInstance().isLoggedIn()) {
             loadContacts();
         }
 
-        // Observe network changes to sync pending contacts
-        NetworkLiveData.getInstance(appContext).observeForever(isOnline -> {
-            if (isOnline) {
-                syncPendingContacts();
-            }
-        });
+        // Sync pending contacts whenever the network comes back
+        SyncScheduler.getInstance().onReconnect("contacts", this::syncPendingContacts);
     }
 
     /**
@@ -90,6 +86,13 @@ public class ContactRepository {
         return contactDao.getAllContacts();
     }
 
+    /**
+     * Get all emergency contacts, primary first (should be called from background thread)
+     */
+    public List<EmergencyContactEntity> getContactsSync() {
+        return contactDao.getAllContactsSync();
+    }
+
     /**
      * Add a new emergency contact with offline support
      */
@@ -113,7 +116,7 @@ public class ContactRepository {
             contactDao.insert(contact);
 
             // Try to sync immediately if online
-            if (NetworkUtil.isOnline(appContext)) {
+            if (networkMonitor.isOnline()) {
                 uploadContact(contact, callback);
             } else {
                 // Schedule sync for when network is available
@@ -146,7 +149,7 @@ public class ContactRepository {
             contactDao.update(contact);
 
             // Try to sync immediately if online
-            if (NetworkUtil.isOnline(appContext)) {
+            if (networkMonitor.isOnline()) {
                 uploadContact(contact, callback);
             } else {
                 // Schedule sync for when network is available
@@ -164,7 +167,7 @@ public class ContactRepository {
      */
     public void deleteContact(String contactId, ContactCallback callback) {
         // For deletion, we need to be online
-        if (!NetworkUtil.isOnline(appContext)) {
+        if (!networkMonitor.isOnline()) {
             if (callback != null) {
                 callback.onError("Cannot delete contact while offline");
             }
@@ -180,10 +183,9 @@ public class ContactRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Delete locally
                             executor.execute(() -> contactDao.deleteById(contactId));
 
@@ -192,7 +194,7 @@ public class ContactRepository {
                             }
                         } else {
                             // Handle error from PHP
-                            String message = jsonResponse.optString("message", "Failed to delete contact");
+                            String message = result.getMessage("Failed to delete contact");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -230,19 +232,11 @@ public class ContactRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
-
-                        if (jsonResponse.optBoolean("success", false)) {
-                            // Parse contacts
-                            JSONArray contactsArray = jsonResponse.getJSONArray("contacts");
-                            List<EmergencyContactEntity> contactsList = new ArrayList<>();
-
-                            for (int i = 0; i < contactsArray.length(); i++) {
-                                JSONObject contactJson = contactsArray.getJSONObject(i);
-                                EmergencyContactEntity contact = parseContactFromJson(contactJson);
-                                contactsList.add(contact);
-                            }
+                        ApiResponse<List<EmergencyContactEntity>> result =
+                                ResponseDecoder.decode(response.body(), "contacts", ApiReaders.CONTACTS);
+
+                        if (result.isSuccess() && result.getData() != null) {
+                            List<EmergencyContactEntity> contactsList = result.getData();
 
                             // Update local database
                             executor.execute(() -> {
@@ -294,14 +288,12 @@ public class ContactRepository {
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<String> result = ResponseDecoder.decode(response.body(), "contact", ApiReaders.ID);
 
-                        if (jsonResponse.optBoolean("success", false)) {
+                        if (result.isSuccess()) {
                             // Update sync status
-                            if (jsonResponse.has("contact")) {
-                                JSONObject contactData = jsonResponse.getJSONObject("contact");
-                                final String serverId = contactData.getString("id");
+                            if (result.getData() != null) {
+                                final String serverId = result.getData();
 
                                 executor.execute(() -> {
                                     if (contact.getId().startsWith("local_")) {
@@ -336,7 +328,7 @@ public class ContactRepository {
                             }
                         } else {
                             // Handle error from PHP
-                            String message = jsonResponse.optString("message", "Failed to save contact");
+                            String message = result.getMessage("Failed to save contact");
                             if (callback != null) {
                                 callback.onError(message);
                             }
@@ -412,19 +404,6 @@ public class ContactRepository {
         workManager.enqueue(syncWork);
     }
 
-    /**
-     * Helper method to parse EmergencyContactEntity from JSON
-     */
-    private EmergencyContactEntity parseContactFromJson(JSONObject json) throws JSONException {
-        String id = json.getString("id");
-        String name = json.getString("name");
-        String phone = json.getString("phone");
-        String relationship = json.getString("relationship");
-        boolean isPrimary = json.getInt("is_primary") == 1;
-
-        return new EmergencyContactEntity(id, name, phone, relationship, isPrimary, "synced");
-    }
-
     /**
      * Clear all data (for logout)
      */
@@ -0,0 +1,212 @@
+package com.example.safewomen.repositories;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.data.FrequentPlaceDao;
+import com.example.safewomen.data.LocationHistoryDao;
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.models.LocationPoint;
+import com.example.safewomen.models.SafetyZone;
+import com.example.safewomen.models.entities.FrequentPlaceEntity;
+import com.example.safewomen.utils.PlaceClusterer;
+import com.example.safewomen.utils.PlaceIdAssigner;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Repository for places the user visits frequently, found by clustering
+ * location history in the background and published as generated safety zones
+ */
+public class FrequentPlaceRepository {
+    private static final String TAG = "FrequentPlaceRepo";
+    private static FrequentPlaceRepository instance;
+    private static Application appContext;
+
+    // Fixes arrive every 5-10 seconds, so 24 within 50 m is a stop of two to four minutes.
+    // A walk passes within 50 m for at most ~15 fixes, so a single pass never qualifies.
+    private static final double CLUSTER_EPS_METERS = 50;
+    private static final int CLUSTER_MIN_POINTS = 24;
+
+    // Clusters the user only passed through are not treated as places
+    private static final long MIN_DWELL_MS = 10 * 60 * 1000L;
+    private static final int MIN_VISITS_FOR_SAFE = 3;
+
+    // A recomputed centroid this close to a known place keeps that place's id
+    private static final double PLACE_MATCH_METERS = 100;
+
+    // Dwell statistics are written at most this often unless the places themselves change
+    private static final long PERSIST_INTERVAL_MS = 5 * 60 * 1000L;
+
+    private final FrequentPlaceDao frequentPlaceDao;
+    private final LocationHistoryDao locationHistoryDao;
+    private final Executor executor;
+
+    // Only touched on the executor
+    private final PlaceClusterer clusterer = new PlaceClusterer(CLUSTER_EPS_METERS, CLUSTER_MIN_POINTS);
+    private final PlaceIdAssigner placeIds = new PlaceIdAssigner(PLACE_MATCH_METERS);
+    private boolean clustered = false;
+    private String lastSignature = "";
+    private long lastPersistTime = 0;
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new FrequentPlaceRepository();
+        }
+    }
+
+    public static synchronized FrequentPlaceRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("FrequentPlaceRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private FrequentPlaceRepository() {
+        SafeWomenDatabase db = SafeWomenDatabase.getInstance(appContext);
+        frequentPlaceDao = db.frequentPlaceDao();
+        locationHistoryDao = db.locationHistoryDao();
+        executor = Executors.newSingleThreadExecutor();
+
+        // Publish the places found last time until clustering catches up
+        executor.execute(() -> {
+            try {
+                List<FrequentPlaceEntity> places = frequentPlaceDao.getAllPlaces();
+                for (FrequentPlaceEntity place : places) {
+                    placeIds.remember(place.getId(), place.getLatitude(), place.getLongitude(),
+                            place.getRadiusMeters());
+                }
+                publishZones(places);
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading frequent places", e);
+            }
+        });
+    }
+
+    /**
+     * Frequent places ordered by total dwell time
+     */
+    public LiveData<List<FrequentPlaceEntity>> getPlaces() {
+        return frequentPlaceDao.observePlaces();
+    }
+
+    /**
+     * Bring places up to date with location history. New fixes are absorbed into
+     * existing clusters; a full recluster runs on first use, when rows were deleted,
+     * or when enough fixes fell outside every known place.
+     */
+    public void refresh() {
+        executor.execute(() -> {
+            try {
+                if (!clustered) {
+                    fullRecluster();
+                    return;
+                }
+
+                int count = locationHistoryDao.getLocationCount();
+                List<LocationPoint> newPoints = locationHistoryDao.getPointsSince(clusterer.getLastTimestamp());
+                if (count != clusterer.getPointCount() + newPoints.size()) {
+                    fullRecluster();
+                    return;
+                }
+                if (newPoints.isEmpty()) return;
+
+                long start = System.nanoTime();
+                boolean reclusterDue = clusterer.absorb(newPoints);
+                Log.d(TAG, "Absorbed " + newPoints.size() + " points in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+
+                if (reclusterDue) {
+                    fullRecluster();
+                } else {
+                    savePlaces(false);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error refreshing frequent places", e);
+            }
+        });
+    }
+
+    // Must run on the executor
+    private void fullRecluster() {
+        List<LocationPoint> points = locationHistoryDao.getPointsSince(0);
+
+        long start = System.nanoTime();
+        clusterer.cluster(points);
+        clustered = true;
+        Log.d(TAG, "Clustered " + points.size() + " points in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+
+        savePlaces(true);
+    }
+
+    // Must run on the executor
+    private void savePlaces(boolean force) {
+        long now = System.currentTimeMillis();
+        List<PlaceClusterer.Place> kept = new ArrayList<>();
+        for (PlaceClusterer.Place place : clusterer.getPlaces()) {
+            if (place.getTotalDwellMs() >= MIN_DWELL_MS) {
+                kept.add(place);
+            }
+        }
+        List<String> ids = placeIds.assign(kept);
+
+        List<FrequentPlaceEntity> places = new ArrayList<>();
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < kept.size(); i++) {
+            PlaceClusterer.Place place = kept.get(i);
+            FrequentPlaceEntity entity = new FrequentPlaceEntity(
+                    ids.get(i),
+                    place.getLatitude(),
+                    place.getLongitude(),
+                    place.getRadiusMeters(),
+                    place.getPointCount(),
+                    place.getVisitCount(),
+                    place.getTotalDwellMs(),
+                    place.getFirstSeen(),
+                    place.getLastSeen(),
+                    now
+            );
+            places.add(entity);
+            signature.append(entity.getId()).append(':').append(entity.getVisitCount()).append(';');
+        }
+
+        // Only new places or visits change the zones; dwell time alone just needs an occasional write
+        boolean placesChanged = !signature.toString().equals(lastSignature);
+        if (!force && !placesChanged && now - lastPersistTime < PERSIST_INTERVAL_MS) return;
+
+        SafeWomenDatabase.getInstance(appContext).runInTransaction(() -> {
+            frequentPlaceDao.clear();
+            frequentPlaceDao.insertAll(places);
+        });
+        lastPersistTime = now;
+
+        if (force || placesChanged) {
+            lastSignature = signature.toString();
+            publishZones(places);
+        }
+        Log.d(TAG, "Saved " + places.size() + " frequent places");
+    }
+
+    private void publishZones(List<FrequentPlaceEntity> places) {
+        List<SafetyZone> zones = new ArrayList<>(places.size());
+        for (FrequentPlaceEntity place : places) {
+            // Places the user keeps returning to count as safe; occasional stops stay neutral
+            float rating = place.getVisitCount() >= MIN_VISITS_FOR_SAFE ? 0.8f : 0.5f;
+            zones.add(new SafetyZone(
+                    place.getId(),
+                    SafetyZone.Source.GENERATED,
+                    new LatLng(place.getLatitude(), place.getLongitude()),
+                    place.getRadiusMeters(),
+                    rating));
+        }
+        SafetyZoneRepository.getInstance().setZones(SafetyZone.Source.GENERATED, zones);
+    }
+}
@@ -7,15 +7,17 @@ import android.util.Log;
 import androidx.lifecycle.LiveData;
 
 import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiResponse;
 import com.example.safewomen.api.ApiService;
+import com.example.safewomen.api.BatchMultiplexer;
+import com.example.safewomen.api.ResponseDecoder;
 import com.example.safewomen.data.LocationHistoryDao;
 import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.models.LocationPoint;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
-import com.example.safewomen.utils.NetworkUtil;
+import com.example.safewomen.utils.NetworkMonitor;
 import com.example.safewomen.utils.PreferenceManager;
 
-import org.json.JSONObject;
-
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
@@ -25,8 +27,6 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import okhttp3.ResponseBody;
-import retrofit2.Call;
-import retrofit2.Callback;
 import retrofit2.Response;
 
 /**
@@ -38,7 +38,8 @@ public class LocationHistoryRepository {
     private static Application appContext;
 
     private final LocationHistoryDao locationHistoryDao;
-    private final ApiService apiService;
+    private final BatchMultiplexer batchMultiplexer;
+    private final NetworkMonitor networkMonitor;
     private final Executor executor;
 
     // Constants
@@ -62,7 +63,8 @@ public class LocationHistoryRepository {
     private LocationHistoryRepository() {
         SafeWomenDatabase db = SafeWomenDatabase.getInstance(appContext);
         locationHistoryDao = db.locationHistoryDao();
-        apiService = ApiClient.getClient().create(ApiService.class);
+        batchMultiplexer = ApiClient.getBatchMultiplexer();
+        networkMonitor = NetworkMonitor.getInstance();
         executor = Executors.newSingleThreadExecutor();
 
         // Clean up old locations on initialization
@@ -95,7 +97,7 @@ public class LocationHistoryRepository {
             }
 
             // Sync with server if online and user is logged in
-            if (NetworkUtil.isOnline(appContext) && PreferenceManager.getInstance().isLoggedIn()) {
+            if (networkMonitor.isOnline() && PreferenceManager.getInstance().isLoggedIn()) {
                 syncLocationWithServer(locationEntity);
             }
         });
@@ -140,6 +142,21 @@ public class LocationHistoryRepository {
     public LocationHistoryEntity getMostRecentLocationSync() {
         return locationHistoryDao.getMostRecentLocation();
     }
+
+    /**
+     * Get coordinates of all locations newer than a timestamp, oldest first (should be called from background thread)
+     */
+    public List<LocationPoint> getPointsSinceSync(long since) {
+        return locationHistoryDao.getPointsSince(since);
+    }
+
+    /**
+     * Get location count synchronously (should be called from background thread)
+     */
+    public int getLocationCountSync() {
+        return locationHistoryDao.getLocationCount();
+    }
+
     /**
      * Clean up old locations based on retention policy
      */
@@ -171,17 +188,17 @@ public class LocationHistoryRepository {
         params.put("timestamp", String.valueOf(location.getTimestamp()));
         params.put("address", location.getAddress());
 
-        apiService.updateLocation(params).enqueue(new Callback<ResponseBody>() {
+        // Fixes arriving close together share one request
+        batchMultiplexer.enqueue(ApiService.UPDATE_LOCATION, params, new BatchMultiplexer.ResultCallback() {
             @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+            public void onResponse(Response<ResponseBody> response) {
                 try {
                     if (response.isSuccessful() && response.body() != null) {
-                        String responseString = response.body().string();
-                        JSONObject jsonResponse = new JSONObject(responseString);
+                        ApiResponse<Void> result = ResponseDecoder.decodeStatus(response.body());
 
-                        if (!jsonResponse.optBoolean("success", false)) {
+                        if (!result.isSuccess()) {
                             Log.w(TAG, "Server rejected location update: " +
-                                    jsonResponse.optString("message", "Unknown error"));
+                                    result.getMessage("Unknown error"));
                         }
                     } else {
                         Log.w(TAG, "Server error when updating location: " + response.code());
@@ -192,7 +209,7 @@ public class LocationHistoryRepository {
             }
 
             @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
+            public void onFailure(Throwable t) {
                 Log.e(TAG, "Network error when updating location", t);
             }
         });
@@ -0,0 +1,312 @@
+package com.example.safewomen.repositories;
+
+import android.app.Application;
+import android.media.MediaMetadataRetriever;
+import android.os.Environment;
+import android.os.FileObserver;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.safewomen.data.RecordingDao;
+import com.example.safewomen.data.RecordingSegmentDao;
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.models.entities.RecordingEntity;
+import com.example.safewomen.models.entities.RecordingSegmentEntity;
+import com.example.safewomen.utils.EncryptedMediaDataSource;
+import com.example.safewomen.utils.PreferenceManager;
+import com.example.safewomen.utils.RecordingCipher;
+import com.example.safewomen.utils.RecordingQuotaManager;
+import com.example.safewomen.utils.SosArbiter;
+import com.example.safewomen.workers.RecordingQuotaWorker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository for the recording catalog. A FileObserver on the recordings
+ * directory adds and removes entries as files are finished or deleted, so the
+ * recordings screen pages from Room instead of listing and stat-ing every file.
+ */
+public class RecordingCatalogRepository {
+    private static final String TAG = "RecordingCatalogRepo";
+    private static RecordingCatalogRepository instance;
+    private static Application appContext;
+
+    public static final String UPLOAD_LOCAL = "local";
+    public static final String UPLOAD_PENDING = "pending";
+    public static final String UPLOAD_UPLOADED = "uploaded";
+    public static final String UPLOAD_FAILED = "failed";
+
+    private static final String QUOTA_WORK_NAME = "recording_quota";
+
+    private static final int OBSERVED_EVENTS = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO
+            | FileObserver.DELETE | FileObserver.MOVED_FROM;
+
+    private final RecordingDao recordingDao;
+    private final RecordingSegmentDao segmentDao;
+    private final ExecutorService executor;
+    private final File recordingsDir;
+    private final RecordingQuotaManager quotaManager;
+    private final RecordingCipher cipher;
+    // Held for the life of the process; a collected observer stops delivering events
+    private final FileObserver observer;
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new RecordingCatalogRepository();
+        }
+    }
+
+    public static synchronized RecordingCatalogRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("RecordingCatalogRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private RecordingCatalogRepository() {
+        SafeWomenDatabase database = SafeWomenDatabase.getInstance(appContext);
+        recordingDao = database.recordingDao();
+        segmentDao = database.recordingSegmentDao();
+        executor = Executors.newSingleThreadExecutor();
+        recordingsDir = new File(appContext.getExternalFilesDir(Environment.DIRECTORY_MOVIES), "SafeWomen");
+        recordingsDir.mkdirs();
+        quotaManager = new RecordingQuotaManager(recordingDao, recordingsDir, PreferenceManager.getInstance());
+        cipher = new RecordingCipher(appContext);
+
+        observer = createObserver();
+        observer.startWatching();
+
+        // Catch up on files written or removed while the app wasn't running
+        executor.execute(() -> {
+            reconcile();
+            quotaManager.enforce();
+        });
+        scheduleQuotaCheck();
+    }
+
+    public File getRecordingsDir() {
+        return recordingsDir;
+    }
+
+    public RecordingCipher getCipher() {
+        return cipher;
+    }
+
+    /**
+     * One page of the catalog, newest first; call off the main thread
+     * @param after Last entry of the previous page, or null for the first page
+     */
+    public List<RecordingEntity> getPage(@Nullable RecordingEntity after, int limit) {
+        if (after == null) {
+            return recordingDao.getFirstPage(limit);
+        }
+        return recordingDao.getPageAfter(after.getCreatedAt(), after.getFilePath(), limit);
+    }
+
+    /**
+     * Delete a recording file and its catalog entry; call off the main thread
+     * @return false if the file exists but could not be deleted
+     */
+    public boolean deleteRecording(String filePath) {
+        File file = new File(filePath);
+        if (file.exists() && !file.delete()) {
+            return false;
+        }
+        // Don't wait for the observer, so a reload right after sees the deletion
+        recordingDao.delete(filePath);
+        return true;
+    }
+
+    /**
+     * Mark a recording as used just now, e.g. when it is played or shared
+     */
+    public void touch(String filePath) {
+        executor.execute(() -> recordingDao.touch(filePath, System.currentTimeMillis()));
+    }
+
+    /**
+     * Storage used by recordings; call off the main thread
+     */
+    public RecordingQuotaManager.Usage getUsage() {
+        return quotaManager.getUsage();
+    }
+
+    public long getQuotaBytes() {
+        return quotaManager.getQuotaBytes();
+    }
+
+    public void setQuotaBytes(long quotaBytes) {
+        quotaManager.setQuotaBytes(quotaBytes);
+        executor.execute(quotaManager::enforce);
+    }
+
+    /**
+     * Evict what the quota policy allows; blocking
+     */
+    public RecordingQuotaManager.Usage enforceQuota() {
+        return quotaManager.enforce();
+    }
+
+    /**
+     * Make room for an emergency recording that is about to start; blocking, and
+     * only does work when the disk is already short of the headroom
+     */
+    public void ensureEmergencyHeadroom() {
+        if (!quotaManager.hasEmergencyHeadroom()) {
+            quotaManager.enforce();
+        }
+    }
+
+    // Daily pass in case nothing was recorded to trigger one
+    private void scheduleQuotaCheck() {
+        PeriodicWorkRequest quotaWork = new PeriodicWorkRequest.Builder(RecordingQuotaWorker.class,
+                1, TimeUnit.DAYS).build();
+        WorkManager.getInstance(appContext).enqueueUniquePeriodicWork(QUOTA_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, quotaWork);
+    }
+
+    @SuppressWarnings("deprecation")
+    private FileObserver createObserver() {
+        // The File constructor needs API 29; the path form works everywhere
+        return new FileObserver(recordingsDir.getAbsolutePath(), OBSERVED_EVENTS) {
+            @Override
+            public void onEvent(int event, @Nullable String path) {
+                if (path == null) return;
+                File file = new File(recordingsDir, path);
+
+                int type = event & FileObserver.ALL_EVENTS;
+                if (type == FileObserver.CLOSE_WRITE || type == FileObserver.MOVED_TO) {
+                    executor.execute(() -> {
+                        // Each new file may push recordings over the budget
+                        if (catalog(file)) quotaManager.enforce();
+                    });
+                } else {
+                    executor.execute(() -> recordingDao.delete(file.getAbsolutePath()));
+                }
+            }
+        };
+    }
+
+    // Names only: just the files the catalog doesn't know yet are opened and stat-ed
+    private void reconcile() {
+        long start = System.currentTimeMillis();
+        String[] names = recordingsDir.list();
+        Set<String> onDisk = new HashSet<>();
+        if (names != null) {
+            for (String name : names) {
+                onDisk.add(new File(recordingsDir, name).getAbsolutePath());
+            }
+        }
+
+        Set<String> known = new HashSet<>(recordingDao.getAllPaths());
+        List<String> gone = new ArrayList<>();
+        for (String path : known) {
+            if (!onDisk.contains(path)) gone.add(path);
+        }
+        if (!gone.isEmpty()) {
+            recordingDao.deleteAll(gone);
+        }
+
+        int added = 0;
+        for (String path : onDisk) {
+            if (!known.contains(path) && catalog(new File(path))) added++;
+        }
+
+        Log.d(TAG, "Catalog reconciled in " + (System.currentTimeMillis() - start) + " ms: "
+                + added + " added, " + gone.size() + " removed, " + onDisk.size() + " files");
+    }
+
+    // Must run on the executor
+    private boolean catalog(File file) {
+        // Encryption in progress; catalogued once renamed to its final name
+        if (file.getName().endsWith(".part")) return false;
+        if (!file.isFile() || file.length() == 0) return false;
+
+        String name = file.getName();
+        String plainName = RecordingCipher.plainName(name);
+        String type = "unknown";
+        if (plainName.endsWith(".mp3")) {
+            type = "audio";
+        } else if (plainName.endsWith(".mp4")) {
+            type = "video";
+        }
+
+        RecordingEntity recording = new RecordingEntity(file.getAbsolutePath(), plainName, type,
+                file.length(), readDuration(file), file.lastModified(), UPLOAD_LOCAL);
+
+        // Files from the segmented recorder carry their SOS and upload progress
+        RecordingSegmentEntity segment = segmentDao.getByFilePath(file.getAbsolutePath());
+        if (segment == null && RecordingCipher.isEncrypted(name)) {
+            // The encrypted copy can appear just before the manifest points at it
+            segment = segmentDao.getByFilePath(RecordingCipher.plainName(file.getAbsolutePath()));
+        }
+        if (segment != null) {
+            recording.setSosId(segment.getSosId());
+            recording.setUploadState(uploadStateOf(segment.getStatus()));
+            if (segment.getEndedAt() > segment.getStartedAt() && recording.getDurationMs() == 0) {
+                recording.setDurationMs(segment.getEndedAt() - segment.getStartedAt());
+            }
+
+            SosArbiter.Session session = SosArbiter.getInstance().getActive();
+            if (session != null && session.getId().equals(segment.getSosId())) {
+                recording.setAlertId(session.getAlertId());
+            }
+        }
+
+        recordingDao.insert(recording);
+        return true;
+    }
+
+    public static String uploadStateOf(String segmentStatus) {
+        if (RecordingSegmentRepository.STATUS_UPLOADED.equals(segmentStatus)) {
+            return UPLOAD_UPLOADED;
+        } else if (RecordingSegmentRepository.STATUS_FAILED.equals(segmentStatus)) {
+            return UPLOAD_FAILED;
+        }
+        return UPLOAD_PENDING;
+    }
+
+    // Read once when a file is catalogued, never on list loads
+    private long readDuration(File file) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        EncryptedMediaDataSource source = null;
+        try {
+            if (RecordingCipher.isEncrypted(file.getName())) {
+                source = new EncryptedMediaDataSource(cipher, file);
+                retriever.setDataSource(source);
+            } else {
+                retriever.setDataSource(file.getAbsolutePath());
+            }
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration != null ? Long.parseLong(duration) : 0;
+        } catch (Exception e) {
+            // Interrupted segments have no index to read
+            return 0;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.w(TAG, "Error releasing retriever", e);
+            }
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (Exception e) {
+                    Log.w(TAG, "Error closing encrypted source", e);
+                }
+            }
+        }
+    }
+}
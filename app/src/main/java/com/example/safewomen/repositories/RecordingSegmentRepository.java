@@ -0,0 +1,275 @@
+package com.example.safewomen.repositories;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiService;
+import com.example.safewomen.data.RecordingDao;
+import com.example.safewomen.data.RecordingSegmentDao;
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.models.entities.RecordingSegmentEntity;
+import com.example.safewomen.utils.EvidenceUploader;
+import com.example.safewomen.utils.PreferenceManager;
+import com.example.safewomen.utils.RecordingCipher;
+import com.example.safewomen.utils.SosArbiter;
+import com.example.safewomen.workers.EvidenceUploadWorker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository for the per-session segment manifest of emergency recordings
+ */
+public class RecordingSegmentRepository {
+    private static final String TAG = "RecordingSegmentRepo";
+    private static RecordingSegmentRepository instance;
+    private static Application appContext;
+
+    public static final String STATUS_RECORDING = "recording";
+    public static final String STATUS_CLOSED = "closed";
+    public static final String STATUS_INTERRUPTED = "interrupted";
+    public static final String STATUS_UPLOADED = "uploaded";
+    public static final String STATUS_FAILED = "failed";
+
+    public static final String KEY_ENCRYPT_RECORDINGS = "encrypt_recordings";
+
+    private static final long UPLOAD_BACKOFF_SECONDS = 10;
+    private static final String UPLOAD_WORK_NAME = "evidence_upload";
+
+    private final RecordingSegmentDao segmentDao;
+    private final RecordingDao recordingDao;
+    private final ExecutorService executor;
+    // Encryption gets its own thread so manifest writes never wait behind a segment
+    private final ExecutorService cipherExecutor;
+    private final WorkManager workManager;
+    private final EvidenceUploader uploader;
+    private final RecordingCipher cipher;
+    // One upload at a time, whichever worker run gets here first
+    private final Object uploadLock = new Object();
+    private final List<SegmentListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new RecordingSegmentRepository();
+        }
+    }
+
+    public static synchronized RecordingSegmentRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("RecordingSegmentRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private RecordingSegmentRepository() {
+        segmentDao = SafeWomenDatabase.getInstance(appContext).recordingSegmentDao();
+        recordingDao = SafeWomenDatabase.getInstance(appContext).recordingDao();
+        executor = Executors.newSingleThreadExecutor();
+        cipherExecutor = Executors.newSingleThreadExecutor();
+        workManager = WorkManager.getInstance(appContext);
+        cipher = new RecordingCipher(appContext);
+        ApiService apiService = ApiClient.getClient().create(ApiService.class);
+        uploader = new EvidenceUploader(apiService, segmentDao, cipher);
+
+        // Segments left open by a killed process: everything before them was already closed
+        executor.execute(() -> {
+            int interrupted = segmentDao.markInterrupted();
+            if (interrupted > 0) {
+                Log.w(TAG, interrupted + " recording segment(s) were interrupted");
+            }
+            if (!segmentDao.getUploadable(1).isEmpty()) {
+                scheduleUpload();
+            }
+        });
+    }
+
+    public boolean isEncryptionEnabled() {
+        return PreferenceManager.getInstance().getBoolean(KEY_ENCRYPT_RECORDINGS, true);
+    }
+
+    public RecordingCipher getCipher() {
+        return cipher;
+    }
+
+    public static String segmentId(String sessionId, int segmentIndex) {
+        return sessionId + "_" + segmentIndex;
+    }
+
+    /**
+     * Record that a segment is being written
+     * @param gapBeforeMs Capture time lost since the previous segment of the same track
+     */
+    public void openSegment(String sessionId, String sosId, String type, int segmentIndex,
+                            File file, long startedAt, long gapBeforeMs) {
+        RecordingSegmentEntity segment = new RecordingSegmentEntity(segmentId(sessionId, segmentIndex),
+                sessionId, sosId, type, segmentIndex, file.getAbsolutePath(), startedAt, STATUS_RECORDING);
+        segment.setGapBeforeMs(gapBeforeMs);
+        executor.execute(() -> segmentDao.insert(segment));
+    }
+
+    /**
+     * Mark a segment finished; it is encrypted if enabled and can be uploaded from then on
+     */
+    public void closeSegment(String sessionId, int segmentIndex, File file, long endedAt) {
+        executor.execute(() -> {
+            RecordingSegmentEntity segment = segmentDao.getById(segmentId(sessionId, segmentIndex));
+            if (segment == null) return;
+
+            segment.setEndedAt(endedAt);
+            if (!isEncryptionEnabled()) {
+                finishSegment(segment, file, file);
+                return;
+            }
+            // Off the recording thread: the recorder needs a plain seekable file and must not stall
+            cipherExecutor.execute(() -> {
+                File encrypted = encrypt(file);
+                executor.execute(() -> finishSegment(segment, file, encrypted));
+            });
+        });
+    }
+
+    // Must run on the cipher executor; returns the file to keep, the plain one if encryption failed
+    private File encrypt(File plain) {
+        File encrypted = new File(plain.getPath() + RecordingCipher.EXTENSION);
+        // Written under a name the catalog ignores, then renamed once complete
+        File partial = new File(encrypted.getPath() + ".part");
+        long start = System.currentTimeMillis();
+        try {
+            cipher.encrypt(plain, partial);
+            if (!partial.renameTo(encrypted)) {
+                throw new IOException("Could not rename " + partial);
+            }
+            Log.d(TAG, "Encrypted " + plain.getName() + " (" + plain.length() / 1024 + " KB) in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return encrypted;
+        } catch (Exception e) {
+            // Keeping the evidence matters more than keeping it encrypted
+            Log.e(TAG, "Error encrypting " + plain.getName(), e);
+            partial.delete();
+            return plain;
+        }
+    }
+
+    // Must run on the executor
+    private void finishSegment(RecordingSegmentEntity segment, File plain, File kept) {
+        segment.setFilePath(kept.getAbsolutePath());
+        segment.setSizeBytes(kept.length());
+        segment.setStatus(STATUS_CLOSED);
+        segmentDao.update(segment);
+        // Only once the manifest points at the encrypted copy, so a crash never loses both
+        if (!kept.equals(plain) && !plain.delete()) {
+            Log.w(TAG, "Could not delete plain segment " + plain.getName());
+        }
+        scheduleUpload();
+
+        for (SegmentListener listener : listeners) {
+            listener.onSegmentClosed(segment);
+        }
+    }
+
+    /**
+     * Forget a segment that holds no playable data
+     */
+    public void discardSegment(String sessionId, int segmentIndex) {
+        executor.execute(() -> segmentDao.delete(segmentId(sessionId, segmentIndex)));
+    }
+
+    /**
+     * Segment manifest of a session as LiveData
+     */
+    public LiveData<List<RecordingSegmentEntity>> observeSession(String sessionId) {
+        return segmentDao.observeSession(sessionId);
+    }
+
+    /**
+     * Finished segments still waiting for upload; call off the main thread
+     */
+    public List<RecordingSegmentEntity> getUploadableSegments(int limit) {
+        return segmentDao.getUploadable(limit);
+    }
+
+    /**
+     * Recent evidence upload throughput, 0 if unknown
+     */
+    public double getUploadBytesPerSecond() {
+        return uploader.getUploadBytesPerSecond();
+    }
+
+    /**
+     * Upload finished segments until none are left, the active SOS first. Blocking.
+     * @return false if a transient failure left segments waiting
+     */
+    public boolean uploadPending() {
+        synchronized (uploadLock) {
+            while (true) {
+                // Re-queried each time so a new segment of the active SOS goes next
+                SosArbiter.Session active = SosArbiter.getInstance().getActive();
+                RecordingSegmentEntity segment = segmentDao.getNextUploadable(
+                        active != null ? active.getId() : null);
+                if (segment == null) {
+                    return true;
+                }
+
+                EvidenceUploader.Result result = uploader.upload(segment);
+                if (result == EvidenceUploader.Result.RETRY) {
+                    return false;
+                }
+                String status = result == EvidenceUploader.Result.UPLOADED ? STATUS_UPLOADED : STATUS_FAILED;
+                segmentDao.setStatus(segment.getId(), status);
+                // Keeps the recordings list current without touching the file
+                recordingDao.setUploadState(segment.getFilePath(), RecordingCatalogRepository.uploadStateOf(status));
+            }
+        }
+    }
+
+    // Must run on the executor
+    private void scheduleUpload() {
+        try {
+            // A queued run will see this segment; a running one might already be past it
+            for (WorkInfo info : workManager.getWorkInfosForUniqueWork(UPLOAD_WORK_NAME).get()) {
+                if (info.getState() == WorkInfo.State.ENQUEUED) return;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking upload work", e);
+        }
+
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest uploadWork = new OneTimeWorkRequest.Builder(EvidenceUploadWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, UPLOAD_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        workManager.enqueueUniqueWork(UPLOAD_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, uploadWork);
+    }
+
+    public void addListener(SegmentListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SegmentListener listener) {
+        listeners.remove(listener);
+    }
+
+    public interface SegmentListener {
+        void onSegmentClosed(RecordingSegmentEntity segment);
+    }
+}
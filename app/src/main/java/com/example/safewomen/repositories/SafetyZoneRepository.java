@@ -0,0 +1,269 @@
+package com.example.safewomen.repositories;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiService;
+import com.example.safewomen.models.SafetyZone;
+import com.example.safewomen.utils.SafetyZoneIndex;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Repository holding safety zones from the server, the user's marks and
+ * generated zones, with a spatial index for per-fix containment checks
+ */
+public class SafetyZoneRepository {
+    private static final String TAG = "SafetyZoneRepository";
+    private static SafetyZoneRepository instance;
+    private static Application appContext;
+
+    private final ApiService apiService;
+    private final Executor executor;
+
+    private final Map<SafetyZone.Source, List<SafetyZone>> zonesBySource = new EnumMap<>(SafetyZone.Source.class);
+    private final MutableLiveData<List<SafetyZone>> zones = new MutableLiveData<>(new ArrayList<>());
+    private final MutableLiveData<ZoneTransition> lastTransition = new MutableLiveData<>();
+    private final List<ZoneTransitionListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Swapped atomically on rebuild so lookups never block
+    private volatile SafetyZoneIndex index = SafetyZoneIndex.empty();
+
+    // Zones containing the last evaluated fix, keyed by zone id
+    private final Map<String, SafetyZone> currentZones = new HashMap<>();
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new SafetyZoneRepository();
+        }
+    }
+
+    public static synchronized SafetyZoneRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("SafetyZoneRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private SafetyZoneRepository() {
+        apiService = ApiClient.getClient().create(ApiService.class);
+        executor = Executors.newSingleThreadExecutor();
+
+        for (SafetyZone.Source source : SafetyZone.Source.values()) {
+            zonesBySource.put(source, new ArrayList<>());
+        }
+    }
+
+    /**
+     * All zones from every source as LiveData
+     */
+    public LiveData<List<SafetyZone>> getZones() {
+        return zones;
+    }
+
+    /**
+     * Most recent enter/exit transition
+     */
+    public LiveData<ZoneTransition> getLastTransition() {
+        return lastTransition;
+    }
+
+    public void addTransitionListener(ZoneTransitionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeTransitionListener(ZoneTransitionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Add a zone marked by the user
+     */
+    public void addUserZone(SafetyZone zone) {
+        executor.execute(() -> {
+            zonesBySource.get(SafetyZone.Source.USER).add(zone);
+            rebuildIndex();
+        });
+    }
+
+    /**
+     * Replace all zones of one source
+     */
+    public void setZones(SafetyZone.Source source, List<SafetyZone> sourceZones) {
+        final List<SafetyZone> copy = new ArrayList<>(sourceZones);
+        executor.execute(() -> {
+            zonesBySource.put(source, copy);
+            rebuildIndex();
+        });
+    }
+
+    /**
+     * Load zones from the server and replace the server-sourced set
+     */
+    public void loadServerZones() {
+        apiService.getSafeZones().enqueue(new Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                try {
+                    if (response.isSuccessful() && response.body() != null) {
+                        String responseString = response.body().string();
+                        JSONObject jsonResponse = new JSONObject(responseString);
+
+                        if (jsonResponse.optBoolean("success", false)) {
+                            JSONArray zonesArray = jsonResponse.getJSONArray("zones");
+                            List<SafetyZone> serverZones = new ArrayList<>(zonesArray.length());
+                            for (int i = 0; i < zonesArray.length(); i++) {
+                                SafetyZone zone = parseZoneFromJson(zonesArray.getJSONObject(i));
+                                if (zone != null) {
+                                    serverZones.add(zone);
+                                }
+                            }
+                            setZones(SafetyZone.Source.SERVER, serverZones);
+                        }
+                    } else {
+                        Log.w(TAG, "Server error when loading safe zones: " + response.code());
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error parsing safe zones", e);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                Log.e(TAG, "Load safe zones network error", t);
+            }
+        });
+    }
+
+    /**
+     * Zones containing a point, answered from the current index
+     */
+    public List<SafetyZone> findZonesAt(double latitude, double longitude) {
+        return index.query(latitude, longitude);
+    }
+
+    /**
+     * Evaluate a new fix and emit enter/exit transitions against the previous fix
+     * @return Transitions caused by this fix, possibly empty
+     */
+    public List<ZoneTransition> evaluateFix(double latitude, double longitude, long timestamp) {
+        List<SafetyZone> containing = index.query(latitude, longitude);
+        List<ZoneTransition> transitions = new ArrayList<>();
+
+        synchronized (currentZones) {
+            Map<String, SafetyZone> nowInside = new HashMap<>();
+            for (SafetyZone zone : containing) {
+                nowInside.put(zone.getId(), zone);
+                if (!currentZones.containsKey(zone.getId())) {
+                    transitions.add(new ZoneTransition(zone, true, timestamp));
+                }
+            }
+            for (SafetyZone zone : currentZones.values()) {
+                if (!nowInside.containsKey(zone.getId())) {
+                    transitions.add(new ZoneTransition(zone, false, timestamp));
+                }
+            }
+            currentZones.clear();
+            currentZones.putAll(nowInside);
+        }
+
+        for (ZoneTransition transition : transitions) {
+            lastTransition.postValue(transition);
+            for (ZoneTransitionListener listener : listeners) {
+                listener.onZoneTransition(transition);
+            }
+        }
+        return transitions;
+    }
+
+    // Must run on the repository executor
+    private void rebuildIndex() {
+        List<SafetyZone> all = new ArrayList<>();
+        for (List<SafetyZone> sourceZones : zonesBySource.values()) {
+            all.addAll(sourceZones);
+        }
+
+        long start = System.nanoTime();
+        index = SafetyZoneIndex.build(all);
+        Log.d(TAG, "Indexed " + all.size() + " zones in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        zones.postValue(all);
+    }
+
+    /**
+     * Helper method to parse a zone from JSON; polygons are given as [[lat, lng], ...]
+     */
+    private SafetyZone parseZoneFromJson(JSONObject json) throws Exception {
+        String id = "server_" + json.getString("id");
+        float rating = (float) json.optDouble("safety_rating", 0.5);
+
+        JSONArray polygonArray = json.optJSONArray("polygon");
+        if (polygonArray != null && polygonArray.length() >= 3) {
+            List<LatLng> polygon = new ArrayList<>(polygonArray.length());
+            for (int i = 0; i < polygonArray.length(); i++) {
+                JSONArray point = polygonArray.getJSONArray(i);
+                polygon.add(new LatLng(point.getDouble(0), point.getDouble(1)));
+            }
+            return new SafetyZone(id, SafetyZone.Source.SERVER, polygon, rating);
+        }
+
+        if (!json.has("latitude") || !json.has("longitude")) return null;
+        LatLng center = new LatLng(json.getDouble("latitude"), json.getDouble("longitude"));
+        return new SafetyZone(id, SafetyZone.Source.SERVER, center, json.optDouble("radius", 300), rating);
+    }
+
+    /**
+     * Enter or exit of a single zone
+     */
+    public static class ZoneTransition {
+        private final SafetyZone zone;
+        private final boolean entered;
+        private final long timestamp;
+
+        public ZoneTransition(SafetyZone zone, boolean entered, long timestamp) {
+            this.zone = zone;
+            this.entered = entered;
+            this.timestamp = timestamp;
+        }
+
+        public SafetyZone getZone() {
+            return zone;
+        }
+
+        public boolean isEntered() {
+            return entered;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * Listener for zone transitions, called on the thread that evaluated the fix
+     */
+    public interface ZoneTransitionListener {
+        void onZoneTransition(ZoneTransition transition);
+    }
+}
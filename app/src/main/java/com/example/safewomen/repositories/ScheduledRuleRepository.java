@@ -0,0 +1,265 @@
+package com.example.safewomen.repositories;
+
+import android.app.AlarmManager;
+import android.app.Application;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.data.LocationHistoryDao;
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.data.ScheduledRuleDao;
+import com.example.safewomen.models.SafetyZone;
+import com.example.safewomen.models.entities.LocationHistoryEntity;
+import com.example.safewomen.models.entities.ScheduledRuleEntity;
+import com.example.safewomen.receivers.RuleAlarmReceiver;
+import com.example.safewomen.services.SosAlertService;
+import com.example.safewomen.utils.Clock;
+import com.example.safewomen.utils.RuleEngine;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Repository for scheduled safety rules such as "alert if I'm not home by 10pm".
+ * Rules are stored in Room and evaluated incrementally by a {@link RuleEngine}
+ * fed from location fixes and exact alarms.
+ */
+public class ScheduledRuleRepository {
+    private static final String TAG = "ScheduledRuleRepo";
+    private static ScheduledRuleRepository instance;
+    private static Application appContext;
+
+    // Zones rated at least this safe suppress max-stop alerts
+    private static final float SAFE_ZONE_MIN_RATING = 0.7f;
+
+    private final ScheduledRuleDao scheduledRuleDao;
+    private final LocationHistoryDao locationHistoryDao;
+    private final Executor executor;
+    private final RuleEngine ruleEngine;
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new ScheduledRuleRepository();
+        }
+    }
+
+    public static synchronized ScheduledRuleRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("ScheduledRuleRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private ScheduledRuleRepository() {
+        SafeWomenDatabase database = SafeWomenDatabase.getInstance(appContext);
+        scheduledRuleDao = database.scheduledRuleDao();
+        locationHistoryDao = database.locationHistoryDao();
+        executor = Executors.newSingleThreadExecutor();
+
+        ruleEngine = new RuleEngine(Clock.SYSTEM, TimeZone.getDefault(),
+                new AndroidAlarmScheduler(appContext), this::isInSafePlace, this::onRuleFired,
+                this::saveRuleState);
+
+        reloadRules();
+    }
+
+    /**
+     * All stored rules as LiveData
+     */
+    public LiveData<List<ScheduledRuleEntity>> getRules() {
+        return scheduledRuleDao.observeRules();
+    }
+
+    /**
+     * Add a rule that alerts when the user is not within the target area by a time of day
+     */
+    public void addArriveByRule(String name, double latitude, double longitude,
+                                double radiusMeters, int hourOfDay, int minute) {
+        ScheduledRuleEntity rule = new ScheduledRuleEntity(
+                UUID.randomUUID().toString(),
+                ScheduledRuleEntity.TYPE_ARRIVE_BY,
+                name,
+                true,
+                latitude,
+                longitude,
+                radiusMeters,
+                hourOfDay * 60 + minute,
+                0,
+                System.currentTimeMillis()
+        );
+        saveRule(rule);
+    }
+
+    /**
+     * Add a rule that alerts when the user stops outside a safe zone for too long
+     */
+    public void addMaxStopRule(String name, int durationMinutes) {
+        ScheduledRuleEntity rule = new ScheduledRuleEntity(
+                UUID.randomUUID().toString(),
+                ScheduledRuleEntity.TYPE_MAX_STOP,
+                name,
+                true,
+                0,
+                0,
+                0,
+                0,
+                durationMinutes,
+                System.currentTimeMillis()
+        );
+        saveRule(rule);
+    }
+
+    public void setRuleEnabled(String ruleId, boolean enabled) {
+        executor.execute(() -> {
+            scheduledRuleDao.setEnabled(ruleId, enabled, System.currentTimeMillis());
+            loadRules();
+        });
+    }
+
+    public void deleteRule(String ruleId) {
+        executor.execute(() -> {
+            scheduledRuleDao.deleteById(ruleId);
+            loadRules();
+        });
+    }
+
+    /**
+     * Feed a location fix to the rule engine
+     */
+    public void onFix(Location location) {
+        if (location == null) return;
+        final double latitude = location.getLatitude();
+        final double longitude = location.getLongitude();
+        final long timestamp = location.getTime();
+        executor.execute(() -> ruleEngine.onFix(latitude, longitude, timestamp));
+    }
+
+    /**
+     * Handle an alarm delivered for a rule
+     * @param onComplete Called on the repository executor once the alarm was evaluated
+     */
+    public void handleAlarm(String ruleId, Runnable onComplete) {
+        executor.execute(() -> {
+            try {
+                // After process death the engine has no fix yet, seed it from the last stored one
+                if (!ruleEngine.hasFix()) {
+                    LocationHistoryEntity last = locationHistoryDao.getMostRecentLocation();
+                    if (last != null) {
+                        ruleEngine.onFix(last.getLatitude(), last.getLongitude(), last.getTimestamp());
+                    }
+                }
+                ruleEngine.onTimer(ruleId);
+            } catch (Exception e) {
+                Log.e(TAG, "Error handling alarm for rule " + ruleId, e);
+            } finally {
+                if (onComplete != null) {
+                    onComplete.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Reload enabled rules from the database, e.g. after boot
+     */
+    public void reloadRules() {
+        executor.execute(this::loadRules);
+    }
+
+    private void saveRule(ScheduledRuleEntity rule) {
+        executor.execute(() -> {
+            scheduledRuleDao.insert(rule);
+            loadRules();
+        });
+    }
+
+    // Must run on the repository executor
+    private void loadRules() {
+        try {
+            List<ScheduledRuleEntity> rules = scheduledRuleDao.getEnabledRules();
+            ruleEngine.setRules(rules);
+            Log.d(TAG, "Loaded " + rules.size() + " scheduled rules");
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading scheduled rules", e);
+        }
+    }
+
+    private boolean isInSafePlace(double latitude, double longitude) {
+        for (SafetyZone zone : SafetyZoneRepository.getInstance().findZonesAt(latitude, longitude)) {
+            if (zone.getSafetyRating() >= SAFE_ZONE_MIN_RATING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Called by the engine, so already on the repository executor
+    private void saveRuleState(ScheduledRuleEntity rule) {
+        try {
+            scheduledRuleDao.updateStop(rule.getId(), rule.getStopLatitude(), rule.getStopLongitude(),
+                    rule.getStopSince(), rule.isStopAlerted());
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving state of rule " + rule.getId(), e);
+        }
+    }
+
+    private void onRuleFired(ScheduledRuleEntity rule, String message) {
+        Log.w(TAG, "Scheduled rule fired: " + rule.getName() + " - " + message);
+
+        Intent sosIntent = new Intent(appContext, SosAlertService.class);
+        sosIntent.setAction("TRIGGER_SOS");
+        sosIntent.putExtra("TRIGGER_METHOD", "scheduled_rule");
+        ContextCompat.startForegroundService(appContext, sosIntent);
+    }
+
+    /**
+     * Alarm scheduler backed by exact AlarmManager alarms, one per rule
+     */
+    private static class AndroidAlarmScheduler implements RuleEngine.AlarmScheduler {
+        private final Context context;
+        private final AlarmManager alarmManager;
+
+        AndroidAlarmScheduler(Context context) {
+            this.context = context;
+            this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        }
+
+        @Override
+        public void schedule(String ruleId, long triggerAtMillis) {
+            PendingIntent pendingIntent = createPendingIntent(ruleId);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+                // Inexact but still fires in doze
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+            } else {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+            }
+        }
+
+        @Override
+        public void cancel(String ruleId) {
+            alarmManager.cancel(createPendingIntent(ruleId));
+        }
+
+        private PendingIntent createPendingIntent(String ruleId) {
+            Intent intent = new Intent(context, RuleAlarmReceiver.class);
+            intent.setAction(RuleAlarmReceiver.ACTION_RULE_ALARM);
+            // Distinct data keeps one PendingIntent per rule
+            intent.setData(Uri.parse("rule://" + ruleId));
+            intent.putExtra(RuleAlarmReceiver.EXTRA_RULE_ID, ruleId);
+            return PendingIntent.getBroadcast(context, 0, intent,
+                    PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+    }
+}
@@ -1,4 +1,415 @@
 package com.example.safewomen.repositories;
 
+import android.app.Application;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiService;
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.data.SecurePathDao;
+import com.example.safewomen.models.SecurePath;
+import com.example.safewomen.models.entities.SecurePathEntity;
+import com.example.safewomen.utils.GeoUtils;
+import com.example.safewomen.utils.PolylineCodec;
+import com.example.safewomen.utils.PreferenceManager;
+import com.example.safewomen.utils.RouteDeviationDetector;
+import com.example.safewomen.utils.SyncScheduler;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Repository for saved secure routes. Routes are stored as encoded polylines
+ * with a corridor bounding box so "which routes pass near here" is an indexed
+ * query plus an exact check against a small cache of decoded routes.
+ * Changes are synced incrementally with the server.
+ */
 public class SecurePathRepository {
+    private static final String TAG = "SecurePathRepository";
+    private static SecurePathRepository instance;
+    private static Application appContext;
+
+    private static final String KEY_SYNCED_UNTIL = "secure_paths_synced_until";
+    private static final int DECODED_CACHE_SIZE = 64;
+    public static final double DEFAULT_BUFFER_METERS = 75;
+
+    // Time outside every followed corridor before warning
+    private static final long DEVIATION_GRACE_MS = 60 * 1000;
+    // Stop following a route the user left and never came back to
+    private static final long ABANDON_MS = 30 * 60 * 1000;
+
+    private final SecurePathDao securePathDao;
+    private final ApiService apiService;
+    private final Executor executor;
+    // Fix checks get their own thread so they never wait behind a sync
+    private final Executor monitorExecutor;
+    private final SyncScheduler syncScheduler;
+
+    // Decoded routes by id; entries are checked against updatedAt before use
+    private final LruCache<String, SecurePath> decodedPaths = new LruCache<>(DECODED_CACHE_SIZE);
+
+    // Routes the user is currently travelling, by path id; only touched on the monitor executor
+    private final Map<String, RouteDeviationDetector> activeDetectors = new HashMap<>();
+    private final List<RouteDeviationListener> deviationListeners = new CopyOnWriteArrayList<>();
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new SecurePathRepository();
+        }
+    }
+
+    public static synchronized SecurePathRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("SecurePathRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private SecurePathRepository() {
+        SafeWomenDatabase db = SafeWomenDatabase.getInstance(appContext);
+        securePathDao = db.securePathDao();
+        apiService = ApiClient.getClient().create(ApiService.class);
+        executor = Executors.newSingleThreadExecutor();
+        monitorExecutor = Executors.newSingleThreadExecutor();
+        syncScheduler = SyncScheduler.getInstance();
+
+        // Sync whenever the network comes back
+        syncScheduler.onReconnect("secure_paths", () -> {
+            if (PreferenceManager.getInstance().isLoggedIn()) {
+                sync();
+            }
+        });
+    }
+
+    /**
+     * All saved routes as LiveData
+     */
+    public LiveData<List<SecurePathEntity>> getPaths() {
+        return securePathDao.observePaths();
+    }
+
+    /**
+     * Save a new route locally and sync it when possible
+     */
+    public void addPath(String name, List<LatLng> points, double bufferMeters, PathCallback callback) {
+        if (points == null || points.size() < 2) {
+            if (callback != null) {
+                callback.onError("A route needs at least two points");
+            }
+            return;
+        }
+
+        executor.execute(() -> {
+            SecurePathEntity entity = toEntity("local_" + UUID.randomUUID().toString(), name,
+                    points, bufferMeters, System.currentTimeMillis(), "pending");
+            securePathDao.insert(entity);
+
+            // Route edits can wait for the radio to be up anyway
+            syncScheduler.defer("secure_paths_push", () -> executor.execute(this::pushPendingPaths));
+            if (callback != null) {
+                callback.onSuccess();
+            }
+        });
+    }
+
+    /**
+     * Delete a route; the server copy is removed on the next sync
+     */
+    public void deletePath(String pathId, PathCallback callback) {
+        executor.execute(() -> {
+            if (pathId.startsWith("local_")) {
+                securePathDao.deleteById(pathId);
+            } else {
+                securePathDao.updateSyncStatus(pathId, "pending_delete");
+            }
+            decodedPaths.remove(pathId);
+            monitorExecutor.execute(() -> activeDetectors.remove(pathId));
+
+            // Route edits can wait for the radio to be up anyway
+            syncScheduler.defer("secure_paths_push", () -> executor.execute(this::pushPendingPaths));
+            if (callback != null) {
+                callback.onSuccess();
+            }
+        });
+    }
+
+    /**
+     * Saved routes whose corridor contains the point (should be called from background thread)
+     */
+    public List<SecurePath> findPathsNear(double latitude, double longitude) {
+        List<SecurePath> result = new ArrayList<>();
+        for (SecurePathEntity entity : securePathDao.getPathsContaining(latitude, longitude)) {
+            SecurePath path = decode(entity);
+            if (path != null && path.contains(latitude, longitude)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decoded route by id, or null (should be called from background thread)
+     */
+    public SecurePath getPath(String pathId) {
+        SecurePathEntity entity = securePathDao.getById(pathId);
+        return entity != null ? decode(entity) : null;
+    }
+
+    public void addDeviationListener(RouteDeviationListener listener) {
+        deviationListeners.add(listener);
+    }
+
+    public void removeDeviationListener(RouteDeviationListener listener) {
+        deviationListeners.remove(listener);
+    }
+
+    /**
+     * Check a fix against the routes the user is travelling; listeners are told
+     * when the user has left every route for longer than the grace period
+     */
+    public void checkFix(double latitude, double longitude, long timestamp) {
+        monitorExecutor.execute(() -> {
+            try {
+                evaluateFix(latitude, longitude, timestamp);
+            } catch (Exception e) {
+                Log.e(TAG, "Error checking route deviation", e);
+            }
+        });
+    }
+
+    // Must run on the monitor executor
+    private void evaluateFix(double latitude, double longitude, long timestamp) {
+        boolean onRoute = false;
+        RouteDeviationDetector deviated = null;
+
+        Iterator<RouteDeviationDetector> iterator = activeDetectors.values().iterator();
+        while (iterator.hasNext()) {
+            RouteDeviationDetector detector = iterator.next();
+            switch (detector.onFix(latitude, longitude, timestamp)) {
+                case ON_ROUTE:
+                    onRoute = true;
+                    break;
+                case ARRIVED:
+                    onRoute = true;
+                    logDetectorStats(detector, "arrived");
+                    iterator.remove();
+                    break;
+                case DEVIATED:
+                    deviated = detector;
+                    break;
+                case OFF_ROUTE:
+                    // Passing through a corridor without following it, or never coming back
+                    if (!detector.isArmed() || detector.getOffRouteMillis(timestamp) > ABANDON_MS) {
+                        logDetectorStats(detector, "dropped");
+                        iterator.remove();
+                    }
+                    break;
+            }
+        }
+
+        // Only look for newly joined routes when no followed route matches,
+        // so the corridor query does not run on every fix
+        if (!onRoute) {
+            for (SecurePath path : findPathsNear(latitude, longitude)) {
+                if (activeDetectors.containsKey(path.getId())) continue;
+
+                long start = System.nanoTime();
+                RouteDeviationDetector detector = new RouteDeviationDetector(path, DEVIATION_GRACE_MS);
+                detector.onFix(latitude, longitude, timestamp);
+                activeDetectors.put(path.getId(), detector);
+                onRoute = true;
+                Log.d(TAG, "Following path " + path.getId() + " (" + path.getPoints().size()
+                        + " points, indexed in " + (System.nanoTime() - start) / 1000 + " us)");
+            }
+        }
+
+        // Switching onto another saved route is not a deviation
+        if (deviated != null && !onRoute) {
+            Log.d(TAG, "Deviated from path " + deviated.getPath().getId());
+            for (RouteDeviationListener listener : deviationListeners) {
+                listener.onRouteDeviation(deviated.getPath());
+            }
+        }
+    }
+
+    private void logDetectorStats(RouteDeviationDetector detector, String reason) {
+        Log.d(TAG, "Stopped following path " + detector.getPath().getId() + " (" + reason + "): "
+                + detector.getCheckCount() + " fixes, avg "
+                + detector.getAverageCheckNanos() + " ns per check");
+    }
+
+    /**
+     * Push local changes, then pull server changes since the last sync
+     */
+    public void sync() {
+        executor.execute(() -> {
+            pushPendingPaths();
+            pullChanges();
+        });
+    }
+
+    private SecurePath decode(SecurePathEntity entity) {
+        SecurePath cached = decodedPaths.get(entity.getId());
+        if (cached != null && cached.getUpdatedAt() == entity.getUpdatedAt()) {
+            return cached;
+        }
+
+        try {
+            SecurePath path = new SecurePath(entity.getId(), entity.getName(),
+                    PolylineCodec.decode(entity.getEncodedPolyline()),
+                    entity.getBufferMeters(), entity.getUpdatedAt());
+            decodedPaths.put(entity.getId(), path);
+            return path;
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Corrupt polyline for path " + entity.getId(), e);
+            return null;
+        }
+    }
+
+    // Must run on the executor
+    private void pushPendingPaths() {
+        for (SecurePathEntity path : securePathDao.getPendingPaths()) {
+            try {
+                if ("pending_delete".equals(path.getSyncStatus())) {
+                    Map<String, String> params = new HashMap<>();
+                    params.put("path_id", path.getId());
+                    JSONObject json = parse(apiService.deleteSecurePath(params).execute());
+                    if (json != null && json.optBoolean("success", false)) {
+                        securePathDao.deleteById(path.getId());
+                    }
+                    continue;
+                }
+
+                Map<String, String> params = new HashMap<>();
+                if (!path.getId().startsWith("local_")) {
+                    params.put("path_id", path.getId());
+                }
+                params.put("name", path.getName());
+                params.put("polyline", path.getEncodedPolyline());
+                params.put("buffer_meters", String.valueOf(path.getBufferMeters()));
+
+                JSONObject json = parse(apiService.saveSecurePath(params).execute());
+                if (json != null && json.optBoolean("success", false)) {
+                    String serverId = json.optString("path_id", path.getId());
+                    long updatedAt = json.optLong("updated_at", path.getUpdatedAt());
+
+                    // Swap the local id for the server one
+                    SafeWomenDatabase.getInstance(appContext).runInTransaction(() -> {
+                        securePathDao.deleteById(path.getId());
+                        path.setId(serverId);
+                        path.setUpdatedAt(updatedAt);
+                        path.setSyncStatus("synced");
+                        securePathDao.insert(path);
+                    });
+                } else {
+                    Log.w(TAG, "Server rejected secure path " + path.getId());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error pushing secure path " + path.getId(), e);
+            }
+        }
+    }
+
+    // Must run on the executor
+    private void pullChanges() {
+        long since = PreferenceManager.getInstance().getLong(KEY_SYNCED_UNTIL, 0);
+        try {
+            JSONObject json = parse(apiService.getSecurePaths(since).execute());
+            if (json == null || !json.optBoolean("success", false)) return;
+
+            JSONArray paths = json.optJSONArray("paths");
+            long syncedUntil = json.optLong("server_time", since);
+            int changed = 0;
+
+            if (paths != null) {
+                for (int i = 0; i < paths.length(); i++) {
+                    JSONObject item = paths.getJSONObject(i);
+                    String id = item.getString("id");
+                    long updatedAt = item.optLong("updated_at", 0);
+                    syncedUntil = Math.max(syncedUntil, updatedAt);
+
+                    // Local edits not yet pushed win over server copies
+                    SecurePathEntity local = securePathDao.getById(id);
+                    if (local != null && !"synced".equals(local.getSyncStatus())) continue;
+
+                    if (item.optInt("deleted", 0) == 1) {
+                        securePathDao.deleteById(id);
+                    } else {
+                        List<LatLng> points = PolylineCodec.decode(item.getString("polyline"));
+                        if (points.size() < 2) continue;
+                        securePathDao.insert(toEntity(id, item.optString("name", ""), points,
+                                item.optDouble("buffer_meters", DEFAULT_BUFFER_METERS), updatedAt, "synced"));
+                    }
+                    decodedPaths.remove(id);
+                    changed++;
+                }
+            }
+
+            PreferenceManager.getInstance().saveLong(KEY_SYNCED_UNTIL, syncedUntil);
+            Log.d(TAG, "Pulled " + changed + " secure path changes since " + since);
+        } catch (Exception e) {
+            Log.e(TAG, "Error pulling secure paths", e);
+        }
+    }
+
+    private JSONObject parse(Response<ResponseBody> response) throws Exception {
+        if (!response.isSuccessful() || response.body() == null) {
+            Log.w(TAG, "Server error: " + response.code());
+            return null;
+        }
+        return new JSONObject(response.body().string());
+    }
+
+    private static SecurePathEntity toEntity(String id, String name, List<LatLng> points,
+                                             double bufferMeters, long updatedAt, String syncStatus) {
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (LatLng point : points) {
+            minLat = Math.min(minLat, point.latitude);
+            maxLat = Math.max(maxLat, point.latitude);
+            minLon = Math.min(minLon, point.longitude);
+            maxLon = Math.max(maxLon, point.longitude);
+        }
+
+        // Widen by the buffer; longitude degrees are smallest at the latitude furthest from the equator
+        double dLat = GeoUtils.metersToLatitudeDegrees(bufferMeters);
+        double dLon = GeoUtils.metersToLongitudeDegrees(bufferMeters,
+                Math.max(Math.abs(minLat), Math.abs(maxLat)));
+
+        return new SecurePathEntity(id, name, PolylineCodec.encode(points), bufferMeters,
+                minLat - dLat, maxLat + dLat, minLon - dLon, maxLon + dLon, updatedAt, syncStatus);
+    }
+
+    /**
+     * Callback interface for secure path operations
+     */
+    public interface PathCallback {
+        void onSuccess();
+        void onError(String message);
+    }
+
+    /**
+     * Listener for users leaving a route they were travelling; called on a background thread
+     */
+    public interface RouteDeviationListener {
+        void onRouteDeviation(SecurePath path);
+    }
 }
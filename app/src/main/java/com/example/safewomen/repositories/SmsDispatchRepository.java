@@ -0,0 +1,101 @@
+package com.example.safewomen.repositories;
+
+import android.app.Application;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.data.SmsDispatchDao;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.SmsDispatchEntity;
+import com.example.safewomen.utils.AndroidSmsGateway;
+import com.example.safewomen.utils.Clock;
+import com.example.safewomen.utils.SmsDispatcher;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository for emergency SMS dispatches, tracked per contact until delivered
+ */
+public class SmsDispatchRepository {
+    private static SmsDispatchRepository instance;
+    private static Application appContext;
+
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+
+    private final SmsDispatchDao smsDispatchDao;
+    private final ScheduledExecutorService executor;
+    private final SmsDispatcher dispatcher;
+    private final List<SmsDispatcher.DispatchListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new SmsDispatchRepository();
+        }
+    }
+
+    public static synchronized SmsDispatchRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("SmsDispatchRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private SmsDispatchRepository() {
+        smsDispatchDao = SafeWomenDatabase.getInstance(appContext).smsDispatchDao();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        dispatcher = new SmsDispatcher(smsDispatchDao, new AndroidSmsGateway(appContext), Clock.SYSTEM,
+                executor, dispatch -> {
+                    for (SmsDispatcher.DispatchListener listener : listeners) {
+                        listener.onDispatchUpdated(dispatch);
+                    }
+                });
+
+        // Drop old history, then retry what an earlier process didn't finish
+        executor.execute(() ->
+                smsDispatchDao.deleteOlderThan(System.currentTimeMillis() - RETENTION_MS));
+        dispatcher.resume();
+    }
+
+    /**
+     * Queue the emergency message for every contact
+     */
+    public void sendToContacts(String sosId, List<EmergencyContactEntity> contacts, String message) {
+        dispatcher.enqueue(sosId, contacts, message);
+    }
+
+    /**
+     * Drop messages of an SOS that haven't been sent yet
+     */
+    public void cancel(String sosId) {
+        dispatcher.cancel(sosId);
+    }
+
+    /**
+     * Per-contact dispatch state of one SOS as LiveData
+     */
+    public LiveData<List<SmsDispatchEntity>> observeDispatches(String sosId) {
+        return smsDispatchDao.observeDispatches(sosId);
+    }
+
+    public void addListener(SmsDispatcher.DispatchListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SmsDispatcher.DispatchListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void onSent(String dispatchId, int attempt, boolean success, String error) {
+        dispatcher.onSent(dispatchId, attempt, success, error);
+    }
+
+    public void onDelivered(String dispatchId, int attempt, boolean success) {
+        dispatcher.onDelivered(dispatchId, attempt, success);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.safewomen.repositories;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.safewomen.data.SafeWomenDatabase;
+import com.example.safewomen.models.SosSnapshot;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps an SosSnapshot warm. Room invalidations of the contacts and location
+ * tables reload only the part that changed, so the trigger path never queries.
+ */
+public class SosSnapshotRepository {
+    private static final String TAG = "SosSnapshotRepository";
+    private static final String TABLE_CONTACTS = "contacts";
+    private static final String TABLE_LOCATION_HISTORY = "location_history";
+
+    private static SosSnapshotRepository instance;
+    private static Application appContext;
+
+    private final ContactRepository contactRepository;
+    private final LocationHistoryRepository locationRepository;
+    private final Executor executor;
+
+    private volatile SosSnapshot snapshot;
+
+    // Held strongly here; Room's tracker keeps it for the life of the process
+    private final InvalidationTracker.Observer observer =
+            new InvalidationTracker.Observer(TABLE_CONTACTS, TABLE_LOCATION_HISTORY) {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    executor.execute(() -> refresh(tables.contains(TABLE_CONTACTS),
+                            tables.contains(TABLE_LOCATION_HISTORY)));
+                }
+            };
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            appContext = application;
+            instance = new SosSnapshotRepository();
+        }
+    }
+
+    public static synchronized SosSnapshotRepository getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("SosSnapshotRepository must be initialized first");
+        }
+        return instance;
+    }
+
+    private SosSnapshotRepository() {
+        contactRepository = ContactRepository.getInstance();
+        locationRepository = LocationHistoryRepository.getInstance();
+        executor = Executors.newSingleThreadExecutor();
+
+        SafeWomenDatabase.getInstance(appContext).getInvalidationTracker().addObserver(observer);
+        executor.execute(() -> refresh(true, true));
+    }
+
+    /**
+     * The current snapshot. Only before the first load completes does this
+     * fall back to querying, so call it from a background thread.
+     */
+    public SosSnapshot getSnapshot() {
+        SosSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        try {
+            return new SosSnapshot(contactRepository.getContactsSync(),
+                    locationRepository.getMostRecentLocationSync());
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading SOS data", e);
+            return SosSnapshot.EMPTY;
+        }
+    }
+
+    // Must run on the executor
+    private void refresh(boolean contactsChanged, boolean locationChanged) {
+        try {
+            long start = System.nanoTime();
+            SosSnapshot current = snapshot;
+            if (current == null) {
+                current = new SosSnapshot(contactRepository.getContactsSync(),
+                        locationRepository.getMostRecentLocationSync());
+            } else {
+                if (contactsChanged) {
+                    current = current.withContacts(contactRepository.getContactsSync());
+                }
+                if (locationChanged) {
+                    current = current.withLocation(locationRepository.getMostRecentLocationSync());
+                }
+            }
+            snapshot = current;
+            Log.d(TAG, "SOS snapshot refreshed in " + (System.nanoTime() - start) / 1000 + " us ("
+                    + current.getContacts().size() + " contacts)");
+        } catch (Exception e) {
+            Log.e(TAG, "Error refreshing SOS snapshot", e);
+        }
+    }
+}
@@ -12,34 +12,48 @@ import android.hardware.camera2.CameraManager;
 import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import com.example.safewomen.MainActivity;
 import com.example.safewomen.R;
+import com.example.safewomen.models.RecordingProfile;
+import com.example.safewomen.repositories.RecordingCatalogRepository;
+import com.example.safewomen.repositories.RecordingSegmentRepository;
 import com.example.safewomen.utils.FileUtils;
+import com.example.safewomen.utils.RecordingProfileGovernor;
+import com.example.safewomen.utils.SegmentedRecorder;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.UUID;
 
 /**
- * Service for automatic audio/video recording after SOS trigger
+ * Service for automatic audio/video recording after SOS trigger.
+ * Audio and video are independent tracks, each with its own recorder on its
+ * own thread, so starting or stopping one never interrupts the other.
  */
 public class EmergencyRecordingService extends Service {
     private static final String TAG = "EmergencyRecordingService";
     private static final String CHANNEL_ID = "emergency_recording_channel";
     private static final int NOTIFICATION_ID = 1002;
 
-    private MediaRecorder mediaRecorder;
-    private boolean isRecording = false;
-    private String currentOutputFile;
-    private Executor executor;
-    private RecordingType currentRecordingType = RecordingType.AUDIO;
+    // Short segments bound what a killed process can lose and let uploads start early
+    private static final long SEGMENT_MILLIS = 10 * 1000;
+
+    private RecordingSegmentRepository segmentRepository;
+    private RecordingProfileGovernor profileGovernor;
+    private Handler mainHandler;
+    private final Map<RecordingType, Track> tracks = new EnumMap<>(RecordingType.class);
 
     public enum RecordingType {
         AUDIO,
@@ -49,7 +63,13 @@ public class EmergencyRecordingService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
-        executor = Executors.newSingleThreadExecutor();
+        segmentRepository = RecordingSegmentRepository.getInstance();
+        profileGovernor = new RecordingProfileGovernor(this, getRecordingsDir(),
+                segmentRepository::getUploadBytesPerSecond);
+        mainHandler = new Handler(Looper.getMainLooper());
+        for (RecordingType type : RecordingType.values()) {
+            tracks.put(type, new Track(type));
+        }
         createNotificationChannel();
     }
 
@@ -60,10 +80,16 @@ public class EmergencyRecordingService extends Service {
             if (action != null) {
                 switch (action) {
                     case "START_AUDIO_RECORDING":
-                        startRecording(RecordingType.AUDIO);
+                        startRecording(RecordingType.AUDIO, intent.getStringExtra("SOS_ID"));
                         break;
                     case "START_VIDEO_RECORDING":
-                        startRecording(RecordingType.VIDEO);
+                        startRecording(RecordingType.VIDEO, intent.getStringExtra("SOS_ID"));
+                        break;
+                    case "STOP_AUDIO_RECORDING":
+                        tracks.get(RecordingType.AUDIO).stop();
+                        break;
+                    case "STOP_VIDEO_RECORDING":
+                        tracks.get(RecordingType.VIDEO).stop();
                         break;
                     case "STOP_RECORDING":
                         stopRecording();
@@ -82,91 +108,177 @@ public class EmergencyRecordingService extends Service {
 
     @Override
     public void onDestroy() {
-        stopRecording();
+        for (Track track : tracks.values()) {
+            track.quit();
+        }
         super.onDestroy();
     }
 
-    private void startRecording(RecordingType type) {
-        if (isRecording) {
-            stopRecording();
-        }
-        currentRecordingType = type;
+    private void startRecording(RecordingType type, String sosId) {
+        Track track = tracks.get(type);
+        track.claim();
         // Start as foreground service with notification
-        startForeground(NOTIFICATION_ID, createNotification(type));
-
-        executor.execute(() -> {
-            try {
-                if (type == RecordingType.AUDIO) {
-                    startAudioRecording();
-                } else {
-                    startVideoRecording();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error starting recording", e);
-                stopSelf();
+        startForeground(NOTIFICATION_ID, createNotification());
+
+        Track video = tracks.get(RecordingType.VIDEO);
+        if (type == RecordingType.AUDIO && video.isActive()) {
+            // The video recorder holds the microphone; move it to a video-only segment first
+            video.handler.post(() -> {
+                video.rollOver();
+                track.start(sosId);
+            });
+        } else {
+            track.start(sosId);
+        }
+    }
+
+    private void stopRecording() {
+        for (Track track : tracks.values()) {
+            track.stop();
+        }
+        stopForeground(true);
+        stopSelf();
+    }
+
+    // Called on the main thread whenever a track stops
+    private void onTrackStopped() {
+        for (Track track : tracks.values()) {
+            if (track.isActive()) {
+                startForeground(NOTIFICATION_ID, createNotification());
+                return;
             }
-        });
+        }
+        stopForeground(true);
+        stopSelf();
     }
 
-    private void startAudioRecording() throws IOException {
-        // Create output file
-        File outputFile = createOutputFile(".mp3");
-        currentOutputFile = outputFile.getAbsolutePath();
+    /**
+     * One capture track: a segmented recorder with its own thread and lifecycle.
+     * Everything except the active flag is only touched on the track's thread.
+     */
+    private class Track {
+        final RecordingType type;
+        final HandlerThread thread;
+        final Handler handler;
 
-        // Initialize media recorder
-        mediaRecorder = new MediaRecorder();
-        mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-        mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-        mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
-        mediaRecorder.setAudioEncodingBitRate(128000);
-        mediaRecorder.setAudioSamplingRate(44100);
-        mediaRecorder.setOutputFile(currentOutputFile);
+        private volatile boolean active = false;
+        private SegmentedRecorder recorder;
+        private String sessionId;
 
-        try {
-            mediaRecorder.prepare();
-            mediaRecorder.start();
-            isRecording = true;
-            Log.d(TAG, "Audio recording started: " + currentOutputFile);
-        } catch (IOException e) {
-            Log.e(TAG, "Error preparing audio recorder", e);
-            releaseMediaRecorder();
-            throw e;
+        // Capture gaps between consecutive segments, for this track's whole life
+        private long lastEndedAt = 0;
+        private int gapCount = 0;
+        private long totalGapMs = 0;
+        private long maxGapMs = 0;
+
+        Track(RecordingType type) {
+            this.type = type;
+            thread = new HandlerThread("EmergencyRecording-" + typeName());
+            thread.start();
+            handler = new Handler(thread.getLooper());
         }
-    }
 
-    private void startVideoRecording() throws IOException {
-        // Create output file
-        File outputFile = createOutputFile(".mp4");
-        currentOutputFile = outputFile.getAbsolutePath();
+        String typeName() {
+            return type == RecordingType.AUDIO ? "audio" : "video";
+        }
 
-        // Get the front camera ID
-        String cameraId = getFrontCameraId();
-        if (cameraId == null) {
-            Log.e(TAG, "No front camera available");
-            throw new IOException("No front camera available");
+        boolean isActive() {
+            return active;
         }
 
-        // Initialize media recorder
-        mediaRecorder = new MediaRecorder();
-        mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-        mediaRecorder.setVideoSource(MediaRecorder.VideoSource.CAMERA);
-        mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-        mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
-        mediaRecorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
-        mediaRecorder.setVideoSize(1280, 720);
-        mediaRecorder.setVideoFrameRate(30);
-        mediaRecorder.setVideoEncodingBitRate(10000000);
-        mediaRecorder.setOutputFile(currentOutputFile);
+        // Marks the track active ahead of its start, so the video track leaves the microphone
+        void claim() {
+            active = true;
+        }
 
-        try {
-            mediaRecorder.prepare();
-            mediaRecorder.start();
-            isRecording = true;
-            Log.d(TAG, "Video recording started: " + currentOutputFile);
-        } catch (IOException e) {
-            Log.e(TAG, "Error preparing video recorder", e);
-            releaseMediaRecorder();
-            throw e;
+        void start(String sosId) {
+            handler.post(() -> {
+                if (recorder != null) {
+                    Log.d(TAG, typeName() + " track already recording: session " + sessionId);
+                    return;
+                }
+
+                // Evicts old uploaded recordings first if the disk is too full to record
+                RecordingCatalogRepository.getInstance().ensureEmergencyHeadroom();
+
+                sessionId = UUID.randomUUID().toString();
+                lastEndedAt = 0;
+                try {
+                    if (type == RecordingType.VIDEO && getFrontCameraId() == null) {
+                        throw new IOException("No front camera available");
+                    }
+                    String extension = type == RecordingType.AUDIO ? ".mp3" : ".mp4";
+                    recorder = new SegmentedRecorder(handler, new ProfileConfigurator(type),
+                            index -> createOutputFile(index, extension),
+                            new SegmentCallbacks(this, sessionId, sosId), SEGMENT_MILLIS);
+                    active = true;
+                    recorder.start();
+                    Log.d(TAG, typeName() + " recording started: session " + sessionId);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error starting " + typeName() + " recording", e);
+                    finish();
+                }
+            });
+        }
+
+        void stop() {
+            handler.post(this::finish);
+        }
+
+        // Runs on the track's thread
+        void rollOver() {
+            if (active && recorder != null) {
+                recorder.rollOver();
+            }
+        }
+
+        // Runs on the track's thread
+        void finish() {
+            if (recorder != null) {
+                try {
+                    recorder.stop();
+                } catch (Exception e) {
+                    Log.e(TAG, "Error stopping " + typeName() + " recording", e);
+                }
+                recorder = null;
+                Log.d(TAG, typeName() + " recording stopped: session " + sessionId + ", "
+                        + gapCount + " gap(s), " + totalGapMs + " ms lost, longest " + maxGapMs + " ms");
+            }
+            boolean wasActive = active;
+            active = false;
+            if (wasActive) {
+                mainHandler.post(EmergencyRecordingService.this::onTrackStopped);
+            }
+        }
+
+        // Lets the final segment be written out before the thread exits
+        void quit() {
+            handler.post(() -> {
+                if (recorder != null) {
+                    recorder.stop();
+                    recorder = null;
+                }
+                active = false;
+            });
+            thread.quitSafely();
+        }
+
+        // Runs on the track's thread; returns the gap before a segment that just opened
+        long recordOpened(long startedAt) {
+            if (lastEndedAt == 0) return 0;
+
+            long gap = Math.max(0, startedAt - lastEndedAt);
+            if (gap > 0) {
+                gapCount++;
+                totalGapMs += gap;
+                maxGapMs = Math.max(maxGapMs, gap);
+                Log.w(TAG, typeName() + " capture gap of " + gap + " ms");
+            }
+            return gap;
+        }
+
+        void recordClosed(long endedAt) {
+            lastEndedAt = endedAt;
         }
     }
 
@@ -186,43 +298,109 @@ public class EmergencyRecordingService extends Service {
         return null;
     }
 
-    private void stopRecording() {
-        if (!isRecording) return;
+    private File createOutputFile(int segmentIndex, String extension) throws IOException {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String fileName = String.format(Locale.US, "EMERGENCY_%s_%03d%s", timeStamp, segmentIndex, extension);
+        File storageDir = getRecordingsDir();
+        if (!storageDir.exists() && !storageDir.mkdirs()) {
+            throw new IOException("Cannot create " + storageDir);
+        }
+        return new File(storageDir, fileName);
+    }
 
-        try {
-            mediaRecorder.stop();
-            mediaRecorder.reset();
-            releaseMediaRecorder();
+    private File getRecordingsDir() {
+        return new File(getExternalFilesDir(Environment.DIRECTORY_MOVIES), "SafeWomen");
+    }
+
+    // Encoder settings chosen by the governor, renegotiated at segment boundaries
+    private class ProfileConfigurator implements SegmentedRecorder.Configurator {
+        private final RecordingType type;
+        private final List<RecordingProfile> ladder;
+        private RecordingProfile current;
+        private RecordingProfile next;
+
+        ProfileConfigurator(RecordingType type) {
+            this.type = type;
+            this.ladder = type == RecordingType.AUDIO ? RecordingProfile.AUDIO_LADDER : RecordingProfile.VIDEO_LADDER;
+        }
 
-            // Scan file to make it visible in gallery
-            if (currentOutputFile != null) {
-                FileUtils.scanFile(this, currentOutputFile);
+        // Video leaves the microphone to the audio track while that one runs
+        private boolean withAudio;
+
+        @Override
+        public int configure(MediaRecorder mediaRecorder) {
+            current = next != null ? next : profileGovernor.choose(ladder, current);
+            next = null;
+            withAudio = wantsAudio();
+
+            if (withAudio) {
+                mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
+            }
+            if (type == RecordingType.VIDEO) {
+                mediaRecorder.setVideoSource(MediaRecorder.VideoSource.CAMERA);
+            }
+            mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
+            if (withAudio) {
+                mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
+                mediaRecorder.setAudioEncodingBitRate(current.getAudioBitRate());
+                mediaRecorder.setAudioSamplingRate(current.getAudioSampleRate());
+            }
+            if (type == RecordingType.VIDEO) {
+                mediaRecorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
+                mediaRecorder.setVideoSize(current.getVideoWidth(), current.getVideoHeight());
+                mediaRecorder.setVideoFrameRate(current.getFrameRate());
+                mediaRecorder.setVideoEncodingBitRate(current.getVideoBitRate());
             }
-            Log.d(TAG, "Recording stopped: " + currentOutputFile);
-        } catch (Exception e) {
-            Log.e(TAG, "Error stopping recording", e);
-        } finally {
-            isRecording = false;
-            stopForeground(true);
-            stopSelf();
+            return withAudio ? current.getTotalBitRate() : current.getVideoBitRate();
+        }
+
+        @Override
+        public boolean isStale() {
+            next = profileGovernor.choose(ladder, current);
+            // Also picks the microphone back up once the audio track has stopped
+            return next != current || withAudio != wantsAudio();
         }
-    }
 
-    private void releaseMediaRecorder() {
-        if (mediaRecorder != null) {
-            mediaRecorder.release();
-            mediaRecorder = null;
+        private boolean wantsAudio() {
+            return type == RecordingType.AUDIO || !tracks.get(RecordingType.AUDIO).isActive();
         }
     }
 
-    private File createOutputFile(String extension) throws IOException {
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileName = "EMERGENCY_" + timeStamp + extension;
-        File storageDir = new File(getExternalFilesDir(Environment.DIRECTORY_MOVIES), "SafeWomen");
-        if (!storageDir.exists()) {
-            storageDir.mkdirs();
+    // Keeps the segment manifest in step with the recorder
+    private class SegmentCallbacks implements SegmentedRecorder.SegmentListener {
+        private final Track track;
+        private final String session;
+        private final String sos;
+
+        SegmentCallbacks(Track track, String session, String sos) {
+            this.track = track;
+            this.session = session;
+            this.sos = sos;
+        }
+
+        @Override
+        public void onSegmentOpened(int segmentIndex, File file, long startedAt) {
+            long gap = track.recordOpened(startedAt);
+            segmentRepository.openSegment(session, sos, track.typeName(), segmentIndex, file, startedAt, gap);
+        }
+
+        @Override
+        public void onSegmentClosed(int segmentIndex, File file, long endedAt, boolean valid) {
+            track.recordClosed(endedAt);
+            if (valid) {
+                segmentRepository.closeSegment(session, segmentIndex, file, endedAt);
+                // Scan file to make it visible in gallery
+                FileUtils.scanFile(EmergencyRecordingService.this, file.getAbsolutePath());
+            } else {
+                segmentRepository.discardSegment(session, segmentIndex);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            Log.e(TAG, track.typeName() + " recording stopped after segment error", e);
+            track.finish();
         }
-        return new File(storageDir, fileName);
     }
 
     private void createNotificationChannel() {
@@ -238,15 +416,17 @@ public class EmergencyRecordingService extends Service {
         }
     }
 
-    private Notification createNotification(RecordingType type) {
+    private Notification createNotification() {
         Intent notificationIntent = new Intent(this, MainActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(
                 this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE
         );
 
-        String contentText = type == RecordingType.AUDIO ?
-                "Recording audio for your safety" :
-                "Recording video for your safety";
+        boolean audio = tracks.get(RecordingType.AUDIO).isActive();
+        boolean video = tracks.get(RecordingType.VIDEO).isActive();
+        String contentText = audio && video ? "Recording audio and video for your safety" :
+                video ? "Recording video for your safety" :
+                "Recording audio for your safety";
 
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("Emergency Recording Active")
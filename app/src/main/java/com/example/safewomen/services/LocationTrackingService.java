@@ -14,11 +14,15 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
 import com.example.safewomen.MainActivity;
 import com.example.safewomen.R;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
 import com.example.safewomen.repositories.LocationHistoryRepository;
+import com.example.safewomen.repositories.SafetyZoneRepository;
+import com.example.safewomen.repositories.ScheduledRuleRepository;
+import com.example.safewomen.repositories.SecurePathRepository;
 import com.example.safewomen.utils.AddressResolver;
 import com.example.safewomen.utils.PreferenceManager;
 import com.google.android.gms.location.FusedLocationProviderClient;
@@ -39,14 +43,35 @@ public class LocationTrackingService extends Service {
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private LocationHistoryRepository locationRepository;
+    private SafetyZoneRepository safetyZoneRepository;
+    private ScheduledRuleRepository scheduledRuleRepository;
+    private SecurePathRepository securePathRepository;
     private AddressResolver addressResolver;
     private boolean isTracking = false;
 
+    private final SafetyZoneRepository.ZoneTransitionListener zoneTransitionListener = transition ->
+            Log.d(TAG, (transition.isEntered() ? "Entered" : "Exited") + " safety zone "
+                    + transition.getZone().getId() + " (rating " + transition.getZone().getSafetyRating() + ")");
+
+    // Leaving a secure path goes through the same confirmation prompt as a shake
+    private final SecurePathRepository.RouteDeviationListener routeDeviationListener = path -> {
+        Intent intent = new Intent(this, ShakeDetectionService.class);
+        intent.setAction("PROMPT_SOS");
+        intent.putExtra("TRIGGER_METHOD", "route_deviation");
+        intent.putExtra("PROMPT_MESSAGE", "You left your route \"" + path.getName() + "\". Send SOS alert?");
+        ContextCompat.startForegroundService(this, intent);
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
 
         locationRepository = LocationHistoryRepository.getInstance();
+        safetyZoneRepository = SafetyZoneRepository.getInstance();
+        safetyZoneRepository.addTransitionListener(zoneTransitionListener);
+        scheduledRuleRepository = ScheduledRuleRepository.getInstance();
+        securePathRepository = SecurePathRepository.getInstance();
+        securePathRepository.addDeviationListener(routeDeviationListener);
         addressResolver = new AddressResolver(this);
 
         // Initialize location client
@@ -99,6 +124,8 @@ public class LocationTrackingService extends Service {
 
     @Override
     public void onDestroy() {
+        safetyZoneRepository.removeTransitionListener(zoneTransitionListener);
+        securePathRepository.removeDeviationListener(routeDeviationListener);
         stopLocationTracking();
         super.onDestroy();
     }
@@ -147,6 +174,15 @@ public class LocationTrackingService extends Service {
     private void processNewLocation(Location location) {
         if (location == null) return;
 
+        // Zone containment is an in-memory index lookup, so evaluate every fix right away
+        safetyZoneRepository.evaluateFix(location.getLatitude(), location.getLongitude(), location.getTime());
+
+        // Rules only need the raw fix, so don't wait for geocoding
+        checkScheduledAlerts(location);
+
+        // Route corridors are matched from a cursor on a background thread
+        securePathRepository.checkFix(location.getLatitude(), location.getLongitude(), location.getTime());
+
         // Resolve address asynchronously
         addressResolver.getAddressFromLocation(location, address -> {
             // Save location to repository
@@ -154,16 +190,12 @@ public class LocationTrackingService extends Service {
 
             // Update notification with new location
             updateNotification(location, address);
-
-            // Check if we need to trigger any scheduled alerts
-            checkScheduledAlerts(location);
         });
     }
 
     private void checkScheduledAlerts(Location location) {
-        // TODO: Implement scheduled alert checking
-        // This would check if the user has any scheduled alerts
-        // For example, "alert if I'm not home by 10pm"
+        // Rules are evaluated incrementally; timers are handled by exact alarms
+        scheduledRuleRepository.onFix(location);
     }
 
     private void createNotificationChannel() {
@@ -13,7 +13,9 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
@@ -57,6 +59,17 @@ public class ShakeDetectionService extends Service implements SensorEventListene
     private long confirmationStartTime = 0;
     private static final long CONFIRMATION_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10); // 10 seconds to confirm
 
+    // Prompts raised by other services (e.g. route deviation) may arrive while the user isn't looking
+    private static final long PROMPT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final String DEFAULT_TRIGGER_METHOD = "shake_detection";
+    private static final String DEFAULT_CONFIRMATION_TEXT = "Shake detected! Send SOS alert?";
+    private String confirmationTriggerMethod = DEFAULT_TRIGGER_METHOD;
+    private String confirmationText = DEFAULT_CONFIRMATION_TEXT;
+
+    // Prompts can't rely on sensor events to time out, since monitoring may be off
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable promptTimeout = this::cancelShakeAlert;
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -103,6 +116,10 @@ public class ShakeDetectionService extends Service implements SensorEventListene
                     case "CONFIRM_SOS":
                         confirmSosAlert();
                         break;
+                    case "PROMPT_SOS":
+                        promptSosAlert(intent.getStringExtra("TRIGGER_METHOD"),
+                                intent.getStringExtra("PROMPT_MESSAGE"));
+                        break;
                 }
             } else {
                 // Default action is to start monitoring
@@ -122,6 +139,7 @@ public class ShakeDetectionService extends Service implements SensorEventListene
 
     @Override
     public void onDestroy() {
+        handler.removeCallbacks(promptTimeout);
         stopShakeDetection();
         super.onDestroy();
     }
@@ -181,10 +199,7 @@ public class ShakeDetectionService extends Service implements SensorEventListene
         lastShakeTime = 0;
         firstShakeTime = 0;
         confirmationPending = false;
-
-        // Update notification to normal state
-        NotificationManager notificationManager = getSystemService(NotificationManager.class);
-        notificationManager.notify(NOTIFICATION_ID, createNotification(false));
+        resetConfirmation();
 
         Log.d(TAG, "Shake alert canceled");
     }
@@ -196,6 +211,42 @@ public class ShakeDetectionService extends Service implements SensorEventListene
 
             // Reset confirmation state
             confirmationPending = false;
+            resetConfirmation();
+        }
+    }
+
+    /**
+     * Ask the user to confirm an SOS raised by another detector, using the shake confirmation flow
+     */
+    private void promptSosAlert(String triggerMethod, String message) {
+        // Started with startForegroundService, so promote before anything else
+        if (!isMonitoring) {
+            startForeground(NOTIFICATION_ID, createNotification(false));
+        }
+        if (confirmationPending) {
+            Log.d(TAG, "Confirmation already pending, ignoring prompt from " + triggerMethod);
+            return;
+        }
+
+        confirmationTriggerMethod = triggerMethod != null ? triggerMethod : "manual";
+        confirmationText = message != null ? message : "Send SOS alert?";
+        showConfirmationNotification();
+        handler.postDelayed(promptTimeout, PROMPT_TIMEOUT_MS);
+    }
+
+    private void resetConfirmation() {
+        handler.removeCallbacks(promptTimeout);
+        confirmationTriggerMethod = DEFAULT_TRIGGER_METHOD;
+        confirmationText = DEFAULT_CONFIRMATION_TEXT;
+
+        if (isMonitoring) {
+            // Update notification to normal state
+            NotificationManager notificationManager = getSystemService(NotificationManager.class);
+            notificationManager.notify(NOTIFICATION_ID, createNotification(false));
+        } else {
+            // Only running for a prompt
+            stopForeground(true);
+            stopSelf();
         }
     }
 
@@ -213,9 +264,10 @@ public class ShakeDetectionService extends Service implements SensorEventListene
 
         long currentTime = System.currentTimeMillis();
 
-        // Check if we're in confirmation mode and if it has timed out
+        // Check if we're in confirmation mode and if it has timed out; prompts time out on their own
         if (confirmationPending) {
-            if (currentTime - confirmationStartTime > CONFIRMATION_TIMEOUT_MS) {
+            if (DEFAULT_TRIGGER_METHOD.equals(confirmationTriggerMethod)
+                    && currentTime - confirmationStartTime > CONFIRMATION_TIMEOUT_MS) {
                 // Confirmation timed out, reset
                 cancelShakeAlert();
             }
@@ -278,13 +330,13 @@ public class ShakeDetectionService extends Service implements SensorEventListene
         // Start SOS alert process
         Intent sosIntent = new Intent(this, SosAlertService.class);
         sosIntent.setAction("TRIGGER_SOS");
-        sosIntent.putExtra("TRIGGER_METHOD", "shake_detection");
+        sosIntent.putExtra("TRIGGER_METHOD", confirmationTriggerMethod);
         startService(sosIntent);
 
         // Provide strong haptic feedback for SOS activation
         provideHapticFeedback(1000);
 
-        Log.d(TAG, "SOS alert triggered by shake detection");
+        Log.d(TAG, "SOS alert triggered by " + confirmationTriggerMethod);
 
         // Reset shake detection variables
         shakeCount = 0;
@@ -354,7 +406,7 @@ public class ShakeDetectionService extends Service implements SensorEventListene
 
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("SOS Alert Confirmation")
-                .setContentText("Shake detected! Send SOS alert?")
+                .setContentText(confirmationText)
                 .setSmallIcon(R.drawable.ic_warning)
                 .setPriority(NotificationCompat.PRIORITY_HIGH)
                 .setCategory(NotificationCompat.CATEGORY_ALARM)
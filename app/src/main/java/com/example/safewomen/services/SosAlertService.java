@@ -9,8 +9,9 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
-import android.telephony.SmsManager;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -20,13 +21,32 @@ import androidx.core.app.NotificationCompat;
 import android.Manifest;
 import com.example.safewomen.models.entities.EmergencyContactEntity;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
+import com.example.safewomen.models.entities.SmsDispatchEntity;
 import com.example.safewomen.MainActivity;
 import com.example.safewomen.R;
+import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.models.SosSnapshot;
 import com.example.safewomen.repositories.AlertRepository;
-import com.example.safewomen.repositories.ContactRepository;
-import com.example.safewomen.repositories.LocationHistoryRepository;
+import com.example.safewomen.repositories.SmsDispatchRepository;
+import com.example.safewomen.repositories.SosSnapshotRepository;
+import com.example.safewomen.utils.Clock;
+import com.example.safewomen.utils.FusedFixSource;
+import com.example.safewomen.utils.LiveLocationStreamer;
+import com.example.safewomen.utils.PreferenceManager;
+import com.example.safewomen.utils.SmsDispatcher;
+import com.example.safewomen.utils.SosArbiter;
+import com.example.safewomen.utils.SosMetrics;
+import com.example.safewomen.utils.SosPipeline;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for handling SOS alerts
@@ -35,22 +55,47 @@ public class SosAlertService extends Service {
     private static final String TAG = "SosAlertService";
     private static final String CHANNEL_ID = "sos_alert_channel";
     private static final int NOTIFICATION_ID = 1002;
+    private static final String KEY_FIRST_SMS_LATENCY = "sos_first_sms_latency_ms";
+    private static final long VIDEO_START_DELAY_MS = 5000;
 
-
-    private ContactRepository contactRepository;
-    private LocationHistoryRepository locationRepository;
+    private SosSnapshotRepository snapshotRepository;
+    private SmsDispatchRepository smsDispatchRepository;
     private AlertRepository alertRepository;
+    private final SosArbiter arbiter = SosArbiter.getInstance();
 
-    private String alertId;
+    private volatile String alertId;
+    private volatile String serverAlertId;
+    private volatile boolean cancelRequested = false;
+    private volatile String cancelStatus = "cancelled";
     private String triggerMethodGlobal;
 
+    private final ExecutorService sosExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService alertExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SosPipeline pipeline = new SosPipeline(sosExecutor, mainHandler::post, alertExecutor);
+    // Delayed video start of the current SOS; main thread only
+    private Runnable pendingVideoStart;
+    private volatile SosMetrics metrics;
+
+    // Per-contact SMS state of the current SOS, in contact order
+    private volatile SosArbiter.Session session;
+    private volatile String sosId;
+    private final Map<String, SmsDispatchEntity> dispatches = new LinkedHashMap<>();
+    private final SmsDispatcher.DispatchListener dispatchListener = this::onDispatchUpdated;
+    private final AlertRepository.ServerIdListener serverIdListener = this::onServerAlertId;
+
+    // Only touched on the main thread
+    private LiveLocationStreamer liveLocationStreamer;
+
     @Override
     public void onCreate() {
         super.onCreate();
         createNotificationChannel();
-        contactRepository = ContactRepository.getInstance();
-        locationRepository = LocationHistoryRepository.getInstance();
+        snapshotRepository = SosSnapshotRepository.getInstance();
+        smsDispatchRepository = SmsDispatchRepository.getInstance();
+        smsDispatchRepository.addListener(dispatchListener);
         alertRepository = AlertRepository.getInstance();
+        alertRepository.addServerIdListener(serverIdListener);
     }
 
     @Override
@@ -58,10 +103,10 @@ public class SosAlertService extends Service {
         if (intent != null) {
             String action = intent.getAction();
             if ("TRIGGER_SOS".equals(action)) {
-                String triggerMethod = intent.getStringExtra("TRIGGER_METHOD");
-                triggerSosAlert(triggerMethod);
+                admitTrigger(intent.getStringExtra("TRIGGER_METHOD"));
             } else if ("CANCEL_SOS".equals(action)) {
-                cancelSosAlert();
+                String status = intent.getStringExtra("ALERT_STATUS");
+                cancelSosAlert(status != null ? status : "cancelled", intent.getStringExtra("ALERT_ID"));
             }
         }
 
@@ -74,21 +119,69 @@ public class SosAlertService extends Service {
         return null;
     }
 
-    private void triggerSosAlert(String triggerMethod) {
+    @Override
+    public void onDestroy() {
+        cancelVideoStart();
+        stopLiveLocation();
+        endSession();
+        smsDispatchRepository.removeListener(dispatchListener);
+        alertRepository.removeServerIdListener(serverIdListener);
+        sosExecutor.shutdown();
+        alertExecutor.shutdown();
+        super.onDestroy();
+    }
+
+    private void admitTrigger(String triggerMethod) {
+        // Concurrent triggers (shake, fall, voice, button) share one alert
+        SosArbiter.Admission admission = arbiter.trigger(triggerMethod);
+        if (admission.isNewSession()) {
+            triggerSosAlert(admission.getSession(), triggerMethod);
+        } else {
+            onTriggerMerged(admission.getSession(), triggerMethod);
+        }
+    }
+
+    private void triggerSosAlert(SosArbiter.Session session, String triggerMethod) {
         // Start as foreground service with notification
         triggerMethodGlobal = triggerMethod;
+        metrics = new SosMetrics(Clock.SYSTEM);
+        this.session = session;
+        sosId = session.getId();
+        synchronized (dispatches) {
+            dispatches.clear();
+        }
+        alertId = null;
+        serverAlertId = null;
+        cancelRequested = false;
+        cancelStatus = "cancelled";
         startForeground(NOTIFICATION_ID, createNotification());
 
-        // TODO: Implement SOS alert logic
-        // 1. Send SMS to emergency contacts
-        // 2. Make emergency call
-        // 3. Record audio/video
-        // 4. Share location
-        shareLocationAndCreateAlert();
+        // SMS, call and recording start from local data; the alert is recorded alongside
+        pipeline.run(pipelineStages, metrics);
 
         Log.d(TAG, "SOS Alert triggered by: " + triggerMethod);
     }
 
+    private void onTriggerMerged(SosArbiter.Session session, String triggerMethod) {
+        // Left over from an earlier instance of this service that never ended it
+        if (session != this.session) {
+            Log.w(TAG, "Ending stale SOS session " + session.getId());
+            arbiter.end(session.getId());
+            admitTrigger(triggerMethod);
+            return;
+        }
+
+        Log.d(TAG, "SOS trigger " + triggerMethod + " merged into active alert " + session.getAlertId());
+        updateNotification();
+    }
+
+    private void endSession() {
+        SosArbiter.Session current = session;
+        if (current != null) {
+            arbiter.end(current.getId());
+        }
+    }
+
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
@@ -104,6 +197,10 @@ public class SosAlertService extends Service {
     }
 
     private Notification createNotification() {
+        return createNotification(new ArrayList<>());
+    }
+
+    private Notification createNotification(List<String> dispatchLines) {
         Intent notificationIntent = new Intent(this, MainActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(
                 this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE
@@ -116,6 +213,12 @@ public class SosAlertService extends Service {
                 this, 1, cancelIntent, PendingIntent.FLAG_IMMUTABLE
         );
 
+        // One line per contact with its delivery state
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (String line : dispatchLines) {
+            style.addLine(line);
+        }
+
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("SOS Alert Active")
                 .setContentText("Emergency contacts are being notified")
@@ -123,195 +226,191 @@ public class SosAlertService extends Service {
                 .setContentIntent(pendingIntent)
                 .setPriority(NotificationCompat.PRIORITY_HIGH)
                 .addAction(R.drawable.ic_delete, "Cancel SOS", cancelPendingIntent)
+                .setStyle(style)
+                .setOnlyAlertOnce(true)
                 .setOngoing(true)
                 .build();
     }
 
-    private void shareLocationAndCreateAlert() {
-        // Get the most recent location
-        locationRepository.getMostRecentLocation(new LocationHistoryRepository.LocationHistoryCallback() {
+    private final SosPipeline.Stages pipelineStages = new SosPipeline.Stages() {
+        @Override
+        public SosSnapshot loadSnapshot() {
+            // Kept warm by Room invalidation, so this is an in-memory read
+            return snapshotRepository.getSnapshot();
+        }
+
+        @Override
+        public void sendSms(List<EmergencyContactEntity> contacts, String message) {
+            smsDispatchRepository.sendToContacts(sosId, contacts, message);
+        }
+
+        @Override
+        public void call(EmergencyContactEntity primaryContact) {
+            if (!cancelRequested) makeEmergencyCall(primaryContact);
+        }
+
+        @Override
+        public void startRecording() {
+            if (!cancelRequested) startEmergencyRecording();
+        }
+
+        @Override
+        public void recordAlert(LocationHistoryEntity location) {
+            SosAlertService.this.recordAlert(location);
+        }
+    };
+
+    private void recordAlert(LocationHistoryEntity location) {
+        SosArbiter.Session current = session;
+        AlertRepository.AlertCallback callback = new AlertRepository.AlertCallback() {
             @Override
-            public void onLocationLoaded(LocationHistoryEntity location) {
-                if (location != null) {
-                    // Create an alert with the location
-                    alertRepository.createAlert(
-                            location.getLatitude(),
-                            location.getLongitude(),
-                            location.getAddress(),
-                            triggerMethodGlobal, // Use the trigger method as alert type
-                            new AlertRepository.AlertCallback() {
-                                @Override
-                                public void onSuccess(String alertId, String message) {
-                                    // Store the alert ID for future reference
-                                    SosAlertService.this.alertId = alertId;
-                                    Log.d(TAG, "Alert created with ID: " + alertId);
-
-                                    // Now that we have the alert and location, proceed with other steps
-                                    sendSmsToEmergencyContacts(location);
-                                    makeEmergencyCall();
-                                    startEmergencyRecording();
-                                }
-
-                                @Override
-                                public void onError(String errorMessage) {
-                                    Log.e(TAG, "Error creating alert: " + errorMessage);
-
-                                    // Even if alert creation fails, proceed with other emergency actions
-                                    // Get location again to ensure we have it for SMS
-                                    locationRepository.getMostRecentLocation(new LocationHistoryRepository.LocationHistoryCallback() {
-                                        @Override
-                                        public void onLocationLoaded(LocationHistoryEntity location) {
-                                            sendSmsToEmergencyContacts(location);
-                                            makeEmergencyCall();
-                                            startEmergencyRecording();
-                                        }
-
-                                        @Override
-                                        public void onError(String message) {
-                                            // If we can't get location, still proceed with other actions
-                                            sendSmsToEmergencyContacts(null);
-                                            makeEmergencyCall();
-                                            startEmergencyRecording();
-                                        }
-                                    });
-                                }
-                            }
-                    );
-                } else {
-                    Log.w(TAG, "No location available for alert");
-                    // Even without location, proceed with other emergency actions
-                    sendSmsToEmergencyContacts(null);
-                    makeEmergencyCall();
-                    startEmergencyRecording();
+            public void onSuccess(String alertId, String message) {
+                // Store the alert ID for future reference
+                SosAlertService.this.alertId = alertId;
+                current.setAlertId(alertId);
+                metrics.mark(SosMetrics.STAGE_ALERT_RECORDED);
+                Log.d(TAG, "Alert created with ID: " + alertId);
+                mainHandler.post(() -> startLiveLocation(alertId, location == null));
+
+                // The user may have cancelled before the alert was recorded
+                if (cancelRequested) {
+                    updateAlertEnded(alertId, cancelStatus);
                 }
             }
 
             @Override
-            public void onError(String message) {
-                Log.e(TAG, "Error getting location: " + message);
-                // Even without location, proceed with other emergency actions
-                sendSmsToEmergencyContacts(null);
-                makeEmergencyCall();
-                startEmergencyRecording();
+            public void onError(String errorMessage) {
+                Log.e(TAG, "Error creating alert: " + errorMessage);
             }
-        });
+        };
+
+        // Written locally first; the outbox uploads it when the server is reachable.
+        // The trigger method doubles as the alert type.
+        if (location != null) {
+            alertRepository.createAlert(location.getLatitude(), location.getLongitude(),
+                    location.getAddress(), triggerMethodGlobal, callback);
+        } else {
+            // Recorded as unknown rather than 0,0; the first live fix is attached to it
+            Log.w(TAG, "No location available for alert");
+            alertRepository.createAlertWithoutLocation(triggerMethodGlobal, callback);
+        }
     }
-    private void sendSmsToEmergencyContacts(LocationHistoryEntity location) {
-        // Get all emergency contacts
-        contactRepository.getContacts().observeForever(contacts -> {
-            if (contacts != null && !contacts.isEmpty()) {
-                // Prepare the emergency message
-                String message = "EMERGENCY: I need help!";
-
-                // Add location information if available
-                if (location != null) {
-                    message += " My current location: ";
-                    if (location.getAddress() != null && !location.getAddress().isEmpty()) {
-                        message += location.getAddress();
-                    } else {
-                        message += "Lat: " + location.getLatitude() + ", Long: " + location.getLongitude();
-                    }
 
-                    // Add Google Maps link
-                    message += " https://maps.google.com/?q=" + location.getLatitude() + "," + location.getLongitude();
-                }
+    private void onDispatchUpdated(SmsDispatchEntity dispatch) {
+        if (cancelRequested || !dispatch.getSosId().equals(sosId)) return;
 
-                // Add alert ID if available
-                if (alertId != null) {
-                    message += " Alert ID: " + alertId;
-                }
+        synchronized (dispatches) {
+            dispatches.put(dispatch.getId(), dispatch);
+        }
 
-                // Send SMS to each contact
-                for (EmergencyContactEntity contact : contacts) {
-                    sendSms(contact.getPhone(), message);
-                    Log.d(TAG, "Emergency SMS sent to: " + contact.getName() + " (" + contact.getPhone() + ")");
-                }
-            } else {
-                Log.w(TAG, "No emergency contacts found to send SMS");
+        if (SmsDispatcher.STATUS_SENT.equals(dispatch.getStatus())) {
+            long latency = metrics.mark(SosMetrics.STAGE_FIRST_SMS);
+            if (latency >= 0) {
+                PreferenceManager.getInstance().saveLong(KEY_FIRST_SMS_LATENCY, latency);
             }
-        });
-    }
+        } else if (SmsDispatcher.STATUS_DELIVERED.equals(dispatch.getStatus())) {
+            metrics.mark(SosMetrics.STAGE_FIRST_DELIVERY);
+        }
 
-    private void sendSms(String phoneNumber, String message) {
-        try {
-            // Check for SMS permission
-            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
-                Log.e(TAG, "SMS permission not granted");
-                return;
-            }
+        updateNotification();
+    }
 
-            SmsManager smsManager = SmsManager.getDefault();
+    private void updateNotification() {
+        if (cancelRequested) return;
 
-            // If message is too long, divide it
-            if (message.length() > 160) {
-                ArrayList<String> parts = smsManager.divideMessage(message);
-                smsManager.sendMultipartTextMessage(phoneNumber, null, parts, null, null);
-            } else {
-                smsManager.sendTextMessage(phoneNumber, null, message, null, null);
+        List<String> lines = new ArrayList<>();
+        synchronized (dispatches) {
+            for (SmsDispatchEntity item : dispatches.values()) {
+                lines.add(describeDispatch(item));
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error sending SMS: " + e.getMessage(), e);
         }
+        String evidence = describeTriggers(session);
+        if (evidence != null) {
+            lines.add(evidence);
+        }
+
+        NotificationManager notificationManager = getSystemService(NotificationManager.class);
+        notificationManager.notify(NOTIFICATION_ID, createNotification(lines));
     }
-    private void makeEmergencyCall() {
-        // Get emergency contacts to find primary contact
-        contactRepository.getContacts().observeForever(contacts -> {
-            if (contacts != null && !contacts.isEmpty()) {
-                // Find primary contact
-                EmergencyContactEntity primaryContact = null;
-                for (EmergencyContactEntity contact : contacts) {
-                    if (contact.isPrimary()) {
-                        primaryContact = contact;
-                        break;
-                    }
-                }
 
-                // If no primary contact, use the first one
-                if (primaryContact == null) {
-                    primaryContact = contacts.get(0);
-                }
+    // Triggers after the first, e.g. a fall detected while a shake SOS is running
+    private static String describeTriggers(SosArbiter.Session session) {
+        if (session == null) return null;
 
-                // Make the emergency call
-                String phoneNumber = primaryContact.getPhone();
-                try {
-                    // Check for call phone permission
-                    if (ActivityCompat.checkSelfPermission(this, Manifest.permission.CALL_PHONE) != PackageManager.PERMISSION_GRANTED) {
-                        Log.e(TAG, "Call phone permission not granted");
-                        return;
-                    }
+        List<SosArbiter.Trigger> triggers = session.getTriggers();
+        if (triggers.size() < 2) return null;
 
-                    Intent callIntent = new Intent(Intent.ACTION_CALL);
-                    callIntent.setData(Uri.parse("tel:" + phoneNumber));
-                    callIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    startActivity(callIntent);
+        StringBuilder line = new StringBuilder("Also triggered by:");
+        for (int i = 1; i < triggers.size(); i++) {
+            line.append(i == 1 ? " " : ", ").append(triggers.get(i).getMethod());
+        }
+        return line.toString();
+    }
 
-                    Log.d(TAG, "Emergency call initiated to: " + primaryContact.getName() + " (" + phoneNumber + ")");
-                } catch (Exception e) {
-                    Log.e(TAG, "Error making emergency call: " + e.getMessage(), e);
-                }
-            } else {
-                Log.w(TAG, "No emergency contacts found to make call");
+    private static String describeDispatch(SmsDispatchEntity dispatch) {
+        String line = dispatch.getContactName() + ": " + dispatch.getStatus();
+        if (SmsDispatcher.STATUS_DELIVERED.equals(dispatch.getStatus())) {
+            line += String.format(Locale.US, " in %.1f s",
+                    (dispatch.getDeliveredAt() - dispatch.getCreatedAt()) / 1000.0);
+        } else if (dispatch.getAttempts() > 1) {
+            line += " (attempt " + dispatch.getAttempts() + ")";
+        }
+        return line;
+    }
+
+    private void makeEmergencyCall(EmergencyContactEntity primaryContact) {
+        if (primaryContact == null) {
+            Log.w(TAG, "No emergency contacts found to make call");
+            return;
+        }
+
+        // Make the emergency call
+        String phoneNumber = primaryContact.getPhone();
+        try {
+            // Check for call phone permission
+            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.CALL_PHONE) != PackageManager.PERMISSION_GRANTED) {
+                Log.e(TAG, "Call phone permission not granted");
+                return;
             }
-        });
+
+            Intent callIntent = new Intent(Intent.ACTION_CALL);
+            callIntent.setData(Uri.parse("tel:" + phoneNumber));
+            callIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            startActivity(callIntent);
+            metrics.mark(SosMetrics.STAGE_CALL);
+
+            Log.d(TAG, "Emergency call initiated to: " + primaryContact.getName() + " (" + phoneNumber + ")");
+        } catch (Exception e) {
+            Log.e(TAG, "Error making emergency call: " + e.getMessage(), e);
+        }
     }
+
     private void startEmergencyRecording() {
         try {
             // Start audio recording
             Intent audioIntent = new Intent(this, EmergencyRecordingService.class);
             audioIntent.setAction("START_AUDIO_RECORDING");
+            audioIntent.putExtra("SOS_ID", sosId);
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 startForegroundService(audioIntent);
             } else {
                 startService(audioIntent);
             }
 
+            metrics.mark(SosMetrics.STAGE_RECORDING);
             Log.d(TAG, "Emergency audio recording started");
 
             // Optionally start video recording after a short delay
-            new android.os.Handler().postDelayed(() -> {
+            cancelVideoStart();
+            String videoSosId = sosId;
+            pendingVideoStart = () -> {
+                pendingVideoStart = null;
+                // Cancelled, or replaced by a new SOS, during the delay
+                if (cancelRequested || !Objects.equals(videoSosId, sosId)) return;
                 try {
                     Intent videoIntent = new Intent(this, EmergencyRecordingService.class);
                     videoIntent.setAction("START_VIDEO_RECORDING");
+                    videoIntent.putExtra("SOS_ID", videoSosId);
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                         startForegroundService(videoIntent);
                     } else {
@@ -321,31 +420,73 @@ public class SosAlertService extends Service {
                 } catch (Exception e) {
                     Log.e(TAG, "Error starting video recording: " + e.getMessage(), e);
                 }
-            }, 5000); // 5 second delay before starting video
+            };
+            mainHandler.postDelayed(pendingVideoStart, VIDEO_START_DELAY_MS);
         } catch (Exception e) {
             Log.e(TAG, "Error starting emergency recording: " + e.getMessage(), e);
         }
     }
 
+    private void startLiveLocation(String alertId, boolean needsLocation) {
+        if (cancelRequested) return;
+
+        // Responders follow the user at 1 Hz for as long as the SOS is active
+        stopLiveLocation();
+        liveLocationStreamer = new LiveLocationStreamer(ApiClient.getHttpClient(),
+                ApiClient.getLiveLocationUrl(), new FusedFixSource(this));
+        if (needsLocation) {
+            AtomicBoolean attached = new AtomicBoolean(false);
+            liveLocationStreamer.setFixListener((latitude, longitude, timestamp) -> {
+                if (attached.compareAndSet(false, true)) {
+                    alertRepository.attachLocation(alertId, latitude, longitude, null);
+                }
+            });
+        }
+        liveLocationStreamer.start(alertId, serverAlertId);
+    }
 
+    private void onServerAlertId(String localId, String serverId) {
+        if (!localId.equals(alertId)) return;
+        serverAlertId = serverId;
+        mainHandler.post(() -> {
+            if (liveLocationStreamer != null) {
+                liveLocationStreamer.setServerAlertId(serverId);
+            }
+        });
+    }
 
+    private void stopLiveLocation() {
+        if (liveLocationStreamer != null) {
+            liveLocationStreamer.stop();
+            liveLocationStreamer = null;
+        }
+    }
 
-    private void cancelSosAlert() {
-        // Update alert status if we have an alert ID
-        if (alertId != null) {
-            alertRepository.updateAlertStatus(alertId, "cancelled", new AlertRepository.AlertCallback() {
-                @Override
-                public void onSuccess(String alertId, String message) {
-                    Log.d(TAG, "Alert cancelled: " + alertId);
-                }
+    /**
+     * End the SOS and record how it ended: "cancelled" from the notification, or the
+     * status the app asked for, e.g. "resolved" or "false_alarm"
+     * @param requestedAlertId Alert the app knows about, used when this service has none,
+     *                         e.g. after the process was restarted
+     */
+    private void cancelSosAlert(String status, String requestedAlertId) {
+        // Update alert status if we have an alert ID; otherwise it is updated once created
+        cancelStatus = status;
+        cancelRequested = true;
+        String targetId = alertId != null ? alertId : requestedAlertId;
+        if (targetId != null) {
+            updateAlertEnded(targetId, status);
+        }
 
-                @Override
-                public void onError(String errorMessage) {
-                    Log.e(TAG, "Error cancelling alert: " + errorMessage);
-                }
-            });
+        // Messages already with the carrier can't be recalled, but queued retries can
+        if (sosId != null) {
+            smsDispatchRepository.cancel(sosId);
         }
 
+        cancelVideoStart();
+        stopLiveLocation();
+        // New triggers after this start a fresh alert
+        endSession();
+
         // Stop emergency recording
         Intent stopRecordingIntent = new Intent(this, EmergencyRecordingService.class);
         stopRecordingIntent.setAction("STOP_RECORDING");
@@ -358,4 +499,24 @@ public class SosAlertService extends Service {
         Log.d(TAG, "SOS Alert cancelled");
     }
 
+    private void cancelVideoStart() {
+        if (pendingVideoStart != null) {
+            mainHandler.removeCallbacks(pendingVideoStart);
+            pendingVideoStart = null;
+        }
+    }
+
+    private void updateAlertEnded(String alertId, String status) {
+        alertRepository.updateAlertStatus(alertId, status, new AlertRepository.AlertCallback() {
+            @Override
+            public void onSuccess(String alertId, String message) {
+                Log.d(TAG, "Alert " + alertId + " marked " + status);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.e(TAG, "Error marking alert " + status + ": " + errorMessage);
+            }
+        });
+    }
 }
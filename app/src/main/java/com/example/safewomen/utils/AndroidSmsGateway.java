@@ -0,0 +1,65 @@
+package com.example.safewomen.utils;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.telephony.SmsManager;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.safewomen.receivers.SmsStatusReceiver;
+
+import java.util.ArrayList;
+
+/**
+ * SmsGateway backed by SmsManager, with sent and delivery reports routed to SmsStatusReceiver
+ */
+public class AndroidSmsGateway implements SmsGateway {
+    private final Context context;
+
+    public AndroidSmsGateway(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public int send(String dispatchId, int attempt, String phoneNumber, String message) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            throw new SecurityException("SMS permission not granted");
+        }
+
+        SmsManager smsManager = SmsManager.getDefault();
+        ArrayList<String> parts = smsManager.divideMessage(message);
+
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>();
+        ArrayList<PendingIntent> deliveryIntents = new ArrayList<>();
+        for (int part = 0; part < parts.size(); part++) {
+            sentIntents.add(statusIntent(SmsStatusReceiver.ACTION_SMS_SENT, dispatchId, attempt, part));
+            deliveryIntents.add(statusIntent(SmsStatusReceiver.ACTION_SMS_DELIVERED, dispatchId, attempt, part));
+        }
+
+        if (parts.size() > 1) {
+            smsManager.sendMultipartTextMessage(phoneNumber, null, parts, sentIntents, deliveryIntents);
+        } else {
+            smsManager.sendTextMessage(phoneNumber, null, message, sentIntents.get(0), deliveryIntents.get(0));
+        }
+        return parts.size();
+    }
+
+    private PendingIntent statusIntent(String action, String dispatchId, int attempt, int part) {
+        Intent intent = new Intent(context, SmsStatusReceiver.class);
+        intent.setAction(action);
+        // Distinct data keeps each part's PendingIntent from replacing another's
+        intent.setData(Uri.parse("sms-dispatch://" + dispatchId + "/" + attempt + "/" + part));
+        intent.putExtra(SmsStatusReceiver.EXTRA_DISPATCH_ID, dispatchId);
+        intent.putExtra(SmsStatusReceiver.EXTRA_ATTEMPT, attempt);
+
+        // Mutable so the platform can attach the result code and delivery PDU
+        int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                ? PendingIntent.FLAG_MUTABLE : 0;
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.safewomen.utils;
+
+/**
+ * Source of wall-clock time, injectable so time-driven logic can run deterministically
+ */
+public interface Clock {
+    Clock SYSTEM = System::currentTimeMillis;
+
+    long currentTimeMillis();
+}
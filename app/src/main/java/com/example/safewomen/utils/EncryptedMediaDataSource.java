@@ -0,0 +1,43 @@
+package com.example.safewomen.utils;
+
+import android.media.MediaDataSource;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Plays an encrypted recording without writing plaintext to disk. MediaPlayer
+ * and MediaMetadataRetriever read through this, one chunk decrypted at a time.
+ */
+public class EncryptedMediaDataSource extends MediaDataSource {
+    private static final String TAG = "EncryptedMediaSource";
+
+    private final RecordingCipher.Reader reader;
+
+    public EncryptedMediaDataSource(RecordingCipher cipher, File file) throws IOException, GeneralSecurityException {
+        reader = cipher.open(file);
+    }
+
+    @Override
+    public synchronized int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        try {
+            return reader.read(position, buffer, offset, size);
+        } catch (GeneralSecurityException e) {
+            // A chunk failed authentication: the file was altered or cut short
+            Log.e(TAG, "Error decrypting recording at " + position, e);
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return reader.getSize();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        reader.close();
+    }
+}
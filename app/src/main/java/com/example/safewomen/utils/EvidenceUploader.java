@@ -0,0 +1,330 @@
+package com.example.safewomen.utils;
+
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.safewomen.api.ApiResponse;
+import com.example.safewomen.api.ApiService;
+import com.example.safewomen.api.ResponseDecoder;
+import com.example.safewomen.data.RecordingSegmentDao;
+import com.example.safewomen.models.entities.RecordingSegmentEntity;
+import com.google.gson.stream.JsonReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Uploads one recording segment in fixed-size chunks, resuming from the offset
+ * the server last committed. Files are read through a FileChannel into a single
+ * reused buffer, so memory use doesn't grow with the file. Every chunk carries
+ * its own SHA-256 and the server checks the whole-file hash on completion.
+ *
+ * Protocol: init (segment metadata and file hash) returns an upload id and the
+ * committed offset; each chunk returns the new offset; complete seals the file.
+ * Encrypted segments are sent as stored, with their content key in init.
+ */
+public class EvidenceUploader {
+    private static final String TAG = "EvidenceUploader";
+
+    static final int CHUNK_SIZE = 256 * 1024;
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    // Throughput estimate: weight of the newest chunk, and how long an estimate stays meaningful
+    private static final double THROUGHPUT_WEIGHT = 0.3;
+    private static final long THROUGHPUT_MAX_AGE_MS = 5 * 60 * 1000;
+
+    public enum Result {
+        UPLOADED,
+        RETRY,     // Transient failure; progress so far is kept
+        REJECTED   // The server refused the segment or the file is gone
+    }
+
+    private final ApiService apiService;
+    private final RecordingSegmentDao segmentDao;
+    private final RecordingCipher cipher;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+
+    private volatile double bytesPerSecond = 0;
+    private volatile long measuredAt = 0;
+
+    public EvidenceUploader(ApiService apiService, RecordingSegmentDao segmentDao, RecordingCipher cipher) {
+        this.apiService = apiService;
+        this.segmentDao = segmentDao;
+        this.cipher = cipher;
+    }
+
+    /**
+     * Upload a segment, or continue an earlier attempt. Blocking; not thread-safe.
+     */
+    public Result upload(RecordingSegmentEntity segment) {
+        File file = new File(segment.getFilePath());
+        if (!file.isFile()) {
+            Log.w(TAG, "Segment file missing: " + segment.getFilePath());
+            return Result.REJECTED;
+        }
+
+        try (FileInputStream input = new FileInputStream(file);
+             FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+
+            String fileHash = segment.getSha256();
+            if (fileHash == null) {
+                fileHash = hashFile(channel);
+                segmentDao.setSha256(segment.getId(), fileHash);
+            }
+
+            // The server is authoritative for how much it already has
+            Map<String, String> initParams = initParams(segment, size, fileHash);
+            if (RecordingCipher.isEncrypted(file.getPath())) {
+                // The server needs the content key to read the evidence; it travels only over TLS
+                initParams.put("encryption", RecordingCipher.FORMAT);
+                initParams.put("content_key", Base64.encodeToString(cipher.readContentKey(file), Base64.NO_WRAP));
+            }
+            Reply init = execute(apiService.initEvidenceUpload(initParams));
+            if (init == null) return Result.RETRY;
+            if (!init.success) return reject(segment, init);
+
+            String uploadId = init.uploadId;
+            if (uploadId == null || uploadId.isEmpty()) return reject(segment, init);
+            long offset = Math.max(0, init.offset);
+            segmentDao.setUploadProgress(segment.getId(), uploadId, offset);
+
+            long start = System.currentTimeMillis();
+            long resumedFrom = offset;
+            // Set by a 409 until a chunk is accepted, so two conflicting offsets can't ping-pong
+            boolean resynced = false;
+            while (offset < size) {
+                int length = readChunk(channel, offset);
+                String chunkHash = toHex(sha256(buffer, length));
+
+                long chunkStart = System.currentTimeMillis();
+                Reply chunk = execute(apiService.uploadEvidenceChunk(uploadId, offset, chunkHash,
+                        RequestBody.create(OCTET_STREAM, buffer, 0, length)));
+                if (chunk == null) return Result.RETRY;
+                recordThroughput(length, System.currentTimeMillis() - chunkStart);
+                if (!chunk.success) {
+                    // Out of step with the server, e.g. a lost ack; continue from its offset once
+                    if (chunk.offset >= 0 && chunk.offset != offset && chunk.offset <= size) {
+                        if (resynced) {
+                            Log.w(TAG, "Server moved " + segment.getId() + " to " + chunk.offset
+                                    + " again, retrying later");
+                            return Result.RETRY;
+                        }
+                        resynced = true;
+                        offset = chunk.offset;
+                        continue;
+                    }
+                    return reject(segment, chunk);
+                }
+
+                long next = chunk.offset >= 0 ? chunk.offset : offset + length;
+                if (next <= offset || next > size) {
+                    // Looping on the same chunk or skipping past the file would never finish
+                    Log.w(TAG, "Server answered offset " + next + " for the chunk at " + offset
+                            + " of " + segment.getId() + ", retrying later");
+                    return Result.RETRY;
+                }
+                offset = next;
+                resynced = false;
+                segmentDao.setUploadProgress(segment.getId(), uploadId, offset);
+            }
+
+            Map<String, String> params = new HashMap<>();
+            params.put("upload_id", uploadId);
+            params.put("sha256", fileHash);
+            Reply complete = execute(apiService.completeEvidenceUpload(params));
+            if (complete == null) return Result.RETRY;
+            if (!complete.success) return reject(segment, complete);
+
+            Log.d(TAG, "Uploaded " + segment.getId() + ": " + (size - resumedFrom) + " bytes in "
+                    + (System.currentTimeMillis() - start) + " ms"
+                    + (resumedFrom > 0 ? ", resumed at " + resumedFrom : ""));
+            return Result.UPLOADED;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading segment " + segment.getId(), e);
+            return Result.RETRY;
+        } catch (GeneralSecurityException e) {
+            // The key can't be unwrapped, e.g. the Keystore entry is gone; retrying won't help
+            Log.e(TAG, "Error reading key of segment " + segment.getId(), e);
+            return Result.REJECTED;
+        }
+    }
+
+    /**
+     * Recent upload throughput, or 0 if nothing was uploaded lately
+     */
+    public double getUploadBytesPerSecond() {
+        if (System.currentTimeMillis() - measuredAt > THROUGHPUT_MAX_AGE_MS) return 0;
+        return bytesPerSecond;
+    }
+
+    private void recordThroughput(int bytes, long millis) {
+        double sample = bytes * 1000.0 / Math.max(1, millis);
+        bytesPerSecond = bytesPerSecond == 0 ? sample
+                : bytesPerSecond + THROUGHPUT_WEIGHT * (sample - bytesPerSecond);
+        measuredAt = System.currentTimeMillis();
+    }
+
+    private Map<String, String> initParams(RecordingSegmentEntity segment, long size, String fileHash) {
+        Map<String, String> params = new HashMap<>();
+        params.put("segment_id", segment.getId());
+        params.put("session_id", segment.getSessionId());
+        if (segment.getSosId() != null) {
+            params.put("sos_id", segment.getSosId());
+        }
+        params.put("type", segment.getType());
+        params.put("segment_index", String.valueOf(segment.getSegmentIndex()));
+        params.put("started_at", String.valueOf(segment.getStartedAt()));
+        params.put("ended_at", String.valueOf(segment.getEndedAt()));
+        params.put("gap_before_ms", String.valueOf(segment.getGapBeforeMs()));
+        params.put("size", String.valueOf(size));
+        params.put("sha256", fileHash);
+        return params;
+    }
+
+    // Fill the buffer from the given offset; returns the bytes read
+    private int readChunk(FileChannel channel, long offset) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        while (byteBuffer.hasRemaining()) {
+            int read = channel.read(byteBuffer, offset + byteBuffer.position());
+            if (read < 0) break;
+        }
+        return byteBuffer.position();
+    }
+
+    private String hashFile(FileChannel channel) throws IOException {
+        MessageDigest digest = newDigest();
+        long offset = 0;
+        int length;
+        while ((length = readChunk(channel, offset)) > 0) {
+            digest.update(buffer, 0, length);
+            offset += length;
+        }
+        return toHex(digest.digest());
+    }
+
+    // Decoded body, or null on a transient failure; only explicit refusals come back as a failed reply
+    private Reply execute(Call<ResponseBody> call) {
+        try {
+            Response<ResponseBody> response = call.execute();
+            if (response.isSuccessful() && response.body() != null) {
+                return Reply.decode(response.body());
+            }
+
+            int code = response.code();
+            if (code == 401 || code == 403) {
+                // Expired session, not a verdict on the evidence; keep it until the user signs in again
+                Log.w(TAG, "Not authorized (" + code + ") uploading evidence, waiting for re-login");
+                return null;
+            }
+            // 409 carries the server's offset when a chunk arrives out of order
+            if (code == 409) {
+                Reply conflict = decodeErrorBody(response);
+                if (conflict != null && conflict.offset >= 0) {
+                    conflict.success = false;
+                    return conflict;
+                }
+                return Reply.rejected(code);
+            }
+            if (code == 400 || code == 413 || code == 422) {
+                return Reply.rejected(code);
+            }
+            Log.w(TAG, "Server error " + code + " uploading evidence");
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error uploading evidence", e);
+            return null;
+        }
+    }
+
+    // The error body, or null if there's none or it isn't JSON
+    private static Reply decodeErrorBody(Response<ResponseBody> response) {
+        ResponseBody errorBody = response.errorBody();
+        if (errorBody == null) return null;
+        try {
+            return Reply.decode(errorBody);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Result reject(RecordingSegmentEntity segment, Reply reply) {
+        Log.w(TAG, "Server rejected segment " + segment.getId() + ": " + reply.message);
+        return Result.REJECTED;
+    }
+
+    /**
+     * What init, chunk and complete answer: the envelope plus the upload id and offset
+     */
+    private static class Reply implements ResponseDecoder.FieldReader {
+        boolean success;
+        String message;
+        String uploadId;
+        long offset = -1;   // -1 when the server didn't say
+
+        static Reply decode(ResponseBody body) throws IOException {
+            Reply reply = new Reply();
+            ApiResponse<Void> envelope = ResponseDecoder.decodeFields(body, reply);
+            reply.success = envelope.isSuccess();
+            reply.message = envelope.getMessage();
+            return reply;
+        }
+
+        static Reply rejected(int code) {
+            Reply reply = new Reply();
+            reply.message = "Server error: " + code;
+            return reply;
+        }
+
+        @Override
+        public void read(String name, JsonReader reader) throws IOException {
+            switch (name) {
+                case "upload_id":
+                    uploadId = ResponseDecoder.readString(reader);
+                    break;
+                case "offset":
+                    offset = ResponseDecoder.readLong(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+    }
+
+    private static byte[] sha256(byte[] data, int length) {
+        MessageDigest digest = newDigest();
+        digest.update(data, 0, length);
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android release ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.safewomen.utils;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+/**
+ * 1 Hz high-accuracy fixes from the fused location provider, for LiveLocationStreamer
+ */
+public class FusedFixSource implements LiveLocationStreamer.FixSource {
+    private static final String TAG = "FusedFixSource";
+    private static final long FIX_INTERVAL_MS = 1000;
+
+    private final FusedLocationProviderClient fusedLocationClient;
+    private LocationCallback locationCallback;
+
+    public FusedFixSource(Context context) {
+        fusedLocationClient = LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+    }
+
+    @Override
+    public void start(LiveLocationStreamer.FixCallback callback) {
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(@NonNull LocationResult locationResult) {
+                for (Location location : locationResult.getLocations()) {
+                    callback.onFix(location.getLatitude(), location.getLongitude(),
+                            location.getAccuracy(), location.getTime());
+                }
+            }
+        };
+
+        try {
+            LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, FIX_INTERVAL_MS)
+                    .setMinUpdateIntervalMillis(FIX_INTERVAL_MS)
+                    .build();
+            // The callback only hands fixes to the streamer's thread, so the main looper is fine
+            fusedLocationClient.requestLocationUpdates(request, locationCallback, Looper.getMainLooper());
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission not granted", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (locationCallback != null) {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            locationCallback = null;
+        }
+    }
+}
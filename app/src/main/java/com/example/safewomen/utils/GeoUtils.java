@@ -0,0 +1,93 @@
+package com.example.safewomen.utils;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.List;
+
+/**
+ * Utility class for lightweight geographic calculations
+ */
+public class GeoUtils {
+    public static final double EARTH_RADIUS_METERS = 6371000.0;
+    public static final double METERS_PER_DEGREE_LAT = 111320.0;
+
+    private GeoUtils() {}
+
+    /**
+     * Great-circle distance between two points
+     * @return Distance in meters
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Fast equirectangular distance, accurate for the short ranges used by zones and routes
+     * @return Distance in meters
+     */
+    public static double approxDistanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+
+    /**
+     * Distance from a point to the segment a-b, using a local flat projection
+     * @return Distance in meters
+     */
+    public static double distanceToSegmentMeters(double lat, double lon,
+                                                 double aLat, double aLon, double bLat, double bLon) {
+        double cos = Math.cos(Math.toRadians(lat));
+        double ax = (aLon - lon) * cos;
+        double ay = aLat - lat;
+        double bx = (bLon - lon) * cos;
+        double by = bLat - lat;
+
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+
+        double x = ax + t * dx;
+        double y = ay + t * dy;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE_LAT;
+    }
+
+    /**
+     * Degrees of longitude spanned by the given distance at a latitude
+     */
+    public static double metersToLongitudeDegrees(double meters, double latitude) {
+        double cos = Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        return meters / (METERS_PER_DEGREE_LAT * cos);
+    }
+
+    /**
+     * Degrees of latitude spanned by the given distance
+     */
+    public static double metersToLatitudeDegrees(double meters) {
+        return meters / METERS_PER_DEGREE_LAT;
+    }
+
+    /**
+     * Ray-casting point-in-polygon test on raw coordinates
+     */
+    public static boolean polygonContains(List<LatLng> polygon, double lat, double lon) {
+        boolean inside = false;
+        int n = polygon.size();
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            LatLng a = polygon.get(i);
+            LatLng b = polygon.get(j);
+            if ((a.latitude > lat) != (b.latitude > lat)
+                    && lon < (b.longitude - a.longitude) * (lat - a.latitude)
+                    / (b.latitude - a.latitude) + a.longitude) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,622 @@
+package com.example.safewomen.utils;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.safewomen.models.LocationPoint;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tile provider rendering a heatmap of where the user spends time.
+ * Points are bucketed by their tile at a fixed zoom so a tile only visits nearby
+ * points; each tile is accumulated on a coarse grid, smoothed with a Gaussian
+ * kernel and colourised. Rendered tiles are kept in a byte-bounded memory cache
+ * and a disk LRU, and new fixes invalidate only the tiles they touch.
+ * The map calls {@link #getTile} on its own background threads.
+ */
+public class HeatmapTileProvider implements TileProvider {
+    private static final String TAG = "HeatmapTileProvider";
+
+    private static final int TILE_SIZE = 256;
+    // Intensity is accumulated on a coarse grid and upscaled with filtering
+    private static final int GRID_SIZE = 64;
+    private static final int KERNEL_RADIUS = 3;     // grid cells
+    private static final double KERNEL_SIGMA = 1.5; // grid cells
+    // Points are bucketed by their tile at this zoom
+    private static final int BUCKET_ZOOM = 10;
+    private static final int MAX_ZOOM = 21;
+    // Fixes per cell shown at full intensity, and the cut-off for transparent cells
+    private static final float SATURATION = 100f;
+    private static final float MIN_INTENSITY = 0.05f;
+
+    // Above this many new points the disk cache is dropped instead of invalidated tile by tile
+    private static final int MAX_INCREMENTAL_POINTS = 5000;
+
+    private static final int MEMORY_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final long DISK_CACHE_BYTES = 20L * 1024 * 1024;
+
+    private static final byte[] EMPTY_TILE = new byte[0];
+    private static final float[] KERNEL = buildKernel();
+    private static final int[] PALETTE = buildPalette();
+
+    // Tiles are rendered under the read lock and points change under the write lock,
+    // so a tile rendered from old points can never be cached after its invalidation
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, PointBucket> buckets = new HashMap<>();
+    private int pointCount = 0;
+    private long lastTimestamp = 0;
+
+    private final LruCache<Long, byte[]> memoryCache;
+    private final DiskTileCache diskCache;
+
+    public HeatmapTileProvider(File cacheDirectory) {
+        memoryCache = new LruCache<Long, byte[]>(MEMORY_CACHE_BYTES) {
+            @Override
+            protected int sizeOf(Long key, byte[] value) {
+                // Empty tiles are cached too, count their entry overhead
+                return value.length + 64;
+            }
+        };
+        diskCache = new DiskTileCache(cacheDirectory, DISK_CACHE_BYTES);
+    }
+
+    /**
+     * Replace all points. Disk tiles from a previous session are kept when the
+     * points they were rendered from are unchanged.
+     */
+    public void setPoints(List<LocationPoint> points) {
+        long start = System.nanoTime();
+        int invalidated;
+
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            pointCount = 0;
+            lastTimestamp = 0;
+            memoryCache.evictAll();
+
+            long[] meta = diskCache.readMeta();
+            long cachedUntil = meta != null ? meta[1] : Long.MIN_VALUE;
+            int cachedCount = 0;
+            List<LocationPoint> newer = new ArrayList<>();
+
+            for (LocationPoint point : points) {
+                addPointLocked(point);
+                if (point.getTimestamp() <= cachedUntil) {
+                    cachedCount++;
+                } else {
+                    newer.add(point);
+                }
+            }
+
+            if (meta == null || cachedCount != meta[0] || newer.size() > MAX_INCREMENTAL_POINTS) {
+                diskCache.clear();
+                invalidated = -1;
+            } else {
+                Set<Long> dirty = new HashSet<>();
+                for (LocationPoint point : newer) {
+                    collectAffectedTiles(point, dirty);
+                }
+                for (Long key : dirty) {
+                    diskCache.remove(key);
+                }
+                invalidated = dirty.size();
+            }
+            diskCache.writeMeta(pointCount, lastTimestamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Log.d(TAG, "Loaded " + points.size() + " points in " + (System.nanoTime() - start) / 1000000
+                + " ms, " + (invalidated < 0 ? "disk cache cleared" : invalidated + " cached tiles invalidated"));
+    }
+
+    /**
+     * Add new points and invalidate the tiles they affect
+     * @return Number of invalidated tiles
+     */
+    public int addPoints(List<LocationPoint> points) {
+        if (points.isEmpty()) return 0;
+
+        Set<Long> dirty = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            for (LocationPoint point : points) {
+                addPointLocked(point);
+                collectAffectedTiles(point, dirty);
+            }
+            for (Long key : dirty) {
+                memoryCache.remove(key);
+                diskCache.remove(key);
+            }
+            diskCache.writeMeta(pointCount, lastTimestamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return dirty.size();
+    }
+
+    public int getPointCount() {
+        lock.readLock().lock();
+        try {
+            return pointCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Timestamp of the newest point, 0 if there are none
+     */
+    public long getLastTimestamp() {
+        lock.readLock().lock();
+        try {
+            return lastTimestamp;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        if (zoom > MAX_ZOOM) return NO_TILE;
+
+        long key = tileKey(zoom, x, y);
+        lock.readLock().lock();
+        try {
+            byte[] data = memoryCache.get(key);
+            if (data == null) {
+                data = diskCache.get(key);
+                if (data == null) {
+                    data = renderTile(x, y, zoom);
+                    if (data.length > 0) {
+                        diskCache.put(key, data);
+                    }
+                }
+                memoryCache.put(key, data);
+            }
+            return data.length > 0 ? new Tile(TILE_SIZE, TILE_SIZE, data) : NO_TILE;
+        } catch (Exception e) {
+            Log.e(TAG, "Error rendering heatmap tile " + zoom + "/" + x + "/" + y, e);
+            return NO_TILE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Must hold the write lock
+    private void addPointLocked(LocationPoint point) {
+        double worldX = worldX(point.getLongitude());
+        double worldY = worldY(point.getLatitude());
+        int scale = 1 << BUCKET_ZOOM;
+        int bucketX = clamp((int) Math.floor(worldX * scale), 0, scale - 1);
+        int bucketY = clamp((int) Math.floor(worldY * scale), 0, scale - 1);
+
+        long key = tileKey(BUCKET_ZOOM, bucketX, bucketY);
+        PointBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new PointBucket(bucketX, bucketY);
+            buckets.put(key, bucket);
+        }
+        bucket.add(worldX, worldY);
+
+        pointCount++;
+        lastTimestamp = Math.max(lastTimestamp, point.getTimestamp());
+    }
+
+    // Every tile whose padded area contains the point, at every zoom
+    private static void collectAffectedTiles(LocationPoint point, Set<Long> dirty) {
+        double worldX = worldX(point.getLongitude());
+        double worldY = worldY(point.getLatitude());
+
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            int tiles = 1 << zoom;
+            double cellX = worldX * tiles * GRID_SIZE;
+            double cellY = worldY * tiles * GRID_SIZE;
+
+            int minX = clamp((int) Math.floor((cellX - KERNEL_RADIUS) / GRID_SIZE), 0, tiles - 1);
+            int maxX = clamp((int) Math.floor((cellX + KERNEL_RADIUS) / GRID_SIZE), 0, tiles - 1);
+            int minY = clamp((int) Math.floor((cellY - KERNEL_RADIUS) / GRID_SIZE), 0, tiles - 1);
+            int maxY = clamp((int) Math.floor((cellY + KERNEL_RADIUS) / GRID_SIZE), 0, tiles - 1);
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    dirty.add(tileKey(zoom, x, y));
+                }
+            }
+        }
+    }
+
+    // Must hold the read lock
+    private byte[] renderTile(int x, int y, int zoom) {
+        long start = System.nanoTime();
+
+        int span = GRID_SIZE + 2 * KERNEL_RADIUS;
+        float[] grid = new float[span * span];
+
+        double tileWorldSize = 1.0 / (1 << zoom);
+        double originX = x * tileWorldSize;
+        double originY = y * tileWorldSize;
+        double cellsPerUnit = GRID_SIZE / tileWorldSize;
+        double pad = KERNEL_RADIUS / cellsPerUnit;
+
+        int added = 0;
+        for (PointBucket bucket : findBuckets(originX - pad, originY - pad,
+                originX + tileWorldSize + pad, originY + tileWorldSize + pad)) {
+            for (int i = 0; i < bucket.size; i++) {
+                int col = (int) Math.floor((bucket.originX + bucket.offsetsX[i] - originX) * cellsPerUnit) + KERNEL_RADIUS;
+                int row = (int) Math.floor((bucket.originY + bucket.offsetsY[i] - originY) * cellsPerUnit) + KERNEL_RADIUS;
+                if (col >= 0 && col < span && row >= 0 && row < span) {
+                    grid[row * span + col] += 1f;
+                    added++;
+                }
+            }
+        }
+        if (added == 0) return EMPTY_TILE;
+
+        float[] intensity = blur(grid, span);
+        byte[] data = colorize(intensity);
+
+        Log.d(TAG, "Rendered tile " + zoom + "/" + x + "/" + y + " from " + added + " points in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        return data;
+    }
+
+    // Buckets overlapping a world-coordinate rectangle
+    private List<PointBucket> findBuckets(double minX, double minY, double maxX, double maxY) {
+        int scale = 1 << BUCKET_ZOOM;
+        int minBucketX = clamp((int) Math.floor(minX * scale), 0, scale - 1);
+        int maxBucketX = clamp((int) Math.floor(maxX * scale), 0, scale - 1);
+        int minBucketY = clamp((int) Math.floor(minY * scale), 0, scale - 1);
+        int maxBucketY = clamp((int) Math.floor(maxY * scale), 0, scale - 1);
+
+        List<PointBucket> result = new ArrayList<>();
+        long rangeSize = (long) (maxBucketX - minBucketX + 1) * (maxBucketY - minBucketY + 1);
+        if (rangeSize > buckets.size()) {
+            // Low zoom: scanning the occupied buckets is cheaper than probing the range
+            for (PointBucket bucket : buckets.values()) {
+                if (bucket.bucketX >= minBucketX && bucket.bucketX <= maxBucketX
+                        && bucket.bucketY >= minBucketY && bucket.bucketY <= maxBucketY) {
+                    result.add(bucket);
+                }
+            }
+        } else {
+            for (int bucketX = minBucketX; bucketX <= maxBucketX; bucketX++) {
+                for (int bucketY = minBucketY; bucketY <= maxBucketY; bucketY++) {
+                    PointBucket bucket = buckets.get(tileKey(BUCKET_ZOOM, bucketX, bucketY));
+                    if (bucket != null) {
+                        result.add(bucket);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // Separable Gaussian: horizontal pass over the padded rows, vertical pass for visible cells only
+    private static float[] blur(float[] grid, int span) {
+        float[] horizontal = new float[span * GRID_SIZE];
+        for (int row = 0; row < span; row++) {
+            for (int col = 0; col < GRID_SIZE; col++) {
+                float sum = 0;
+                int base = row * span + col;
+                for (int k = 0; k < KERNEL.length; k++) {
+                    sum += grid[base + k] * KERNEL[k];
+                }
+                horizontal[row * GRID_SIZE + col] = sum;
+            }
+        }
+
+        float[] result = new float[GRID_SIZE * GRID_SIZE];
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int col = 0; col < GRID_SIZE; col++) {
+                float sum = 0;
+                for (int k = 0; k < KERNEL.length; k++) {
+                    sum += horizontal[(row + k) * GRID_SIZE + col] * KERNEL[k];
+                }
+                result[row * GRID_SIZE + col] = sum;
+            }
+        }
+        return result;
+    }
+
+    private static byte[] colorize(float[] intensity) {
+        float logSaturation = (float) Math.log1p(SATURATION);
+        int[] pixels = new int[GRID_SIZE * GRID_SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            float value = intensity[i];
+            if (value < MIN_INTENSITY) continue;
+            float t = Math.min(1f, (float) Math.log1p(value) / logSaturation);
+            pixels[i] = PALETTE[(int) (t * (PALETTE.length - 1))];
+        }
+
+        Bitmap grid = Bitmap.createBitmap(pixels, GRID_SIZE, GRID_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap tile = Bitmap.createScaledBitmap(grid, TILE_SIZE, TILE_SIZE, true);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        tile.compress(Bitmap.CompressFormat.PNG, 100, stream);
+        grid.recycle();
+        tile.recycle();
+        return stream.toByteArray();
+    }
+
+    // Peak-normalised so a single fix renders at intensity 1 in its own cell
+    private static float[] buildKernel() {
+        float[] kernel = new float[2 * KERNEL_RADIUS + 1];
+        for (int i = -KERNEL_RADIUS; i <= KERNEL_RADIUS; i++) {
+            kernel[i + KERNEL_RADIUS] = (float) Math.exp(-(i * i) / (2 * KERNEL_SIGMA * KERNEL_SIGMA));
+        }
+        return kernel;
+    }
+
+    // Transparent -> blue -> green -> yellow -> red
+    private static int[] buildPalette() {
+        int[][] stops = {
+                {0, 0, 0, 255},
+                {140, 0, 0, 255},
+                {170, 0, 255, 0},
+                {190, 255, 255, 0},
+                {210, 255, 0, 0}
+        };
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++) {
+            float position = i / 255f * (stops.length - 1);
+            int index = Math.min((int) position, stops.length - 2);
+            float fraction = position - index;
+            int[] from = stops[index];
+            int[] to = stops[index + 1];
+            int a = Math.round(from[0] + (to[0] - from[0]) * fraction);
+            int r = Math.round(from[1] + (to[1] - from[1]) * fraction);
+            int g = Math.round(from[2] + (to[2] - from[2]) * fraction);
+            int b = Math.round(from[3] + (to[3] - from[3]) * fraction);
+            palette[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        return palette;
+    }
+
+    // Web Mercator x in [0, 1)
+    private static double worldX(double longitude) {
+        return (longitude + 180.0) / 360.0;
+    }
+
+    // Web Mercator y in [0, 1), 0 at the north edge
+    private static double worldY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85.0511, Math.min(85.0511, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static long tileKey(int zoom, int x, int y) {
+        return ((long) zoom << 48) | ((long) x << 24) | y;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Points of one bucket, stored as float offsets from the bucket origin to halve memory
+     */
+    private static class PointBucket {
+        final int bucketX;
+        final int bucketY;
+        final double originX;
+        final double originY;
+        float[] offsetsX = new float[8];
+        float[] offsetsY = new float[8];
+        int size = 0;
+
+        PointBucket(int bucketX, int bucketY) {
+            this.bucketX = bucketX;
+            this.bucketY = bucketY;
+            double bucketSize = 1.0 / (1 << BUCKET_ZOOM);
+            this.originX = bucketX * bucketSize;
+            this.originY = bucketY * bucketSize;
+        }
+
+        void add(double worldX, double worldY) {
+            if (size == offsetsX.length) {
+                offsetsX = Arrays.copyOf(offsetsX, size * 2);
+                offsetsY = Arrays.copyOf(offsetsY, size * 2);
+            }
+            offsetsX[size] = (float) (worldX - originX);
+            offsetsY[size] = (float) (worldY - originY);
+            size++;
+        }
+    }
+
+    /**
+     * Size-bounded LRU of PNG tiles on disk, plus a small meta file recording
+     * which points the tiles were rendered from
+     */
+    private static class DiskTileCache {
+        private static final String META_FILE = "heatmap.meta";
+        private static final String TILE_SUFFIX = ".png";
+
+        private final File directory;
+        private final long maxBytes;
+        // Access-ordered, so iteration starts at the least recently used tile
+        private final LinkedHashMap<Long, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long totalBytes = 0;
+        private boolean initialized = false;
+
+        DiskTileCache(File directory, long maxBytes) {
+            this.directory = directory;
+            this.maxBytes = maxBytes;
+        }
+
+        byte[] get(long key) {
+            synchronized (this) {
+                ensureInitialized();
+                if (entries.get(key) == null) return null;
+            }
+
+            File file = fileFor(key);
+            try {
+                byte[] data = readFile(file);
+                file.setLastModified(System.currentTimeMillis());
+                return data;
+            } catch (IOException e) {
+                remove(key);
+                return null;
+            }
+        }
+
+        synchronized void put(long key, byte[] data) {
+            ensureInitialized();
+            File file = fileFor(key);
+            File temp = new File(directory, file.getName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(data);
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing heatmap tile", e);
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+
+            Long previous = entries.put(key, (long) data.length);
+            totalBytes += data.length - (previous != null ? previous : 0);
+            trimToSize();
+        }
+
+        synchronized void remove(long key) {
+            ensureInitialized();
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+                fileFor(key).delete();
+            }
+        }
+
+        synchronized void clear() {
+            ensureInitialized();
+            for (Long key : entries.keySet()) {
+                fileFor(key).delete();
+            }
+            entries.clear();
+            totalBytes = 0;
+            new File(directory, META_FILE).delete();
+        }
+
+        /**
+         * @return {pointCount, lastTimestamp} of the points the cached tiles reflect, or null
+         */
+        synchronized long[] readMeta() {
+            ensureInitialized();
+            File file = new File(directory, META_FILE);
+            if (!file.exists()) return null;
+            try {
+                String[] parts = new String(readFile(file), "UTF-8").trim().split(",");
+                return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+            } catch (Exception e) {
+                Log.w(TAG, "Unreadable heatmap meta file, ignoring cached tiles");
+                return null;
+            }
+        }
+
+        synchronized void writeMeta(int pointCount, long lastTimestamp) {
+            ensureInitialized();
+            try (FileOutputStream out = new FileOutputStream(new File(directory, META_FILE))) {
+                out.write((pointCount + "," + lastTimestamp).getBytes("UTF-8"));
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing heatmap meta file", e);
+            }
+        }
+
+        // Must hold the monitor
+        private void ensureInitialized() {
+            if (initialized) return;
+            initialized = true;
+
+            if (!directory.exists() && !directory.mkdirs()) {
+                Log.e(TAG, "Could not create heatmap cache directory");
+                return;
+            }
+
+            File[] files = directory.listFiles();
+            if (files == null) return;
+
+            // Seed the LRU order from modification times
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File a, File b) {
+                    return Long.compare(a.lastModified(), b.lastModified());
+                }
+            });
+            for (File file : files) {
+                Long key = parseKey(file.getName());
+                if (key == null) {
+                    if (!file.getName().equals(META_FILE)) {
+                        file.delete();
+                    }
+                    continue;
+                }
+                entries.put(key, file.length());
+                totalBytes += file.length();
+            }
+            trimToSize();
+        }
+
+        private void trimToSize() {
+            Iterator<Map.Entry<Long, Long>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<Long, Long> eldest = iterator.next();
+                fileFor(eldest.getKey()).delete();
+                totalBytes -= eldest.getValue();
+                iterator.remove();
+            }
+        }
+
+        private File fileFor(long key) {
+            int zoom = (int) (key >>> 48);
+            int x = (int) ((key >>> 24) & 0xffffff);
+            int y = (int) (key & 0xffffff);
+            return new File(directory, zoom + "_" + x + "_" + y + TILE_SUFFIX);
+        }
+
+        private static Long parseKey(String name) {
+            if (!name.endsWith(TILE_SUFFIX)) return null;
+            String[] parts = name.substring(0, name.length() - TILE_SUFFIX.length()).split("_");
+            if (parts.length != 3) return null;
+            try {
+                return tileKey(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static byte[] readFile(File file) throws IOException {
+            try (InputStream in = new FileInputStream(file)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.safewomen.utils;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Streams 1 Hz fixes over one WebSocket while an SOS is active.
+ * Every fix gets a sequence number and stays buffered until the server acks it,
+ * so after a reconnect the stream resumes from the last acknowledged fix.
+ * While the socket is down or its send queue is backed up, fixes accumulate
+ * locally, are sent several per frame once it drains, and the oldest are
+ * thinned if the backlog grows too large. One instance streams one SOS.
+ *
+ * Messages: {"type":"hello","session":..,"alert_key":..,"alert_id":..,"last_acked":n},
+ * {"type":"fixes","fixes":[{"seq":n,"lat":..,"lon":..,"acc":..,"ts":..}]};
+ * the server replies {"type":"ack","seq":n}.
+ *
+ * alert_key is the alert's local id, the same value create_alert.php receives as
+ * idempotency_key, so the server can tie a stream to an alert it hasn't stored yet.
+ * alert_id is the server's id and is left out until the upload has returned it;
+ * once it is known the hello is sent again with it.
+ */
+public class LiveLocationStreamer {
+    private static final String TAG = "LiveLocationStreamer";
+
+    private static final long PING_INTERVAL_SECONDS = 15;
+
+    // Bytes queued in OkHttp beyond which the link counts as congested
+    private static final long CONGESTED_QUEUE_BYTES = 4 * 1024;
+    private static final int MAX_FIXES_PER_FRAME = 50;
+    // About ten minutes at 1 Hz before the backlog is thinned
+    static final int MAX_BUFFERED_FIXES = 600;
+
+    private static final long MIN_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 30 * 1000;
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private final OkHttpClient client;
+    private final String url;
+    private final FixSource fixSource;
+    // The streamer's thread, and its only source of time
+    private final ScheduledExecutorService executor;
+
+    // Stream state, only touched on the executor
+    private final ArrayDeque<Fix> pending = new ArrayDeque<>();   // Not yet sent
+    private final ArrayDeque<Fix> inflight = new ArrayDeque<>();  // Sent, not yet acked
+    private WebSocket socket;
+    private boolean connected = false;
+    private boolean running = false;
+    private long nextSeq = 1;
+    private long lastAckedSeq = 0;
+    private long reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+    private ScheduledFuture<?> scheduledReconnect;
+    private String alertKey;
+    private String serverAlertId;
+    private String sessionId;
+    private volatile FixListener fixListener;
+
+    public LiveLocationStreamer(OkHttpClient client, String url, FixSource fixSource) {
+        this(client, url, fixSource, Executors.newSingleThreadScheduledExecutor());
+    }
+
+    /**
+     * @param executor Single-threaded; shut down by stop()
+     */
+    LiveLocationStreamer(OkHttpClient client, String url, FixSource fixSource, ScheduledExecutorService executor) {
+        // WebSockets idle between fixes, so rely on pings rather than the read timeout
+        this.client = client.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                .build();
+        this.url = url;
+        this.fixSource = fixSource;
+        this.executor = executor;
+    }
+
+    /**
+     * Called on the streamer's thread for every fix, before it is sent. Set before start().
+     */
+    public void setFixListener(FixListener listener) {
+        this.fixListener = listener;
+    }
+
+    /**
+     * Start requesting 1 Hz fixes and streaming them for an alert
+     * @param alertKey The alert's local id
+     * @param serverAlertId The server's id for it, or null if the upload hasn't returned yet
+     */
+    public void start(String alertKey, String serverAlertId) {
+        post(() -> {
+            if (running) return;
+            running = true;
+            this.alertKey = alertKey;
+            this.serverAlertId = serverAlertId;
+            sessionId = UUID.randomUUID().toString();
+
+            fixSource.start((latitude, longitude, accuracy, timestamp) ->
+                    post(() -> onFix(latitude, longitude, accuracy, timestamp)));
+            connect();
+            Log.d(TAG, "Live location started for alert " + alertKey);
+        });
+    }
+
+    /**
+     * The server id of the alert, once its upload has returned
+     */
+    public void setServerAlertId(String serverAlertId) {
+        post(() -> {
+            if (serverAlertId.equals(this.serverAlertId)) return;
+            this.serverAlertId = serverAlertId;
+            if (connected && socket != null) {
+                socket.send(helloFrame());
+            }
+        });
+    }
+
+    /**
+     * Stop streaming; fixes not yet acked are dropped
+     */
+    public void stop() {
+        post(() -> {
+            if (running) {
+                running = false;
+                fixSource.stop();
+                if (socket != null) {
+                    socket.close(NORMAL_CLOSURE, "SOS ended");
+                    socket = null;
+                }
+                Log.d(TAG, "Live location stopped at seq " + (nextSeq - 1) + ", acked " + lastAckedSeq);
+            }
+            if (scheduledReconnect != null) {
+                scheduledReconnect.cancel(false);
+                scheduledReconnect = null;
+            }
+            executor.shutdown();
+        });
+    }
+
+    // Callbacks can still arrive after stop() has shut the executor down
+    private void post(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    private void connect() {
+        scheduledReconnect = null;
+        if (!running || socket != null) return;
+
+        Request request = new Request.Builder().url(url).build();
+        socket = client.newWebSocket(request, new StreamListener());
+    }
+
+    private void onFix(double latitude, double longitude, float accuracy, long timestamp) {
+        if (!running) return;
+
+        FixListener listener = fixListener;
+        if (listener != null) {
+            listener.onFix(latitude, longitude, timestamp);
+        }
+        pending.addLast(new Fix(nextSeq++, latitude, longitude, accuracy, timestamp));
+        if (pending.size() > MAX_BUFFERED_FIXES) {
+            thinOldest();
+        }
+        flush();
+    }
+
+    // Send pending fixes while the socket keeps up
+    private void flush() {
+        if (!connected || socket == null) return;
+
+        while (!pending.isEmpty() && socket.queueSize() < CONGESTED_QUEUE_BYTES) {
+            List<Fix> frame = new ArrayList<>();
+            while (!pending.isEmpty() && frame.size() < MAX_FIXES_PER_FRAME) {
+                frame.add(pending.pollFirst());
+            }
+
+            if (!socket.send(toFrame(frame))) {
+                // Socket is closing; the failure callback will requeue
+                for (int i = frame.size() - 1; i >= 0; i--) {
+                    pending.addFirst(frame.get(i));
+                }
+                return;
+            }
+            inflight.addAll(frame);
+        }
+
+        // An unresponsive server shouldn't grow the unacked buffer forever
+        while (inflight.size() > MAX_BUFFERED_FIXES) {
+            inflight.pollFirst();
+        }
+    }
+
+    // Halve the resolution of the older half of the backlog, keeping recent fixes intact
+    private void thinOldest() {
+        int older = pending.size() / 2;
+        Iterator<Fix> iterator = pending.iterator();
+        for (int i = 0; i < older && iterator.hasNext(); i++) {
+            iterator.next();
+            if (i % 2 == 1) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void onAck(long seq) {
+        if (seq <= lastAckedSeq) return;
+        lastAckedSeq = seq;
+        while (!inflight.isEmpty() && inflight.peekFirst().seq <= seq) {
+            inflight.pollFirst();
+        }
+        // Covers fixes the server already had from before a reconnect
+        while (!pending.isEmpty() && pending.peekFirst().seq <= seq) {
+            pending.pollFirst();
+        }
+        flush();
+    }
+
+    private void onDisconnected(WebSocket webSocket, String reason) {
+        if (webSocket != socket) return;
+        socket = null;
+        connected = false;
+
+        // Unacked fixes go back to the front, in order
+        while (!inflight.isEmpty()) {
+            pending.addFirst(inflight.pollLast());
+        }
+
+        if (running) {
+            Log.w(TAG, "Live location disconnected (" + reason + "), retrying in " + reconnectDelayMs + " ms");
+            scheduledReconnect = executor.schedule(this::connect, reconnectDelayMs, TimeUnit.MILLISECONDS);
+            reconnectDelayMs = Math.min(reconnectDelayMs * 2, MAX_RECONNECT_DELAY_MS);
+        }
+    }
+
+    private String toFrame(List<Fix> fixes) {
+        try {
+            JSONArray array = new JSONArray();
+            for (Fix fix : fixes) {
+                array.put(new JSONObject()
+                        .put("seq", fix.seq)
+                        .put("lat", fix.latitude)
+                        .put("lon", fix.longitude)
+                        .put("acc", fix.accuracy)
+                        .put("ts", fix.timestamp));
+            }
+            return new JSONObject().put("type", "fixes").put("fixes", array).toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String helloFrame() {
+        try {
+            JSONObject hello = new JSONObject()
+                    .put("type", "hello")
+                    .put("session", sessionId)
+                    .put("alert_key", alertKey)
+                    .put("last_acked", lastAckedSeq);
+            if (serverAlertId != null) {
+                hello.put("alert_id", serverAlertId);
+            }
+            return hello.toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // OkHttp calls back on its own threads; hop onto the executor for all state changes
+    private class StreamListener extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            post(() -> {
+                if (webSocket != socket) return;
+                connected = true;
+                reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+                webSocket.send(helloFrame());
+                flush();
+            });
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            post(() -> {
+                if (webSocket != socket) return;
+                try {
+                    JSONObject json = new JSONObject(text);
+                    if ("ack".equals(json.optString("type"))) {
+                        onAck(json.getLong("seq"));
+                    }
+                } catch (JSONException e) {
+                    Log.e(TAG, "Malformed live location message: " + text, e);
+                }
+            });
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            post(() -> onDisconnected(webSocket, "closed " + code));
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            post(() -> onDisconnected(webSocket, t.getMessage()));
+        }
+    }
+
+    /**
+     * Where fixes come from, at about 1 Hz; the fused provider on a device.
+     * The callback may run on any thread.
+     */
+    public interface FixSource {
+        void start(FixCallback callback);
+        void stop();
+    }
+
+    public interface FixCallback {
+        void onFix(double latitude, double longitude, float accuracy, long timestamp);
+    }
+
+    public interface FixListener {
+        void onFix(double latitude, double longitude, long timestamp);
+    }
+
+    private static class Fix {
+        final long seq;
+        final double latitude;
+        final double longitude;
+        final float accuracy;
+        final long timestamp;
+
+        Fix(long seq, double latitude, double longitude, float accuracy, long timestamp) {
+            this.seq = seq;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.safewomen.utils;
+
+import android.app.Application;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.models.NetworkState;
+
+/**
+ * The default network as a stream: online, metered and bandwidth class, updated
+ * from ConnectivityManager callbacks. Changes are debounced, so a Wi-Fi to
+ * cellular handover or a flapping link is published once it settles rather
+ * than as a burst of offline/online values. A link that never settles is
+ * still published MAX_DEBOUNCE_MS after its first change.
+ */
+public class NetworkMonitor extends LiveData<NetworkState> {
+    private static final String TAG = "NetworkMonitor";
+    private static NetworkMonitor instance;
+
+    static final long DEBOUNCE_MS = 1500;
+    static final long MAX_DEBOUNCE_MS = 5000;
+
+    private final ConnectivityManager cm;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable publish = this::publish;
+
+    // Latest state from the callbacks, and the last one published
+    private volatile NetworkState latest;
+    private volatile NetworkState current;
+
+    // When the oldest unpublished change arrived, or -1 with nothing pending; guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private long pendingSince = -1;
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            instance = new NetworkMonitor(application);
+        }
+    }
+
+    public static synchronized NetworkMonitor getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("NetworkMonitor must be initialized first");
+        }
+        return instance;
+    }
+
+    private NetworkMonitor(Context context) {
+        cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        latest = current = readState(cm.getActiveNetwork());
+        postValue(current);
+
+        // Lives as long as the process; repositories observe it forever
+        cm.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+                update(toState(capabilities));
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                update(NetworkState.OFFLINE);
+            }
+        });
+    }
+
+    /**
+     * Whether the default network can reach the internet, as of the last published state
+     */
+    public boolean isOnline() {
+        return current.isOnline();
+    }
+
+    /**
+     * Last published state; never null
+     */
+    public NetworkState getState() {
+        return current;
+    }
+
+    /**
+     * Whether the cellular radio is already up, so a request now costs no extra wake-up
+     */
+    public boolean isRadioActive() {
+        return cm.isDefaultNetworkActive();
+    }
+
+    /**
+     * Called when the radio goes active for any traffic, ours or another app's
+     */
+    public void addRadioActiveListener(ConnectivityManager.OnNetworkActiveListener listener) {
+        cm.addDefaultNetworkActiveListener(listener);
+    }
+
+    // Runs on the ConnectivityManager callback thread
+    private void update(NetworkState state) {
+        latest = state;
+        long now = SystemClock.elapsedRealtime();
+        synchronized (pendingLock) {
+            if (pendingSince < 0) pendingSince = now;
+            handler.removeCallbacks(publish);
+            // Each change restarts the wait, but never past the cap from the first one
+            long delay = Math.min(DEBOUNCE_MS, pendingSince + MAX_DEBOUNCE_MS - now);
+            handler.postDelayed(publish, Math.max(0, delay));
+        }
+    }
+
+    private void publish() {
+        synchronized (pendingLock) {
+            pendingSince = -1;
+        }
+        NetworkState state = latest;
+        if (!state.equals(current)) {
+            Log.d(TAG, "Network now " + state);
+            current = state;
+            setValue(state);
+        }
+    }
+
+    private NetworkState readState(Network network) {
+        NetworkCapabilities capabilities = network != null ? cm.getNetworkCapabilities(network) : null;
+        return capabilities != null ? toState(capabilities) : NetworkState.OFFLINE;
+    }
+
+    private static NetworkState toState(NetworkCapabilities capabilities) {
+        boolean online = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        if (!online) return NetworkState.OFFLINE;
+        return new NetworkState(true,
+                !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED),
+                capabilities.getLinkDownstreamBandwidthKbps(),
+                capabilities.getLinkUpstreamBandwidthKbps());
+    }
+}
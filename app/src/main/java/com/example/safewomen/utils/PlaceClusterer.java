@@ -0,0 +1,534 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.LocationPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid-accelerated DBSCAN over location history, finding places the user
+ * returns to and stays at (home, work, regular stops). Only stationary fixes,
+ * ones still near where the user was a minute earlier, can be core points, so
+ * a route walked every day stays noise instead of chaining places together.
+ * Points are projected to local meters and put on a grid of eps/sqrt(2) cells:
+ * a cell holding minPoints fixes is all core without any distance checks, and
+ * neighbour searches only visit the surrounding 5x5 cells. After a full run,
+ * new fixes are absorbed incrementally by attaching them to nearby core points;
+ * a full recluster is only needed once enough unassigned fixes accumulate.
+ * Points must be supplied oldest first. Not thread-safe.
+ */
+public class PlaceClusterer {
+    // Consecutive fixes in the same cluster further apart than this start a new visit
+    private static final long VISIT_GAP_MS = 15 * 60 * 1000L;
+
+    // A fix this long after one within eps is stationary
+    private static final long STATIONARY_WINDOW_MS = 60 * 1000L;
+
+    // Unassigned fixes absorbed before a full recluster is recommended
+    private static final int RECLUSTER_NOISE_POINTS = 120;
+
+    private static final double MIN_RADIUS_METERS = 50;
+    private static final double MAX_RADIUS_METERS = 500;
+
+    private final double eps2;
+    private final int minPoints;
+    private final double cellSize;
+
+    // Projection reference chosen at the last full run
+    private double refLatitude;
+    private double refLongitude;
+    private double metersPerDegreeLon;
+
+    // Projected points and their cluster labels, -1 for noise
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private boolean[] core = new boolean[0];
+    private boolean[] stationary = new boolean[0];
+    private int[] labels = new int[0];
+    private int size = 0;
+
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final List<ClusterStats> clusters = new ArrayList<>();
+
+    private int lastLabel = -1;
+    private long lastTimestamp = 0;
+    private int unassignedSinceCluster = 0;
+
+    public PlaceClusterer(double epsMeters, int minPoints) {
+        this.eps2 = epsMeters * epsMeters;
+        this.minPoints = minPoints;
+        this.cellSize = epsMeters / Math.sqrt(2);
+    }
+
+    /**
+     * Cluster all points from scratch
+     */
+    public void cluster(List<LocationPoint> points) {
+        cells.clear();
+        clusters.clear();
+        size = 0;
+        lastLabel = -1;
+        lastTimestamp = 0;
+        unassignedSinceCluster = 0;
+
+        int n = points.size();
+        ensureCapacity(n);
+        if (n == 0) return;
+
+        chooseProjection(points);
+        for (int i = 0; i < n; i++) {
+            LocationPoint point = points.get(i);
+            xs[i] = projectX(point.getLongitude());
+            ys[i] = projectY(point.getLatitude());
+            core[i] = false;
+            labels[i] = -1;
+        }
+        size = n;
+        markStationary(points);
+        for (int i = 0; i < n; i++) {
+            Cell cell = cellFor(xs[i], ys[i]);
+            cell.add(i);
+            if (stationary[i]) {
+                cell.stationaryCount++;
+            }
+        }
+
+        findCorePoints();
+        int clusterCount = connectCoreCells();
+        for (int i = 0; i < clusterCount; i++) {
+            clusters.add(new ClusterStats());
+        }
+
+        // Border points join the cluster of their nearest core point
+        for (int i = 0; i < n; i++) {
+            if (!core[i]) {
+                labels[i] = nearestCoreLabel(xs[i], ys[i]);
+            }
+        }
+
+        // Statistics are accumulated in time order so visits and dwell come out right
+        for (int i = 0; i < n; i++) {
+            accumulate(i, points.get(i).getTimestamp());
+        }
+    }
+
+    /**
+     * Attach new points to existing clusters without reclustering
+     * @return true if enough points were left unassigned that a full recluster is due
+     */
+    public boolean absorb(List<LocationPoint> points) {
+        ensureCapacity(size + points.size());
+        for (LocationPoint point : points) {
+            int index = size++;
+            xs[index] = projectX(point.getLongitude());
+            ys[index] = projectY(point.getLatitude());
+            core[index] = false;
+            stationary[index] = false;
+            labels[index] = nearestCoreLabel(xs[index], ys[index]);
+            cellFor(xs[index], ys[index]).add(index);
+
+            if (labels[index] < 0) {
+                unassignedSinceCluster++;
+            }
+            accumulate(index, point.getTimestamp());
+        }
+        return unassignedSinceCluster >= RECLUSTER_NOISE_POINTS;
+    }
+
+    public int getPointCount() {
+        return size;
+    }
+
+    /**
+     * Timestamp of the newest clustered point, 0 if none
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Places found by the last run plus absorbed points, ordered by total dwell time
+     */
+    public List<Place> getPlaces() {
+        List<Place> places = new ArrayList<>(clusters.size());
+        for (ClusterStats stats : clusters) {
+            if (stats.count == 0) continue;
+
+            double meanX = stats.sumX / stats.count;
+            double meanY = stats.sumY / stats.count;
+            double variance = stats.sumX2 / stats.count - meanX * meanX
+                    + stats.sumY2 / stats.count - meanY * meanY;
+            double radius = Math.max(MIN_RADIUS_METERS,
+                    Math.min(MAX_RADIUS_METERS, 2 * Math.sqrt(Math.max(0, variance))));
+
+            places.add(new Place(
+                    refLatitude + meanY / GeoUtils.METERS_PER_DEGREE_LAT,
+                    refLongitude + meanX / metersPerDegreeLon,
+                    radius,
+                    stats.count,
+                    stats.visits,
+                    stats.dwellMs,
+                    stats.firstSeen,
+                    stats.lastSeen));
+        }
+
+        places.sort((a, b) -> Long.compare(b.getTotalDwellMs(), a.getTotalDwellMs()));
+        return places;
+    }
+
+    private void chooseProjection(List<LocationPoint> points) {
+        double latitude = 0;
+        double longitude = 0;
+        for (LocationPoint point : points) {
+            latitude += point.getLatitude();
+            longitude += point.getLongitude();
+        }
+        refLatitude = latitude / points.size();
+        refLongitude = longitude / points.size();
+        metersPerDegreeLon = GeoUtils.METERS_PER_DEGREE_LAT
+                * Math.max(0.01, Math.cos(Math.toRadians(refLatitude)));
+    }
+
+    private double projectX(double longitude) {
+        return (longitude - refLongitude) * metersPerDegreeLon;
+    }
+
+    private double projectY(double latitude) {
+        return (latitude - refLatitude) * GeoUtils.METERS_PER_DEGREE_LAT;
+    }
+
+    // Points must be in time order
+    private void markStationary(List<LocationPoint> points) {
+        int earlier = -1;
+        for (int i = 0; i < size; i++) {
+            long cutoff = points.get(i).getTimestamp() - STATIONARY_WINDOW_MS;
+            while (earlier + 1 < i && points.get(earlier + 1).getTimestamp() <= cutoff) {
+                earlier++;
+            }
+            stationary[i] = earlier >= 0 && points.get(earlier).getTimestamp() <= cutoff
+                    && distance2(i, earlier) <= eps2;
+        }
+    }
+
+    private void findCorePoints() {
+        for (Cell cell : cells.values()) {
+            if (cell.stationaryCount >= minPoints) {
+                // The cell diagonal is eps, so every member neighbours all others
+                for (int i = 0; i < cell.size; i++) {
+                    int point = cell.members[i];
+                    if (stationary[point]) {
+                        markCore(cell, point);
+                    }
+                }
+                continue;
+            }
+
+            for (int i = 0; i < cell.size; i++) {
+                int point = cell.members[i];
+                if (stationary[point] && countNeighbors(point, minPoints) >= minPoints) {
+                    markCore(cell, point);
+                }
+            }
+        }
+    }
+
+    private void markCore(Cell cell, int point) {
+        core[point] = true;
+        if (!cell.hasCore) {
+            cell.hasCore = true;
+            cell.firstCore = point;
+        }
+    }
+
+    // Counts stationary points within eps, stopping early at the limit
+    private int countNeighbors(int point, int limit) {
+        int cx = cellIndex(xs[point]);
+        int cy = cellIndex(ys[point]);
+        int count = 0;
+        for (int dx = -2; dx <= 2; dx++) {
+            for (int dy = -2; dy <= 2; dy++) {
+                Cell other = cells.get(cellKey(cx + dx, cy + dy));
+                if (other == null) continue;
+                for (int j = 0; j < other.size; j++) {
+                    int q = other.members[j];
+                    if (stationary[q] && distance2(point, q) <= eps2 && ++count >= limit) {
+                        return count;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // Union-find over cells holding core points; returns the number of clusters
+    private int connectCoreCells() {
+        List<Cell> coreCells = new ArrayList<>();
+        for (Cell cell : cells.values()) {
+            if (cell.hasCore) {
+                cell.index = coreCells.size();
+                coreCells.add(cell);
+            }
+        }
+
+        int[] parent = new int[coreCells.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        for (Cell cell : coreCells) {
+            for (int dx = -2; dx <= 2; dx++) {
+                for (int dy = -2; dy <= 2; dy++) {
+                    Cell other = cells.get(cellKey(cell.cx + dx, cell.cy + dy));
+                    // Each pair is checked once, from the cell with the lower index
+                    if (other == null || !other.hasCore || other.index <= cell.index) continue;
+
+                    int rootA = find(parent, cell.index);
+                    int rootB = find(parent, other.index);
+                    if (rootA != rootB && coreConnected(cell, other)) {
+                        parent[rootB] = rootA;
+                    }
+                }
+            }
+        }
+
+        // Compact roots into consecutive cluster labels
+        int[] labelOfRoot = new int[parent.length];
+        Arrays.fill(labelOfRoot, -1);
+        int clusterCount = 0;
+        for (Cell cell : coreCells) {
+            int root = find(parent, cell.index);
+            if (labelOfRoot[root] < 0) {
+                labelOfRoot[root] = clusterCount++;
+            }
+            int label = labelOfRoot[root];
+            for (int i = 0; i < cell.size; i++) {
+                int point = cell.members[i];
+                if (core[point]) {
+                    labels[point] = label;
+                }
+            }
+        }
+        return clusterCount;
+    }
+
+    // Whether any core point of one cell is within eps of a core point of the other
+    private boolean coreConnected(Cell a, Cell b) {
+        for (int i = 0; i < a.size; i++) {
+            int p = a.members[i];
+            // Skip points that cannot reach the other cell at all
+            if (!core[p] || boxDistance2(xs[p], ys[p], b) > eps2) continue;
+            for (int j = 0; j < b.size; j++) {
+                int q = b.members[j];
+                if (core[q] && distance2(p, q) <= eps2) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int nearestCoreLabel(double x, double y) {
+        int cx = cellIndex(x);
+        int cy = cellIndex(y);
+
+        // A point is within eps of every member of its own cell, so any core point there
+        // will do; this keeps fixes at a busy place from scanning thousands of neighbours
+        Cell own = cells.get(cellKey(cx, cy));
+        if (own != null && own.hasCore) {
+            return labels[own.firstCore];
+        }
+
+        double best = eps2;
+        int label = -1;
+        for (int dx = -2; dx <= 2; dx++) {
+            for (int dy = -2; dy <= 2; dy++) {
+                Cell other = cells.get(cellKey(cx + dx, cy + dy));
+                if (other == null || !other.hasCore) continue;
+                for (int j = 0; j < other.size; j++) {
+                    int q = other.members[j];
+                    if (!core[q]) continue;
+                    double ddx = xs[q] - x;
+                    double ddy = ys[q] - y;
+                    double d2 = ddx * ddx + ddy * ddy;
+                    if (d2 <= best) {
+                        best = d2;
+                        label = labels[q];
+                    }
+                }
+            }
+        }
+        return label;
+    }
+
+    private void accumulate(int index, long timestamp) {
+        int label = labels[index];
+        if (label >= 0) {
+            ClusterStats stats = clusters.get(label);
+            stats.count++;
+            stats.sumX += xs[index];
+            stats.sumY += ys[index];
+            stats.sumX2 += xs[index] * xs[index];
+            stats.sumY2 += ys[index] * ys[index];
+            if (stats.firstSeen == 0) {
+                stats.firstSeen = timestamp;
+            }
+            stats.lastSeen = timestamp;
+
+            if (lastLabel == label && timestamp - lastTimestamp <= VISIT_GAP_MS) {
+                stats.dwellMs += timestamp - lastTimestamp;
+            } else {
+                stats.visits++;
+            }
+        }
+        lastLabel = label;
+        lastTimestamp = timestamp;
+    }
+
+    private Cell cellFor(double x, double y) {
+        int cx = cellIndex(x);
+        int cy = cellIndex(y);
+        long key = cellKey(cx, cy);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell(cx, cy);
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    private double distance2(int a, int b) {
+        double dx = xs[a] - xs[b];
+        double dy = ys[a] - ys[b];
+        return dx * dx + dy * dy;
+    }
+
+    private double boxDistance2(double x, double y, Cell cell) {
+        double minX = cell.cx * cellSize;
+        double minY = cell.cy * cellSize;
+        double dx = Math.max(0, Math.max(minX - x, x - (minX + cellSize)));
+        double dy = Math.max(0, Math.max(minY - y, y - (minY + cellSize)));
+        return dx * dx + dy * dy;
+    }
+
+    private int cellIndex(double value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (xs.length >= capacity) return;
+        int newCapacity = Math.max(capacity, xs.length * 2);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        core = Arrays.copyOf(core, newCapacity);
+        stationary = Arrays.copyOf(stationary, newCapacity);
+        labels = Arrays.copyOf(labels, newCapacity);
+    }
+
+    private static class Cell {
+        final int cx;
+        final int cy;
+        int[] members = new int[4];
+        int size = 0;
+        int stationaryCount = 0;
+        boolean hasCore = false;
+        int firstCore = -1;
+        int index = -1;
+
+        Cell(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+
+        void add(int point) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = point;
+        }
+    }
+
+    private static class ClusterStats {
+        int count;
+        double sumX;
+        double sumY;
+        double sumX2;
+        double sumY2;
+        int visits;
+        long dwellMs;
+        long firstSeen;
+        long lastSeen;
+    }
+
+    /**
+     * A frequently visited place with dwell statistics
+     */
+    public static class Place {
+        private final double latitude;
+        private final double longitude;
+        private final double radiusMeters;
+        private final int pointCount;
+        private final int visitCount;
+        private final long totalDwellMs;
+        private final long firstSeen;
+        private final long lastSeen;
+
+        public Place(double latitude, double longitude, double radiusMeters, int pointCount,
+                     int visitCount, long totalDwellMs, long firstSeen, long lastSeen) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+            this.pointCount = pointCount;
+            this.visitCount = visitCount;
+            this.totalDwellMs = totalDwellMs;
+            this.firstSeen = firstSeen;
+            this.lastSeen = lastSeen;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public double getRadiusMeters() {
+            return radiusMeters;
+        }
+
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        public int getVisitCount() {
+            return visitCount;
+        }
+
+        public long getTotalDwellMs() {
+            return totalDwellMs;
+        }
+
+        public long getFirstSeen() {
+            return firstSeen;
+        }
+
+        public long getLastSeen() {
+            return lastSeen;
+        }
+    }
+}
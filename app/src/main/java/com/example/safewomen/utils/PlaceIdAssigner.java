@@ -0,0 +1,84 @@
+package com.example.safewomen.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps frequent place ids stable across reclustering. A cluster takes over the
+ * id of the nearest place from the previous run it still overlaps, so a centroid
+ * drifting by a few meters doesn't turn into a new place and a zone exit/enter.
+ * Not thread-safe.
+ */
+public class PlaceIdAssigner {
+    private static final String ID_PREFIX = "generated_";
+
+    private final double matchMeters;
+    private List<Known> known = new ArrayList<>();
+
+    private static class Known {
+        final String id;
+        final double latitude;
+        final double longitude;
+        final double radiusMeters;
+        boolean claimed;
+
+        Known(String id, double latitude, double longitude, double radiusMeters) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+        }
+    }
+
+    /**
+     * @param matchMeters Centroids at most this far apart, or within the old place's radius, are the same place
+     */
+    public PlaceIdAssigner(double matchMeters) {
+        this.matchMeters = matchMeters;
+    }
+
+    /**
+     * Add a place from an earlier run, e.g. loaded from the database at startup
+     */
+    public void remember(String id, double latitude, double longitude, double radiusMeters) {
+        known.add(new Known(id, latitude, longitude, radiusMeters));
+    }
+
+    /**
+     * Ids for this run's places, in the same order. Places should come most important
+     * first, so when two clusters compete for an old id the bigger one keeps it.
+     * Afterwards only these places are remembered.
+     */
+    public List<String> assign(List<PlaceClusterer.Place> places) {
+        List<String> ids = new ArrayList<>(places.size());
+        List<Known> next = new ArrayList<>(places.size());
+
+        for (PlaceClusterer.Place place : places) {
+            Known match = null;
+            double best = Double.MAX_VALUE;
+            for (Known candidate : known) {
+                if (candidate.claimed) continue;
+                double distance = GeoUtils.approxDistanceMeters(place.getLatitude(), place.getLongitude(),
+                        candidate.latitude, candidate.longitude);
+                if (distance <= Math.max(matchMeters, candidate.radiusMeters) && distance < best) {
+                    best = distance;
+                    match = candidate;
+                }
+            }
+
+            String id;
+            if (match != null) {
+                match.claimed = true;
+                id = match.id;
+            } else {
+                id = ID_PREFIX + UUID.randomUUID().toString();
+            }
+            ids.add(id);
+            next.add(new Known(id, place.getLatitude(), place.getLongitude(), place.getRadiusMeters()));
+        }
+
+        known = next;
+        return ids;
+    }
+}
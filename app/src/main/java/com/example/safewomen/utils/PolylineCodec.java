@@ -0,0 +1,74 @@
+package com.example.safewomen.utils;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoder/decoder for the encoded polyline format (1e-5 degree precision),
+ * the same format the server and Google APIs use for routes
+ */
+public class PolylineCodec {
+    private static final double PRECISION = 1e5;
+
+    private PolylineCodec() {}
+
+    public static String encode(List<LatLng> points) {
+        StringBuilder result = new StringBuilder(points.size() * 8);
+        long previousLat = 0;
+        long previousLng = 0;
+        for (LatLng point : points) {
+            long lat = Math.round(point.latitude * PRECISION);
+            long lng = Math.round(point.longitude * PRECISION);
+            encodeValue(lat - previousLat, result);
+            encodeValue(lng - previousLng, result);
+            previousLat = lat;
+            previousLng = lng;
+        }
+        return result.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the string is truncated
+     */
+    public static List<LatLng> decode(String encoded) {
+        List<LatLng> points = new ArrayList<>(encoded.length() / 4);
+        int index = 0;
+        long lat = 0;
+        long lng = 0;
+        int[] cursor = new int[1];
+        while (index < encoded.length()) {
+            cursor[0] = index;
+            lat += decodeValue(encoded, cursor);
+            lng += decodeValue(encoded, cursor);
+            index = cursor[0];
+            points.add(new LatLng(lat / PRECISION, lng / PRECISION));
+        }
+        return points;
+    }
+
+    private static void encodeValue(long value, StringBuilder out) {
+        long shifted = value < 0 ? ~(value << 1) : value << 1;
+        while (shifted >= 0x20) {
+            out.append((char) ((0x20 | (shifted & 0x1f)) + 63));
+            shifted >>= 5;
+        }
+        out.append((char) (shifted + 63));
+    }
+
+    private static long decodeValue(String encoded, int[] cursor) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (cursor[0] >= encoded.length()) {
+                throw new IllegalArgumentException("Truncated polyline");
+            }
+            b = encoded.charAt(cursor[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
@@ -97,6 +97,14 @@ public class PreferenceManager {
         return sharedPreferences.getString(key, defaultValue);
     }
 
+    public void saveLong(String key, long value) {
+        sharedPreferences.edit().putLong(key, value).apply();
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return sharedPreferences.getLong(key, defaultValue);
+    }
+
     public String getAuthToken() {
         return getString(KEY_AUTH_TOKEN, null);
     }
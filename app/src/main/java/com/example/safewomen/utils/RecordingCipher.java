@@ -0,0 +1,305 @@
+package com.example.safewomen.utils;
+
+import android.content.Context;
+
+import androidx.security.crypto.MasterKey;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Chunked AES-256-GCM for recordings at rest, streamed through FileChannels
+ * with two fixed buffers regardless of file size.
+ *
+ * Each file gets a random content key, stored in the header wrapped by the
+ * Android Keystore master key from security-crypto; bulk encryption runs in
+ * software so it isn't limited by Keystore round trips. Chunks are sealed
+ * independently with nonce = prefix | chunk index | last-chunk flag, so
+ * reordering, truncation and appending are all detected, and any byte range
+ * can be decrypted without reading the chunks before it.
+ *
+ * Layout: "SWR1" | wrapped key length (2) | wrapped key | nonce prefix (7) | chunks,
+ * each chunk CHUNK_SIZE bytes of plaintext (the last may be shorter) plus a 16 byte tag.
+ */
+public class RecordingCipher {
+    public static final String FORMAT = "swr1-aes256gcm-64k";
+    public static final String EXTENSION = ".enc";
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final int TAG_BYTES = 16;
+    private static final int PREFIX_BYTES = 7;
+    private static final byte[] MAGIC = {'S', 'W', 'R', '1'};
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final Context context;
+    private final SecureRandom random = new SecureRandom();
+    private Key masterKey;
+
+    public RecordingCipher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    // For tests on the JVM, which has no Android Keystore
+    RecordingCipher(Key masterKey) {
+        this.context = null;
+        this.masterKey = masterKey;
+    }
+
+    public static boolean isEncrypted(String path) {
+        return path.endsWith(EXTENSION);
+    }
+
+    /**
+     * Path of a recording with the encryption suffix removed
+     */
+    public static String plainName(String path) {
+        return isEncrypted(path) ? path.substring(0, path.length() - EXTENSION.length()) : path;
+    }
+
+    /**
+     * Encrypt a file into target, streaming; the source is left in place
+     */
+    public void encrypt(File source, File target) throws IOException, GeneralSecurityException {
+        byte[] contentKey = new byte[32];
+        random.nextBytes(contentKey);
+        byte[] prefix = new byte[PREFIX_BYTES];
+        random.nextBytes(prefix);
+        byte[] wrappedKey = wrap(contentKey);
+
+        try (FileInputStream input = new FileInputStream(source);
+             FileOutputStream output = new FileOutputStream(target);
+             FileChannel in = input.getChannel();
+             FileChannel out = output.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 2 + wrappedKey.length + PREFIX_BYTES);
+            header.put(MAGIC).putShort((short) wrappedKey.length).put(wrappedKey).put(prefix);
+            header.flip();
+            writeFully(out, header);
+
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            SecretKeySpec key = new SecretKeySpec(contentKey, "AES");
+            ByteBuffer plain = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            ByteBuffer sealed = ByteBuffer.allocateDirect(CHUNK_SIZE + TAG_BYTES);
+
+            long size = in.size();
+            long chunks = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            for (long index = 0; index < chunks; index++) {
+                plain.clear();
+                while (plain.hasRemaining() && in.read(plain) > 0) {
+                    // Fill the whole chunk
+                }
+                plain.flip();
+
+                cipher.init(Cipher.ENCRYPT_MODE, key, nonce(prefix, index, index == chunks - 1));
+                sealed.clear();
+                cipher.doFinal(plain, sealed);
+                sealed.flip();
+                writeFully(out, sealed);
+            }
+            out.force(false);
+        } finally {
+            Arrays.fill(contentKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Decrypt a whole file into target, streaming
+     */
+    public void decrypt(File source, File target) throws IOException, GeneralSecurityException {
+        try (Reader reader = open(source);
+             FileOutputStream output = new FileOutputStream(target);
+             FileChannel out = output.getChannel()) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            long position = 0;
+            int read;
+            while ((read = reader.read(position, buffer, 0, buffer.length)) > 0) {
+                writeFully(out, ByteBuffer.wrap(buffer, 0, read));
+                position += read;
+            }
+        }
+    }
+
+    /**
+     * Random-access reader over an encrypted file, for playback
+     */
+    public Reader open(File file) throws IOException, GeneralSecurityException {
+        return new Reader(file);
+    }
+
+    /**
+     * The unwrapped content key of a file, for handing to the evidence server over TLS
+     */
+    public byte[] readContentKey(File file) throws IOException, GeneralSecurityException {
+        try (Reader reader = open(file)) {
+            return reader.key.getEncoded();
+        }
+    }
+
+    /**
+     * Decrypts byte ranges of one file; keeps the last chunk it decrypted
+     */
+    public class Reader implements java.io.Closeable {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final SecretKeySpec key;
+        private final byte[] prefix = new byte[PREFIX_BYTES];
+        private final long headerSize;
+        private final long chunkCount;
+        private final long plainSize;
+        private final Cipher cipher;
+        private final ByteBuffer sealed = ByteBuffer.allocateDirect(CHUNK_SIZE + TAG_BYTES);
+        private final ByteBuffer plain = ByteBuffer.allocate(CHUNK_SIZE);
+        private long cachedChunk = -1;
+
+        Reader(File source) throws IOException, GeneralSecurityException {
+            file = new RandomAccessFile(source, "r");
+            channel = file.getChannel();
+            try {
+                ByteBuffer fixed = ByteBuffer.allocate(MAGIC.length + 2);
+                readFully(channel, fixed, 0);
+                byte[] magic = new byte[MAGIC.length];
+                fixed.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("Not an encrypted recording: " + source);
+                }
+                int wrappedLength = fixed.getShort() & 0xffff;
+
+                ByteBuffer rest = ByteBuffer.allocate(wrappedLength + PREFIX_BYTES);
+                readFully(channel, rest, fixed.capacity());
+                byte[] wrappedKey = new byte[wrappedLength];
+                rest.get(wrappedKey).get(prefix);
+
+                key = new SecretKeySpec(unwrap(wrappedKey), "AES");
+                headerSize = fixed.capacity() + rest.capacity();
+                long body = channel.size() - headerSize;
+                chunkCount = Math.max(1, (body + CHUNK_SIZE + TAG_BYTES - 1) / (CHUNK_SIZE + TAG_BYTES));
+                plainSize = body - chunkCount * TAG_BYTES;
+                cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        public long getSize() {
+            return plainSize;
+        }
+
+        /**
+         * Read plaintext at a position
+         * @return Bytes read, or -1 at the end
+         */
+        public int read(long position, byte[] buffer, int offset, int length)
+                throws IOException, GeneralSecurityException {
+            if (position >= plainSize) return -1;
+
+            int total = 0;
+            while (total < length && position < plainSize) {
+                long chunk = position / CHUNK_SIZE;
+                loadChunk(chunk);
+                int within = (int) (position - chunk * CHUNK_SIZE);
+                int count = Math.min(length - total, plain.limit() - within);
+                plain.position(within);
+                plain.get(buffer, offset + total, count);
+                total += count;
+                position += count;
+            }
+            return total;
+        }
+
+        private void loadChunk(long chunk) throws IOException, GeneralSecurityException {
+            if (chunk == cachedChunk) return;
+
+            long start = headerSize + chunk * (CHUNK_SIZE + TAG_BYTES);
+            long end = Math.min(channel.size(), start + CHUNK_SIZE + TAG_BYTES);
+            sealed.clear();
+            sealed.limit((int) (end - start));
+            readFully(channel, sealed, start);
+
+            cipher.init(Cipher.DECRYPT_MODE, key, nonce(prefix, chunk, chunk == chunkCount - 1));
+            plain.clear();
+            cachedChunk = -1;
+            // Throws AEADBadTagException if the chunk was altered, moved or truncated
+            cipher.doFinal(sealed, plain);
+            plain.flip();
+            cachedChunk = chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    private static GCMParameterSpec nonce(byte[] prefix, long chunk, boolean last) {
+        byte[] nonce = new byte[12];
+        System.arraycopy(prefix, 0, nonce, 0, PREFIX_BYTES);
+        nonce[7] = (byte) (chunk >>> 24);
+        nonce[8] = (byte) (chunk >>> 16);
+        nonce[9] = (byte) (chunk >>> 8);
+        nonce[10] = (byte) chunk;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(TAG_BYTES * 8, nonce);
+    }
+
+    // Keystore key, so content keys are useless off this device
+    private synchronized Key getMasterKey() throws IOException, GeneralSecurityException {
+        if (masterKey == null) {
+            MasterKey key = new MasterKey.Builder(context)
+                    .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                    .build();
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+            keyStore.load(null);
+            masterKey = keyStore.getKey(key.getKeyAlias(), null);
+        }
+        return masterKey;
+    }
+
+    // IV (12) | sealed content key
+    private byte[] wrap(byte[] contentKey) throws IOException, GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, getMasterKey());
+        byte[] iv = cipher.getIV();
+        byte[] sealed = cipher.doFinal(contentKey);
+        byte[] wrapped = new byte[iv.length + sealed.length];
+        System.arraycopy(iv, 0, wrapped, 0, iv.length);
+        System.arraycopy(sealed, 0, wrapped, iv.length, sealed.length);
+        return wrapped;
+    }
+
+    private byte[] unwrap(byte[] wrapped) throws IOException, GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, getMasterKey(),
+                new GCMParameterSpec(TAG_BYTES * 8, wrapped, 0, 12));
+        return cipher.doFinal(wrapped, 12, wrapped.length - 12);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Truncated encrypted recording");
+        }
+        buffer.flip();
+    }
+}
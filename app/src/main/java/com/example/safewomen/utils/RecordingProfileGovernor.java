@@ -0,0 +1,165 @@
+package com.example.safewomen.utils;
+
+import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.StatFs;
+import android.util.Log;
+
+import com.example.safewomen.models.RecordingProfile;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Picks the encoder profile for the next recording segment from storage
+ * headroom, battery, thermal state and upload bandwidth. The choice is
+ * re-evaluated at every segment boundary, so a long SOS steps down before it
+ * fills the disk or drains the phone, and steps back up when conditions allow.
+ */
+public class RecordingProfileGovernor {
+    private static final String TAG = "RecordingProfileGov";
+
+    // Space kept free for the rest of the phone and the next emergency recording
+    public static final long RESERVED_BYTES = 100L * 1024 * 1024;
+
+    // Recording time a profile must leave on the disk to be chosen
+    private static final long MIN_PROJECTED_MS = 60 * 60 * 1000;
+    // Extra headroom required before stepping back up, so choices don't flap
+    private static final double UPGRADE_MARGIN = 1.25;
+
+    private static final int LOW_BATTERY_PERCENT = 30;
+    private static final int CRITICAL_BATTERY_PERCENT = 15;
+
+    /**
+     * Source of the current upload throughput, 0 when unknown
+     */
+    public interface BandwidthEstimate {
+        double getUploadBytesPerSecond();
+    }
+
+    /**
+     * Inputs to one decision
+     */
+    public static class DeviceState {
+        final long freeBytes;
+        final int batteryPercent;
+        final boolean charging;
+        final int thermalStatus;
+        final double uploadBytesPerSecond;
+
+        public DeviceState(long freeBytes, int batteryPercent, boolean charging,
+                           int thermalStatus, double uploadBytesPerSecond) {
+            this.freeBytes = freeBytes;
+            this.batteryPercent = batteryPercent;
+            this.charging = charging;
+            this.thermalStatus = thermalStatus;
+            this.uploadBytesPerSecond = uploadBytesPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "free " + (freeBytes / (1024 * 1024)) + " MB, battery " + batteryPercent + "%"
+                    + (charging ? " charging" : "") + ", thermal " + thermalStatus
+                    + ", upload " + Math.round(uploadBytesPerSecond / 1024) + " KB/s";
+        }
+    }
+
+    private final Context context;
+    private final File recordingsDir;
+    private final BandwidthEstimate bandwidth;
+
+    public RecordingProfileGovernor(Context context, File recordingsDir, BandwidthEstimate bandwidth) {
+        this.context = context.getApplicationContext();
+        this.recordingsDir = recordingsDir;
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Profile for the next segment
+     * @param current Profile of the running segment, or null at the start
+     */
+    public RecordingProfile choose(List<RecordingProfile> ladder, RecordingProfile current) {
+        DeviceState state = readState();
+        RecordingProfile profile = choose(ladder, current, state);
+        if (profile != current) {
+            Log.d(TAG, "Profile " + current + " -> " + profile + " (" + state + "), ~"
+                    + projectRemainingMillis(profile, state.freeBytes) / 60000 + " min of space left");
+        }
+        return profile;
+    }
+
+    /**
+     * The decision itself, separated from reading the device
+     */
+    public static RecordingProfile choose(List<RecordingProfile> ladder, RecordingProfile current,
+                                          DeviceState state) {
+        int last = ladder.size() - 1;
+        int currentIndex = current != null ? ladder.indexOf(current) : -1;
+
+        // Hard caps: the cheapest profile allowed for each condition
+        int floor = 0;
+        if (!state.charging && state.batteryPercent <= CRITICAL_BATTERY_PERCENT) {
+            floor = last;
+        } else if (!state.charging && state.batteryPercent <= LOW_BATTERY_PERCENT) {
+            floor = Math.max(floor, last - 1);
+        }
+        if (state.thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            floor = last;
+        } else if (state.thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+            floor = Math.max(floor, 1);
+        }
+
+        // Keep the upload able to keep up, but never drop below the second-cheapest for it alone
+        if (state.uploadBytesPerSecond > 0) {
+            int index = floor;
+            while (index < last - 1 && ladder.get(index).getBytesPerSecond() > state.uploadBytesPerSecond) {
+                index++;
+            }
+            floor = Math.max(floor, index);
+        }
+
+        // The best remaining profile that leaves enough recording time on the disk
+        for (int i = floor; i <= last; i++) {
+            long required = MIN_PROJECTED_MS;
+            if (currentIndex >= 0 && i < currentIndex) {
+                required = (long) (MIN_PROJECTED_MS * UPGRADE_MARGIN);
+            }
+            if (projectRemainingMillis(ladder.get(i), state.freeBytes) >= required) {
+                return ladder.get(i);
+            }
+        }
+        return ladder.get(last);
+    }
+
+    /**
+     * Recording time the free space allows at a profile, after the reserve
+     */
+    public static long projectRemainingMillis(RecordingProfile profile, long freeBytes) {
+        long usable = Math.max(0, freeBytes - RESERVED_BYTES);
+        return usable * 1000 / Math.max(1, profile.getBytesPerSecond());
+    }
+
+    public DeviceState readState() {
+        long freeBytes = new StatFs(recordingsDir.getAbsolutePath()).getAvailableBytes();
+
+        BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        int battery = 100;
+        boolean charging = true;
+        if (batteryManager != null) {
+            battery = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            charging = batteryManager.isCharging();
+        }
+
+        int thermal = PowerManager.THERMAL_STATUS_NONE;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            if (powerManager != null) {
+                thermal = powerManager.getCurrentThermalStatus();
+            }
+        }
+
+        return new DeviceState(freeBytes, battery, charging, thermal, bandwidth.getUploadBytesPerSecond());
+    }
+}
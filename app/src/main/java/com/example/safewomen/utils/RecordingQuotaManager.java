@@ -0,0 +1,138 @@
+package com.example.safewomen.utils;
+
+import android.os.StatFs;
+import android.util.Log;
+
+import com.example.safewomen.data.RecordingDao;
+import com.example.safewomen.models.RecordingProfile;
+import com.example.safewomen.models.entities.RecordingEntity;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps recordings within a byte budget and keeps enough disk free for the
+ * next emergency recording. Eviction is least recently used first and only
+ * ever touches recordings that are uploaded and not linked to an SOS.
+ */
+public class RecordingQuotaManager {
+    private static final String TAG = "RecordingQuotaManager";
+
+    public static final String KEY_QUOTA_BYTES = "recording_quota_bytes";
+    public static final long DEFAULT_QUOTA_BYTES = 2L * 1024 * 1024 * 1024;
+
+    // Ten minutes of medium video on top of the governor's reserve
+    public static final long EMERGENCY_HEADROOM_BYTES =
+            RecordingProfile.VIDEO_LADDER.get(1).getBytesPerSecond() * 10 * 60;
+
+    private static final int EVICTION_BATCH = 20;
+
+    /**
+     * Storage used by recordings at one point in time
+     */
+    public static class Usage {
+        private final long totalBytes;
+        private final int recordingCount;
+        private final long evictableBytes;
+        private final long quotaBytes;
+        private final long freeBytes;
+
+        Usage(long totalBytes, int recordingCount, long evictableBytes, long quotaBytes, long freeBytes) {
+            this.totalBytes = totalBytes;
+            this.recordingCount = recordingCount;
+            this.evictableBytes = evictableBytes;
+            this.quotaBytes = quotaBytes;
+            this.freeBytes = freeBytes;
+        }
+
+        public long getTotalBytes() { return totalBytes; }
+        public int getRecordingCount() { return recordingCount; }
+        public long getEvictableBytes() { return evictableBytes; }
+        // Linked to an SOS or not yet uploaded; never evicted
+        public long getProtectedBytes() { return totalBytes - evictableBytes; }
+        public long getQuotaBytes() { return quotaBytes; }
+        public long getFreeBytes() { return freeBytes; }
+    }
+
+    private final RecordingDao recordingDao;
+    private final File recordingsDir;
+    private final PreferenceManager preferenceManager;
+
+    public RecordingQuotaManager(RecordingDao recordingDao, File recordingsDir, PreferenceManager preferenceManager) {
+        this.recordingDao = recordingDao;
+        this.recordingsDir = recordingsDir;
+        this.preferenceManager = preferenceManager;
+    }
+
+    public long getQuotaBytes() {
+        return preferenceManager.getLong(KEY_QUOTA_BYTES, DEFAULT_QUOTA_BYTES);
+    }
+
+    public void setQuotaBytes(long quotaBytes) {
+        preferenceManager.saveLong(KEY_QUOTA_BYTES, quotaBytes);
+    }
+
+    /**
+     * Whether the disk has room for a new emergency recording without evicting anything
+     */
+    public boolean hasEmergencyHeadroom() {
+        return getFreeBytes() >= RecordingProfileGovernor.RESERVED_BYTES + EMERGENCY_HEADROOM_BYTES;
+    }
+
+    public Usage getUsage() {
+        return new Usage(recordingDao.getTotalBytes(), recordingDao.getCount(),
+                recordingDao.getEvictableBytes(), getQuotaBytes(), getFreeBytes());
+    }
+
+    /**
+     * Evict until recordings fit the budget and the emergency headroom is free. Blocking.
+     * @return Usage after eviction
+     */
+    public synchronized Usage enforce() {
+        long overBudget = recordingDao.getTotalBytes() - getQuotaBytes();
+        long shortOfHeadroom = RecordingProfileGovernor.RESERVED_BYTES + EMERGENCY_HEADROOM_BYTES - getFreeBytes();
+        long toFree = Math.max(overBudget, shortOfHeadroom);
+        if (toFree <= 0) {
+            return getUsage();
+        }
+
+        long start = System.currentTimeMillis();
+        long freed = 0;
+        int evicted = 0;
+        Set<String> undeletable = new HashSet<>();
+        while (freed < toFree) {
+            List<RecordingEntity> candidates = recordingDao.getEvictionCandidates(EVICTION_BATCH + undeletable.size());
+            boolean progress = false;
+            for (RecordingEntity recording : candidates) {
+                if (freed >= toFree) break;
+                if (undeletable.contains(recording.getFilePath())) continue;
+
+                File file = new File(recording.getFilePath());
+                if (file.exists() && !file.delete()) {
+                    undeletable.add(recording.getFilePath());
+                    continue;
+                }
+                recordingDao.delete(recording.getFilePath());
+                freed += recording.getSizeBytes();
+                evicted++;
+                progress = true;
+            }
+            if (!progress) break;
+        }
+
+        Usage usage = getUsage();
+        Log.d(TAG, "Evicted " + evicted + " recordings (" + freed / (1024 * 1024) + " MB) in "
+                + (System.currentTimeMillis() - start) + " ms");
+        if (freed < toFree) {
+            Log.w(TAG, "Still " + (toFree - freed) / (1024 * 1024) + " MB short; "
+                    + usage.getProtectedBytes() / (1024 * 1024) + " MB is protected");
+        }
+        return usage;
+    }
+
+    private long getFreeBytes() {
+        return new StatFs(recordingsDir.getAbsolutePath()).getAvailableBytes();
+    }
+}
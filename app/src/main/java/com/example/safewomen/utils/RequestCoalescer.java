@@ -0,0 +1,171 @@
+package com.example.safewomen.utils;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight for idempotent reads. Callers asking for the same key while a
+ * load is running join it instead of starting their own, and a successful
+ * result is reused for a short TTL. Failures are delivered to every waiter and
+ * never memoised.
+ */
+public class RequestCoalescer<K, V> {
+    private static final String TAG = "RequestCoalescer";
+
+    public interface Callback<V> {
+        void onSuccess(V value);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Starts the real request; must call done exactly once, on any thread
+     */
+    public interface Loader<V> {
+        void load(Callback<V> done);
+    }
+
+    private static class Memo<V> {
+        final V value;
+        final long loadedAt;
+
+        Memo(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final String name;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<K, List<Callback<V>>> inFlight = new HashMap<>();
+    private final Map<K, Memo<V>> memos = new HashMap<>();
+    // Keys invalidated while their load was running
+    private final Set<K> invalidated = new HashSet<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong memoHits = new AtomicLong();
+
+    public RequestCoalescer(String name, long ttlMillis) {
+        this(name, ttlMillis, Clock.SYSTEM);
+    }
+
+    RequestCoalescer(String name, long ttlMillis, Clock clock) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Deliver the value for key: memoised, joined to a running load, or freshly loaded.
+     * Memoised values are delivered on the calling thread.
+     */
+    public void get(K key, Loader<V> loader, Callback<V> callback) {
+        requests.incrementAndGet();
+        V memoised = peek(key);
+        if (memoised != null) {
+            memoHits.incrementAndGet();
+            callback.onSuccess(memoised);
+            return;
+        }
+
+        synchronized (this) {
+            List<Callback<V>> waiters = inFlight.get(key);
+            if (waiters != null) {
+                joined.incrementAndGet();
+                waiters.add(callback);
+                return;
+            }
+            waiters = new ArrayList<>();
+            waiters.add(callback);
+            inFlight.put(key, waiters);
+        }
+
+        loads.incrementAndGet();
+        loader.load(new Callback<V>() {
+            @Override
+            public void onSuccess(V value) {
+                for (Callback<V> waiter : complete(key, value)) {
+                    waiter.onSuccess(value);
+                }
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                for (Callback<V> waiter : complete(key, null)) {
+                    waiter.onError(errorMessage);
+                }
+            }
+        });
+    }
+
+    /**
+     * The memoised value if it is still within the TTL, else null
+     */
+    public synchronized V peek(K key) {
+        Memo<V> memo = memos.get(key);
+        if (memo == null) return null;
+        if (clock.currentTimeMillis() - memo.loadedAt > ttlMillis) {
+            memos.remove(key);
+            return null;
+        }
+        return memo.value;
+    }
+
+    /**
+     * Forget the memoised value, e.g. after a write that changes it. A load already
+     * running still completes its waiters but its result isn't memoised.
+     */
+    public synchronized void invalidate(K key) {
+        memos.remove(key);
+        if (inFlight.containsKey(key)) {
+            invalidated.add(key);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        memos.clear();
+        invalidated.addAll(inFlight.keySet());
+    }
+
+    private synchronized List<Callback<V>> complete(K key, V value) {
+        boolean stale = invalidated.remove(key);
+        if (value != null && !stale) {
+            memos.put(key, new Memo<>(value, clock.currentTimeMillis()));
+        }
+        List<Callback<V>> waiters = inFlight.remove(key);
+        if (waiters == null) {
+            waiters = new ArrayList<>();
+        }
+        if (waiters.size() > 1) {
+            Log.d(TAG, name + ": one load served " + waiters.size() + " callers");
+        }
+        return waiters;
+    }
+
+    public long getRequestCount() { return requests.get(); }
+    public long getLoadCount() { return loads.get(); }
+    public long getJoinedCount() { return joined.get(); }
+    public long getMemoHitCount() { return memoHits.get(); }
+
+    /**
+     * Requests that did not need a call of their own
+     */
+    public long getRedundantCount() {
+        return joined.get() + memoHits.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + requests.get() + " requests, " + loads.get() + " loads, "
+                + joined.get() + " joined in flight, " + memoHits.get() + " memoised";
+    }
+}
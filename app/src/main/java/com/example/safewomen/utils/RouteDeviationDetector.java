@@ -0,0 +1,278 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.SecurePath;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming check of fixes against one secure path corridor.
+ * A cursor remembers the last matched segment, so a user moving along the route
+ * is matched against a handful of segments; only after losing the cursor is a
+ * uniform grid of segments consulted. Either way a check does not depend on the
+ * number of vertices. Leaving the corridor for longer than the grace period
+ * reports a deviation once, but only after the user has actually travelled
+ * along the route, so standing at either end never warns.
+ */
+public class RouteDeviationDetector {
+    public enum State {
+        ON_ROUTE,
+        OFF_ROUTE,  // Outside the corridor, still within the grace period or not yet travelling
+        DEVIATED,   // Grace period exceeded, reported once per excursion
+        ARRIVED     // Reached the far end of the route
+    }
+
+    // Segments after the cursor checked before falling back to the grid
+    private static final int CURSOR_WINDOW = 3;
+
+    // Distance travelled along the route before deviations count
+    private static final double ARM_DISTANCE_METERS = 200;
+
+    private static final double MIN_CELL_SIZE_METERS = 50;
+
+    private final SecurePath path;
+    private final long graceMs;
+    private final double buffer;
+
+    // Vertices projected to local meters, with distance along the route at each vertex
+    private final double refLatitude;
+    private final double refLongitude;
+    private final double metersPerDegreeLon;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] along;
+
+    // Segment ids by grid cell; each cell lists every segment passing within one cell of it
+    private final double cellSize;
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    private int cursor = -1;
+    private double matchDistance = -1;
+    private double matchAlong = 0;
+
+    private double startAlong = -1;
+    private boolean armed = false;
+    private boolean forward = true;
+    private long offRouteSince = -1;
+    private boolean warned = false;
+
+    private long checks = 0;
+    private long checkNanos = 0;
+
+    public RouteDeviationDetector(SecurePath path, long graceMs) {
+        this.path = path;
+        this.graceMs = graceMs;
+        this.buffer = path.getBufferMeters();
+
+        List<LatLng> points = path.getPoints();
+        int n = points.size();
+        refLatitude = points.get(0).latitude;
+        refLongitude = points.get(0).longitude;
+        metersPerDegreeLon = GeoUtils.METERS_PER_DEGREE_LAT
+                * Math.max(0.01, Math.cos(Math.toRadians(refLatitude)));
+
+        xs = new double[n];
+        ys = new double[n];
+        along = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = projectX(points.get(i).longitude);
+            ys[i] = projectY(points.get(i).latitude);
+            if (i > 0) {
+                along[i] = along[i - 1] + Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+            }
+        }
+
+        // With cells at least a buffer wide, the 3x3 block around a segment covers its corridor
+        cellSize = Math.max(MIN_CELL_SIZE_METERS, buffer);
+        buildIndex();
+    }
+
+    /**
+     * Check a fix and advance the state
+     */
+    public State onFix(double latitude, double longitude, long timestamp) {
+        long start = System.nanoTime();
+        State state = evaluate(projectX(longitude), projectY(latitude), timestamp);
+        checkNanos += System.nanoTime() - start;
+        checks++;
+        return state;
+    }
+
+    public SecurePath getPath() {
+        return path;
+    }
+
+    /**
+     * Whether the user has travelled far enough along the route for deviations to count
+     */
+    public boolean isArmed() {
+        return armed;
+    }
+
+    /**
+     * How long the user has been outside the corridor, 0 when on the route
+     */
+    public long getOffRouteMillis(long timestamp) {
+        return offRouteSince < 0 ? 0 : timestamp - offRouteSince;
+    }
+
+    /**
+     * Distance to the route at the last fix if it was matched, otherwise -1
+     */
+    public double getLastDistanceMeters() {
+        return matchDistance;
+    }
+
+    public long getCheckCount() {
+        return checks;
+    }
+
+    public long getAverageCheckNanos() {
+        return checks == 0 ? 0 : checkNanos / checks;
+    }
+
+    private State evaluate(double x, double y, long timestamp) {
+        int segment = match(x, y);
+        if (segment < 0) {
+            if (offRouteSince < 0) {
+                offRouteSince = timestamp;
+            }
+            if (armed && !warned && timestamp - offRouteSince >= graceMs) {
+                warned = true;
+                return State.DEVIATED;
+            }
+            return State.OFF_ROUTE;
+        }
+
+        cursor = segment;
+        offRouteSince = -1;
+        warned = false;
+
+        if (startAlong < 0) {
+            startAlong = matchAlong;
+        }
+        if (!armed && Math.abs(matchAlong - startAlong) >= ARM_DISTANCE_METERS) {
+            armed = true;
+            // Routes may be travelled in either direction
+            forward = matchAlong > startAlong;
+        }
+
+        double total = along[along.length - 1];
+        if (armed && (forward ? matchAlong >= total - buffer : matchAlong <= buffer)) {
+            return State.ARRIVED;
+        }
+        return State.ON_ROUTE;
+    }
+
+    // Nearest segment within the corridor, or -1. Sets matchDistance and matchAlong.
+    private int match(double x, double y) {
+        matchDistance = -1;
+
+        // Fast path: the user is usually on or just past the last matched segment
+        if (cursor >= 0) {
+            int from = Math.max(0, cursor - 1);
+            int to = Math.min(xs.length - 2, cursor + CURSOR_WINDOW);
+            int best = nearest(x, y, from, to, null);
+            if (best >= 0) return best;
+        }
+
+        int[] candidates = cells.get(cellKey(cellIndex(x), cellIndex(y)));
+        if (candidates == null) return -1;
+        return nearest(x, y, 0, candidates.length - 1, candidates);
+    }
+
+    // Nearest segment within the buffer among a range of segment ids, or of candidates[from..to]
+    private int nearest(double x, double y, int from, int to, int[] candidates) {
+        int best = -1;
+        double bestDistance = buffer;
+        double bestAlong = 0;
+        for (int i = from; i <= to; i++) {
+            int segment = candidates != null ? candidates[i] : i;
+
+            double ax = xs[segment];
+            double ay = ys[segment];
+            double dx = xs[segment + 1] - ax;
+            double dy = ys[segment + 1] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0
+                    : Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / lengthSquared));
+            double distance = Math.hypot(ax + t * dx - x, ay + t * dy - y);
+
+            if (distance <= bestDistance) {
+                best = segment;
+                bestDistance = distance;
+                bestAlong = along[segment] + t * (along[segment + 1] - along[segment]);
+            }
+        }
+        if (best >= 0) {
+            matchDistance = bestDistance;
+            matchAlong = bestAlong;
+        }
+        return best;
+    }
+
+    // Walk each segment in half-cell steps, registering it in the 3x3 block around every step
+    private void buildIndex() {
+        Map<Long, IntList> building = new HashMap<>();
+        for (int segment = 0; segment < xs.length - 1; segment++) {
+            double length = along[segment + 1] - along[segment];
+            int steps = (int) Math.ceil(length / (cellSize / 2)) + 1;
+            for (int step = 0; step <= steps; step++) {
+                double t = (double) step / steps;
+                int cx = cellIndex(xs[segment] + t * (xs[segment + 1] - xs[segment]));
+                int cy = cellIndex(ys[segment] + t * (ys[segment + 1] - ys[segment]));
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        long key = cellKey(cx + dx, cy + dy);
+                        IntList list = building.get(key);
+                        if (list == null) {
+                            list = new IntList();
+                            building.put(key, list);
+                        }
+                        list.addIfNotLast(segment);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Long, IntList> entry : building.entrySet()) {
+            cells.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    private double projectX(double longitude) {
+        return (longitude - refLongitude) * metersPerDegreeLon;
+    }
+
+    private double projectY(double latitude) {
+        return (latitude - refLatitude) * GeoUtils.METERS_PER_DEGREE_LAT;
+    }
+
+    private int cellIndex(double value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size = 0;
+
+        // Steps of one segment hit the same cells repeatedly
+        void addIfNotLast(int value) {
+            if (size > 0 && values[size - 1] == value) return;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.entities.ScheduledRuleEntity;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Incremental evaluator for scheduled safety rules.
+ * Rules are compiled once into small state machines; each fix and each timer
+ * only update those state machines, history is never re-queried. Timers are
+ * delegated to an {@link AlarmScheduler} so no polling is needed.
+ */
+public class RuleEngine {
+    // Movement within this radius still counts as the same stop
+    static final double STOP_RADIUS_METERS = 100;
+
+    private final Clock clock;
+    private final TimeZone timeZone;
+    private final AlarmScheduler alarmScheduler;
+    private final SafePlaceChecker safePlaceChecker;
+    private final RuleListener listener;
+    private final StateListener stateListener;
+
+    private final Map<String, RuleEvaluator> evaluators = new HashMap<>();
+    private boolean hasFix = false;
+
+    public RuleEngine(Clock clock, TimeZone timeZone, AlarmScheduler alarmScheduler,
+                      SafePlaceChecker safePlaceChecker, RuleListener listener, StateListener stateListener) {
+        this.clock = clock;
+        this.timeZone = timeZone;
+        this.alarmScheduler = alarmScheduler;
+        this.safePlaceChecker = safePlaceChecker;
+        this.listener = listener;
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Replace the active rule set, keeping state for rules that did not change
+     */
+    public synchronized void setRules(List<ScheduledRuleEntity> rules) {
+        Map<String, RuleEvaluator> previous = new HashMap<>(evaluators);
+        evaluators.clear();
+
+        long now = clock.currentTimeMillis();
+        for (ScheduledRuleEntity rule : rules) {
+            if (!rule.isEnabled()) continue;
+
+            RuleEvaluator existing = previous.remove(rule.getId());
+            if (existing != null && existing.rule.getUpdatedAt() == rule.getUpdatedAt()) {
+                evaluators.put(rule.getId(), existing);
+                continue;
+            }
+
+            RuleEvaluator evaluator = compile(rule);
+            if (evaluator != null) {
+                evaluators.put(rule.getId(), evaluator);
+                evaluator.start(now);
+            }
+        }
+
+        // Rules that were removed or changed no longer own their alarms
+        for (String removedId : previous.keySet()) {
+            if (!evaluators.containsKey(removedId)) {
+                alarmScheduler.cancel(removedId);
+            }
+        }
+    }
+
+    /**
+     * Feed a new location fix to every rule
+     */
+    public synchronized void onFix(double latitude, double longitude, long timestamp) {
+        hasFix = true;
+        boolean inSafePlace = safePlaceChecker.isInSafePlace(latitude, longitude);
+        for (RuleEvaluator evaluator : evaluators.values()) {
+            evaluator.onFix(latitude, longitude, timestamp, inSafePlace);
+        }
+    }
+
+    /**
+     * Deliver a timer for a single rule; other rules are not touched
+     */
+    public synchronized void onTimer(String ruleId) {
+        RuleEvaluator evaluator = evaluators.get(ruleId);
+        if (evaluator != null) {
+            evaluator.onTimer(clock.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Whether any fix has been seen since the engine was created
+     */
+    public synchronized boolean hasFix() {
+        return hasFix;
+    }
+
+    /**
+     * Ids of the currently compiled rules
+     */
+    public synchronized List<String> getRuleIds() {
+        return new ArrayList<>(evaluators.keySet());
+    }
+
+    private RuleEvaluator compile(ScheduledRuleEntity rule) {
+        if (ScheduledRuleEntity.TYPE_ARRIVE_BY.equals(rule.getType())) {
+            return new ArriveByEvaluator(rule);
+        } else if (ScheduledRuleEntity.TYPE_MAX_STOP.equals(rule.getType())) {
+            return new MaxStopEvaluator(rule);
+        }
+        return null;
+    }
+
+    private void fire(ScheduledRuleEntity rule, String message) {
+        if (listener != null) {
+            listener.onRuleFired(rule, message);
+        }
+    }
+
+    /**
+     * Compiled state machine for a single rule
+     */
+    private abstract static class RuleEvaluator {
+        final ScheduledRuleEntity rule;
+
+        RuleEvaluator(ScheduledRuleEntity rule) {
+            this.rule = rule;
+        }
+
+        abstract void start(long now);
+
+        abstract void onFix(double latitude, double longitude, long timestamp, boolean inSafePlace);
+
+        abstract void onTimer(long now);
+    }
+
+    /**
+     * Fires at the daily deadline if the last fix is not inside the target area
+     */
+    private class ArriveByEvaluator extends RuleEvaluator {
+        private boolean insideTarget = false;
+        private long deadline;
+
+        ArriveByEvaluator(ScheduledRuleEntity rule) {
+            super(rule);
+        }
+
+        @Override
+        void start(long now) {
+            deadline = nextDeadline(now);
+            alarmScheduler.schedule(rule.getId(), deadline);
+        }
+
+        @Override
+        void onFix(double latitude, double longitude, long timestamp, boolean inSafePlace) {
+            insideTarget = GeoUtils.approxDistanceMeters(latitude, longitude,
+                    rule.getLatitude(), rule.getLongitude()) <= rule.getRadiusMeters();
+        }
+
+        @Override
+        void onTimer(long now) {
+            if (now < deadline) {
+                // Inexact alarms can be delivered early; wait for the real deadline
+                alarmScheduler.schedule(rule.getId(), deadline);
+                return;
+            }
+            if (!insideTarget) {
+                fire(rule, "Not at " + rule.getName() + " by the scheduled time");
+            }
+            // Re-arm for the next day
+            deadline = nextDeadline(now + 1);
+            alarmScheduler.schedule(rule.getId(), deadline);
+        }
+
+        private long nextDeadline(long now) {
+            Calendar calendar = Calendar.getInstance(timeZone);
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, rule.getDeadlineMinuteOfDay() / 60);
+            calendar.set(Calendar.MINUTE, rule.getDeadlineMinuteOfDay() % 60);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            if (calendar.getTimeInMillis() < now) {
+                calendar.add(Calendar.DAY_OF_YEAR, 1);
+            }
+            return calendar.getTimeInMillis();
+        }
+    }
+
+    /**
+     * Fires when the user stays within a small radius outside any safe zone for too long
+     */
+    private class MaxStopEvaluator extends RuleEvaluator {
+        private final long maxStopMs;
+
+        private boolean anchored = false;
+        private double anchorLatitude;
+        private double anchorLongitude;
+        private long anchorTime;
+        private boolean inSafePlace = true;
+        private boolean alarmArmed = false;
+        private boolean firedForStop = false;
+
+        MaxStopEvaluator(ScheduledRuleEntity rule) {
+            super(rule);
+            maxStopMs = rule.getDurationMinutes() * 60000L;
+
+            // A stop that began before the process was restarted still counts from its start
+            if (rule.getStopSince() > 0) {
+                anchored = true;
+                anchorLatitude = rule.getStopLatitude();
+                anchorLongitude = rule.getStopLongitude();
+                anchorTime = rule.getStopSince();
+                firedForStop = rule.isStopAlerted();
+            }
+        }
+
+        @Override
+        void start(long now) {
+            // Until the first stop is observed there's nothing to arm
+            if (anchored && !firedForStop) {
+                alarmScheduler.schedule(rule.getId(), Math.max(now, anchorTime + maxStopMs));
+                alarmArmed = true;
+            }
+        }
+
+        @Override
+        void onFix(double latitude, double longitude, long timestamp, boolean inSafePlace) {
+            this.inSafePlace = inSafePlace;
+
+            boolean moved = !anchored || GeoUtils.approxDistanceMeters(latitude, longitude,
+                    anchorLatitude, anchorLongitude) > STOP_RADIUS_METERS;
+            if (moved) {
+                anchored = true;
+                anchorLatitude = latitude;
+                anchorLongitude = longitude;
+                anchorTime = timestamp;
+                firedForStop = false;
+                disarm();
+                saveStop();
+            }
+
+            if (inSafePlace) {
+                disarm();
+            } else if (!alarmArmed && !firedForStop) {
+                alarmScheduler.schedule(rule.getId(), anchorTime + maxStopMs);
+                alarmArmed = true;
+            }
+        }
+
+        @Override
+        void onTimer(long now) {
+            alarmArmed = false;
+            if (!anchored || inSafePlace || firedForStop) return;
+
+            if (now - anchorTime < maxStopMs) {
+                // Delivered early; the stop isn't over yet
+                alarmScheduler.schedule(rule.getId(), anchorTime + maxStopMs);
+                alarmArmed = true;
+                return;
+            }
+            firedForStop = true;
+            saveStop();
+            fire(rule, "Stopped for more than " + rule.getDurationMinutes()
+                    + " minutes outside a safe zone");
+        }
+
+        private void saveStop() {
+            rule.setStopLatitude(anchorLatitude);
+            rule.setStopLongitude(anchorLongitude);
+            rule.setStopSince(anchorTime);
+            rule.setStopAlerted(firedForStop);
+            if (stateListener != null) {
+                stateListener.onRuleStateChanged(rule);
+            }
+        }
+
+        private void disarm() {
+            if (alarmArmed) {
+                alarmScheduler.cancel(rule.getId());
+                alarmArmed = false;
+            }
+        }
+    }
+
+    /**
+     * Schedules one wake-up per rule; scheduling again replaces the previous one
+     */
+    public interface AlarmScheduler {
+        void schedule(String ruleId, long triggerAtMillis);
+        void cancel(String ruleId);
+    }
+
+    /**
+     * Answers whether a point is inside a zone considered safe
+     */
+    public interface SafePlaceChecker {
+        boolean isInSafePlace(double latitude, double longitude);
+    }
+
+    /**
+     * Callback for rules that fired
+     */
+    public interface RuleListener {
+        void onRuleFired(ScheduledRuleEntity rule, String message);
+    }
+
+    /**
+     * Called when a rule's persisted state, e.g. the current stop, changed and should be saved
+     */
+    public interface StateListener {
+        void onRuleStateChanged(ScheduledRuleEntity rule);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.SafetyZone;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable uniform-grid spatial index over circular and polygonal safety zones.
+ * Each zone is registered in every grid cell its bounding box touches, so a point
+ * query only looks at the zones of a single cell. Rebuild to change the zone set.
+ */
+public class SafetyZoneIndex {
+    // ~1.1 km of latitude per cell
+    private static final double CELL_SIZE_DEGREES = 0.01;
+
+    // Zones covering more cells than this are checked linearly instead
+    private static final int MAX_CELLS_PER_ZONE = 256;
+
+    private static final SafetyZone[] NO_ZONES = new SafetyZone[0];
+
+    private final Map<Long, SafetyZone[]> cells;
+    private final SafetyZone[] largeZones;
+    private final int size;
+
+    private SafetyZoneIndex(Map<Long, SafetyZone[]> cells, SafetyZone[] largeZones, int size) {
+        this.cells = cells;
+        this.largeZones = largeZones;
+        this.size = size;
+    }
+
+    public static SafetyZoneIndex empty() {
+        return new SafetyZoneIndex(Collections.<Long, SafetyZone[]>emptyMap(), NO_ZONES, 0);
+    }
+
+    /**
+     * Build an index for the given zones
+     */
+    public static SafetyZoneIndex build(List<SafetyZone> zones) {
+        Map<Long, List<SafetyZone>> buckets = new HashMap<>();
+        List<SafetyZone> large = new ArrayList<>();
+
+        for (SafetyZone zone : zones) {
+            double[] box = boundingBox(zone);
+            int minRow = cell(box[0]);
+            int maxRow = cell(box[1]);
+            int minCol = cell(box[2]);
+            int maxCol = cell(box[3]);
+
+            long cellCount = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+            if (cellCount > MAX_CELLS_PER_ZONE) {
+                large.add(zone);
+                continue;
+            }
+
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int col = minCol; col <= maxCol; col++) {
+                    long key = key(row, col);
+                    List<SafetyZone> bucket = buckets.get(key);
+                    if (bucket == null) {
+                        bucket = new ArrayList<>(2);
+                        buckets.put(key, bucket);
+                    }
+                    bucket.add(zone);
+                }
+            }
+        }
+
+        // Freeze buckets into arrays for allocation-free iteration on lookup
+        Map<Long, SafetyZone[]> cells = new HashMap<>(buckets.size() * 2);
+        for (Map.Entry<Long, List<SafetyZone>> entry : buckets.entrySet()) {
+            cells.put(entry.getKey(), entry.getValue().toArray(NO_ZONES));
+        }
+
+        return new SafetyZoneIndex(cells, large.toArray(NO_ZONES), zones.size());
+    }
+
+    /**
+     * Find all zones that contain the given point
+     */
+    public List<SafetyZone> query(double latitude, double longitude) {
+        List<SafetyZone> result = new ArrayList<>(2);
+
+        SafetyZone[] candidates = cells.get(key(cell(latitude), cell(longitude)));
+        if (candidates != null) {
+            for (SafetyZone zone : candidates) {
+                if (contains(zone, latitude, longitude)) {
+                    result.add(zone);
+                }
+            }
+        }
+        for (SafetyZone zone : largeZones) {
+            if (contains(zone, latitude, longitude)) {
+                result.add(zone);
+            }
+        }
+
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Exact containment test for a single zone
+     */
+    public static boolean contains(SafetyZone zone, double latitude, double longitude) {
+        if (zone.isPolygon()) {
+            return GeoUtils.polygonContains(zone.getPolygon(), latitude, longitude);
+        }
+        LatLng center = zone.getCenter();
+        return GeoUtils.approxDistanceMeters(center.latitude, center.longitude, latitude, longitude)
+                <= zone.getRadiusMeters();
+    }
+
+    // Returns {minLat, maxLat, minLon, maxLon}
+    private static double[] boundingBox(SafetyZone zone) {
+        if (zone.isPolygon()) {
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            for (LatLng point : zone.getPolygon()) {
+                minLat = Math.min(minLat, point.latitude);
+                maxLat = Math.max(maxLat, point.latitude);
+                minLon = Math.min(minLon, point.longitude);
+                maxLon = Math.max(maxLon, point.longitude);
+            }
+            return new double[]{minLat, maxLat, minLon, maxLon};
+        }
+
+        LatLng center = zone.getCenter();
+        double dLat = GeoUtils.metersToLatitudeDegrees(zone.getRadiusMeters());
+        double dLon = GeoUtils.metersToLongitudeDegrees(zone.getRadiusMeters(), center.latitude);
+        return new double[]{
+                center.latitude - dLat, center.latitude + dLat,
+                center.longitude - dLon, center.longitude + dLon
+        };
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE_DEGREES);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
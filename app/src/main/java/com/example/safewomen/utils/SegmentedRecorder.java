@@ -0,0 +1,217 @@
+package com.example.safewomen.utils;
+
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records into a rolling series of short MPEG-4 segments instead of one file.
+ * Each segment is finalized (moov written) as soon as the next one starts, so
+ * killing the process loses at most the open segment, and closed segments can
+ * be uploaded while recording continues.
+ *
+ * On API 26+ the recorder switches files seamlessly with setNextOutputFile when
+ * a segment reaches its byte budget (bitrate x segment length). Older devices
+ * restart the recorder on a timer, leaving a short gap between segments.
+ * Settings can only change on a restart, so when the configurator reports new
+ * settings the next boundary restarts instead of switching seamlessly.
+ * Every method must be called on the handler's thread; callbacks arrive there too.
+ */
+public class SegmentedRecorder {
+    private static final String TAG = "SegmentedRecorder";
+
+    public interface Configurator {
+        /**
+         * Set sources, format and encoders on a fresh recorder; the output file is set here
+         * @return Combined audio and video bitrate, used to size seamless segments
+         */
+        int configure(MediaRecorder recorder) throws IOException;
+
+        /**
+         * Whether configure() would now choose different settings; asked at segment boundaries
+         */
+        boolean isStale();
+    }
+
+    public interface SegmentFiles {
+        File create(int segmentIndex) throws IOException;
+    }
+
+    public interface SegmentListener {
+        void onSegmentOpened(int segmentIndex, File file, long startedAt);
+
+        /**
+         * @param valid False if the segment holds no playable data and was deleted
+         */
+        void onSegmentClosed(int segmentIndex, File file, long endedAt, boolean valid);
+
+        void onError(Exception e);
+    }
+
+    private final Handler handler;
+    private final Configurator configurator;
+    private final SegmentFiles files;
+    private final SegmentListener listener;
+    private final long segmentMillis;
+    private final boolean seamless = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+
+    private MediaRecorder recorder;
+    private int segmentIndex = -1;
+    private File currentFile;
+    private File nextFile;
+    private boolean recording = false;
+
+    private final Runnable rotate = () -> restartSegment(false);
+
+    public SegmentedRecorder(Handler handler, Configurator configurator, SegmentFiles files,
+                             SegmentListener listener, long segmentMillis) {
+        this.handler = handler;
+        this.configurator = configurator;
+        this.files = files;
+        this.listener = listener;
+        this.segmentMillis = segmentMillis;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public void start() throws IOException {
+        if (recording) return;
+        openRecorder(0);
+        recording = true;
+    }
+
+    /**
+     * Stop and finalize the open segment
+     */
+    public void stop() {
+        if (!recording) return;
+        recording = false;
+        handler.removeCallbacks(rotate);
+        closeRecorder(false);
+
+        // Prepared for a switch that never happened
+        if (nextFile != null) {
+            nextFile.delete();
+            nextFile = null;
+        }
+    }
+
+    /**
+     * Close the open segment now and continue in a new one configured afresh,
+     * e.g. when another recorder needs the microphone
+     */
+    public void rollOver() {
+        restartSegment(false);
+    }
+
+    private void openRecorder(int index) throws IOException {
+        File file = files.create(index);
+
+        recorder = new MediaRecorder();
+        try {
+            int bitRate = configurator.configure(recorder);
+            recorder.setOutputFile(file.getAbsolutePath());
+            if (seamless) {
+                recorder.setMaxFileSize((long) bitRate / 8 * segmentMillis / 1000);
+                recorder.setOnInfoListener((mr, what, extra) -> onInfo(what));
+            }
+            recorder.prepare();
+            recorder.start();
+        } catch (IOException | RuntimeException e) {
+            recorder.release();
+            recorder = null;
+            file.delete();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        segmentIndex = index;
+        currentFile = file;
+        listener.onSegmentOpened(index, file, System.currentTimeMillis());
+
+        if (seamless) {
+            queueNextFile();
+        } else {
+            handler.postDelayed(rotate, segmentMillis);
+        }
+    }
+
+    /**
+     * @param finalized The recorder already finished the file itself at its size limit
+     */
+    private void closeRecorder(boolean finalized) {
+        boolean valid = true;
+        try {
+            recorder.stop();
+        } catch (RuntimeException e) {
+            // Stopped before any data was written; the file is unusable
+            valid = finalized;
+        }
+        recorder.release();
+        recorder = null;
+
+        if (!valid) {
+            currentFile.delete();
+        }
+        listener.onSegmentClosed(segmentIndex, currentFile, System.currentTimeMillis(), valid);
+        currentFile = null;
+    }
+
+    // API 26+: hand the recorder the file it should continue in once this one is full
+    private void queueNextFile() {
+        if (configurator.isStale()) {
+            // Left without a next file, the recorder stops at the size limit and restarts reconfigured
+            nextFile = null;
+            return;
+        }
+
+        try {
+            nextFile = files.create(segmentIndex + 1);
+            recorder.setNextOutputFile(nextFile);
+        } catch (IOException | RuntimeException e) {
+            // Without a next file the recorder stops at the size limit and we restart it
+            Log.e(TAG, "Error queueing next segment", e);
+            nextFile = null;
+        }
+    }
+
+    private void onInfo(int what) {
+        if (!recording) return;
+
+        if (what == MediaRecorder.MEDIA_RECORDER_INFO_NEXT_OUTPUT_FILE_STARTED) {
+            // The previous file has been finalized
+            long now = System.currentTimeMillis();
+            listener.onSegmentClosed(segmentIndex, currentFile, now, true);
+            segmentIndex++;
+            currentFile = nextFile;
+            nextFile = null;
+            listener.onSegmentOpened(segmentIndex, currentFile, now);
+            queueNextFile();
+        } else if (what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_FILESIZE_REACHED) {
+            restartSegment(true);
+        }
+    }
+
+    private void restartSegment(boolean finalized) {
+        if (!recording) return;
+
+        handler.removeCallbacks(rotate);
+        closeRecorder(finalized);
+        if (nextFile != null) {
+            nextFile.delete();
+            nextFile = null;
+        }
+
+        try {
+            openRecorder(segmentIndex + 1);
+        } catch (IOException e) {
+            recording = false;
+            listener.onError(e);
+        }
+    }
+}
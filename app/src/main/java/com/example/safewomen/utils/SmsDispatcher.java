@@ -0,0 +1,260 @@
+package com.example.safewomen.utils;
+
+import android.util.Log;
+
+import com.example.safewomen.data.SmsDispatchDao;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.SmsDispatchEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisted per-contact SMS state machine:
+ * queued -> sending -> sent -> delivered, with failed attempts going back to
+ * queued after an exponential backoff until MAX_ATTEMPTS is reached.
+ * Sends are paced globally so a long contact list doesn't trip the platform's
+ * outgoing SMS limit. All state changes run on the given executor.
+ */
+public class SmsDispatcher {
+    private static final String TAG = "SmsDispatcher";
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_SENDING = "sending";
+    public static final String STATUS_SENT = "sent";
+    public static final String STATUS_DELIVERED = "delivered";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_CANCELLED = "cancelled";
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BASE_BACKOFF_MS = 5000;
+    // No sent report within this time counts as a failed attempt
+    private static final long SENT_TIMEOUT_MS = 60 * 1000;
+
+    // Android allows 30 messages per 30 minutes per app before prompting the user
+    private static final long MIN_SEND_INTERVAL_MS = 1500;
+    private static final long SEND_WINDOW_MS = 30 * 60 * 1000;
+    private static final int MAX_SENDS_PER_WINDOW = 25;
+
+    // After a restart, messages older than this aren't worth sending any more
+    private static final long RESUME_MAX_AGE_MS = 30 * 60 * 1000;
+
+    private final SmsDispatchDao dao;
+    private final SmsGateway gateway;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final DispatchListener listener;
+
+    // Pacing state, only touched on the executor
+    private final Deque<Long> recentSends = new ArrayDeque<>();
+    private long lastSendAt = 0;
+    private ScheduledFuture<?> scheduledPump;
+
+    public SmsDispatcher(SmsDispatchDao dao, SmsGateway gateway, Clock clock,
+                         ScheduledExecutorService executor, DispatchListener listener) {
+        this.dao = dao;
+        this.gateway = gateway;
+        this.clock = clock;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    /**
+     * Queue one message per contact, in list order
+     */
+    public void enqueue(String sosId, List<EmergencyContactEntity> contacts, String message) {
+        executor.execute(() -> {
+            long now = clock.currentTimeMillis();
+            List<SmsDispatchEntity> dispatches = new ArrayList<>();
+            for (int i = 0; i < contacts.size(); i++) {
+                EmergencyContactEntity contact = contacts.get(i);
+                dispatches.add(new SmsDispatchEntity(UUID.randomUUID().toString(), sosId,
+                        contact.getName(), contact.getPhone(), message, i, STATUS_QUEUED, now));
+            }
+            dao.insertAll(dispatches);
+            for (SmsDispatchEntity dispatch : dispatches) {
+                listener.onDispatchUpdated(dispatch);
+            }
+            pump();
+        });
+    }
+
+    /**
+     * Stop the messages of an SOS. Messages already handed to the carrier may
+     * still arrive, but none is sent again, even if its attempt fails.
+     */
+    public void cancel(String sosId) {
+        executor.execute(() -> {
+            dao.markCancelled(sosId);
+            dao.cancelQueued(sosId);
+        });
+    }
+
+    /**
+     * Pick up messages of the latest SOS left over from a previous process;
+     * anything older is given up
+     */
+    public void resume() {
+        executor.execute(() -> {
+            long since = clock.currentTimeMillis() - RESUME_MAX_AGE_MS;
+            dao.expireUnfinished(since);
+            dao.requeueSending(since);
+            pump();
+        });
+    }
+
+    /**
+     * Sent report for one part of a message
+     */
+    public void onSent(String dispatchId, int attempt, boolean success, String error) {
+        executor.execute(() -> {
+            SmsDispatchEntity dispatch = current(dispatchId, attempt);
+            if (dispatch == null || !STATUS_SENDING.equals(dispatch.getStatus())) return;
+
+            long now = clock.currentTimeMillis();
+            if (!success) {
+                failAttempt(dispatch, error, now);
+                pump();
+                return;
+            }
+
+            dispatch.setPartsSent(dispatch.getPartsSent() + 1);
+            if (dispatch.getPartsSent() >= dispatch.getParts()) {
+                dispatch.setStatus(STATUS_SENT);
+                dispatch.setSentAt(now);
+            }
+            update(dispatch);
+        });
+    }
+
+    /**
+     * Delivery report for one part of a message
+     */
+    public void onDelivered(String dispatchId, int attempt, boolean success) {
+        executor.execute(() -> {
+            SmsDispatchEntity dispatch = current(dispatchId, attempt);
+            if (dispatch == null) return;
+            // Delivery reports can overtake the sent report of a later part
+            if (!STATUS_SENDING.equals(dispatch.getStatus()) && !STATUS_SENT.equals(dispatch.getStatus())) return;
+
+            long now = clock.currentTimeMillis();
+            if (!success) {
+                failAttempt(dispatch, "Delivery failed", now);
+                pump();
+                return;
+            }
+
+            dispatch.setPartsDelivered(dispatch.getPartsDelivered() + 1);
+            if (dispatch.getPartsDelivered() >= dispatch.getParts()) {
+                dispatch.setStatus(STATUS_DELIVERED);
+                dispatch.setDeliveredAt(now);
+                if (dispatch.getSentAt() == 0) {
+                    dispatch.setSentAt(now);
+                }
+                Log.d(TAG, "SMS to " + dispatch.getContactName() + " delivered in "
+                        + (now - dispatch.getCreatedAt()) + " ms after " + dispatch.getAttempts() + " attempt(s)");
+            }
+            update(dispatch);
+        });
+    }
+
+    // The dispatch, unless the report belongs to an earlier attempt
+    private SmsDispatchEntity current(String dispatchId, int attempt) {
+        SmsDispatchEntity dispatch = dao.getById(dispatchId);
+        if (dispatch == null || dispatch.getAttempts() != attempt) return null;
+        return dispatch;
+    }
+
+    // Send the next due message, or wake up when one becomes due
+    private void pump() {
+        if (scheduledPump != null) {
+            scheduledPump.cancel(false);
+            scheduledPump = null;
+        }
+
+        // Skips messages of cancelled SOSes, even ones requeued after the cancel
+        SmsDispatchEntity next = dao.getNextQueued();
+        if (next == null) return;
+
+        long now = clock.currentTimeMillis();
+        long readyAt = Math.max(next.getNextAttemptAt(), nextSendSlot(now));
+        if (readyAt > now) {
+            scheduledPump = executor.schedule(this::pump, readyAt - now, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        send(next, now);
+        pump();
+    }
+
+    private long nextSendSlot(long now) {
+        while (!recentSends.isEmpty() && recentSends.peekFirst() <= now - SEND_WINDOW_MS) {
+            recentSends.pollFirst();
+        }
+        long slot = lastSendAt + MIN_SEND_INTERVAL_MS;
+        if (recentSends.size() >= MAX_SENDS_PER_WINDOW) {
+            slot = Math.max(slot, recentSends.peekFirst() + SEND_WINDOW_MS);
+        }
+        return slot;
+    }
+
+    private void send(SmsDispatchEntity dispatch, long now) {
+        int attempt = dispatch.getAttempts() + 1;
+        dispatch.setAttempts(attempt);
+        dispatch.setStatus(STATUS_SENDING);
+        dispatch.setPartsSent(0);
+        dispatch.setPartsDelivered(0);
+        lastSendAt = now;
+        recentSends.addLast(now);
+
+        try {
+            dispatch.setParts(gateway.send(dispatch.getId(), attempt, dispatch.getPhone(), dispatch.getMessage()));
+            update(dispatch);
+
+            String dispatchId = dispatch.getId();
+            executor.schedule(() -> {
+                SmsDispatchEntity pending = current(dispatchId, attempt);
+                if (pending != null && STATUS_SENDING.equals(pending.getStatus())) {
+                    failAttempt(pending, "No sent report", clock.currentTimeMillis());
+                    pump();
+                }
+            }, SENT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending SMS to " + dispatch.getContactName(), e);
+            failAttempt(dispatch, e.getMessage(), now);
+        }
+    }
+
+    private void failAttempt(SmsDispatchEntity dispatch, String error, long now) {
+        dispatch.setLastError(error);
+        if (dispatch.isCancelled()) {
+            // Cancelled while with the carrier; a false alarm mustn't be retried
+            dispatch.setStatus(STATUS_CANCELLED);
+        } else if (dispatch.getAttempts() >= MAX_ATTEMPTS) {
+            dispatch.setStatus(STATUS_FAILED);
+            Log.w(TAG, "Giving up on SMS to " + dispatch.getContactName() + ": " + error);
+        } else {
+            dispatch.setStatus(STATUS_QUEUED);
+            dispatch.setNextAttemptAt(now + (BASE_BACKOFF_MS << (dispatch.getAttempts() - 1)));
+        }
+        update(dispatch);
+    }
+
+    private void update(SmsDispatchEntity dispatch) {
+        dao.update(dispatch);
+        listener.onDispatchUpdated(dispatch);
+    }
+
+    /**
+     * Listener for dispatch state changes; called on the dispatcher's executor
+     */
+    public interface DispatchListener {
+        void onDispatchUpdated(SmsDispatchEntity dispatch);
+    }
+}
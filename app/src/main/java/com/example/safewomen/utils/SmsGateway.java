@@ -0,0 +1,15 @@
+package com.example.safewomen.utils;
+
+/**
+ * Hands text messages to the carrier. Sent and delivery outcomes are reported
+ * back asynchronously to SmsDispatcher.onSent and SmsDispatcher.onDelivered.
+ */
+public interface SmsGateway {
+    /**
+     * Start sending a message
+     * @param attempt Echoed back with the outcome so stale reports can be ignored
+     * @return Number of parts; one sent and one delivery report is expected per part
+     * @throws Exception If the message could not be handed over at all
+     */
+    int send(String dispatchId, int attempt, String phoneNumber, String message) throws Exception;
+}
@@ -0,0 +1,144 @@
+package com.example.safewomen.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-flight gate for SOS triggers. The first trigger starts a session;
+ * triggers arriving while it is active are merged into it as extra evidence
+ * instead of starting a second alert. Lock-free: admission is one CAS.
+ */
+public class SosArbiter {
+    private static final SosArbiter INSTANCE = new SosArbiter(Clock.SYSTEM);
+
+    private final Clock clock;
+    private final AtomicReference<Session> active = new AtomicReference<>();
+
+    public static SosArbiter getInstance() {
+        return INSTANCE;
+    }
+
+    public SosArbiter(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Admit a trigger
+     * @return The admission; isNewSession() is true for exactly one caller per session
+     */
+    public Admission trigger(String method) {
+        Trigger trigger = new Trigger(method, clock.currentTimeMillis());
+        Session candidate = null;
+
+        while (true) {
+            Session current = active.get();
+            if (current != null) {
+                current.triggers.add(trigger);
+                return new Admission(current, false);
+            }
+
+            if (candidate == null) {
+                candidate = new Session(UUID.randomUUID().toString(), trigger);
+            }
+            if (active.compareAndSet(null, candidate)) {
+                return new Admission(candidate, true);
+            }
+            // Lost the race; merge into the winner on the next pass
+        }
+    }
+
+    /**
+     * The running session, or null
+     */
+    public Session getActive() {
+        return active.get();
+    }
+
+    /**
+     * End a session; later triggers start a new one
+     * @return false if that session was no longer active
+     */
+    public boolean end(String sessionId) {
+        Session current = active.get();
+        return current != null && current.id.equals(sessionId) && active.compareAndSet(current, null);
+    }
+
+    public static class Admission {
+        private final Session session;
+        private final boolean newSession;
+
+        Admission(Session session, boolean newSession) {
+            this.session = session;
+            this.newSession = newSession;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public boolean isNewSession() {
+            return newSession;
+        }
+    }
+
+    /**
+     * One active SOS and every trigger that led to it
+     */
+    public static class Session {
+        private final String id;
+        private final long startedAt;
+        private final ConcurrentLinkedQueue<Trigger> triggers = new ConcurrentLinkedQueue<>();
+        private volatile String alertId;
+
+        Session(String id, Trigger first) {
+            this.id = id;
+            this.startedAt = first.timestamp;
+            triggers.add(first);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        /**
+         * Triggers in arrival order, the one that started the session first
+         */
+        public List<Trigger> getTriggers() {
+            return Collections.unmodifiableList(new ArrayList<>(triggers));
+        }
+
+        public String getAlertId() {
+            return alertId;
+        }
+
+        public void setAlertId(String alertId) {
+            this.alertId = alertId;
+        }
+    }
+
+    public static class Trigger {
+        private final String method;
+        private final long timestamp;
+
+        Trigger(String method, long timestamp) {
+            this.method = method;
+            this.timestamp = timestamp;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
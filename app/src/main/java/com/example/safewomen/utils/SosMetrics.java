@@ -0,0 +1,56 @@
+package com.example.safewomen.utils;
+
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency of each stage of one SOS, measured from the trigger.
+ * Stages run on different threads, so every method is synchronized.
+ */
+public class SosMetrics {
+    private static final String TAG = "SosMetrics";
+
+    public static final String STAGE_LOCAL_DATA = "local_data";
+    public static final String STAGE_FIRST_SMS = "first_sms";
+    public static final String STAGE_FIRST_DELIVERY = "first_delivery";
+    public static final String STAGE_CALL = "call";
+    public static final String STAGE_RECORDING = "recording";
+    public static final String STAGE_ALERT_RECORDED = "alert_recorded";
+
+    private final Clock clock;
+    private final long triggeredAt;
+    private final Map<String, Long> latencies = new LinkedHashMap<>();
+
+    public SosMetrics(Clock clock) {
+        this.clock = clock;
+        this.triggeredAt = clock.currentTimeMillis();
+    }
+
+    /**
+     * Record the first time a stage is reached
+     * @return The latency in milliseconds, or -1 if the stage was already recorded
+     */
+    public synchronized long mark(String stage) {
+        if (latencies.containsKey(stage)) return -1;
+
+        long latency = clock.currentTimeMillis() - triggeredAt;
+        latencies.put(stage, latency);
+        Log.d(TAG, "SOS stage " + stage + " reached after " + latency + " ms");
+        return latency;
+    }
+
+    /**
+     * Latency of a stage in milliseconds, or -1 if it hasn't been reached
+     */
+    public synchronized long getLatencyMillis(String stage) {
+        Long latency = latencies.get(stage);
+        return latency != null ? latency : -1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SosMetrics" + latencies;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.safewomen.utils;
+
+import android.util.Log;
+
+import com.example.safewomen.models.SosSnapshot;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.LocationHistoryEntity;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The fan-out of one SOS. SMS, the call and recording start from the local
+ * snapshot, and the alert is recorded on its own executor alongside them, so a
+ * stalled server or a slow alert write never delays what reaches the contacts.
+ */
+public class SosPipeline {
+    private static final String TAG = "SosPipeline";
+
+    /**
+     * The stages, implemented by the service. Each is called on the executor noted.
+     */
+    public interface Stages {
+        // Local executor
+        SosSnapshot loadSnapshot();
+
+        // Local executor
+        void sendSms(List<EmergencyContactEntity> contacts, String message);
+
+        // Main executor
+        void call(EmergencyContactEntity primaryContact);
+
+        // Main executor
+        void startRecording();
+
+        // Alert executor; may block on the network
+        void recordAlert(LocationHistoryEntity location);
+    }
+
+    private final Executor localExecutor;
+    private final Executor mainExecutor;
+    private final Executor alertExecutor;
+
+    public SosPipeline(Executor localExecutor, Executor mainExecutor, Executor alertExecutor) {
+        this.localExecutor = localExecutor;
+        this.mainExecutor = mainExecutor;
+        this.alertExecutor = alertExecutor;
+    }
+
+    public void run(Stages stages, SosMetrics metrics) {
+        localExecutor.execute(() -> {
+            SosSnapshot snapshot = stages.loadSnapshot();
+            metrics.mark(SosMetrics.STAGE_LOCAL_DATA);
+
+            // Fan out: nothing that reaches the contacts waits on the server
+            alertExecutor.execute(() -> stages.recordAlert(snapshot.getLastLocation()));
+            if (snapshot.getContacts().isEmpty()) {
+                Log.w(TAG, "No emergency contacts found to send SMS");
+            } else {
+                stages.sendSms(snapshot.getContacts(), snapshot.getMessage());
+            }
+            mainExecutor.execute(() -> stages.call(snapshot.getPrimaryContact()));
+            mainExecutor.execute(stages::startRecording);
+        });
+    }
+}
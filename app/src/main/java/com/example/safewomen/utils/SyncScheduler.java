@@ -0,0 +1,205 @@
+package com.example.safewomen.utils;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.safewomen.models.NetworkState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs deferred sync work together in good radio windows instead of waking the
+ * radio once per task. A window is any moment the radio is up anyway or cheap
+ * to use: connectivity just came back, the network became unmetered, or the
+ * radio went active for other traffic. Work that finds no window runs at its
+ * deadline, as long as we're online.
+ *
+ * Tasks are keyed by name, so deferring the same sync twice runs it once.
+ */
+public class SyncScheduler {
+    private static final String TAG = "SyncScheduler";
+    private static SyncScheduler instance;
+
+    public static final long DEFAULT_MAX_DELAY_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private static class Deferred {
+        final Runnable task;
+        final long deadline;
+
+        Deferred(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+
+    private final NetworkMonitor networkMonitor;
+    private final Clock clock;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Executor executor = Executors.newSingleThreadExecutor();
+    private final Runnable deadlineCheck = this::onDeadline;
+
+    // Guarded by this
+    private final Map<String, Deferred> pending = new LinkedHashMap<>();
+    private final Map<String, Runnable> reconnectTasks = new LinkedHashMap<>();
+    private NetworkState lastState = NetworkState.OFFLINE;
+
+    public static synchronized void init(Application application) {
+        if (instance == null) {
+            instance = new SyncScheduler(NetworkMonitor.getInstance(), Clock.SYSTEM);
+        }
+    }
+
+    public static synchronized SyncScheduler getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("SyncScheduler must be initialized first");
+        }
+        return instance;
+    }
+
+    SyncScheduler(NetworkMonitor networkMonitor, Clock clock) {
+        this.networkMonitor = networkMonitor;
+        this.clock = clock;
+
+        // LiveData needs the main thread to add an observer
+        handler.post(() -> networkMonitor.observeForever(this::onNetworkChanged));
+        networkMonitor.addRadioActiveListener(() -> {
+            if (networkMonitor.isOnline()) {
+                runWindow("radio active");
+            }
+        });
+    }
+
+    /**
+     * Run the task once, in the next good window or within DEFAULT_MAX_DELAY_MS
+     * of going online, whichever comes first
+     */
+    public void defer(String name, Runnable task) {
+        defer(name, task, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public void defer(String name, Runnable task, long maxDelayMs) {
+        synchronized (this) {
+            Deferred existing = pending.get(name);
+            long deadline = clock.currentTimeMillis() + maxDelayMs;
+            // A repeat keeps the earlier deadline
+            if (existing != null) deadline = Math.min(deadline, existing.deadline);
+            pending.put(name, new Deferred(task, deadline));
+        }
+
+        if (isGoodWindow()) {
+            runWindow("deferred while radio is cheap");
+        } else {
+            scheduleDeadlineCheck();
+        }
+    }
+
+    /**
+     * Run the task every time connectivity returns, and once at startup if we're online
+     */
+    public synchronized void onReconnect(String name, Runnable task) {
+        reconnectTasks.put(name, task);
+    }
+
+    /**
+     * Online and either unmetered or with the radio already up, and not on a crawl
+     */
+    public boolean isGoodWindow() {
+        NetworkState state = networkMonitor.getState();
+        if (!state.isOnline() || state.getBandwidth() == NetworkState.Bandwidth.POOR) {
+            return false;
+        }
+        return !state.isMetered() || networkMonitor.isRadioActive();
+    }
+
+    // Main thread
+    private void onNetworkChanged(NetworkState state) {
+        NetworkState previous;
+        synchronized (this) {
+            previous = lastState;
+            lastState = state;
+            if (state.isOnline() && !previous.isOnline()) {
+                for (Map.Entry<String, Runnable> entry : reconnectTasks.entrySet()) {
+                    pending.put(entry.getKey(), new Deferred(entry.getValue(), clock.currentTimeMillis()));
+                }
+            }
+        }
+
+        if (!state.isOnline()) return;
+        if (!previous.isOnline()) {
+            runWindow("back online");
+        } else if (previous.isMetered() && !state.isMetered()) {
+            runWindow("unmetered");
+        } else {
+            scheduleDeadlineCheck();
+        }
+    }
+
+    private void onDeadline() {
+        if (!networkMonitor.isOnline()) {
+            // Reconnecting opens a window anyway
+            return;
+        }
+        long now = clock.currentTimeMillis();
+        boolean due = false;
+        synchronized (this) {
+            for (Deferred deferred : pending.values()) {
+                if (deferred.deadline <= now) {
+                    due = true;
+                    break;
+                }
+            }
+        }
+        if (due) {
+            // The radio is woken for the overdue task; everything else rides along
+            runWindow("deadline");
+        } else {
+            scheduleDeadlineCheck();
+        }
+    }
+
+    private void runWindow(String reason) {
+        List<Runnable> tasks;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            tasks = new ArrayList<>();
+            for (Deferred deferred : pending.values()) {
+                tasks.add(deferred.task);
+            }
+            pending.clear();
+        }
+        handler.removeCallbacks(deadlineCheck);
+        Log.d(TAG, "Running " + tasks.size() + " deferred tasks: " + reason);
+
+        // Back to back, so they share one radio wake-up
+        executor.execute(() -> {
+            for (Runnable task : tasks) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Deferred task failed", e);
+                }
+            }
+        });
+    }
+
+    private void scheduleDeadlineCheck() {
+        long earliest = Long.MAX_VALUE;
+        synchronized (this) {
+            for (Deferred deferred : pending.values()) {
+                earliest = Math.min(earliest, deferred.deadline);
+            }
+        }
+        handler.removeCallbacks(deadlineCheck);
+        if (earliest != Long.MAX_VALUE) {
+            handler.postDelayed(deadlineCheck, Math.max(0, earliest - clock.currentTimeMillis()));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.safewomen.utils;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws location history as polylines and swaps between precomputed
+ * levels of detail when the camera settles. Must be used on the main thread.
+ */
+public class TrackRenderer {
+    private final GoogleMap googleMap;
+    private final int color;
+    private final float widthPx;
+
+    private final List<Polyline> polylines = new ArrayList<>();
+    private TrackSimplifier.TrackLevels levels;
+    private int renderedLevel = -1;
+
+    public TrackRenderer(GoogleMap googleMap, int color, float widthPx) {
+        this.googleMap = googleMap;
+        this.color = color;
+        this.widthPx = widthPx;
+    }
+
+    /**
+     * Show a new set of tracks at the level matching the current camera
+     */
+    public void setLevels(TrackSimplifier.TrackLevels levels) {
+        this.levels = levels;
+        renderedLevel = -1;
+        onCameraIdle();
+    }
+
+    /**
+     * Pick the level of detail for the current zoom, updating polylines only if it changed
+     */
+    public void onCameraIdle() {
+        if (levels == null) return;
+
+        int level = TrackSimplifier.levelForZoom(googleMap.getCameraPosition().zoom);
+        if (level == renderedLevel) return;
+
+        List<List<LatLng>> tracks = levels.getTracksForLevel(level);
+
+        // Reuse existing polylines where possible instead of re-adding them
+        for (int i = 0; i < tracks.size(); i++) {
+            if (i < polylines.size()) {
+                polylines.get(i).setPoints(tracks.get(i));
+            } else {
+                polylines.add(googleMap.addPolyline(new PolylineOptions()
+                        .addAll(tracks.get(i))
+                        .color(color)
+                        .width(widthPx)
+                        .geodesic(false)));
+            }
+        }
+        while (polylines.size() > tracks.size()) {
+            polylines.remove(polylines.size() - 1).remove();
+        }
+
+        renderedLevel = level;
+    }
+
+    /**
+     * Remove all polylines from the map
+     */
+    public void clear() {
+        for (Polyline polyline : polylines) {
+            polyline.remove();
+        }
+        forget();
+    }
+
+    /**
+     * Drop references after the map has been cleared externally (GoogleMap.clear())
+     */
+    public void forget() {
+        polylines.clear();
+        renderedLevel = -1;
+    }
+}
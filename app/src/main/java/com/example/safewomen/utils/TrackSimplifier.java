@@ -0,0 +1,200 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.entities.LocationHistoryEntity;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds simplified polylines (levels of detail) from location history.
+ * Pure computation, meant to be run off the main thread.
+ */
+public class TrackSimplifier {
+    // Zoom levels we precompute a simplified version for
+    public static final float[] LOD_ZOOM_LEVELS = {6f, 9f, 12f, 15f, 18f};
+
+    // A gap longer than this between two fixes starts a new track
+    private static final long TRACK_GAP_MS = 30 * 60 * 1000;
+
+    // Allowed on-screen deviation of the simplified line, in pixels
+    private static final double TOLERANCE_PIXELS = 2.0;
+
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03392;
+
+    private TrackSimplifier() {}
+
+    /**
+     * Split history into tracks and simplify every track for each LOD zoom level
+     * @param locations Location history, in any order
+     * @return Precomputed levels of detail
+     */
+    public static TrackLevels buildLevels(List<LocationHistoryEntity> locations) {
+        List<List<LatLng>> tracks = splitIntoTracks(locations);
+        List<List<List<LatLng>>> levels = new ArrayList<>(LOD_ZOOM_LEVELS.length);
+
+        for (float zoom : LOD_ZOOM_LEVELS) {
+            List<List<LatLng>> simplifiedTracks = new ArrayList<>(tracks.size());
+            for (List<LatLng> track : tracks) {
+                double tolerance = metersPerPixel(zoom, track.get(0).latitude) * TOLERANCE_PIXELS;
+                simplifiedTracks.add(simplify(track, tolerance));
+            }
+            levels.add(Collections.unmodifiableList(simplifiedTracks));
+        }
+
+        return new TrackLevels(levels, countPoints(tracks));
+    }
+
+    /**
+     * Group fixes into chronologically ordered tracks, breaking on long gaps
+     */
+    static List<List<LatLng>> splitIntoTracks(List<LocationHistoryEntity> locations) {
+        List<List<LatLng>> tracks = new ArrayList<>();
+        if (locations == null || locations.isEmpty()) return tracks;
+
+        List<LocationHistoryEntity> sorted = new ArrayList<>(locations);
+        Collections.sort(sorted, (a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+
+        List<LatLng> current = new ArrayList<>();
+        long previousTimestamp = sorted.get(0).getTimestamp();
+        for (LocationHistoryEntity location : sorted) {
+            if (location.getTimestamp() - previousTimestamp > TRACK_GAP_MS && !current.isEmpty()) {
+                tracks.add(current);
+                current = new ArrayList<>();
+            }
+            current.add(new LatLng(location.getLatitude(), location.getLongitude()));
+            previousTimestamp = location.getTimestamp();
+        }
+        tracks.add(current);
+
+        return tracks;
+    }
+
+    /**
+     * Iterative Douglas-Peucker simplification on a local equirectangular projection
+     * @param points Track points in order
+     * @param toleranceMeters Maximum allowed distance from the original line
+     * @return Simplified copy of the track (first and last points are always kept)
+     */
+    public static List<LatLng> simplify(List<LatLng> points, double toleranceMeters) {
+        int n = points.size();
+        if (n <= 2) return new ArrayList<>(points);
+
+        // Project once to meters so distance checks are cheap
+        double refLatRad = Math.toRadians(points.get(0).latitude);
+        double cosLat = Math.cos(refLatRad);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            LatLng p = points.get(i);
+            xs[i] = Math.toRadians(p.longitude) * cosLat * EARTH_RADIUS_METERS;
+            ys[i] = Math.toRadians(p.latitude) * EARTH_RADIUS_METERS;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        double toleranceSq = toleranceMeters * toleranceMeters;
+        int[] stack = new int[n * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double maxDistSq = 0;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distSq = segmentDistanceSq(xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+                if (distSq > maxDistSq) {
+                    maxDistSq = distSq;
+                    index = i;
+                }
+            }
+
+            if (index != -1 && maxDistSq > toleranceSq) {
+                keep[index] = true;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+
+        List<LatLng> result = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) result.add(points.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Ground resolution of the map at the given zoom and latitude
+     */
+    public static double metersPerPixel(float zoom, double latitude) {
+        return METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+
+    /**
+     * Index of the precomputed level best suited to a camera zoom
+     */
+    public static int levelForZoom(float zoom) {
+        int level = 0;
+        for (int i = 0; i < LOD_ZOOM_LEVELS.length; i++) {
+            if (zoom >= LOD_ZOOM_LEVELS[i]) {
+                level = i;
+            }
+        }
+        return level;
+    }
+
+    private static double segmentDistanceSq(double px, double py,
+                                            double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+    private static int countPoints(List<List<LatLng>> tracks) {
+        int count = 0;
+        for (List<LatLng> track : tracks) {
+            count += track.size();
+        }
+        return count;
+    }
+
+    /**
+     * Immutable set of simplified tracks, one list of tracks per LOD zoom level
+     */
+    public static class TrackLevels {
+        private final List<List<List<LatLng>>> levels;
+        private final int sourcePointCount;
+
+        TrackLevels(List<List<List<LatLng>>> levels, int sourcePointCount) {
+            this.levels = Collections.unmodifiableList(levels);
+            this.sourcePointCount = sourcePointCount;
+        }
+
+        public List<List<LatLng>> getTracksForZoom(float zoom) {
+            return levels.get(levelForZoom(zoom));
+        }
+
+        public List<List<LatLng>> getTracksForLevel(int level) {
+            return levels.get(level);
+        }
+
+        public int getSourcePointCount() {
+            return sourcePointCount;
+        }
+    }
+}
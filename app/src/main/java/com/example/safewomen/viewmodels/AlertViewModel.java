@@ -4,40 +4,35 @@ import android.app.Application;
 import android.content.Intent;
 import android.util.Log;
 
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
+import com.example.safewomen.models.AlertHistoryItem;
 import com.example.safewomen.models.entities.EmergencyContactEntity;
-import com.example.safewomen.models.entities.LocationHistoryEntity;
 import com.example.safewomen.repositories.AlertRepository;
 import com.example.safewomen.repositories.ContactRepository;
-import com.example.safewomen.repositories.LocationHistoryRepository;
-import com.example.safewomen.services.EmergencyRecordingService;
 import com.example.safewomen.services.SosAlertService;
+import com.example.safewomen.utils.SosArbiter;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-public class AlertViewModel extends ViewModel {
+public class AlertViewModel extends AndroidViewModel {
     private static final String TAG = "AlertViewModel";
     private final AlertRepository alertRepository;
     private final ContactRepository contactRepository;
-    private final LocationHistoryRepository locationRepository;
     private final MutableLiveData<Boolean> isAlertActive = new MutableLiveData<>(false);
     private final MutableLiveData<String> activeAlertId = new MutableLiveData<>();
-    private final MutableLiveData<List<Map<String, String>>> alertHistory = new MutableLiveData<>(new ArrayList<>());
+    private final MutableLiveData<List<AlertHistoryItem>> alertHistory = new MutableLiveData<>(new ArrayList<>());
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<String> successMessage = new MutableLiveData<>();
-    private final Application application;
 
-    public AlertViewModel() {
-        this.application = null;
+    public AlertViewModel(Application application) {
+        super(application);
         alertRepository = AlertRepository.getInstance();
         contactRepository = ContactRepository.getInstance();
-        locationRepository = LocationHistoryRepository.getInstance();
 
         // Load alert history on initialization
         loadAlertHistory();
@@ -52,7 +47,7 @@ public class AlertViewModel extends ViewModel {
         return activeAlertId;
     }
 
-    public LiveData<List<Map<String, String>>> getAlertHistory() {
+    public LiveData<List<AlertHistoryItem>> getAlertHistory() {
         return alertHistory;
     }
 
@@ -70,122 +65,33 @@ public class AlertViewModel extends ViewModel {
 
     // Trigger SOS alert
     public void triggerSosAlert(String triggerMethod) {
-        isLoading.setValue(true);
         errorMessage.setValue(null);
         successMessage.setValue(null);
 
-        // Get current location
-        locationRepository.getMostRecentLocation(new LocationHistoryRepository.LocationHistoryCallback() {
-            @Override
-            public void onLocationLoaded(LocationHistoryEntity location) {
-                if (location != null) {
-                    // Create alert with location data
-                    createAlert(location, triggerMethod);
-                } else {
-                    // No location available, create alert without location
-                    createAlert(null, triggerMethod);
-                }
-            }
-
-            @Override
-            public void onError(String message) {
-                Log.e(TAG, "Error getting location: " + message);
-                // Create alert without location
-                createAlert(null, triggerMethod);
-            }
-        });
-
-        // Start SOS alert service
-        Intent sosIntent = new Intent(application, SosAlertService.class);
+        // SosAlertService records the alert and starts recording; if an SOS is already
+        // running the arbiter merges this trigger into it instead of raising a second one
+        Intent sosIntent = new Intent(getApplication(), SosAlertService.class);
         sosIntent.setAction("TRIGGER_SOS");
         sosIntent.putExtra("TRIGGER_METHOD", triggerMethod);
-        application.startService(sosIntent);
-
-        // Start emergency recording
-        startEmergencyRecording();
-    }
-
-    // Create alert in the repository
-    private void createAlert(LocationHistoryEntity location, String triggerMethod) {
-        double latitude = 0;
-        double longitude = 0;
-        String address = "";
-
-        if (location != null) {
-            latitude = location.getLatitude();
-            longitude = location.getLongitude();
-            address = location.getAddress();
-        }
-
-        alertRepository.createAlert(latitude, longitude, address, triggerMethod, new AlertRepository.AlertCallback() {
-            @Override
-            public void onSuccess(String alertId, String message) {
-                isLoading.postValue(false);
-                isAlertActive.postValue(true);
-                activeAlertId.postValue(alertId);
-                successMessage.postValue("SOS alert triggered: " + message);
-
-                // Reload alert history
-                loadAlertHistory();
-            }
+        getApplication().startService(sosIntent);
 
-            @Override
-            public void onError(String errorMsg) {
-                isLoading.postValue(false);
-                errorMessage.postValue("Failed to create alert: " + errorMsg);
-                Log.e(TAG, "Error creating alert: " + errorMsg);
-            }
-        });
+        isAlertActive.setValue(true);
+        successMessage.setValue("SOS alert triggered");
     }
 
-    // Start emergency recording
-    private void startEmergencyRecording() {
-        Intent recordingIntent = new Intent(application, EmergencyRecordingService.class);
-        recordingIntent.setAction("START_AUDIO_RECORDING");
-        application.startService(recordingIntent);
-    }
-
-    // Cancel active alert
-    public void cancelAlert() {
+    // The alert raised by this session, falling back to the one the service is running
+    private String resolveActiveAlertId() {
         String alertId = activeAlertId.getValue();
         if (alertId == null || alertId.isEmpty()) {
-            errorMessage.setValue("No active alert to cancel");
-            return;
+            SosArbiter.Session session = SosArbiter.getInstance().getActive();
+            alertId = session != null ? session.getAlertId() : null;
         }
-
-        isLoading.setValue(true);
-        errorMessage.setValue(null);
-        successMessage.setValue(null);
-
-        alertRepository.updateAlertStatus(alertId, "resolved", new AlertRepository.AlertCallback() {
-            @Override
-            public void onSuccess(String alertId, String message) {
-                isLoading.postValue(false);
-                isAlertActive.postValue(false);
-                activeAlertId.postValue(null);
-                successMessage.postValue("Alert canceled: " + message);
-
-                // Stop emergency recording
-                stopEmergencyRecording();
-
-                // Reload alert history
-                loadAlertHistory();
-            }
-
-            @Override
-            public void onError(String errorMsg) {
-                isLoading.postValue(false);
-                errorMessage.postValue("Failed to cancel alert: " + errorMsg);
-                Log.e(TAG, "Error canceling alert: " + errorMsg);
-            }
-        });
+        return alertId;
     }
 
-    // Stop emergency recording
-    private void stopEmergencyRecording() {
-        Intent recordingIntent = new Intent(application, EmergencyRecordingService.class);
-        recordingIntent.setAction("STOP_RECORDING");
-        application.startService(recordingIntent);
+    // Cancel active alert
+    public void cancelAlert() {
+        endAlert("resolved", "No active alert to cancel", "Alert canceled");
     }
 
     // Get alert history
@@ -194,7 +100,7 @@ public class AlertViewModel extends ViewModel {
 
         alertRepository.getAlertHistory(new AlertRepository.AlertHistoryCallback() {
             @Override
-            public void onSuccess(List<Map<String, String>> alerts) {
+            public void onSuccess(List<AlertHistoryItem> alerts) {
                 alertHistory.postValue(alerts);
                 isLoading.postValue(false);
 
@@ -212,14 +118,14 @@ public class AlertViewModel extends ViewModel {
     }
 
     // Check for active alerts in the history
-    private void checkForActiveAlert(List<Map<String, String>> alerts) {
+    private void checkForActiveAlert(List<AlertHistoryItem> alerts) {
         boolean hasActiveAlert = false;
         String activeId = null;
 
-        for (Map<String, String> alert : alerts) {
-            if ("active".equals(alert.get("status"))) {
+        for (AlertHistoryItem alert : alerts) {
+            if (alert.isActive()) {
                 hasActiveAlert = true;
-                activeId = alert.get("id");
+                activeId = alert.getId();
                 break;
             }
         }
@@ -230,65 +136,37 @@ public class AlertViewModel extends ViewModel {
 
     // Mark alert as false alarm
     public void markAsFalseAlarm() {
-        String alertId = activeAlertId.getValue();
-        if (alertId == null || alertId.isEmpty()) {
-            errorMessage.setValue("No active alert to mark as false alarm");
+        endAlert("false_alarm", "No active alert to mark as false alarm", "Alert marked as false alarm");
+    }
+
+    // SosAlertService ends the SOS session, stops SMS retries, live location and recording,
+    // and records the final status, including for an alert it is still writing
+    private void endAlert(String status, String noAlertMessage, String doneMessage) {
+        String alertId = resolveActiveAlertId();
+        if ((alertId == null || alertId.isEmpty()) && SosArbiter.getInstance().getActive() == null) {
+            errorMessage.setValue(noAlertMessage);
             return;
         }
 
-        isLoading.setValue(true);
         errorMessage.setValue(null);
-        successMessage.setValue(null);
-
-        alertRepository.updateAlertStatus(alertId, "false_alarm", new AlertRepository.AlertCallback() {
-            @Override
-            public void onSuccess(String alertId, String message) {
-                isLoading.postValue(false);
-                isAlertActive.postValue(false);
-                activeAlertId.postValue(null);
-                successMessage.postValue("Alert marked as false alarm: " + message);
-
-                // Stop emergency recording
-                stopEmergencyRecording();
-
-                // Reload alert history
-                loadAlertHistory();
-            }
-
-            @Override
-            public void onError(String errorMsg) {
-                isLoading.postValue(false);
-                errorMessage.postValue("Failed to mark alert as false alarm: " + errorMsg);
-                Log.e(TAG, "Error marking alert as false alarm: " + errorMsg);
-            }
-        });
+        Intent cancelIntent = new Intent(getApplication(), SosAlertService.class);
+        cancelIntent.setAction("CANCEL_SOS");
+        cancelIntent.putExtra("ALERT_STATUS", status);
+        cancelIntent.putExtra("ALERT_ID", alertId);
+        getApplication().startService(cancelIntent);
+
+        isAlertActive.setValue(false);
+        activeAlertId.setValue(null);
+        successMessage.setValue(doneMessage);
+        loadAlertHistory();
     }
 
-    // Get alert details by ID
+    // Get alert details by ID; served from the repository's recent history when possible
     public void getAlertDetails(String alertId, AlertDetailsCallback callback) {
-        if (alertHistory.getValue() != null) {
-            for (Map<String, String> alert : alertHistory.getValue()) {
-                if (alertId.equals(alert.get("id"))) {
-                    callback.onAlertDetailsLoaded(alert);
-                    return;
-                }
-            }
-        }
-
-        // If not found in cache, reload history
-        alertRepository.getAlertHistory(new AlertRepository.AlertHistoryCallback() {
+        alertRepository.getAlertById(alertId, new AlertRepository.AlertLookupCallback() {
             @Override
-            public void onSuccess(List<Map<String, String>> alerts) {
-                alertHistory.postValue(alerts);
-
-                for (Map<String, String> alert : alerts) {
-                    if (alertId.equals(alert.get("id"))) {
-                        callback.onAlertDetailsLoaded(alert);
-                        return;
-                    }
-                }
-
-                callback.onError("Alert not found");
+            public void onSuccess(AlertHistoryItem alert) {
+                callback.onAlertDetailsLoaded(alert);
             }
 
             @Override
@@ -305,7 +183,7 @@ public class AlertViewModel extends ViewModel {
 
     // Interface for alert details callback
     public interface AlertDetailsCallback {
-        void onAlertDetailsLoaded(Map<String, String> alertDetails);
+        void onAlertDetailsLoaded(AlertHistoryItem alertDetails);
         void onError(String message);
     }
 }
@@ -9,6 +9,7 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.example.safewomen.models.AlertHistoryItem;
 import com.example.safewomen.models.User;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
 import com.example.safewomen.repositories.AlertRepository;
@@ -33,7 +34,7 @@ public class DashboardViewModel extends ViewModel {
     // LiveData for dashboard information
     private final MutableLiveData<User> currentUser = new MutableLiveData<>();
     private final MutableLiveData<SafetyStatus> safetyStatus = new MutableLiveData<>(SafetyStatus.SAFE);
-    private final MutableLiveData<List<Map<String, String>>> recentAlerts = new MutableLiveData<>(new ArrayList<>());
+    private final MutableLiveData<List<AlertHistoryItem>> recentAlerts = new MutableLiveData<>(new ArrayList<>());
     private final MutableLiveData<LocationHistoryEntity> currentLocation = new MutableLiveData<>();
     private final MutableLiveData<Map<String, Boolean>> serviceStatus = new MutableLiveData<>(new HashMap<>());
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
@@ -81,7 +82,7 @@ public class DashboardViewModel extends ViewModel {
         return safetyStatus;
     }
 
-    public LiveData<List<Map<String, String>>> getRecentAlerts() {
+    public LiveData<List<AlertHistoryItem>> getRecentAlerts() {
         return recentAlerts;
     }
 
@@ -111,8 +112,8 @@ public class DashboardViewModel extends ViewModel {
 
         // For now, we'll base safety status on active alerts
         if (recentAlerts.getValue() != null && !recentAlerts.getValue().isEmpty()) {
-            for (Map<String, String> alert : recentAlerts.getValue()) {
-                if ("active".equals(alert.get("status"))) {
+            for (AlertHistoryItem alert : recentAlerts.getValue()) {
+                if (alert.isActive()) {
                     safetyStatus.setValue(SafetyStatus.DANGER);
                     return;
                 }
@@ -146,17 +147,17 @@ public class DashboardViewModel extends ViewModel {
 
         alertRepository.getAlertHistory(new AlertRepository.AlertHistoryCallback() {
             @Override
-            public void onSuccess(List<Map<String, String>> alerts) {
+            public void onSuccess(List<AlertHistoryItem> alerts) {
                 // Sort alerts by timestamp (newest first)
                 alerts.sort((a, b) -> {
-                    String timestampA = a.get("timestamp");
-                    String timestampB = b.get("timestamp");
+                    String timestampA = a.getTimestamp();
+                    String timestampB = b.getTimestamp();
                     if (timestampA == null || timestampB == null) return 0;
                     return timestampB.compareTo(timestampA);
                 });
 
                 // Limit to most recent 5 alerts
-                List<Map<String, String>> recent = alerts.size() > 5
+                List<AlertHistoryItem> recent = alerts.size() > 5
                         ? alerts.subList(0, 5)
                         : alerts;
 
@@ -2,38 +2,52 @@ package com.example.safewomen.viewmodels;
 
 import android.app.Application;
 import android.content.Intent;
-import android.os.Environment;
+import android.media.MediaDataSource;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.example.safewomen.models.entities.RecordingEntity;
+import com.example.safewomen.repositories.RecordingCatalogRepository;
 import com.example.safewomen.services.EmergencyRecordingService;
+import com.example.safewomen.utils.EncryptedMediaDataSource;
+import com.example.safewomen.utils.RecordingCipher;
+import com.example.safewomen.utils.RecordingQuotaManager;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 public class EmergencyRecordingViewModel extends ViewModel {
     private static final String TAG = "EmergencyRecordingVM";
+    private static final int PAGE_SIZE = 30;
     private final MutableLiveData<Boolean> isRecording = new MutableLiveData<>(false);
     private final MutableLiveData<String> recordingType = new MutableLiveData<>();
     private final MutableLiveData<String> recordingFilePath = new MutableLiveData<>();
     private final MutableLiveData<List<RecordingFile>> recordingHistory = new MutableLiveData<>(new ArrayList<>());
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> hasMoreRecordings = new MutableLiveData<>(false);
+    private final MutableLiveData<RecordingQuotaManager.Usage> storageUsage = new MutableLiveData<>();
+    private final MutableLiveData<Intent> shareIntent = new MutableLiveData<>();
 
     private final Application application;
     private final Executor executor;
+    private final RecordingCatalogRepository catalogRepository;
+
+    // Paging state, only touched on the executor
+    private final List<RecordingFile> loadedRecordings = new ArrayList<>();
+    private RecordingEntity lastLoaded;
+    private boolean endReached = false;
 
     public EmergencyRecordingViewModel(Application application) {
         this.application = application;
         this.executor = Executors.newSingleThreadExecutor();
+        this.catalogRepository = RecordingCatalogRepository.getInstance();
 
         // Load recording history on initialization
         loadRecordingHistory();
@@ -64,10 +78,36 @@ public class EmergencyRecordingViewModel extends ViewModel {
         return errorMessage;
     }
 
+    public LiveData<Boolean> hasMoreRecordings() {
+        return hasMoreRecordings;
+    }
+
+    public LiveData<RecordingQuotaManager.Usage> getStorageUsage() {
+        return storageUsage;
+    }
+
+    public LiveData<Intent> getShareIntent() {
+        return shareIntent;
+    }
+
+    // Refresh storage usage statistics
+    public void loadStorageUsage() {
+        executor.execute(() -> storageUsage.postValue(catalogRepository.getUsage()));
+    }
+
+    // Change the recording storage budget; evicts in the background if now over it
+    public void setStorageQuota(long quotaBytes) {
+        catalogRepository.setQuotaBytes(quotaBytes);
+        loadStorageUsage();
+    }
+
     // Start audio recording
     public void startAudioRecording() {
-        if (isRecording.getValue() != null && isRecording.getValue()) {
-            stopRecording();
+        // Switching modes stops only the other track; the service keeps running
+        if ("video".equals(recordingType.getValue())) {
+            Intent stopIntent = new Intent(application, EmergencyRecordingService.class);
+            stopIntent.setAction("STOP_VIDEO_RECORDING");
+            application.startService(stopIntent);
         }
 
         Intent intent = new Intent(application, EmergencyRecordingService.class);
@@ -81,8 +121,11 @@ public class EmergencyRecordingViewModel extends ViewModel {
 
     // Start video recording
     public void startVideoRecording() {
-        if (isRecording.getValue() != null && isRecording.getValue()) {
-            stopRecording();
+        // Switching modes stops only the other track; the service keeps running
+        if ("audio".equals(recordingType.getValue())) {
+            Intent stopIntent = new Intent(application, EmergencyRecordingService.class);
+            stopIntent.setAction("STOP_AUDIO_RECORDING");
+            application.startService(stopIntent);
         }
 
         Intent intent = new Intent(application, EmergencyRecordingService.class);
@@ -109,83 +152,68 @@ public class EmergencyRecordingViewModel extends ViewModel {
         Log.d(TAG, "Stopped recording");
     }
 
-    // Get recording history
+    // Get recording history, first page
     public void loadRecordingHistory() {
         isLoading.setValue(true);
 
         executor.execute(() -> {
-            try {
-                List<RecordingFile> recordings = new ArrayList<>();
-
-                // Get the directory where recordings are stored
-                File storageDir = new File(application.getExternalFilesDir(Environment.DIRECTORY_MOVIES), "SafeWomen");
-
-                if (storageDir.exists() && storageDir.isDirectory()) {
-                    File[] files = storageDir.listFiles();
-
-                    if (files != null) {
-                        // Sort files by last modified date (newest first)
-                        Arrays.sort(files, Comparator.comparing(File::lastModified).reversed());
-
-                        for (File file : files) {
-                            if (file.isFile()) {
-                                String fileName = file.getName();
-                                String filePath = file.getAbsolutePath();
-                                long fileSize = file.length();
-                                long lastModified = file.lastModified();
-
-                                // Determine file type
-                                String fileType = "unknown";
-                                if (fileName.endsWith(".mp3")) {
-                                    fileType = "audio";
-                                } else if (fileName.endsWith(".mp4")) {
-                                    fileType = "video";
-                                }
-
-                                // Add to list
-                                recordings.add(new RecordingFile(
-                                        fileName,
-                                        filePath,
-                                        fileType,
-                                        fileSize,
-                                        lastModified
-                                ));
-                            }
-                        }
-                    }
-                }
+            loadedRecordings.clear();
+            lastLoaded = null;
+            endReached = false;
+            loadPage();
+        });
+    }
 
-                // Update LiveData on main thread
-                recordingHistory.postValue(recordings);
-                isLoading.postValue(false);
+    // Append the next page of recording history
+    public void loadMoreRecordings() {
+        isLoading.setValue(true);
+        executor.execute(this::loadPage);
+    }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading recording history", e);
-                errorMessage.postValue("Error loading recording history: " + e.getMessage());
-                isLoading.postValue(false);
+    // Must run on the executor
+    private void loadPage() {
+        try {
+            if (!endReached) {
+                // Served from the catalog; files are never listed or stat-ed here
+                List<RecordingEntity> page = catalogRepository.getPage(lastLoaded, PAGE_SIZE);
+                for (RecordingEntity recording : page) {
+                    loadedRecordings.add(new RecordingFile(recording));
+                }
+                if (!page.isEmpty()) {
+                    lastLoaded = page.get(page.size() - 1);
+                }
+                endReached = page.size() < PAGE_SIZE;
             }
-        });
+
+            // Update LiveData on main thread
+            recordingHistory.postValue(new ArrayList<>(loadedRecordings));
+            hasMoreRecordings.postValue(!endReached);
+            isLoading.postValue(false);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading recording history", e);
+            errorMessage.postValue("Error loading recording history: " + e.getMessage());
+            isLoading.postValue(false);
+        }
     }
 
     // Delete a recording
     public void deleteRecording(String filePath) {
         executor.execute(() -> {
             try {
-                File file = new File(filePath);
-                if (file.exists()) {
-                    boolean deleted = file.delete();
-                    if (deleted) {
-                        Log.d(TAG, "Deleted recording: " + filePath);
-
-                        // Reload recording history after deletion
-                        loadRecordingHistory();
-                    } else {
-                        Log.e(TAG, "Failed to delete recording: " + filePath);
-                        errorMessage.postValue("Failed to delete recording");
+                if (catalogRepository.deleteRecording(filePath)) {
+                    Log.d(TAG, "Deleted recording: " + filePath);
+
+                    // Drop it from the loaded pages rather than reloading them
+                    for (int i = 0; i < loadedRecordings.size(); i++) {
+                        if (loadedRecordings.get(i).getPath().equals(filePath)) {
+                            loadedRecordings.remove(i);
+                            break;
+                        }
                     }
+                    recordingHistory.postValue(new ArrayList<>(loadedRecordings));
                 } else {
-                    Log.e(TAG, "Recording file does not exist: " + filePath);
-                    errorMessage.postValue("Recording file does not exist");
+                    Log.e(TAG, "Failed to delete recording: " + filePath);
+                    errorMessage.postValue("Failed to delete recording");
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error deleting recording", e);
@@ -194,20 +222,60 @@ public class EmergencyRecordingViewModel extends ViewModel {
         });
     }
 
-    // Share a recording
-    public Intent createShareIntent(String filePath) {
+    // Share a recording; encrypted ones are decrypted to a temporary copy first
+    public void prepareShareIntent(String filePath) {
         File file = new File(filePath);
         if (!file.exists()) {
             errorMessage.setValue("File does not exist");
-            return null;
+            return;
         }
 
-        Intent shareIntent = new Intent(Intent.ACTION_SEND);
-        shareIntent.setType(filePath.endsWith(".mp3") ? "audio/*" : "video/*");
-        shareIntent.putExtra(Intent.EXTRA_STREAM, android.net.Uri.fromFile(file));
-        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        // Shared recordings are the last to be evicted
+        catalogRepository.touch(filePath);
 
-        return shareIntent;
+        executor.execute(() -> {
+            try {
+                File shared = file;
+                if (RecordingCipher.isEncrypted(filePath)) {
+                    File dir = new File(application.getExternalCacheDir(), "shared");
+                    dir.mkdirs();
+                    // Only the latest shared copy is kept in plaintext
+                    File[] previous = dir.listFiles();
+                    if (previous != null) {
+                        for (File old : previous) old.delete();
+                    }
+                    shared = new File(dir, RecordingCipher.plainName(file.getName()));
+                    catalogRepository.getCipher().decrypt(file, shared);
+                }
+
+                String plainPath = RecordingCipher.plainName(filePath);
+                Intent intent = new Intent(Intent.ACTION_SEND);
+                intent.setType(plainPath.endsWith(".mp3") ? "audio/*" : "video/*");
+                intent.putExtra(Intent.EXTRA_STREAM, android.net.Uri.fromFile(shared));
+                intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                shareIntent.postValue(intent);
+            } catch (Exception e) {
+                Log.e(TAG, "Error preparing recording for sharing", e);
+                errorMessage.postValue("Error sharing recording: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Source for MediaPlayer that decrypts while playing, or null for a plain file
+     * that can be played from its path; the caller closes it
+     */
+    public MediaDataSource openPlaybackSource(String filePath) {
+        if (!RecordingCipher.isEncrypted(filePath)) return null;
+
+        catalogRepository.touch(filePath);
+        try {
+            return new EncryptedMediaDataSource(catalogRepository.getCipher(), new File(filePath));
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening encrypted recording", e);
+            errorMessage.setValue("Error opening recording: " + e.getMessage());
+            return null;
+        }
     }
 
     // Model class for recording files
@@ -217,6 +285,9 @@ public class EmergencyRecordingViewModel extends ViewModel {
         private final String type;
         private final long size;
         private final long timestamp;
+        private final long durationMs;
+        private final String alertId;
+        private final String uploadState;
 
         public RecordingFile(String name, String path, String type, long size, long timestamp) {
             this.name = name;
@@ -224,6 +295,20 @@ public class EmergencyRecordingViewModel extends ViewModel {
             this.type = type;
             this.size = size;
             this.timestamp = timestamp;
+            this.durationMs = 0;
+            this.alertId = null;
+            this.uploadState = RecordingCatalogRepository.UPLOAD_LOCAL;
+        }
+
+        RecordingFile(RecordingEntity recording) {
+            this.name = recording.getName();
+            this.path = recording.getFilePath();
+            this.type = recording.getType();
+            this.size = recording.getSizeBytes();
+            this.timestamp = recording.getCreatedAt();
+            this.durationMs = recording.getDurationMs();
+            this.alertId = recording.getAlertId();
+            this.uploadState = recording.getUploadState();
         }
 
         public String getName() {
@@ -246,6 +331,18 @@ public class EmergencyRecordingViewModel extends ViewModel {
             return timestamp;
         }
 
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        public String getAlertId() {
+            return alertId;
+        }
+
+        public String getUploadState() {
+            return uploadState;
+        }
+
         // Format file size for display (KB, MB)
         public String getFormattedSize() {
             if (size < 1024) {
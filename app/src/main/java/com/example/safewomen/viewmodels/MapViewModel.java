@@ -2,31 +2,63 @@ package com.example.safewomen.viewmodels;
 
 import android.app.Application;
 import android.util.Log;
+import android.util.LruCache;
 
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 
+import com.example.safewomen.models.LocationPoint;
+import com.example.safewomen.models.SafetyZone;
 import com.example.safewomen.models.entities.LocationHistoryEntity;
+import com.example.safewomen.repositories.FrequentPlaceRepository;
 import com.example.safewomen.repositories.LocationHistoryRepository;
+import com.example.safewomen.repositories.SafetyZoneRepository;
+import com.example.safewomen.repositories.ScheduledRuleRepository;
+import com.example.safewomen.utils.HeatmapTileProvider;
+import com.example.safewomen.utils.TrackSimplifier;
 import com.google.android.gms.maps.model.LatLng;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MapViewModel extends AndroidViewModel {
     private static final String TAG = "MapViewModel";
+    private static final double ARRIVE_BY_RADIUS_METERS = 200;
 
     private final LocationHistoryRepository locationRepository;
+    private final SafetyZoneRepository safetyZoneRepository;
+    private final FrequentPlaceRepository frequentPlaceRepository;
+    private final ScheduledRuleRepository scheduledRuleRepository;
     private final MutableLiveData<List<LocationHistoryEntity>> locationHistory = new MutableLiveData<>();
     private final MutableLiveData<LocationHistoryEntity> selectedLocation = new MutableLiveData<>();
-    private final MutableLiveData<List<SafetyZone>> safetyZones = new MutableLiveData<>(new ArrayList<>());
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final MutableLiveData<TrackSimplifier.TrackLevels> trackLevels = new MutableLiveData<>();
 
     // Original unfiltered location history
     private List<LocationHistoryEntity> allLocations = new ArrayList<>();
+    // Room hands out a new LiveData per call, so keep the one being observed
+    private LiveData<List<LocationHistoryEntity>> history;
+    private Observer<List<LocationHistoryEntity>> historyObserver;
+
+    // Simplified tracks are built off the main thread and cached per filtered list
+    private static final int TRACK_CACHE_SIZE = 8;
+    private final LruCache<String, TrackSimplifier.TrackLevels> trackCache = new LruCache<>(TRACK_CACHE_SIZE);
+    private final ExecutorService trackExecutor = Executors.newSingleThreadExecutor();
+    private volatile String pendingTrackKey;
+
+    // Heatmap points are loaded and updated off the main thread; tiles render on map threads
+    private final HeatmapTileProvider heatmapTileProvider;
+    private final ExecutorService heatmapExecutor = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<Integer> heatmapInvalidations = new MutableLiveData<>();
+    private boolean heatmapLoaded = false;
 
     private final Application application;
 
@@ -34,6 +66,10 @@ public class MapViewModel extends AndroidViewModel {
         super(application);
         this.application = application;
         locationRepository = LocationHistoryRepository.getInstance();
+        safetyZoneRepository = SafetyZoneRepository.getInstance();
+        frequentPlaceRepository = FrequentPlaceRepository.getInstance();
+        scheduledRuleRepository = ScheduledRuleRepository.getInstance();
+        heatmapTileProvider = new HeatmapTileProvider(new File(application.getCacheDir(), "heatmap"));
 
         // Load location history
         loadLocationHistory();
@@ -49,7 +85,7 @@ public class MapViewModel extends AndroidViewModel {
     }
 
     public LiveData<List<SafetyZone>> getSafetyZones() {
-        return safetyZones;
+        return safetyZoneRepository.getZones();
     }
 
     public LiveData<Boolean> getIsLoading() {
@@ -60,20 +96,41 @@ public class MapViewModel extends AndroidViewModel {
         return errorMessage;
     }
 
+    public LiveData<TrackSimplifier.TrackLevels> getTrackLevels() {
+        return trackLevels;
+    }
+
+    public HeatmapTileProvider getHeatmapTileProvider() {
+        return heatmapTileProvider;
+    }
+
+    /**
+     * Emits the number of invalidated tiles whenever heatmap points change
+     */
+    public LiveData<Integer> getHeatmapInvalidations() {
+        return heatmapInvalidations;
+    }
+
     // Load location history
     public void loadLocationHistory() {
+        if (historyObserver != null) return;
         isLoading.setValue(true);
 
-        locationRepository.getLocationHistory().observeForever(locations -> {
+        historyObserver = locations -> {
             if (locations != null) {
                 allLocations = locations;
-                locationHistory.setValue(locations);
+                publishLocations(locations, "all");
                 isLoading.setValue(false);
 
-                // Generate safety zones based on location history
-                generateSafetyZones();
+                // Bring heatmap points up to date with the database
+                refreshHeatmap();
+
+                // Update frequent places, published as generated safety zones
+                frequentPlaceRepository.refresh();
             }
-        });
+        };
+        history = locationRepository.getLocationHistory();
+        history.observeForever(historyObserver);
     }
 
     // Filter locations by today
@@ -97,7 +154,7 @@ public class MapViewModel extends AndroidViewModel {
             }
         }
 
-        locationHistory.setValue(filtered);
+        publishLocations(filtered, "today");
     }
 
     // Filter locations by this week
@@ -122,7 +179,7 @@ public class MapViewModel extends AndroidViewModel {
             }
         }
 
-        locationHistory.setValue(filtered);
+        publishLocations(filtered, "week");
     }
 
     // Filter locations by this month
@@ -147,12 +204,75 @@ public class MapViewModel extends AndroidViewModel {
             }
         }
 
-        locationHistory.setValue(filtered);
+        publishLocations(filtered, "month");
     }
 
     // Clear filters
     public void clearFilters() {
-        locationHistory.setValue(allLocations);
+        publishLocations(allLocations, "all");
+    }
+
+    // Publish a (filtered) history list and its simplified tracks
+    private void publishLocations(List<LocationHistoryEntity> locations, String filter) {
+        locationHistory.setValue(locations);
+
+        // History is sorted newest first, so the ends identify the list contents
+        String key = filter + ":" + locations.size();
+        if (!locations.isEmpty()) {
+            key += ":" + locations.get(0).getTimestamp()
+                    + ":" + locations.get(locations.size() - 1).getTimestamp();
+        }
+
+        TrackSimplifier.TrackLevels cached = trackCache.get(key);
+        if (cached != null) {
+            pendingTrackKey = key;
+            trackLevels.setValue(cached);
+            return;
+        }
+
+        final String trackKey = key;
+        final List<LocationHistoryEntity> snapshot = new ArrayList<>(locations);
+        pendingTrackKey = trackKey;
+        trackExecutor.execute(() -> {
+            long start = System.nanoTime();
+            TrackSimplifier.TrackLevels levels = TrackSimplifier.buildLevels(snapshot);
+            trackCache.put(trackKey, levels);
+            Log.d(TAG, "Built track LODs for " + snapshot.size() + " points in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+
+            // Drop results for a list that has since been replaced
+            if (trackKey.equals(pendingTrackKey)) {
+                trackLevels.postValue(levels);
+            }
+        });
+    }
+
+    // Load new heatmap points, falling back to a full reload if rows were removed
+    private void refreshHeatmap() {
+        heatmapExecutor.execute(() -> {
+            try {
+                if (!heatmapLoaded) {
+                    heatmapTileProvider.setPoints(locationRepository.getPointsSinceSync(0));
+                    heatmapLoaded = true;
+                    heatmapInvalidations.postValue(-1);
+                    return;
+                }
+
+                int count = locationRepository.getLocationCountSync();
+                List<LocationPoint> newPoints =
+                        locationRepository.getPointsSinceSync(heatmapTileProvider.getLastTimestamp());
+                if (count == heatmapTileProvider.getPointCount() + newPoints.size()) {
+                    if (!newPoints.isEmpty()) {
+                        heatmapInvalidations.postValue(heatmapTileProvider.addPoints(newPoints));
+                    }
+                } else {
+                    heatmapTileProvider.setPoints(locationRepository.getPointsSinceSync(0));
+                    heatmapInvalidations.postValue(-1);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error refreshing heatmap", e);
+            }
+        });
     }
 
     // Select a location
@@ -180,72 +300,32 @@ public class MapViewModel extends AndroidViewModel {
         }
     }
 
-    // Generate safety zones based on location history
-    private void generateSafetyZones() {
-        // This is a simplified implementation
-        // In a real app, you would:
-        // 1. Use a more sophisticated algorithm to identify safe/unsafe areas
-        // 2. Consider time of day, crime statistics, etc.
-        // 3. Load safety zones from a database or API
-
-        List<SafetyZone> zones = new ArrayList<>();
-
-        // For demo purposes, we'll create some random safety zones
-        if (allLocations != null && !allLocations.isEmpty()) {
-            // Create a safe zone around the most recent location
-            LocationHistoryEntity recent = allLocations.get(allLocations.size() - 1);
-            LatLng recentPos = new LatLng(recent.getLatitude(), recent.getLongitude());
-            zones.add(new SafetyZone(recentPos, 500, 0.9f)); // 500m radius, 0.9 safety rating
-
-            // Create a warning zone nearby
-            LatLng warningPos = new LatLng(
-                    recent.getLatitude() + 0.01,
-                    recent.getLongitude() + 0.01);
-            zones.add(new SafetyZone(warningPos, 400, 0.5f)); // 400m radius, 0.5 safety rating
-
-            // Create a danger zone nearby
-            LatLng dangerPos = new LatLng(
-                    recent.getLatitude() - 0.01,
-                    recent.getLongitude() - 0.01);
-            zones.add(new SafetyZone(dangerPos, 300, 0.2f)); // 300m radius, 0.2 safety rating
-        }
+    // Alert if not within ARRIVE_BY_RADIUS_METERS of the target by the given time of day
+    public void addArriveByRule(LatLng target, int hourOfDay, int minute) {
+        String name = String.format(Locale.getDefault(), "Arrive by %02d:%02d", hourOfDay, minute);
+        scheduledRuleRepository.addArriveByRule(name, target.latitude, target.longitude,
+                ARRIVE_BY_RADIUS_METERS, hourOfDay, minute);
+    }
 
-        safetyZones.setValue(zones);
+    // Alert if stopped outside a safe zone for longer than the given time
+    public void addMaxStopRule(int durationMinutes) {
+        scheduledRuleRepository.addMaxStopRule("Stop over " + durationMinutes + " min", durationMinutes);
     }
 
     // Add a safety zone
     private void addSafetyZone(LatLng center, double radiusMeters, float safetyRating) {
-        List<SafetyZone> zones = safetyZones.getValue();
-        if (zones == null) {
-            zones = new ArrayList<>();
-        }
-
-        zones.add(new SafetyZone(center, radiusMeters, safetyRating));
-        safetyZones.setValue(zones);
+        safetyZoneRepository.addUserZone(new SafetyZone(center, radiusMeters, safetyRating));
     }
 
-    // Safety Zone class
-    public static class SafetyZone {
-        private final LatLng center;
-        private final double radiusMeters;
-        private final float safetyRating; // 0.0 to 1.0, where 1.0 is completely safe
-
-        public SafetyZone(LatLng center, double radiusMeters, float safetyRating) {
-            this.center = center;
-            this.radiusMeters = radiusMeters;
-            this.safetyRating = safetyRating;
-        }
-
-        public LatLng getCenter() {
-            return center;
-        }
-
-        public double getRadiusMeters() {
-            return radiusMeters;
-        }
-
-        public float getSafetyRating() {
-            return safetyRating;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        // The repository outlives this ViewModel; stop it calling back into a dead one
+        if (history != null) {
+            history.removeObserver(historyObserver);
         }
+        // Results of work still queued would only be posted to LiveData nobody observes
+        trackExecutor.shutdownNow();
+        heatmapExecutor.shutdownNow();
     }
 }
@@ -1,19 +1,21 @@
 package com.example.safewomen.workers;
 
 import android.content.Context;
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import com.example.safewomen.api.ApiClient;
-import com.example.safewomen.api.ApiService;
-import com.example.safewomen.models.entities.AlertEntity;
-import com.example.safewomen.data.AlertDao;
-import com.example.safewomen.data.SafeWomenDatabase;
-
-import java.util.List;
+import com.example.safewomen.repositories.AlertRepository;
 
+/**
+ * Drains alerts recorded locally but not yet on the server. Retries use the
+ * exponential backoff set when the work is enqueued.
+ */
 public class AlertSyncWorker extends Worker {
+    private static final String TAG = "AlertSyncWorker";
+
     public AlertSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
         super(context, params);
     }
@@ -22,23 +24,15 @@ public class AlertSyncWorker extends Worker {
     @Override
     public Result doWork() {
         try {
-            Context context = getApplicationContext();
-            SafeWomenDatabase db = SafeWomenDatabase.getInstance(context);
-            AlertDao dao = db.alertDao();
-
-            List<AlertEntity> pending = dao.getPendingAlerts();
-            ApiService api = ApiClient.getClient().create(ApiService.class);
-
-            for (AlertEntity alert : pending) {
-                // TODO: Add your upload logic here.
-                // On success: dao.updateAlertStatus(alert.getId(), "active");
-                // On failure: continue to next or mark for retry
+            AlertRepository.init(getApplicationContext());
+            if (AlertRepository.getInstance().syncPendingAlerts()) {
+                return Result.success();
             }
-
-            return Result.success();
+            Log.d(TAG, "Alerts still pending, retrying (attempt " + getRunAttemptCount() + ")");
+            return Result.retry();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Result.retry(); // optional: retry later if something fails
+            Log.e(TAG, "Alert sync worker failed", e);
+            return Result.retry();
         }
     }
-}
\ No newline at end of file
+}
@@ -8,19 +8,21 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 import com.example.safewomen.api.ApiClient;
+import com.example.safewomen.api.ApiReaders;
+import com.example.safewomen.api.ApiResponse;
 import com.example.safewomen.api.ApiService;
+import com.example.safewomen.api.BatchMultiplexer;
+import com.example.safewomen.api.ResponseDecoder;
 import com.example.safewomen.models.entities.EmergencyContactEntity;
 import com.example.safewomen.data.ContactDao;
 import com.example.safewomen.data.SafeWomenDatabase;
 
-import org.json.JSONObject;
-
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import okhttp3.ResponseBody;
-import retrofit2.Call;
 import retrofit2.Response;
 
 public class ContactSyncWorker extends Worker {
@@ -38,34 +40,40 @@ public class ContactSyncWorker extends Worker {
             SafeWomenDatabase db = SafeWomenDatabase.getInstance(context);
             ContactDao dao = db.contactDao();
             List<EmergencyContactEntity> pending = dao.getPendingContacts();
-            ApiService api = ApiClient.getClient().create(ApiService.class);
-
+            // Collected up front so the whole backlog can go out in as few requests as possible
+            List<BatchMultiplexer.Operation> operations = new ArrayList<>();
             for (EmergencyContactEntity contact : pending) {
-                try {
-                    Map<String, String> params = new HashMap<>();
-                    params.put("name", contact.getName());
-                    params.put("phone", contact.getPhone());
-                    params.put("relationship", contact.getRelationship());
-                    params.put("is_primary", contact.isPrimary() ? "1" : "0");
+                Map<String, String> params = new HashMap<>();
+                params.put("name", contact.getName());
+                params.put("phone", contact.getPhone());
+                params.put("relationship", contact.getRelationship());
+                params.put("is_primary", contact.isPrimary() ? "1" : "0");
 
-                    // If contact has a server ID (for updates), include it
-                    if (!contact.getId().startsWith("local_")) {
-                        params.put("contact_id", contact.getId());
-                        Call<ResponseBody> call = api.updateContact(params);
-                        Response<ResponseBody> response = call.execute();
-                        processResponse(response, contact, dao);
-                    } else {
-                        // New contact
-                        Call<ResponseBody> call = api.addContact(params);
-                        Response<ResponseBody> response = call.execute();
+                // If contact has a server ID (for updates), include it
+                String endpoint;
+                if (!contact.getId().startsWith("local_")) {
+                    params.put("contact_id", contact.getId());
+                    endpoint = ApiService.UPDATE_CONTACT;
+                } else {
+                    // New contact
+                    endpoint = ApiService.ADD_CONTACT;
+                }
+
+                operations.add(new BatchMultiplexer.Operation(endpoint, params, new BatchMultiplexer.ResultCallback() {
+                    @Override
+                    public void onResponse(Response<ResponseBody> response) {
                         processResponse(response, contact, dao);
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error syncing contact: " + contact.getId(), e);
-                    // Mark as failed but don't stop the worker
-                    dao.updateSyncStatus(contact.getId(), "failed");
-                }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        Log.e(TAG, "Error syncing contact: " + contact.getId(), t);
+                        // Mark as failed but don't stop the worker
+                        dao.updateSyncStatus(contact.getId(), "failed");
+                    }
+                }));
             }
+            ApiClient.getBatchMultiplexer().execute(operations);
             return Result.success();
         } catch (Exception e) {
             Log.e(TAG, "Contact sync worker failed", e);
@@ -76,14 +84,12 @@ public class ContactSyncWorker extends Worker {
     private void processResponse(Response<ResponseBody> response, EmergencyContactEntity contact, ContactDao dao) {
         try {
             if (response.isSuccessful() && response.body() != null) {
-                String responseString = response.body().string();
-                JSONObject jsonResponse = new JSONObject(responseString);
+                ApiResponse<String> result = ResponseDecoder.decode(response.body(), "contact", ApiReaders.ID);
 
-                if (jsonResponse.optBoolean("success", false)) {
+                if (result.isSuccess()) {
                     // If this was a new contact, update with server ID
-                    if (contact.getId().startsWith("local_") && jsonResponse.has("contact")) {
-                        JSONObject contactData = jsonResponse.getJSONObject("contact");
-                        String serverId = contactData.getString("id");
+                    if (contact.getId().startsWith("local_") && result.getData() != null) {
+                        String serverId = result.getData();
 
                         // Create updated entity with server ID
                         EmergencyContactEntity updated = new EmergencyContactEntity(
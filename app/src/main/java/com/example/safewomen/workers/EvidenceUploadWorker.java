@@ -0,0 +1,41 @@
+package com.example.safewomen.workers;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.safewomen.repositories.RecordingSegmentRepository;
+import com.example.safewomen.utils.PreferenceManager;
+
+/**
+ * Uploads closed recording segments. Partial uploads resume where the server
+ * left off; retries use the exponential backoff set when the work is enqueued.
+ */
+public class EvidenceUploadWorker extends Worker {
+    private static final String TAG = "EvidenceUploadWorker";
+
+    public EvidenceUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            PreferenceManager.init(getApplicationContext());
+            RecordingSegmentRepository.init((Application) getApplicationContext());
+            if (RecordingSegmentRepository.getInstance().uploadPending()) {
+                return Result.success();
+            }
+            Log.d(TAG, "Segments still pending, retrying (attempt " + getRunAttemptCount() + ")");
+            return Result.retry();
+        } catch (Exception e) {
+            Log.e(TAG, "Evidence upload worker failed", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.safewomen.workers;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.safewomen.repositories.RecordingCatalogRepository;
+import com.example.safewomen.utils.PreferenceManager;
+
+/**
+ * Periodically brings recordings back within their storage quota
+ */
+public class RecordingQuotaWorker extends Worker {
+    private static final String TAG = "RecordingQuotaWorker";
+
+    public RecordingQuotaWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            PreferenceManager.init(getApplicationContext());
+            RecordingCatalogRepository.init((Application) getApplicationContext());
+            RecordingCatalogRepository.getInstance().enforceQuota();
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Recording quota worker failed", e);
+            return Result.failure();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.safewomen.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the multiplexer against a stand-in server through the blocking
+ * execute(); enqueue() only adds the window and the main thread hop on top
+ */
+public class BatchMultiplexerTest {
+    private static final String BATCHING = "{\"success\":true,\"batch\":{\"max_operations\":20,"
+            + "\"endpoints\":[\"update_location.php\",\"update_contact.php\"]}}";
+
+    private MockWebServer server;
+    private StandInServer backend;
+    private long now = 1700000000000L;
+    private BatchMultiplexer multiplexer;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        backend = new StandInServer();
+        server.setDispatcher(backend);
+        server.start();
+        ApiService apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .build()
+                .create(ApiService.class);
+        multiplexer = new BatchMultiplexer(apiService, () -> now);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void advertisedEndpointsShareOneBatch() throws Exception {
+        backend.capabilities = new MockResponse().setBody(BATCHING);
+        backend.batch = new MockResponse().setBody("{\"success\":true,\"results\":["
+                + "{\"id\":\"0\",\"status\":200,\"body\":{\"success\":true,\"message\":\"first\"}},"
+                + "{\"id\":\"1\",\"status\":422,\"body\":{\"success\":false,\"message\":\"Bad latitude\"}},"
+                + "{\"id\":\"2\",\"status\":200,\"body\":{\"success\":true,\"contact_id\":12345678901234567890}}]}");
+
+        List<Result> results = execute(
+                operation(ApiService.UPDATE_LOCATION, "latitude", "28.6139"),
+                operation(ApiService.UPDATE_LOCATION, "latitude", "999"),
+                operation(ApiService.UPDATE_CONTACT, "name", "Asha"),
+                operation(ApiService.ADD_CONTACT, "name", "Meera"));
+
+        // One capability check, one batch, and the endpoint that isn't batched on its own
+        assertEquals(Arrays.asList("/capabilities.php", "/add_contact.php", "/batch.php"), backend.paths);
+        JSONArray operations = new JSONObject(backend.bodies.get("/batch.php")).getJSONArray("operations");
+        assertEquals(3, operations.length());
+        assertEquals("0", operations.getJSONObject(0).getString("id"));
+        assertEquals(ApiService.UPDATE_LOCATION, operations.getJSONObject(0).getString("endpoint"));
+        assertEquals("28.6139", operations.getJSONObject(0).getJSONObject("params").getString("latitude"));
+        assertEquals("Asha", operations.getJSONObject(2).getJSONObject("params").getString("name"));
+
+        // Each operation gets the response its endpoint would have given alone
+        assertEquals(200, results.get(0).code);
+        assertEquals("first", results.get(0).json().getString("message"));
+        assertEquals(422, results.get(1).code);
+        assertEquals("Bad latitude", results.get(1).json().getString("message"));
+        // Copied as a literal, not through a double
+        assertTrue(results.get(2).body.contains("12345678901234567890"));
+        assertEquals(200, results.get(3).code);
+        assertEquals("/add_contact.php", results.get(3).json().getString("path"));
+
+        assertEquals(4, multiplexer.getOperationCount());
+        assertEquals(1, multiplexer.getBatchCount());
+        assertEquals(3, multiplexer.getBatchedOperationCount());
+        assertEquals(1, multiplexer.getIndividualCallCount());
+    }
+
+    @Test
+    public void missingResultFailsOnlyThatOperation() throws Exception {
+        backend.capabilities = new MockResponse().setBody(BATCHING);
+        backend.batch = new MockResponse().setBody("{\"success\":true,\"results\":["
+                + "{\"id\":\"1\",\"status\":200,\"body\":{\"success\":true}}]}");
+
+        List<Result> results = execute(
+                operation(ApiService.UPDATE_LOCATION, "latitude", "1"),
+                operation(ApiService.UPDATE_LOCATION, "latitude", "2"));
+
+        assertTrue(results.get(0).failure instanceof IOException);
+        assertEquals(200, results.get(1).code);
+    }
+
+    @Test
+    public void withoutBatchSupportEverythingIsSentIndividually() throws Exception {
+        // An older server answers capabilities.php with a 404
+        backend.capabilities = new MockResponse().setResponseCode(404);
+
+        List<Result> results = execute(
+                operation(ApiService.UPDATE_LOCATION, "latitude", "1"),
+                operation(ApiService.UPDATE_LOCATION, "latitude", "2"));
+
+        assertEquals(Arrays.asList("/capabilities.php", "/update_location.php", "/update_location.php"),
+                backend.paths);
+        assertEquals(200, results.get(0).code);
+        assertEquals(200, results.get(1).code);
+        assertEquals(0, multiplexer.getBatchCount());
+        assertEquals(2, multiplexer.getIndividualCallCount());
+    }
+
+    @Test
+    public void capabilitiesWithoutBatchSectionMeansNoBatching() throws Exception {
+        backend.capabilities = new MockResponse().setBody("{\"success\":true}");
+
+        execute(operation(ApiService.UPDATE_LOCATION, "latitude", "1"),
+                operation(ApiService.UPDATE_CONTACT, "name", "Asha"));
+
+        assertFalse(backend.paths.contains("/batch.php"));
+        assertEquals(2, multiplexer.getIndividualCallCount());
+    }
+
+    @Test
+    public void unsupportedBatchFallsBackUntilTheNextCapabilityCheck() throws Exception {
+        // Advertised, but batch.php itself is gone
+        backend.capabilities = new MockResponse().setBody(BATCHING);
+        backend.batch = new MockResponse().setResponseCode(501);
+
+        List<Result> results = execute(
+                operation(ApiService.UPDATE_LOCATION, "latitude", "1"),
+                operation(ApiService.UPDATE_LOCATION, "latitude", "2"));
+
+        assertEquals(Arrays.asList("/capabilities.php", "/batch.php",
+                "/update_location.php", "/update_location.php"), backend.paths);
+        assertEquals(200, results.get(0).code);
+        assertEquals(200, results.get(1).code);
+        assertEquals(0, multiplexer.getBatchCount());
+
+        // Stays off without asking again...
+        backend.paths.clear();
+        execute(operation(ApiService.UPDATE_LOCATION, "latitude", "3"),
+                operation(ApiService.UPDATE_LOCATION, "latitude", "4"));
+        assertEquals(Arrays.asList("/update_location.php", "/update_location.php"), backend.paths);
+
+        // ...until the capabilities expire
+        backend.paths.clear();
+        backend.batch = new MockResponse().setBody("{\"success\":true,\"results\":["
+                + "{\"id\":\"0\",\"status\":200,\"body\":{}},{\"id\":\"1\",\"status\":200,\"body\":{}}]}");
+        now += TimeUnit.HOURS.toMillis(6);
+        execute(operation(ApiService.UPDATE_LOCATION, "latitude", "5"),
+                operation(ApiService.UPDATE_LOCATION, "latitude", "6"));
+        assertEquals(Arrays.asList("/capabilities.php", "/batch.php"), backend.paths);
+        assertEquals(1, multiplexer.getBatchCount());
+    }
+
+    @Test
+    public void failedBatchReachesEveryOperation() throws Exception {
+        backend.capabilities = new MockResponse().setBody(BATCHING);
+        backend.batch = new MockResponse().setResponseCode(401).setBody("{\"success\":false,\"message\":\"Expired\"}");
+
+        List<Result> results = execute(
+                operation(ApiService.UPDATE_LOCATION, "latitude", "1"),
+                operation(ApiService.UPDATE_CONTACT, "name", "Asha"));
+
+        // Retrying one by one wouldn't help with an expired token
+        assertEquals(Arrays.asList("/capabilities.php", "/batch.php"), backend.paths);
+        for (Result result : results) {
+            assertEquals(401, result.code);
+            assertEquals("Expired", result.json().getString("message"));
+        }
+    }
+
+    @Test
+    public void capabilityCheckIsCached() throws Exception {
+        backend.capabilities = new MockResponse().setBody(BATCHING);
+        backend.batch = new MockResponse().setBody("{\"success\":true,\"results\":["
+                + "{\"id\":\"0\",\"status\":200,\"body\":{}},{\"id\":\"1\",\"status\":200,\"body\":{}}]}");
+
+        for (int i = 0; i < 3; i++) {
+            execute(operation(ApiService.UPDATE_LOCATION, "latitude", "1"),
+                    operation(ApiService.UPDATE_LOCATION, "latitude", "2"));
+        }
+
+        assertEquals(1, backend.count("/capabilities.php"));
+        assertEquals(3, backend.count("/batch.php"));
+    }
+
+    private List<Result> execute(Pending... operations) {
+        List<BatchMultiplexer.Operation> list = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        for (Pending pending : operations) {
+            list.add(pending.operation);
+            results.add(pending.result);
+        }
+        multiplexer.execute(list);
+        for (Result result : results) {
+            assertTrue("No callback", result.code != 0 || result.failure != null);
+        }
+        return results;
+    }
+
+    private static Pending operation(String endpoint, String key, String value) {
+        Map<String, String> params = new HashMap<>();
+        params.put(key, value);
+        return new Pending(endpoint, params);
+    }
+
+    private static class Pending {
+        final Result result = new Result();
+        final BatchMultiplexer.Operation operation;
+
+        Pending(String endpoint, Map<String, String> params) {
+            operation = new BatchMultiplexer.Operation(endpoint, params, result);
+        }
+    }
+
+    private static class Result implements BatchMultiplexer.ResultCallback {
+        int code;
+        String body;
+        Throwable failure;
+
+        @Override
+        public void onResponse(Response<ResponseBody> response) {
+            code = response.code();
+            try (ResponseBody responseBody = response.isSuccessful() ? response.body() : response.errorBody()) {
+                body = responseBody != null ? responseBody.string() : null;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            assertNull(failure);
+            failure = t;
+        }
+
+        JSONObject json() throws Exception {
+            return new JSONObject(body);
+        }
+    }
+
+    /**
+     * capabilities.php and batch.php answer as configured; any other endpoint
+     * succeeds and echoes its path
+     */
+    private static class StandInServer extends Dispatcher {
+        final List<String> paths = new CopyOnWriteArrayList<>();
+        final Map<String, String> bodies = new ConcurrentHashMap<>();
+        volatile MockResponse capabilities = new MockResponse().setResponseCode(404);
+        volatile MockResponse batch = new MockResponse().setResponseCode(404);
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            paths.add(path);
+            bodies.put(path, request.getBody().readUtf8());
+            switch (path) {
+                case "/capabilities.php":
+                    return capabilities;
+                case "/batch.php":
+                    return batch;
+                default:
+                    return new MockResponse().setBody("{\"success\":true,\"path\":\"" + path + "\"}");
+            }
+        }
+
+        int count(String path) {
+            int count = 0;
+            for (String each : paths) {
+                if (each.equals(path)) count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.safewomen.api;
+
+import com.example.safewomen.models.AlertHistoryItem;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the old string + JSONObject + HashMap parsing of an alert history
+ * with the streaming ResponseDecoder, by time and bytes allocated. Numbers come
+ * from the JVM, so they show the trend rather than what a phone would measure.
+ */
+public class DecoderBenchmarkTest {
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private static final int ALERT_COUNT = 2000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 10;
+
+    @Test
+    public void streamingDecodesTheSameAlerts() throws IOException, JSONException {
+        String body = historyJson(50);
+        List<Map<String, String>> tree = parseTree(body);
+        List<AlertHistoryItem> streamed = parseStreaming(body);
+
+        assertEquals(tree.size(), streamed.size());
+        for (int i = 0; i < tree.size(); i++) {
+            Map<String, String> expected = tree.get(i);
+            AlertHistoryItem actual = streamed.get(i);
+            assertEquals(expected.get("id"), actual.getId());
+            assertEquals(expected.get("type"), actual.getType());
+            assertEquals(expected.get("status"), actual.getStatus());
+            assertEquals(Double.parseDouble(expected.get("latitude")), actual.getLatitude(), 0);
+            assertEquals(Double.parseDouble(expected.get("longitude")), actual.getLongitude(), 0);
+            assertEquals(expected.get("address"), actual.getAddress());
+            assertEquals(expected.get("timestamp"), actual.getTimestamp());
+        }
+    }
+
+    @Test
+    public void benchmarkAlertHistory() throws IOException, JSONException {
+        String body = historyJson(ALERT_COUNT);
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            parseTree(body);
+            parseStreaming(body);
+        }
+
+        long treeBytes = allocatedBytes();
+        long treeStart = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            parseTree(body);
+        }
+        long treeNanos = (System.nanoTime() - treeStart) / MEASURED_RUNS;
+        treeBytes = (allocatedBytes() - treeBytes) / MEASURED_RUNS;
+
+        long streamBytes = allocatedBytes();
+        long streamStart = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            parseStreaming(body);
+        }
+        long streamNanos = (System.nanoTime() - streamStart) / MEASURED_RUNS;
+        streamBytes = (allocatedBytes() - streamBytes) / MEASURED_RUNS;
+
+        System.out.println(String.format(Locale.US,
+                "DecoderBenchmark: %d alerts (%d KB): JSONObject %.2f ms / %d KB allocated, "
+                        + "streaming %.2f ms / %d KB allocated",
+                ALERT_COUNT, body.length() / 1024, treeNanos / 1e6, treeBytes / 1024,
+                streamNanos / 1e6, streamBytes / 1024));
+
+        // Allocation is deterministic enough to check; time is only reported
+        if (treeBytes > 0) {
+            assertTrue("Streaming allocated " + streamBytes + " bytes, tree " + treeBytes,
+                    streamBytes < treeBytes);
+        }
+    }
+
+    // What AlertRepository.getAlertHistory used to do
+    private static List<Map<String, String>> parseTree(String json) throws IOException, JSONException {
+        String responseString = ResponseBody.create(JSON, json).string();
+        JSONObject jsonObject = new JSONObject(responseString);
+        JSONArray alertsArray = jsonObject.getJSONArray("alerts");
+        List<Map<String, String>> alerts = new ArrayList<>();
+        for (int i = 0; i < alertsArray.length(); i++) {
+            JSONObject alertJson = alertsArray.getJSONObject(i);
+            Map<String, String> alert = new HashMap<>();
+            alert.put("id", alertJson.getString("id"));
+            alert.put("type", alertJson.getString("type"));
+            alert.put("status", alertJson.getString("status"));
+            alert.put("latitude", alertJson.getString("latitude"));
+            alert.put("longitude", alertJson.getString("longitude"));
+            alert.put("address", alertJson.getString("address"));
+            alert.put("timestamp", alertJson.getString("timestamp"));
+            alerts.add(alert);
+        }
+        return alerts;
+    }
+
+    private static List<AlertHistoryItem> parseStreaming(String json) throws IOException {
+        return ResponseDecoder.decode(ResponseBody.create(JSON, json), "alerts", ApiReaders.ALERT_HISTORY).getData();
+    }
+
+    private static String historyJson(int alertCount) throws JSONException {
+        JSONArray alerts = new JSONArray();
+        for (int i = 0; i < alertCount; i++) {
+            JSONObject alert = new JSONObject();
+            alert.put("id", String.valueOf(100000 + i));
+            alert.put("type", i % 3 == 0 ? "shake" : "button");
+            alert.put("status", i == 0 ? "active" : "resolved");
+            alert.put("latitude", String.valueOf(28.6139 + i * 1e-4));
+            alert.put("longitude", String.valueOf(77.2090 - i * 1e-4));
+            alert.put("address", "Block " + i + ", Connaught Place, New Delhi");
+            alert.put("timestamp", String.format(Locale.US, "2024-01-%02d 10:%02d:00", 1 + i % 28, i % 60));
+            alerts.put(alert);
+        }
+        JSONObject response = new JSONObject();
+        response.put("success", true);
+        response.put("message", "OK");
+        response.put("alerts", alerts);
+        return response.toString();
+    }
+
+    // Bytes allocated by this thread so far, or 0 where the JVM doesn't count them
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+            if (counting.isThreadAllocatedMemorySupported() && counting.isThreadAllocatedMemoryEnabled()) {
+                return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+}
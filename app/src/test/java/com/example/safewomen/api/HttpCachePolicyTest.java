@@ -0,0 +1,208 @@
+package com.example.safewomen.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * The policy on a client set up like ApiClient's, against a stand-in PHP
+ * server that sends session no-cache headers on everything
+ */
+public class HttpCachePolicyTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private HttpCacheStats stats;
+    private OkHttpClient client;
+    private volatile String token = "user-a";
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        stats = new HttpCacheStats();
+        HttpCachePolicy policy = new HttpCachePolicy(stats);
+        client = new OkHttpClient.Builder()
+                .cache(new Cache(folder.newFolder("http"), 1024 * 1024))
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Authorization", "Bearer " + token)
+                        .build()))
+                .addInterceptor(policy.application())
+                .addNetworkInterceptor(policy.network())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void revalidatedResponseCountsAsAHit() throws Exception {
+        server.enqueue(phpResponse("{\"contacts\":[1]}").setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        assertEquals("{\"contacts\":[1]}", get("get_contacts.php"));
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+
+        // Always revalidated, but the body comes from the cache
+        assertEquals("{\"contacts\":[1]}", get("get_contacts.php"));
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getValidatedCount());
+        assertEquals(0.5, stats.getHitRate(), 0);
+    }
+
+    @Test
+    public void changedResponseReplacesTheCachedOne() throws Exception {
+        server.enqueue(phpResponse("{\"contacts\":[1]}").setHeader("ETag", "\"v1\""));
+        server.enqueue(phpResponse("{\"contacts\":[1,2]}").setHeader("ETag", "\"v2\""));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v2\""));
+
+        get("get_contacts.php");
+        assertEquals("{\"contacts\":[1,2]}", get("get_contacts.php"));
+        assertEquals("{\"contacts\":[1,2]}", get("get_contacts.php"));
+
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v2\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getValidatedCount());
+    }
+
+    @Test
+    public void freshnessDependsOnTheEndpoint() throws Exception {
+        server.enqueue(phpResponse("{\"resources\":[]}"));
+        server.enqueue(phpResponse("{\"settings\":{}}").setHeader("ETag", "\"s1\""));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"s1\""));
+
+        // Safety resources stay fresh for a day: the second read never leaves the device
+        get("get_safety_resources.php");
+        get("get_safety_resources.php");
+        // Settings are edited from other devices, so every read asks the server
+        get("get_settings.php");
+        get("get_settings.php");
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getValidatedCount());
+        assertEquals(2, stats.getMissCount());
+    }
+
+    @Test
+    public void uncoveredEndpointsKeepTheServerHeaders() throws Exception {
+        server.enqueue(phpResponse("{\"alerts\":[]}"));
+        server.enqueue(phpResponse("{\"alerts\":[]}"));
+
+        get("get_alert_history.php");
+        get("get_alert_history.php");
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, stats.getRequestCount());
+    }
+
+    @Test
+    public void staleCopyStandsInForAServerError() throws Exception {
+        server.enqueue(phpResponse("{\"zones\":[1]}").setHeader("ETag", "\"z1\""));
+        server.enqueue(phpResponse("{\"contacts\":[1]}").setHeader("ETag", "\"c1\""));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        get("get_safe_zones.php");
+        get("get_contacts.php");
+        assertEquals("{\"contacts\":[1]}", get("get_contacts.php"));
+        assertEquals(1, stats.getStaleCount());
+
+        // Nothing cached to fall back on, so the error goes through
+        try (Response response = call("get_settings.php")) {
+            assertEquals(500, response.code());
+        }
+        assertEquals(1, stats.getStaleCount());
+    }
+
+    @Test
+    public void staleCopyStandsInWhenTheServerIsUnreachable() throws Exception {
+        server.enqueue(phpResponse("{\"contacts\":[1]}").setHeader("ETag", "\"c1\""));
+        get("get_contacts.php");
+
+        server.shutdown();
+        assertEquals("{\"contacts\":[1]}", get("get_contacts.php"));
+        assertEquals(1, stats.getStaleCount());
+
+        try {
+            call("get_settings.php").close();
+            fail("Uncached request succeeded without a server");
+        } catch (IOException expected) {
+            // Connection refused
+        }
+    }
+
+    @Test
+    public void responsesAreNotSharedBetweenUsers() throws Exception {
+        server.enqueue(phpResponse("{\"resources\":\"a\"}").setHeader("ETag", "\"a\""));
+        server.enqueue(phpResponse("{\"resources\":\"b\"}").setHeader("ETag", "\"b\""));
+
+        assertEquals("{\"resources\":\"a\"}", get("get_safety_resources.php"));
+        token = "user-b";
+        // Still fresh for user A, but user B must not see it or revalidate it
+        assertEquals("{\"resources\":\"b\"}", get("get_safety_resources.php"));
+
+        server.takeRequest();
+        RecordedRequest second = server.takeRequest();
+        assertEquals("Bearer user-b", second.getHeader("Authorization"));
+        assertNull(second.getHeader("If-None-Match"));
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0, stats.getHitCount());
+    }
+
+    @Test
+    public void staleCopyIsNotSharedBetweenUsers() throws Exception {
+        server.enqueue(phpResponse("{\"contacts\":\"a\"}"));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        get("get_contacts.php");
+        token = "user-b";
+        try (Response response = call("get_contacts.php")) {
+            assertEquals(500, response.code());
+        }
+        assertEquals(0, stats.getStaleCount());
+    }
+
+    // What the PHP session handler sends with every response
+    private static MockResponse phpResponse(String body) {
+        return new MockResponse()
+                .setBody(body)
+                .setHeader("Cache-Control", "no-store, no-cache, must-revalidate")
+                .setHeader("Pragma", "no-cache")
+                .setHeader("Expires", "Thu, 19 Nov 1981 08:52:00 GMT");
+    }
+
+    private String get(String endpoint) throws IOException {
+        try (Response response = call(endpoint)) {
+            assertEquals(200, response.code());
+            return response.body().string();
+        }
+    }
+
+    private Response call(String endpoint) throws IOException {
+        return client.newCall(new Request.Builder().url(server.url("/api/" + endpoint)).build()).execute();
+    }
+}
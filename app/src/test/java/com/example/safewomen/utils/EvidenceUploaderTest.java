@@ -0,0 +1,304 @@
+package com.example.safewomen.utils;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.api.ApiService;
+import com.example.safewomen.data.RecordingSegmentDao;
+import com.example.safewomen.models.entities.RecordingSegmentEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the uploader against a stand-in server that fails on cue, to check which
+ * failures keep the segment for a retry and which give it up.
+ */
+public class EvidenceUploaderTest {
+    private static final int SIZE = 2 * EvidenceUploader.CHUNK_SIZE + 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeDao dao;
+    private EvidenceUploader uploader;
+    private RecordingSegmentEntity segment;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        ApiService apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .build()
+                .create(ApiService.class);
+        dao = new FakeDao();
+        // Plain segments never touch the cipher
+        uploader = new EvidenceUploader(apiService, dao, null);
+
+        File file = folder.newFile("segment-0.m4a");
+        byte[] content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        segment = new RecordingSegmentEntity("seg-1", "session-1", "sos-1", "audio", 0,
+                file.getPath(), 1700000000000L, "closed");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void uploadsEveryChunkThenCompletes() throws InterruptedException {
+        enqueueInit(0);
+        enqueueChunk(EvidenceUploader.CHUNK_SIZE);
+        enqueueChunk(2 * EvidenceUploader.CHUNK_SIZE);
+        enqueueChunk(SIZE);
+        enqueueJson(200, "{\"success\":true}");
+
+        assertEquals(EvidenceUploader.Result.UPLOADED, uploader.upload(segment));
+
+        assertEquals("/evidence_upload_init.php", server.takeRequest().getRequestUrl().encodedPath());
+        assertEquals("0", chunkOffset(server.takeRequest()));
+        assertEquals(String.valueOf(EvidenceUploader.CHUNK_SIZE), chunkOffset(server.takeRequest()));
+        RecordedRequest last = server.takeRequest();
+        assertEquals(String.valueOf(2 * EvidenceUploader.CHUNK_SIZE), chunkOffset(last));
+        assertEquals(1000, last.getBodySize());
+        assertEquals("/evidence_upload_complete.php", server.takeRequest().getRequestUrl().encodedPath());
+        assertEquals(SIZE, dao.uploadedBytes);
+    }
+
+    @Test
+    public void expiredSessionIsRetriedNotRejected() {
+        enqueueJson(401, "{\"success\":false,\"message\":\"Token expired\"}");
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+
+        enqueueInit(0);
+        enqueueJson(403, "{\"success\":false}");
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+    }
+
+    @Test
+    public void transientFailuresAreRetried() {
+        for (int code : new int[] {404, 429, 500, 503}) {
+            enqueueJson(code, "{\"success\":false}");
+            assertEquals("HTTP " + code, EvidenceUploader.Result.RETRY, uploader.upload(segment));
+        }
+    }
+
+    @Test
+    public void explicitRefusalsAreRejected() {
+        for (int code : new int[] {400, 413, 422}) {
+            enqueueInit(0);
+            enqueueJson(code, "{\"success\":false}");
+            assertEquals("HTTP " + code, EvidenceUploader.Result.REJECTED, uploader.upload(segment));
+        }
+    }
+
+    @Test
+    public void retryResumesFromCommittedOffset() throws InterruptedException {
+        enqueueInit(0);
+        enqueueChunk(EvidenceUploader.CHUNK_SIZE);
+        server.enqueue(new MockResponse().setResponseCode(503));
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+        assertEquals(EvidenceUploader.CHUNK_SIZE, dao.uploadedBytes);
+        for (int i = 0; i < 3; i++) server.takeRequest();
+
+        // The server kept the first chunk, so the next attempt skips it
+        enqueueInit(EvidenceUploader.CHUNK_SIZE);
+        enqueueChunk(2 * EvidenceUploader.CHUNK_SIZE);
+        enqueueChunk(SIZE);
+        enqueueJson(200, "{\"success\":true}");
+        assertEquals(EvidenceUploader.Result.UPLOADED, uploader.upload(segment));
+
+        server.takeRequest();
+        assertEquals(String.valueOf(EvidenceUploader.CHUNK_SIZE), chunkOffset(server.takeRequest()));
+        assertEquals(7, server.getRequestCount());
+    }
+
+    @Test
+    public void conflictContinuesFromServerOffset() throws InterruptedException {
+        enqueueInit(0);
+        // The ack of an earlier attempt was lost; the server already has two chunks
+        enqueueJson(409, "{\"success\":false,\"offset\":" + 2 * EvidenceUploader.CHUNK_SIZE + "}");
+        enqueueChunk(SIZE);
+        enqueueJson(200, "{\"success\":true}");
+
+        assertEquals(EvidenceUploader.Result.UPLOADED, uploader.upload(segment));
+
+        server.takeRequest();
+        assertEquals("0", chunkOffset(server.takeRequest()));
+        assertEquals(String.valueOf(2 * EvidenceUploader.CHUNK_SIZE), chunkOffset(server.takeRequest()));
+    }
+
+    @Test
+    public void conflictWithoutOffsetIsRejected() {
+        enqueueInit(0);
+        enqueueJson(409, "{\"success\":false,\"message\":\"Upload already sealed\"}");
+        assertEquals(EvidenceUploader.Result.REJECTED, uploader.upload(segment));
+    }
+
+    @Test
+    public void conflictsThatDontConvergeAreRetried() throws InterruptedException {
+        enqueueInit(0);
+        enqueueJson(409, "{\"success\":false,\"offset\":" + EvidenceUploader.CHUNK_SIZE + "}");
+        // Sending from there is answered with the original offset
+        enqueueJson(409, "{\"success\":false,\"offset\":0}");
+
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void offsetThatDoesNotAdvanceIsRetried() {
+        enqueueInit(0);
+        enqueueChunk(EvidenceUploader.CHUNK_SIZE);
+        // Acknowledged, but the server still has the same offset
+        enqueueChunk(EvidenceUploader.CHUNK_SIZE);
+
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(EvidenceUploader.CHUNK_SIZE, dao.uploadedBytes);
+    }
+
+    @Test
+    public void offsetPastTheFileIsRetried() {
+        enqueueInit(0);
+        enqueueChunk(SIZE + 1);
+
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+        assertEquals(0, dao.uploadedBytes);
+    }
+
+    @Test
+    public void quotedAndMissingOffsetsAreRead() throws InterruptedException {
+        enqueueJson(200, "{\"success\":\"1\",\"upload_id\":\"up-1\",\"offset\":\"0\"}");
+        // Without an offset the chunk is taken as stored whole
+        enqueueJson(200, "{\"success\":true}");
+        enqueueChunk(SIZE);
+        enqueueJson(200, "{\"success\":true}");
+
+        assertEquals(EvidenceUploader.Result.UPLOADED, uploader.upload(segment));
+
+        server.takeRequest();
+        server.takeRequest();
+        assertEquals(String.valueOf(EvidenceUploader.CHUNK_SIZE), chunkOffset(server.takeRequest()));
+    }
+
+    @Test
+    public void malformedResponseIsRetried() {
+        enqueueJson(200, "<html>Gateway timeout</html>");
+        assertEquals(EvidenceUploader.Result.RETRY, uploader.upload(segment));
+    }
+
+    @Test
+    public void missingFileIsRejectedWithoutRequests() {
+        assertTrue(new File(segment.getFilePath()).delete());
+        assertEquals(EvidenceUploader.Result.REJECTED, uploader.upload(segment));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private void enqueueInit(long offset) {
+        enqueueJson(200, "{\"success\":true,\"upload_id\":\"up-1\",\"offset\":" + offset + "}");
+    }
+
+    private void enqueueChunk(long offset) {
+        enqueueJson(200, "{\"success\":true,\"offset\":" + offset + "}");
+    }
+
+    private void enqueueJson(int code, String body) {
+        server.enqueue(new MockResponse().setResponseCode(code).setBody(body));
+    }
+
+    private static String chunkOffset(RecordedRequest request) {
+        assertEquals("/evidence_upload_chunk.php", request.getRequestUrl().encodedPath());
+        return request.getRequestUrl().queryParameter("offset");
+    }
+
+    private static class FakeDao implements RecordingSegmentDao {
+        String sha256;
+        String uploadId;
+        long uploadedBytes;
+
+        @Override
+        public void setUploadProgress(String segmentId, String uploadId, long uploadedBytes) {
+            this.uploadId = uploadId;
+            this.uploadedBytes = uploadedBytes;
+        }
+
+        @Override
+        public void setSha256(String segmentId, String sha256) {
+            this.sha256 = sha256;
+        }
+
+        @Override
+        public void insert(RecordingSegmentEntity segment) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(RecordingSegmentEntity segment) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RecordingSegmentEntity getById(String segmentId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RecordingSegmentEntity getByFilePath(String filePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(String segmentId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public LiveData<List<RecordingSegmentEntity>> observeSession(String sessionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<RecordingSegmentEntity> getUploadable(int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RecordingSegmentEntity getNextUploadable(String activeSosId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setStatus(String segmentId, String status) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int markInterrupted() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.safewomen.utils;
+
+/**
+ * Clock that only moves when a test moves it
+ */
+class FakeClock implements Clock {
+    private long now;
+
+    FakeClock(long now) {
+        this.now = now;
+    }
+
+    void set(long now) {
+        this.now = now;
+    }
+
+    void advance(long millis) {
+        now += millis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+}
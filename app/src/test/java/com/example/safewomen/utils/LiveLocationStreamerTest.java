@@ -0,0 +1,221 @@
+package com.example.safewomen.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams to a stand-in live location server over a real WebSocket
+ */
+public class LiveLocationStreamerTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private MockWebServer server;
+    private ScheduledExecutorService executor;
+    private FakeFixSource fixSource;
+    private LiveLocationStreamer streamer;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        fixSource = new FakeFixSource();
+        streamer = new LiveLocationStreamer(new OkHttpClient(), server.url("/live").toString(),
+                fixSource, executor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        streamer.stop();
+        assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(fixSource.stopped);
+        server.shutdown();
+    }
+
+    @Test
+    public void helloThenFixesUntilAcked() throws Exception {
+        StandInServer stream = new StandInServer(true);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(stream));
+
+        streamer.start("local-1", null);
+        JSONObject hello = stream.next();
+        assertEquals("hello", hello.getString("type"));
+        assertEquals("local-1", hello.getString("alert_key"));
+        assertEquals(0, hello.getLong("last_acked"));
+        // Not uploaded yet, so there's no server id to send
+        assertFalse(hello.has("alert_id"));
+
+        fixSource.push(1);
+        JSONObject fixes = stream.next();
+        assertEquals("fixes", fixes.getString("type"));
+        assertEquals(1, fixes.getJSONArray("fixes").getJSONObject(0).getLong("seq"));
+        assertEquals(28.6139, fixes.getJSONArray("fixes").getJSONObject(0).getDouble("lat"), 1e-6);
+
+        // Once the upload returns, the stream is tied to the server's id
+        streamer.setServerAlertId("42");
+        JSONObject again = stream.next();
+        assertEquals("hello", again.getString("type"));
+        assertEquals("42", again.getString("alert_id"));
+        assertEquals(hello.getString("session"), again.getString("session"));
+    }
+
+    @Test
+    public void reconnectResumesAfterLastAck() throws Exception {
+        StandInServer first = new StandInServer(false);
+        StandInServer second = new StandInServer(true);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(first));
+        server.enqueue(new MockResponse().withWebSocketUpgrade(second));
+
+        streamer.start("local-1", "42");
+        JSONObject hello = first.next();
+        for (int i = 0; i < 3; i++) {
+            fixSource.push(1);
+            first.next();
+        }
+
+        // Fix 3 is lost with the connection
+        first.socket.send("{\"type\":\"ack\",\"seq\":2}");
+        first.socket.close(1001, "Going away");
+
+        JSONObject resumed = second.next();
+        assertEquals("hello", resumed.getString("type"));
+        assertEquals(hello.getString("session"), resumed.getString("session"));
+        assertEquals(2, resumed.getLong("last_acked"));
+        assertEquals(listOf(3), seqs(second.next()));
+    }
+
+    @Test
+    public void fullBufferThinsOlderFixes() throws Exception {
+        // Everything arrives before the socket opens, like a long time offline
+        int count = LiveLocationStreamer.MAX_BUFFERED_FIXES + 100;
+        fixSource.preload = count;
+        StandInServer stream = new StandInServer(true);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(stream));
+
+        streamer.start("local-1", null);
+        assertEquals("hello", stream.next().getString("type"));
+
+        List<Long> received = new ArrayList<>();
+        while (received.isEmpty() || received.get(received.size() - 1) < count) {
+            received.addAll(seqs(stream.next()));
+        }
+
+        // The first overflow dropped every other fix of the older half; the newest are intact
+        assertEquals(550, received.size());
+        assertEquals(1, (long) received.get(0));
+        assertEquals(3, (long) received.get(1));
+        List<Long> newest = received.subList(received.size() - 400, received.size());
+        for (int i = 0; i < newest.size(); i++) {
+            assertEquals(301 + i, (long) newest.get(i));
+        }
+    }
+
+    private static List<Long> seqs(JSONObject frame) throws Exception {
+        assertEquals("fixes", frame.getString("type"));
+        JSONArray fixes = frame.getJSONArray("fixes");
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < fixes.length(); i++) {
+            seqs.add(fixes.getJSONObject(i).getLong("seq"));
+        }
+        return seqs;
+    }
+
+    private static List<Long> listOf(long... values) {
+        List<Long> list = new ArrayList<>();
+        for (long value : values) list.add(value);
+        return list;
+    }
+
+    private static class FakeFixSource implements LiveLocationStreamer.FixSource {
+        volatile LiveLocationStreamer.FixCallback callback;
+        volatile boolean stopped = false;
+        int preload = 0;
+        private long time = 1700000000000L;
+
+        @Override
+        public void start(LiveLocationStreamer.FixCallback callback) {
+            this.callback = callback;
+            push(preload);
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        void push(int count) {
+            for (int i = 0; i < count; i++) {
+                time += 1000;
+                callback.onFix(28.6139 + i * 1e-5, 77.2090, 8f, time);
+            }
+        }
+    }
+
+    /**
+     * Server end of the stream; records every frame and optionally acks each fixes frame
+     */
+    private static class StandInServer extends WebSocketListener {
+        final BlockingQueue<JSONObject> frames = new LinkedBlockingQueue<>();
+        final boolean autoAck;
+        volatile WebSocket socket;
+
+        StandInServer(boolean autoAck) {
+            this.autoAck = autoAck;
+        }
+
+        JSONObject next() throws InterruptedException {
+            JSONObject frame = frames.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("No frame from the streamer", frame);
+            return frame;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            socket = webSocket;
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            try {
+                JSONObject frame = new JSONObject(text);
+                if (autoAck && "fixes".equals(frame.getString("type"))) {
+                    JSONArray fixes = frame.getJSONArray("fixes");
+                    long last = fixes.getJSONObject(fixes.length() - 1).getLong("seq");
+                    webSocket.send("{\"type\":\"ack\",\"seq\":" + last + "}");
+                }
+                frames.add(frame);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.safewomen.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded ScheduledExecutorService driven by a FakeClock. Nothing runs
+ * until the test calls runDue() or advance(), and then everything runs on the
+ * test thread in due-time order.
+ */
+class ManualScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+    private final FakeClock clock;
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private long sequence = 0;
+    private boolean shutdown = false;
+
+    ManualScheduledExecutor(FakeClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Run every task due by now, including ones they schedule for now
+     */
+    void runDue() {
+        while (!queue.isEmpty() && queue.peek().runAt <= clock.currentTimeMillis()) {
+            Task<?> task = queue.poll();
+            if (!task.isCancelled()) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Move the clock forward, running each task at its due time
+     */
+    void advance(long millis) {
+        long target = clock.currentTimeMillis() + millis;
+        runDue();
+        while (true) {
+            Task<?> next = nextLive();
+            if (next == null || next.runAt > target) break;
+            clock.set(next.runAt);
+            runDue();
+        }
+        clock.set(target);
+    }
+
+    /**
+     * Time until the next pending task, or -1 if there is none
+     */
+    long nextDelayMillis() {
+        Task<?> next = nextLive();
+        return next == null ? -1 : next.runAt - clock.currentTimeMillis();
+    }
+
+    private Task<?> nextLive() {
+        while (!queue.isEmpty() && queue.peek().isCancelled()) {
+            queue.poll();
+        }
+        return queue.peek();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(() -> {
+            command.run();
+            return null;
+        }, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Task<V> task = new Task<>(callable, clock.currentTimeMillis() + unit.toMillis(delay), sequence++);
+        queue.add(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<Runnable>(queue);
+        queue.clear();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+
+    private class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        final long runAt;
+        final long order;
+
+        Task(Callable<V> callable, long runAt, long order) {
+            super(callable);
+            this.runAt = runAt;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            try {
+                // Surface exceptions instead of parking them in the future
+                if (!isCancelled()) get();
+            } catch (Exception e) {
+                throw new AssertionError("Task failed", e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(runAt - clock.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Task<?> task = (Task<?>) other;
+            if (runAt != task.runAt) return runAt < task.runAt ? -1 : 1;
+            return Long.compare(order, task.order);
+        }
+    }
+}
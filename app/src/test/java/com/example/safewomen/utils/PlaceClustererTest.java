@@ -0,0 +1,195 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.LocationPoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceClustererTest {
+    private static final double EPS_METERS = 50;
+    private static final int MIN_POINTS = 24;
+    private static final long FIX_INTERVAL_MS = 5000;
+
+    private static final double[][] PLACES = {
+            {28.6139, 77.2090},   // home
+            {28.6280, 77.2180},   // work
+            {28.6050, 77.2300},   // gym
+    };
+
+    @Test
+    public void findsPlacesWithVisitsAndDwell() {
+        List<LocationPoint> points = new Day(new Random(1)).days(3).points;
+
+        PlaceClusterer clusterer = new PlaceClusterer(EPS_METERS, MIN_POINTS);
+        clusterer.cluster(points);
+        List<PlaceClusterer.Place> places = clusterer.getPlaces();
+
+        assertEquals(PLACES.length, places.size());
+        for (PlaceClusterer.Place place : places) {
+            assertTrue(nearestPlaceDistance(place) < 30);
+            // Home is visited twice a day, morning and evening
+            boolean home = GeoUtils.distanceMeters(place.getLatitude(), place.getLongitude(),
+                    PLACES[0][0], PLACES[0][1]) < 30;
+            assertEquals(home ? 6 : 3, place.getVisitCount());
+            assertTrue(place.getTotalDwellMs() > 60 * 60 * 1000L);
+        }
+    }
+
+    @Test
+    public void travelBetweenPlacesIsNoise() {
+        List<LocationPoint> points = new ArrayList<>();
+        long time = 0;
+        // A straight walk, one fix every 10 m
+        for (int i = 0; i < 500; i++) {
+            points.add(new LocationPoint(28.60 + i * 0.00009, 77.20, time));
+            time += FIX_INTERVAL_MS;
+        }
+
+        PlaceClusterer clusterer = new PlaceClusterer(EPS_METERS, MIN_POINTS);
+        clusterer.cluster(points);
+        assertTrue(clusterer.getPlaces().isEmpty());
+    }
+
+    @Test
+    public void absorbedPointsMatchFullRecluster() {
+        List<LocationPoint> points = new Day(new Random(2)).days(4).points;
+        // Inside the last evening at home, as a phone staying put would report
+        int split = points.size() - 2000;
+
+        PlaceClusterer incremental = new PlaceClusterer(EPS_METERS, MIN_POINTS);
+        incremental.cluster(points.subList(0, split));
+        boolean reclusterDue = incremental.absorb(points.subList(split, points.size()));
+
+        PlaceClusterer full = new PlaceClusterer(EPS_METERS, MIN_POINTS);
+        full.cluster(points);
+
+        assertFalse(reclusterDue);
+        assertEquals(points.size(), incremental.getPointCount());
+        assertEquals(points.get(points.size() - 1).getTimestamp(), incremental.getLastTimestamp());
+        List<PlaceClusterer.Place> a = incremental.getPlaces();
+        List<PlaceClusterer.Place> b = full.getPlaces();
+        assertEquals(b.size(), a.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(b.get(i).getVisitCount(), a.get(i).getVisitCount());
+            assertEquals(b.get(i).getLatitude(), a.get(i).getLatitude(), 1e-4);
+        }
+    }
+
+    /**
+     * Full clustering of 100k fixes, about a week of history at one fix every 5 s,
+     * plus absorbing the next hour of fixes. Prints timings; the assertions only
+     * guard against the grid degrading to quadratic behaviour.
+     */
+    @Test
+    public void benchmarkHundredThousandFixes() {
+        Day generator = new Day(new Random(3));
+        while (generator.points.size() < 100000) {
+            generator.day();
+        }
+        List<LocationPoint> points = generator.points.subList(0, 100000);
+        List<LocationPoint> nextHour = new Day(new Random(4), generator.time).stay(PLACES[0], 720).points;
+
+        PlaceClusterer clusterer = new PlaceClusterer(EPS_METERS, MIN_POINTS);
+        // Warm up the JIT so the measured run isn't mostly interpretation
+        for (int i = 0; i < 3; i++) {
+            clusterer.cluster(points);
+        }
+
+        long start = System.nanoTime();
+        clusterer.cluster(points);
+        long clusterMs = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        clusterer.absorb(nextHour);
+        long absorbUs = (System.nanoTime() - start) / 1000;
+
+        System.out.println(String.format(Locale.US,
+                "PlaceClusterer: %d fixes clustered in %d ms, %d absorbed in %d us, %d places",
+                points.size(), clusterMs, nextHour.size(), absorbUs, clusterer.getPlaces().size()));
+
+        assertEquals(PLACES.length, clusterer.getPlaces().size());
+        assertTrue("Clustering took " + clusterMs + " ms", clusterMs < 5000);
+    }
+
+    private static double nearestPlaceDistance(PlaceClusterer.Place place) {
+        double best = Double.MAX_VALUE;
+        for (double[] known : PLACES) {
+            best = Math.min(best, GeoUtils.distanceMeters(place.getLatitude(), place.getLongitude(),
+                    known[0], known[1]));
+        }
+        return best;
+    }
+
+    /**
+     * Synthetic history: home, work, gym, home again each day, walking in between,
+     * with GPS jitter of up to 20 m
+     */
+    private static class Day {
+        final Random random;
+        final List<LocationPoint> points = new ArrayList<>();
+        long time;
+
+        Day(Random random) {
+            this(random, 1700000000000L);
+        }
+
+        Day(Random random, long time) {
+            this.random = random;
+            this.time = time;
+        }
+
+        Day days(int count) {
+            for (int i = 0; i < count; i++) {
+                day();
+            }
+            return this;
+        }
+
+        Day day() {
+            stay(PLACES[0], 4000);      // night at home
+            travel(PLACES[0], PLACES[1]);
+            stay(PLACES[1], 5000);      // work
+            travel(PLACES[1], PLACES[2]);
+            stay(PLACES[2], 900);       // gym
+            travel(PLACES[2], PLACES[0]);
+            stay(PLACES[0], 3000);      // evening at home
+            // Gap overnight, so each day starts a new visit
+            time += 30 * 60 * 1000L;
+            return this;
+        }
+
+        Day stay(double[] place, int fixes) {
+            for (int i = 0; i < fixes; i++) {
+                add(place[0] + jitterDegrees(), place[1] + jitterDegrees());
+            }
+            return this;
+        }
+
+        void travel(double[] from, double[] to) {
+            // Walking pace, about 7 m between fixes
+            double meters = GeoUtils.distanceMeters(from[0], from[1], to[0], to[1]);
+            int steps = (int) (meters / 7);
+            for (int i = 1; i < steps; i++) {
+                double f = (double) i / steps;
+                add(from[0] + (to[0] - from[0]) * f, from[1] + (to[1] - from[1]) * f);
+            }
+        }
+
+        private void add(double latitude, double longitude) {
+            points.add(new LocationPoint(latitude, longitude, time));
+            time += FIX_INTERVAL_MS;
+        }
+
+        private double jitterDegrees() {
+            return (random.nextDouble() - 0.5) * 2 * 20 / GeoUtils.METERS_PER_DEGREE_LAT;
+        }
+    }
+}
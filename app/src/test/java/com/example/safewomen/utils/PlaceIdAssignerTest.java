@@ -0,0 +1,60 @@
+package com.example.safewomen.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceIdAssignerTest {
+
+    @Test
+    public void driftAcrossRoundingBoundaryKeepsId() {
+        PlaceIdAssigner assigner = new PlaceIdAssigner(100);
+        String id = assigner.assign(Collections.singletonList(place(28.61349, 77.20949))).get(0);
+
+        // About 2 m further, but on the other side of a 0.001 degree boundary
+        String again = assigner.assign(Collections.singletonList(place(28.61351, 77.20951))).get(0);
+        assertEquals(id, again);
+        assertTrue(id.startsWith("generated_"));
+    }
+
+    @Test
+    public void rememberedPlacesKeepTheirIds() {
+        PlaceIdAssigner assigner = new PlaceIdAssigner(100);
+        assigner.remember("generated_home", 28.6139, 77.2090, 60);
+
+        List<String> ids = assigner.assign(Arrays.asList(place(28.6140, 77.2091), place(28.6280, 77.2180)));
+        assertEquals("generated_home", ids.get(0));
+        assertNotEquals("generated_home", ids.get(1));
+    }
+
+    @Test
+    public void eachOldIdIsClaimedOnce() {
+        PlaceIdAssigner assigner = new PlaceIdAssigner(100);
+        assigner.remember("generated_home", 28.6139, 77.2090, 60);
+
+        // The old place split in two: the first, bigger cluster keeps the id
+        List<String> ids = assigner.assign(Arrays.asList(place(28.6141, 77.2090), place(28.6137, 77.2090)));
+        assertEquals("generated_home", ids.get(0));
+        assertNotEquals(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    public void vanishedPlacesAreForgotten() {
+        PlaceIdAssigner assigner = new PlaceIdAssigner(100);
+        String id = assigner.assign(Collections.singletonList(place(28.6139, 77.2090))).get(0);
+        assigner.assign(Collections.<PlaceClusterer.Place>emptyList());
+
+        String later = assigner.assign(Collections.singletonList(place(28.6139, 77.2090))).get(0);
+        assertNotEquals(id, later);
+    }
+
+    private static PlaceClusterer.Place place(double latitude, double longitude) {
+        return new PlaceClusterer.Place(latitude, longitude, 50, 100, 1, 0, 0, 0);
+    }
+}
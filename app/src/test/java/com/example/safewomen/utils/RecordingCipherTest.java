@@ -0,0 +1,182 @@
+package com.example.safewomen.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.crypto.KeyGenerator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the cipher with a software master key in place of the Keystore one
+ */
+public class RecordingCipherTest {
+    private static final int BENCHMARK_MEGABYTES = 32;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RecordingCipher cipher;
+
+    @Before
+    public void setUp() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        cipher = new RecordingCipher(generator.generateKey());
+    }
+
+    @Test
+    public void encryptThenDecryptRestoresTheFile() throws Exception {
+        // Not a whole number of chunks, so the short last chunk is covered
+        byte[] content = randomBytes(3 * RecordingCipher.CHUNK_SIZE + 123);
+        File plain = write("segment.m4a", content);
+        File encrypted = new File(folder.getRoot(), "segment.m4a" + RecordingCipher.EXTENSION);
+        File decrypted = new File(folder.getRoot(), "decrypted.m4a");
+
+        cipher.encrypt(plain, encrypted);
+        cipher.decrypt(encrypted, decrypted);
+
+        assertTrue(RecordingCipher.isEncrypted(encrypted.getPath()));
+        assertArrayEquals(content, Files.readAllBytes(decrypted.toPath()));
+    }
+
+    @Test
+    public void readerDecryptsAnyRange() throws Exception {
+        byte[] content = randomBytes(2 * RecordingCipher.CHUNK_SIZE + 10);
+        File encrypted = encrypt(content);
+
+        try (RecordingCipher.Reader reader = cipher.open(encrypted)) {
+            assertEquals(content.length, reader.getSize());
+            // Spans the boundary between the first and second chunk
+            int position = RecordingCipher.CHUNK_SIZE - 50;
+            byte[] range = new byte[100];
+            assertEquals(100, reader.read(position, range, 0, range.length));
+            assertArrayEquals(Arrays.copyOfRange(content, position, position + 100), range);
+            assertEquals(-1, reader.read(content.length, range, 0, range.length));
+        }
+    }
+
+    @Test
+    public void alteredChunkIsDetected() throws Exception {
+        File encrypted = encrypt(randomBytes(2 * RecordingCipher.CHUNK_SIZE));
+        try (RandomAccessFile file = new RandomAccessFile(encrypted, "rw")) {
+            long position = file.length() - 100;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 1);
+        }
+
+        try {
+            cipher.decrypt(encrypted, new File(folder.getRoot(), "decrypted.m4a"));
+            fail("Tampered recording decrypted");
+        } catch (GeneralSecurityException expected) {
+            // AEADBadTagException
+        }
+    }
+
+    @Test
+    public void truncationIsDetected() throws Exception {
+        File encrypted = encrypt(randomBytes(3 * RecordingCipher.CHUNK_SIZE));
+        try (RandomAccessFile file = new RandomAccessFile(encrypted, "rw")) {
+            // Drop the last chunk; the one before it wasn't sealed as last
+            file.setLength(file.length() - RecordingCipher.CHUNK_SIZE - 16);
+        }
+
+        try {
+            cipher.decrypt(encrypted, new File(folder.getRoot(), "decrypted.m4a"));
+            fail("Truncated recording decrypted");
+        } catch (GeneralSecurityException expected) {
+            // AEADBadTagException
+        }
+    }
+
+    /**
+     * What encryption adds over writing the same data plain. JVM numbers, so
+     * they show the trend rather than what a phone would measure.
+     */
+    @Test
+    public void benchmarkEncryptionOverPlainWrite() throws Exception {
+        File plain = new File(folder.getRoot(), "benchmark.bin");
+        File encrypted = new File(folder.getRoot(), "benchmark.bin" + RecordingCipher.EXTENSION);
+
+        long plainWall = System.nanoTime();
+        long plainCpu = cpuNanos();
+        try (FileOutputStream output = new FileOutputStream(plain);
+             FileChannel out = output.getChannel()) {
+            ByteBuffer block = ByteBuffer.allocateDirect(RecordingCipher.CHUNK_SIZE);
+            byte[] noise = randomBytes(RecordingCipher.CHUNK_SIZE);
+            for (int i = 0; i < BENCHMARK_MEGABYTES * (1024 * 1024 / RecordingCipher.CHUNK_SIZE); i++) {
+                block.clear();
+                block.put(noise).flip();
+                while (block.hasRemaining()) {
+                    out.write(block);
+                }
+            }
+            out.force(false);
+        }
+        plainWall = (System.nanoTime() - plainWall) / 1000000;
+        plainCpu = (cpuNanos() - plainCpu) / 1000000;
+
+        long cipherWall = System.nanoTime();
+        long cipherCpu = cpuNanos();
+        cipher.encrypt(plain, encrypted);
+        cipherWall = (System.nanoTime() - cipherWall) / 1000000;
+        cipherCpu = (cpuNanos() - cipherCpu) / 1000000;
+
+        System.out.println(String.format(Locale.US,
+                "RecordingCipher: %d MB: plain write %.1f MB/s (cpu %d ms), encrypt %.1f MB/s (cpu %d ms, +%d ms over plain)",
+                BENCHMARK_MEGABYTES, BENCHMARK_MEGABYTES * 1000.0 / Math.max(1, plainWall), plainCpu,
+                BENCHMARK_MEGABYTES * 1000.0 / Math.max(1, cipherWall), cipherCpu, cipherCpu - plainCpu));
+
+        // One 16 byte tag per chunk on top of the data and the header
+        long chunks = plain.length() / RecordingCipher.CHUNK_SIZE;
+        assertTrue(encrypted.length() > plain.length() + chunks * 16);
+        assertTrue(encrypted.length() < plain.length() + chunks * 16 + 128);
+    }
+
+    private File encrypt(byte[] content) throws IOException, GeneralSecurityException {
+        File plain = write("plain.bin", content);
+        File encrypted = new File(folder.getRoot(), "plain.bin" + RecordingCipher.EXTENSION);
+        cipher.encrypt(plain, encrypted);
+        return encrypted;
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static long cpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+}
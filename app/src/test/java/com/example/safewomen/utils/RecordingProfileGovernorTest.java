@@ -0,0 +1,119 @@
+package com.example.safewomen.utils;
+
+import android.os.PowerManager;
+
+import com.example.safewomen.models.RecordingProfile;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RecordingProfileGovernorTest {
+    private static final List<RecordingProfile> LADDER = RecordingProfile.VIDEO_LADDER;
+    private static final RecordingProfile HIGH = LADDER.get(0);
+    private static final RecordingProfile MEDIUM = LADDER.get(1);
+    private static final RecordingProfile LOW = LADDER.get(2);
+    private static final RecordingProfile MINIMAL = LADDER.get(3);
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final long PLENTY = 100L * 1024 * 1024 * 1024;
+
+    @Test
+    public void bestProfileWhenNothingLimits() {
+        assertSame(HIGH, choose(null, state(PLENTY, 80, false, PowerManager.THERMAL_STATUS_NONE, 0)));
+        // Light throttling alone isn't worth losing quality for
+        assertSame(HIGH, choose(null, state(PLENTY, 80, false, PowerManager.THERMAL_STATUS_LIGHT, 0)));
+    }
+
+    @Test
+    public void batteryCapsTheProfile() {
+        assertSame(LOW, choose(HIGH, state(PLENTY, 30, false, PowerManager.THERMAL_STATUS_NONE, 0)));
+        assertSame(MINIMAL, choose(HIGH, state(PLENTY, 15, false, PowerManager.THERMAL_STATUS_NONE, 0)));
+        // On the charger the battery level doesn't matter
+        assertSame(HIGH, choose(HIGH, state(PLENTY, 10, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+    }
+
+    @Test
+    public void thermalStateCapsTheProfile() {
+        assertSame(MEDIUM, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_MODERATE, 0)));
+        assertSame(MINIMAL, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_SEVERE, 0)));
+        assertSame(MINIMAL, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_CRITICAL, 0)));
+    }
+
+    @Test
+    public void strictestCapWins() {
+        // Moderate heat alone allows medium, low battery alone allows low
+        assertSame(LOW, choose(HIGH, state(PLENTY, 25, false, PowerManager.THERMAL_STATUS_MODERATE, 0)));
+    }
+
+    @Test
+    public void profileStaysWithinUploadBandwidth() {
+        // High needs about 1.2 MB/s, medium 500 KB/s
+        assertSame(MEDIUM, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_NONE, 600000)));
+        assertSame(HIGH, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_NONE, 2000000)));
+    }
+
+    @Test
+    public void slowUploadAloneStopsAboveTheCheapestProfile() {
+        assertSame(LOW, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_NONE, 10000)));
+        // Unknown bandwidth is no reason to step down
+        assertSame(HIGH, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+    }
+
+    @Test
+    public void profileLeavesAnHourOfSpace() {
+        long free = RecordingProfileGovernor.RESERVED_BYTES + MEDIUM.getBytesPerSecond() * HOUR_MS / 1000;
+        assertSame(MEDIUM, choose(null, state(free, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+        assertSame(LOW, choose(null, state(free - 1, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+    }
+
+    @Test
+    public void cheapestProfileWhenNothingFits() {
+        long free = RecordingProfileGovernor.RESERVED_BYTES + 1024 * 1024;
+        assertSame(MINIMAL, choose(HIGH, state(free, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+    }
+
+    @Test
+    public void upgradeNeedsExtraHeadroom() {
+        long hourOfHigh = HIGH.getBytesPerSecond() * HOUR_MS / 1000;
+        long justEnough = RecordingProfileGovernor.RESERVED_BYTES + hourOfHigh;
+        long withMargin = RecordingProfileGovernor.RESERVED_BYTES + hourOfHigh * 5 / 4;
+
+        // A fresh recording takes high as soon as it fits
+        assertSame(HIGH, choose(null, state(justEnough, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+        // Stepping back up from medium waits for the margin, so the choice doesn't flap
+        assertSame(MEDIUM, choose(MEDIUM, state(justEnough, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+        assertSame(MEDIUM, choose(MEDIUM, state(withMargin - 1, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+        assertSame(HIGH, choose(MEDIUM, state(withMargin, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+        // Staying put needs no margin
+        assertSame(HIGH, choose(HIGH, state(justEnough, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+    }
+
+    @Test
+    public void capsApplyWithoutHysteresis() {
+        // Dropping for heat is immediate, and so is coming back once it clears
+        assertSame(MINIMAL, choose(HIGH, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_SEVERE, 0)));
+        assertSame(HIGH, choose(MINIMAL, state(PLENTY, 80, true, PowerManager.THERMAL_STATUS_NONE, 0)));
+    }
+
+    @Test
+    public void projectionExcludesTheReserve() {
+        assertEquals(0, RecordingProfileGovernor.projectRemainingMillis(LOW, RecordingProfileGovernor.RESERVED_BYTES));
+        assertEquals(0, RecordingProfileGovernor.projectRemainingMillis(LOW, 0));
+        assertEquals(10000, RecordingProfileGovernor.projectRemainingMillis(LOW,
+                RecordingProfileGovernor.RESERVED_BYTES + LOW.getBytesPerSecond() * 10));
+    }
+
+    private static RecordingProfile choose(RecordingProfile current, RecordingProfileGovernor.DeviceState state) {
+        return RecordingProfileGovernor.choose(LADDER, current, state);
+    }
+
+    private static RecordingProfileGovernor.DeviceState state(long freeBytes, int batteryPercent, boolean charging,
+                                                              int thermalStatus, double uploadBytesPerSecond) {
+        return new RecordingProfileGovernor.DeviceState(freeBytes, batteryPercent, charging,
+                thermalStatus, uploadBytesPerSecond);
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.SecurePath;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RouteDeviationDetectorTest {
+    private static final double BUFFER_METERS = 50;
+    private static final long GRACE_MS = 60 * 1000L;
+    private static final long FIX_INTERVAL_MS = 5000;
+
+    private static final double START_LAT = 28.6139;
+    private static final double START_LON = 77.2090;
+
+    @Test
+    public void walkingTheRouteStaysOnRouteAndArrives() {
+        SecurePath path = route(40, new Random(1));
+        RouteDeviationDetector detector = new RouteDeviationDetector(path, GRACE_MS);
+
+        List<LatLng> walk = walk(path.getPoints(), 7);
+        long time = 0;
+        for (int i = 0; i < walk.size() - 1; i++) {
+            RouteDeviationDetector.State state = detector.onFix(walk.get(i).latitude, walk.get(i).longitude, time);
+            assertTrue("Fix " + i + " was " + state, state == RouteDeviationDetector.State.ON_ROUTE
+                    || state == RouteDeviationDetector.State.ARRIVED);
+            time += FIX_INTERVAL_MS;
+        }
+        LatLng end = walk.get(walk.size() - 1);
+        assertEquals(RouteDeviationDetector.State.ARRIVED, detector.onFix(end.latitude, end.longitude, time));
+        assertTrue(detector.isArmed());
+    }
+
+    @Test
+    public void reverseWalkArrivesAtStart() {
+        SecurePath path = route(40, new Random(2));
+        RouteDeviationDetector detector = new RouteDeviationDetector(path, GRACE_MS);
+
+        List<LatLng> reversed = new ArrayList<>(path.getPoints());
+        Collections.reverse(reversed);
+        List<LatLng> walk = walk(reversed, 7);
+        RouteDeviationDetector.State state = null;
+        long time = 0;
+        for (LatLng fix : walk) {
+            state = detector.onFix(fix.latitude, fix.longitude, time);
+            time += FIX_INTERVAL_MS;
+        }
+        assertEquals(RouteDeviationDetector.State.ARRIVED, state);
+    }
+
+    @Test
+    public void leavingTheCorridorWarnsOnceAfterGrace() {
+        SecurePath path = route(40, new Random(3));
+        RouteDeviationDetector detector = new RouteDeviationDetector(path, GRACE_MS);
+        List<LatLng> walk = walk(path.getPoints(), 7);
+
+        // Far enough along to arm
+        long time = 0;
+        int i = 0;
+        for (; i < 100; i++) {
+            detector.onFix(walk.get(i).latitude, walk.get(i).longitude, time);
+            time += FIX_INTERVAL_MS;
+        }
+        assertTrue(detector.isArmed());
+
+        // 300 m off to the side
+        LatLng off = offset(walk.get(i), 300, 0);
+        int deviations = 0;
+        long leftAt = time;
+        for (int k = 0; k < 60; k++) {
+            RouteDeviationDetector.State state = detector.onFix(off.latitude, off.longitude, time);
+            if (state == RouteDeviationDetector.State.DEVIATED) {
+                deviations++;
+                assertTrue(time - leftAt >= GRACE_MS);
+            } else {
+                assertEquals(RouteDeviationDetector.State.OFF_ROUTE, state);
+            }
+            time += FIX_INTERVAL_MS;
+        }
+        assertEquals(1, deviations);
+
+        // Back on the route, then off again: a new excursion warns again
+        assertEquals(RouteDeviationDetector.State.ON_ROUTE,
+                detector.onFix(walk.get(i).latitude, walk.get(i).longitude, time));
+        assertEquals(0, detector.getOffRouteMillis(time));
+        boolean warnedAgain = false;
+        for (int k = 0; k < 20; k++) {
+            time += FIX_INTERVAL_MS;
+            warnedAgain |= detector.onFix(off.latitude, off.longitude, time)
+                    == RouteDeviationDetector.State.DEVIATED;
+        }
+        assertTrue(warnedAgain);
+    }
+
+    @Test
+    public void standingNearTheStartNeverWarns() {
+        SecurePath path = route(40, new Random(4));
+        RouteDeviationDetector detector = new RouteDeviationDetector(path, GRACE_MS);
+        LatLng start = path.getPoints().get(0);
+        LatLng nearby = offset(start, 120, 0);
+
+        long time = 0;
+        for (int k = 0; k < 200; k++) {
+            LatLng fix = k % 2 == 0 ? start : nearby;
+            assertFalse(detector.onFix(fix.latitude, fix.longitude, time)
+                    == RouteDeviationDetector.State.DEVIATED);
+            time += FIX_INTERVAL_MS;
+        }
+        assertFalse(detector.isArmed());
+    }
+
+    @Test
+    public void corridorMatchesBruteForce() {
+        Random random = new Random(5);
+        SecurePath path = route(300, random);
+        RouteDeviationDetector detector = new RouteDeviationDetector(path, GRACE_MS);
+        List<LatLng> points = path.getPoints();
+
+        int checked = 0;
+        for (int k = 0; k < 20000; k++) {
+            // Near a random vertex, so hits and misses are both common
+            LatLng base = points.get(random.nextInt(points.size()));
+            LatLng fix = offset(base, (random.nextDouble() - 0.5) * 300, (random.nextDouble() - 0.5) * 300);
+            double expected = path.distanceMeters(fix.latitude, fix.longitude);
+            // The detector projects to flat meters; skip fixes too close to the edge to call
+            if (Math.abs(expected - BUFFER_METERS) < 1) continue;
+
+            detector.onFix(fix.latitude, fix.longitude, k * FIX_INTERVAL_MS);
+            double actual = detector.getLastDistanceMeters();
+            assertEquals("Fix " + fix, expected <= BUFFER_METERS, actual >= 0);
+            checked++;
+        }
+        assertTrue(checked > 15000);
+    }
+
+    /**
+     * A 5000-vertex route checked with 100k fixes along it and around it, against a
+     * brute-force scan of every segment. Prints timings; the assertion only guards
+     * against the check growing with the number of vertices.
+     */
+    @Test
+    public void benchmarkLongRoute() {
+        Random random = new Random(6);
+        SecurePath path = route(5000, random);
+        List<LatLng> walk = walk(path.getPoints(), 7);
+        List<LatLng> fixes = new ArrayList<>(100000);
+        for (int k = 0; fixes.size() < 100000; k++) {
+            LatLng on = walk.get(k % walk.size());
+            // Every tenth fix jumps somewhere off the cursor to exercise the grid
+            fixes.add(k % 10 == 0 ? offset(walk.get(random.nextInt(walk.size())), 30, 0) : on);
+        }
+
+        // Warm up the JIT so the measured runs aren't mostly interpretation
+        for (int i = 0; i < 3; i++) {
+            runDetector(path, fixes);
+        }
+        long start = System.nanoTime();
+        RouteDeviationDetector detector = runDetector(path, fixes);
+        long detectorMs = (System.nanoTime() - start) / 1000000;
+
+        // Brute force on a sample; a full run would dominate the test time
+        int sample = 2000;
+        start = System.nanoTime();
+        int inside = 0;
+        for (int k = 0; k < sample; k++) {
+            LatLng fix = fixes.get(k);
+            if (path.contains(fix.latitude, fix.longitude)) inside++;
+        }
+        long bruteNanosPerFix = (System.nanoTime() - start) / sample;
+
+        System.out.println(String.format(Locale.US,
+                "RouteDeviationDetector: %d fixes on %d vertices in %d ms (%d ns/fix), brute force %d ns/fix",
+                fixes.size(), path.getPoints().size(), detectorMs, detector.getAverageCheckNanos(),
+                bruteNanosPerFix));
+
+        assertTrue(inside > 0);
+        assertTrue("Detector took " + detectorMs + " ms", detectorMs < 2000);
+    }
+
+    private static RouteDeviationDetector runDetector(SecurePath path, List<LatLng> fixes) {
+        RouteDeviationDetector detector = new RouteDeviationDetector(path, GRACE_MS);
+        long time = 0;
+        for (LatLng fix : fixes) {
+            detector.onFix(fix.latitude, fix.longitude, time);
+            time += FIX_INTERVAL_MS;
+        }
+        return detector;
+    }
+
+    /**
+     * A winding route heading roughly north-east, vertices 30-80 m apart
+     */
+    private static SecurePath route(int vertices, Random random) {
+        List<LatLng> points = new ArrayList<>(vertices);
+        LatLng current = new LatLng(START_LAT, START_LON);
+        double heading = Math.PI / 4;
+        points.add(current);
+        for (int i = 1; i < vertices; i++) {
+            heading += (random.nextDouble() - 0.5) * 0.8;
+            // Keep it from curling back onto itself
+            heading = Math.max(0, Math.min(Math.PI / 2, heading));
+            double length = 30 + random.nextDouble() * 50;
+            current = offset(current, Math.cos(heading) * length, Math.sin(heading) * length);
+            points.add(current);
+        }
+        return new SecurePath("route", "Route", points, BUFFER_METERS, 0);
+    }
+
+    // Fixes along the polyline, stepMeters apart, including both ends
+    private static List<LatLng> walk(List<LatLng> points, double stepMeters) {
+        List<LatLng> fixes = new ArrayList<>();
+        fixes.add(points.get(0));
+        for (int i = 1; i < points.size(); i++) {
+            LatLng a = points.get(i - 1);
+            LatLng b = points.get(i);
+            double length = GeoUtils.distanceMeters(a.latitude, a.longitude, b.latitude, b.longitude);
+            int steps = Math.max(1, (int) Math.round(length / stepMeters));
+            for (int s = 1; s <= steps; s++) {
+                double f = (double) s / steps;
+                fixes.add(new LatLng(a.latitude + (b.latitude - a.latitude) * f,
+                        a.longitude + (b.longitude - a.longitude) * f));
+            }
+        }
+        return fixes;
+    }
+
+    private static LatLng offset(LatLng from, double eastMeters, double northMeters) {
+        double metersPerDegreeLon = GeoUtils.METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians(from.latitude));
+        return new LatLng(from.latitude + northMeters / GeoUtils.METERS_PER_DEGREE_LAT,
+                from.longitude + eastMeters / metersPerDegreeLon);
+    }
+}
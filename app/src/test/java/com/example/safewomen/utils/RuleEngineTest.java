@@ -0,0 +1,237 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.entities.ScheduledRuleEntity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RuleEngineTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long MINUTE = 60000L;
+
+    // 2024-03-01 08:00 UTC
+    private static final long START = 1709280000000L;
+
+    private static final double HOME_LAT = 28.6139;
+    private static final double HOME_LON = 77.2090;
+    private static final double CAFE_LAT = 28.6300;
+    private static final double CAFE_LON = 77.2200;
+
+    private FakeClock clock;
+    private FakeAlarms alarms;
+    private List<String> fired;
+    private List<ScheduledRuleEntity> saved;
+    private boolean safe;
+    private RuleEngine engine;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(START);
+        alarms = new FakeAlarms();
+        fired = new ArrayList<>();
+        saved = new ArrayList<>();
+        safe = false;
+        engine = newEngine();
+    }
+
+    private RuleEngine newEngine() {
+        return new RuleEngine(clock, UTC, alarms, (lat, lon) -> safe,
+                (rule, message) -> fired.add(rule.getId()), saved::add);
+    }
+
+    @Test
+    public void maxStopFiresOnceAfterDurationOutsideSafePlace() {
+        engine.setRules(Collections.singletonList(maxStop("stop", 20)));
+
+        fix(CAFE_LAT, CAFE_LON);
+        assertEquals(START + 20 * MINUTE, (long) alarms.at("stop"));
+
+        clock.set(START + 20 * MINUTE);
+        engine.onTimer("stop");
+        assertEquals(Collections.singletonList("stop"), fired);
+
+        // Still at the cafe: the same stop doesn't alert again
+        clock.advance(MINUTE);
+        fix(CAFE_LAT, CAFE_LON);
+        engine.onTimer("stop");
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void maxStopEarlyAlarmIsRearmed() {
+        engine.setRules(Collections.singletonList(maxStop("stop", 20)));
+        fix(CAFE_LAT, CAFE_LON);
+
+        clock.set(START + 15 * MINUTE);
+        alarms.clear();
+        engine.onTimer("stop");
+
+        assertTrue(fired.isEmpty());
+        assertEquals(START + 20 * MINUTE, (long) alarms.at("stop"));
+
+        clock.set(START + 20 * MINUTE);
+        engine.onTimer("stop");
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void maxStopIgnoresSafePlaces() {
+        safe = true;
+        engine.setRules(Collections.singletonList(maxStop("stop", 20)));
+        fix(HOME_LAT, HOME_LON);
+
+        assertNull(alarms.at("stop"));
+        clock.set(START + 60 * MINUTE);
+        engine.onTimer("stop");
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void movingStartsANewStop() {
+        engine.setRules(Collections.singletonList(maxStop("stop", 20)));
+        fix(CAFE_LAT, CAFE_LON);
+
+        clock.set(START + 10 * MINUTE);
+        fix(HOME_LAT, HOME_LON);
+
+        assertEquals(START + 30 * MINUTE, (long) alarms.at("stop"));
+        ScheduledRuleEntity last = saved.get(saved.size() - 1);
+        assertEquals(START + 10 * MINUTE, last.getStopSince());
+        assertEquals(HOME_LAT, last.getStopLatitude(), 1e-9);
+    }
+
+    @Test
+    public void maxStopSurvivesRestart() {
+        ScheduledRuleEntity rule = maxStop("stop", 20);
+        engine.setRules(Collections.singletonList(rule));
+        fix(CAFE_LAT, CAFE_LON);
+        assertEquals(START, rule.getStopSince());
+
+        // Process death: a new engine loads the rule with the persisted stop
+        clock.set(START + 25 * MINUTE);
+        alarms.clear();
+        RuleEngine restarted = newEngine();
+        restarted.setRules(Collections.singletonList(rule));
+
+        // The overdue stop is armed right away instead of waiting for a fresh 20 minutes
+        assertEquals(START + 25 * MINUTE, (long) alarms.at("stop"));
+
+        // Seeded from the last stored fix, still at the cafe
+        restarted.onFix(CAFE_LAT, CAFE_LON, clock.currentTimeMillis());
+        restarted.onTimer("stop");
+        assertEquals(Collections.singletonList("stop"), fired);
+        assertTrue(rule.isStopAlerted());
+    }
+
+    @Test
+    public void alertedStopIsNotRepeatedAfterRestart() {
+        ScheduledRuleEntity rule = maxStop("stop", 20);
+        rule.setStopLatitude(CAFE_LAT);
+        rule.setStopLongitude(CAFE_LON);
+        rule.setStopSince(START - 60 * MINUTE);
+        rule.setStopAlerted(true);
+
+        engine.setRules(Collections.singletonList(rule));
+        fix(CAFE_LAT, CAFE_LON);
+
+        assertNull(alarms.at("stop"));
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void arriveByFiresWhenNotAtTarget() {
+        engine.setRules(Collections.singletonList(arriveBy("home", 22, 0)));
+        long deadline = START + 14 * 60 * MINUTE;
+        assertEquals(deadline, (long) alarms.at("home"));
+
+        fix(CAFE_LAT, CAFE_LON);
+        clock.set(deadline);
+        engine.onTimer("home");
+
+        assertEquals(Collections.singletonList("home"), fired);
+        assertEquals(deadline + 24 * 60 * MINUTE, (long) alarms.at("home"));
+    }
+
+    @Test
+    public void arriveBySilentWhenAtTarget() {
+        engine.setRules(Collections.singletonList(arriveBy("home", 22, 0)));
+        fix(HOME_LAT, HOME_LON);
+
+        clock.set(START + 14 * 60 * MINUTE);
+        engine.onTimer("home");
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void arriveByEarlyAlarmWaitsForDeadline() {
+        engine.setRules(Collections.singletonList(arriveBy("home", 22, 0)));
+        long deadline = START + 14 * 60 * MINUTE;
+        fix(CAFE_LAT, CAFE_LON);
+
+        clock.set(deadline - 5 * MINUTE);
+        engine.onTimer("home");
+        assertTrue(fired.isEmpty());
+        assertEquals(deadline, (long) alarms.at("home"));
+
+        clock.set(deadline);
+        engine.onTimer("home");
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void removedRuleCancelsItsAlarm() {
+        engine.setRules(Collections.singletonList(arriveBy("home", 22, 0)));
+        engine.setRules(Collections.<ScheduledRuleEntity>emptyList());
+
+        assertNull(alarms.at("home"));
+        assertFalse(engine.getRuleIds().contains("home"));
+    }
+
+    private void fix(double latitude, double longitude) {
+        engine.onFix(latitude, longitude, clock.currentTimeMillis());
+    }
+
+    private static ScheduledRuleEntity maxStop(String id, int minutes) {
+        return new ScheduledRuleEntity(id, ScheduledRuleEntity.TYPE_MAX_STOP, id, true,
+                0, 0, 0, 0, minutes, 1);
+    }
+
+    private static ScheduledRuleEntity arriveBy(String id, int hour, int minute) {
+        return new ScheduledRuleEntity(id, ScheduledRuleEntity.TYPE_ARRIVE_BY, id, true,
+                HOME_LAT, HOME_LON, 200, hour * 60 + minute, 0, 1);
+    }
+
+    static class FakeAlarms implements RuleEngine.AlarmScheduler {
+        private final Map<String, Long> alarms = new HashMap<>();
+
+        @Override
+        public void schedule(String ruleId, long triggerAtMillis) {
+            alarms.put(ruleId, triggerAtMillis);
+        }
+
+        @Override
+        public void cancel(String ruleId) {
+            alarms.remove(ruleId);
+        }
+
+        Long at(String ruleId) {
+            return alarms.get(ruleId);
+        }
+
+        void clear() {
+            alarms.clear();
+        }
+    }
+}
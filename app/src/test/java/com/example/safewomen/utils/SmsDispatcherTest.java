@@ -0,0 +1,446 @@
+package com.example.safewomen.utils;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.safewomen.data.SmsDispatchDao;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.SmsDispatchEntity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmsDispatcherTest {
+    private static final long START = 1700000000000L;
+    private static final String SOS = "sos-1";
+
+    private FakeClock clock;
+    private ManualScheduledExecutor executor;
+    private FakeDao dao;
+    private FakeGateway gateway;
+    private List<String> updates;
+    private SmsDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(START);
+        executor = new ManualScheduledExecutor(clock);
+        dao = new FakeDao();
+        gateway = new FakeGateway();
+        updates = new ArrayList<>();
+        dispatcher = new SmsDispatcher(dao, gateway, clock, executor,
+                dispatch -> updates.add(dispatch.getContactName() + ":" + dispatch.getStatus()));
+    }
+
+    @Test
+    public void sendsInContactOrderPacedApart() {
+        dispatcher.enqueue(SOS, contacts(3), "help");
+        executor.runDue();
+
+        // Only the first goes out at once; the rest wait for the minimum interval
+        assertEquals(1, gateway.sends.size());
+        executor.advance(10000);
+
+        assertEquals(3, gateway.sends.size());
+        assertEquals("+910", gateway.sends.get(0).phone);
+        assertEquals("+911", gateway.sends.get(1).phone);
+        assertEquals("+912", gateway.sends.get(2).phone);
+        assertEquals(START, gateway.sends.get(0).at);
+        assertEquals(START + 1500, gateway.sends.get(1).at);
+        assertEquals(START + 3000, gateway.sends.get(2).at);
+    }
+
+    @Test
+    public void failedHandOverRetriesWithExponentialBackoff() {
+        gateway.failures = 2;
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.advance(60000);
+
+        assertEquals(3, gateway.sends.size());
+        assertEquals(START, gateway.sends.get(0).at);
+        assertEquals(START + 5000, gateway.sends.get(1).at);
+        assertEquals(START + 5000 + 10000, gateway.sends.get(2).at);
+        assertEquals(3, gateway.sends.get(2).attempt);
+        assertEquals(SmsDispatcher.STATUS_SENDING, only().getStatus());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        gateway.failures = Integer.MAX_VALUE;
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.advance(10 * 60000);
+
+        assertEquals(4, gateway.sends.size());
+        assertEquals(SmsDispatcher.STATUS_FAILED, only().getStatus());
+        assertEquals("Radio off", only().getLastError());
+        assertEquals(-1, executor.nextDelayMillis());
+    }
+
+    @Test
+    public void failedSentReportIsRetried() {
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+        FakeGateway.Send first = gateway.sends.get(0);
+
+        clock.advance(800);
+        dispatcher.onSent(first.dispatchId, first.attempt, false, "Generic failure");
+        executor.runDue();
+        assertEquals(SmsDispatcher.STATUS_QUEUED, only().getStatus());
+        assertEquals(START + 800 + 5000, only().getNextAttemptAt());
+
+        executor.advance(5000);
+        assertEquals(2, gateway.sends.size());
+        assertEquals(START + 5800, gateway.sends.get(1).at);
+    }
+
+    @Test
+    public void missingSentReportCountsAsFailure() {
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+
+        // No report at all: the attempt times out after a minute, then backs off
+        executor.advance(60000);
+        assertEquals(SmsDispatcher.STATUS_QUEUED, only().getStatus());
+        assertEquals("No sent report", only().getLastError());
+
+        executor.advance(5000);
+        assertEquals(2, gateway.sends.size());
+        assertEquals(START + 65000, gateway.sends.get(1).at);
+    }
+
+    @Test
+    public void reportsOfAnEarlierAttemptAreIgnored() {
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+        executor.advance(65000);
+        assertEquals(2, gateway.sends.size());
+        String id = gateway.sends.get(0).dispatchId;
+
+        // The first attempt's report turns up late
+        dispatcher.onSent(id, 1, true, null);
+        executor.runDue();
+        assertEquals(SmsDispatcher.STATUS_SENDING, only().getStatus());
+        assertEquals(2, only().getAttempts());
+
+        // The old attempt's timeout doesn't fail the new one either
+        dispatcher.onSent(id, 2, true, null);
+        executor.runDue();
+        assertEquals(SmsDispatcher.STATUS_SENT, only().getStatus());
+        executor.advance(120000);
+        assertEquals(SmsDispatcher.STATUS_SENT, only().getStatus());
+        assertEquals(2, gateway.sends.size());
+    }
+
+    @Test
+    public void multipartMessageCompletesWhenAllPartsReport() {
+        gateway.parts = 2;
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+        String id = gateway.sends.get(0).dispatchId;
+
+        dispatcher.onSent(id, 1, true, null);
+        executor.runDue();
+        assertEquals(SmsDispatcher.STATUS_SENDING, only().getStatus());
+        dispatcher.onSent(id, 1, true, null);
+        executor.runDue();
+        assertEquals(SmsDispatcher.STATUS_SENT, only().getStatus());
+
+        clock.advance(4000);
+        dispatcher.onDelivered(id, 1, true);
+        dispatcher.onDelivered(id, 1, true);
+        executor.runDue();
+        assertEquals(SmsDispatcher.STATUS_DELIVERED, only().getStatus());
+        assertEquals(START + 4000, only().getDeliveredAt());
+        assertTrue(updates.contains("Contact 0:" + SmsDispatcher.STATUS_DELIVERED));
+    }
+
+    @Test
+    public void cancelStopsQueuedMessages() {
+        dispatcher.enqueue(SOS, contacts(3), "help");
+        executor.runDue();
+        dispatcher.cancel(SOS);
+        executor.advance(60000);
+
+        assertEquals(1, gateway.sends.size());
+        int cancelled = 0;
+        for (SmsDispatchEntity dispatch : dao.rows.values()) {
+            if (SmsDispatcher.STATUS_CANCELLED.equals(dispatch.getStatus())) cancelled++;
+        }
+        // Including the one that was sending, once its attempt timed out
+        assertEquals(3, cancelled);
+    }
+
+    @Test
+    public void platformLimitHoldsBackTheTwentySixthMessage() {
+        dispatcher.enqueue(SOS, contacts(26), "help");
+        executor.advance(60000);
+        assertEquals(25, gateway.sends.size());
+
+        // The window opens again 30 minutes after the first send
+        executor.advance(30 * 60000 - 60000 - 1);
+        assertEquals(25, gateway.sends.size());
+        executor.advance(1);
+        assertEquals(26, gateway.sends.size());
+        assertEquals(START + 30 * 60000, gateway.sends.get(25).at);
+    }
+
+    @Test
+    public void resumeRequeuesMessagesLeftSending() {
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+
+        // Process death while the message was with the carrier; a new dispatcher picks it up
+        ManualScheduledExecutor restarted = new ManualScheduledExecutor(clock);
+        SmsDispatcher next = new SmsDispatcher(dao, gateway, clock, restarted, dispatch -> { });
+        clock.advance(10000);
+        next.resume();
+        restarted.runDue();
+
+        assertEquals(2, gateway.sends.size());
+        assertEquals(2, gateway.sends.get(1).attempt);
+    }
+
+    @Test
+    public void cancelWhileSendingIsNotRetried() {
+        dispatcher.enqueue(SOS, contacts(2), "help");
+        executor.runDue();
+        FakeGateway.Send first = gateway.sends.get(0);
+
+        // False alarm while the first message is with the carrier, which then fails it
+        dispatcher.cancel(SOS);
+        executor.runDue();
+        dispatcher.onSent(first.dispatchId, first.attempt, false, "Generic failure");
+        executor.advance(10 * 60000);
+
+        assertEquals(1, gateway.sends.size());
+        for (SmsDispatchEntity dispatch : dao.rows.values()) {
+            assertEquals(SmsDispatcher.STATUS_CANCELLED, dispatch.getStatus());
+        }
+    }
+
+    @Test
+    public void cancelWhileSendingSurvivesMissingReport() {
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+        dispatcher.cancel(SOS);
+
+        // The sent-report timeout fails the attempt; it isn't queued again
+        executor.advance(10 * 60000);
+        assertEquals(1, gateway.sends.size());
+        assertEquals(SmsDispatcher.STATUS_CANCELLED, only().getStatus());
+    }
+
+    @Test
+    public void resumeDoesNotRequeueCancelledMessages() {
+        dispatcher.enqueue(SOS, contacts(1), "help");
+        executor.runDue();
+        dispatcher.cancel(SOS);
+        executor.runDue();
+
+        ManualScheduledExecutor restarted = new ManualScheduledExecutor(clock);
+        SmsDispatcher next = new SmsDispatcher(dao, gateway, clock, restarted, dispatch -> { });
+        next.resume();
+        restarted.advance(10 * 60000);
+
+        assertEquals(1, gateway.sends.size());
+    }
+
+    @Test
+    public void resumeGivesUpOnEarlierAndStaleSos() {
+        dispatcher.enqueue("sos-0", contacts(1), "help");
+        executor.runDue();
+        clock.advance(60000);
+        dispatcher.enqueue(SOS, contacts(1), "help again");
+        executor.advance(1500);
+        assertEquals(2, gateway.sends.size());
+
+        // Only the latest SOS is resumed
+        ManualScheduledExecutor restarted = new ManualScheduledExecutor(clock);
+        SmsDispatcher next = new SmsDispatcher(dao, gateway, clock, restarted, dispatch -> { });
+        next.resume();
+        restarted.runDue();
+        assertEquals(3, gateway.sends.size());
+        assertEquals("help again", dao.getById(gateway.sends.get(2).dispatchId).getMessage());
+        assertEquals(SmsDispatcher.STATUS_FAILED, dao.getById(gateway.sends.get(0).dispatchId).getStatus());
+
+        // Much later even the latest is too old to be worth sending
+        ManualScheduledExecutor later = new ManualScheduledExecutor(clock);
+        clock.advance(60 * 60000);
+        new SmsDispatcher(dao, gateway, clock, later, dispatch -> { }).resume();
+        later.advance(60000);
+        assertEquals(3, gateway.sends.size());
+        assertEquals(SmsDispatcher.STATUS_FAILED, dao.getById(gateway.sends.get(2).dispatchId).getStatus());
+    }
+
+    private SmsDispatchEntity only() {
+        assertEquals(1, dao.rows.size());
+        return dao.rows.values().iterator().next();
+    }
+
+    private static List<EmergencyContactEntity> contacts(int count) {
+        List<EmergencyContactEntity> contacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            contacts.add(new EmergencyContactEntity("c" + i, "Contact " + i, "+91" + i, "Friend", i == 0, "synced"));
+        }
+        return contacts;
+    }
+
+    private class FakeGateway implements SmsGateway {
+        final List<Send> sends = new ArrayList<>();
+        int failures = 0;
+        int parts = 1;
+
+        class Send {
+            final String dispatchId;
+            final int attempt;
+            final String phone;
+            final long at;
+
+            Send(String dispatchId, int attempt, String phone, long at) {
+                this.dispatchId = dispatchId;
+                this.attempt = attempt;
+                this.phone = phone;
+                this.at = at;
+            }
+        }
+
+        @Override
+        public int send(String dispatchId, int attempt, String phoneNumber, String message) throws Exception {
+            sends.add(new Send(dispatchId, attempt, phoneNumber, clock.currentTimeMillis()));
+            if (failures > 0) {
+                failures--;
+                throw new Exception("Radio off");
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * In-memory table with the queries SmsDispatcher relies on. Reads return copies,
+     * like Room, so changes only stick once they're written back.
+     */
+    private static class FakeDao implements SmsDispatchDao {
+        final Map<String, SmsDispatchEntity> rows = new LinkedHashMap<>();
+
+        @Override
+        public void insertAll(List<SmsDispatchEntity> dispatches) {
+            for (SmsDispatchEntity dispatch : dispatches) {
+                rows.put(dispatch.getId(), copy(dispatch));
+            }
+        }
+
+        @Override
+        public void update(SmsDispatchEntity dispatch) {
+            if (rows.containsKey(dispatch.getId())) {
+                rows.put(dispatch.getId(), copy(dispatch));
+            }
+        }
+
+        @Override
+        public SmsDispatchEntity getById(String dispatchId) {
+            SmsDispatchEntity row = rows.get(dispatchId);
+            return row != null ? copy(row) : null;
+        }
+
+        @Override
+        public SmsDispatchEntity getNextQueued() {
+            SmsDispatchEntity next = null;
+            for (SmsDispatchEntity row : rows.values()) {
+                if (!SmsDispatcher.STATUS_QUEUED.equals(row.getStatus()) || row.isCancelled()) continue;
+                if (next == null || row.getNextAttemptAt() < next.getNextAttemptAt()
+                        || (row.getNextAttemptAt() == next.getNextAttemptAt() && row.getPriority() < next.getPriority())) {
+                    next = row;
+                }
+            }
+            return next != null ? copy(next) : null;
+        }
+
+        @Override
+        public LiveData<List<SmsDispatchEntity>> observeDispatches(String sosId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void expireUnfinished(long since) {
+            String latest = latestSosId();
+            for (SmsDispatchEntity row : rows.values()) {
+                boolean unfinished = SmsDispatcher.STATUS_QUEUED.equals(row.getStatus())
+                        || SmsDispatcher.STATUS_SENDING.equals(row.getStatus());
+                if (unfinished && (row.getCreatedAt() < since || !row.getSosId().equals(latest))) {
+                    row.setStatus(SmsDispatcher.STATUS_FAILED);
+                    row.setLastError("Expired");
+                }
+            }
+        }
+
+        @Override
+        public void requeueSending(long since) {
+            String latest = latestSosId();
+            for (SmsDispatchEntity row : rows.values()) {
+                if (SmsDispatcher.STATUS_SENDING.equals(row.getStatus()) && !row.isCancelled()
+                        && row.getCreatedAt() >= since && row.getSosId().equals(latest)) {
+                    row.setStatus(SmsDispatcher.STATUS_QUEUED);
+                }
+            }
+        }
+
+        @Override
+        public void markCancelled(String sosId) {
+            for (SmsDispatchEntity row : rows.values()) {
+                if (row.getSosId().equals(sosId)) {
+                    row.setCancelled(true);
+                }
+            }
+        }
+
+        @Override
+        public void cancelQueued(String sosId) {
+            for (SmsDispatchEntity row : rows.values()) {
+                if (row.getSosId().equals(sosId) && SmsDispatcher.STATUS_QUEUED.equals(row.getStatus())) {
+                    row.setStatus(SmsDispatcher.STATUS_CANCELLED);
+                }
+            }
+        }
+
+        @Override
+        public void deleteOlderThan(long olderThan) {
+            rows.values().removeIf(row -> row.getCreatedAt() < olderThan);
+        }
+
+        @Override
+        public void clear() {
+            rows.clear();
+        }
+
+        private String latestSosId() {
+            SmsDispatchEntity latest = null;
+            for (SmsDispatchEntity row : rows.values()) {
+                if (latest == null || row.getCreatedAt() > latest.getCreatedAt()) latest = row;
+            }
+            return latest != null ? latest.getSosId() : null;
+        }
+
+        private static SmsDispatchEntity copy(SmsDispatchEntity source) {
+            SmsDispatchEntity copy = new SmsDispatchEntity(source.getId(), source.getSosId(),
+                    source.getContactName(), source.getPhone(), source.getMessage(), source.getPriority(),
+                    source.getStatus(), source.getCreatedAt());
+            copy.setAttempts(source.getAttempts());
+            copy.setParts(source.getParts());
+            copy.setPartsSent(source.getPartsSent());
+            copy.setPartsDelivered(source.getPartsDelivered());
+            copy.setNextAttemptAt(source.getNextAttemptAt());
+            copy.setSentAt(source.getSentAt());
+            copy.setDeliveredAt(source.getDeliveredAt());
+            copy.setLastError(source.getLastError());
+            copy.setCancelled(source.isCancelled());
+            return copy;
+        }
+    }
+}
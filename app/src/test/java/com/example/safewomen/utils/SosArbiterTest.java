@@ -0,0 +1,103 @@
+package com.example.safewomen.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SosArbiterTest {
+    private static final String[] METHODS = {"shake", "fall", "voice", "button"};
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 500;
+
+    @Test
+    public void concurrentTriggersStartExactlyOneSession() throws Exception {
+        SosArbiter arbiter = new SosArbiter(new FakeClock(0));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                // Every thread is released at once, so they race on the same CAS
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                List<Future<SosArbiter.Admission>> results = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    String method = METHODS[t % METHODS.length];
+                    results.add(pool.submit((Callable<SosArbiter.Admission>) () -> {
+                        start.await();
+                        return arbiter.trigger(method);
+                    }));
+                }
+
+                int newSessions = 0;
+                Set<SosArbiter.Session> sessions = new HashSet<>();
+                for (Future<SosArbiter.Admission> result : results) {
+                    SosArbiter.Admission admission = result.get(5, TimeUnit.SECONDS);
+                    if (admission.isNewSession()) newSessions++;
+                    sessions.add(admission.getSession());
+                }
+
+                assertEquals("Round " + round, 1, newSessions);
+                assertEquals("Round " + round, 1, sessions.size());
+                SosArbiter.Session session = sessions.iterator().next();
+                assertSame(session, arbiter.getActive());
+                // No trigger is lost, including the losers of the race
+                assertEquals(THREADS, session.getTriggers().size());
+
+                assertTrue(arbiter.end(session.getId()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void laterTriggersMergeIntoTheActiveSession() {
+        FakeClock clock = new FakeClock(1000);
+        SosArbiter arbiter = new SosArbiter(clock);
+
+        SosArbiter.Admission first = arbiter.trigger("shake");
+        clock.advance(2000);
+        SosArbiter.Admission second = arbiter.trigger("fall");
+
+        assertTrue(first.isNewSession());
+        assertFalse(second.isNewSession());
+        assertSame(first.getSession(), second.getSession());
+        assertEquals(1000, first.getSession().getStartedAt());
+        List<SosArbiter.Trigger> triggers = first.getSession().getTriggers();
+        assertEquals("shake", triggers.get(0).getMethod());
+        assertEquals("fall", triggers.get(1).getMethod());
+        assertEquals(3000, triggers.get(1).getTimestamp());
+    }
+
+    @Test
+    public void endingStartsAFreshSessionNextTime() {
+        SosArbiter arbiter = new SosArbiter(new FakeClock(0));
+        SosArbiter.Session first = arbiter.trigger("button").getSession();
+
+        assertTrue(arbiter.end(first.getId()));
+        assertNull(arbiter.getActive());
+        // Ending twice, e.g. from cancel and then onDestroy, is harmless
+        assertFalse(arbiter.end(first.getId()));
+
+        SosArbiter.Admission next = arbiter.trigger("voice");
+        assertTrue(next.isNewSession());
+        assertNotSame(first, next.getSession());
+        // A stale id doesn't end the new session
+        assertFalse(arbiter.end(first.getId()));
+        assertSame(next.getSession(), arbiter.getActive());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.SosSnapshot;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.LocationHistoryEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SosMetricsTest {
+    private static final long TRIGGERED_AT = 1700000000000L;
+
+    @Test
+    public void stageLatencyIsMeasuredFromTrigger() {
+        FakeClock clock = new FakeClock(TRIGGERED_AT);
+        SosMetrics metrics = new SosMetrics(clock);
+
+        clock.advance(3);
+        assertEquals(3, metrics.mark(SosMetrics.STAGE_LOCAL_DATA));
+        clock.advance(120);
+        assertEquals(123, metrics.mark(SosMetrics.STAGE_FIRST_SMS));
+
+        assertEquals(3, metrics.getLatencyMillis(SosMetrics.STAGE_LOCAL_DATA));
+        assertEquals(123, metrics.getLatencyMillis(SosMetrics.STAGE_FIRST_SMS));
+    }
+
+    @Test
+    public void onlyTheFirstMarkCounts() {
+        FakeClock clock = new FakeClock(TRIGGERED_AT);
+        SosMetrics metrics = new SosMetrics(clock);
+
+        clock.advance(50);
+        metrics.mark(SosMetrics.STAGE_FIRST_SMS);
+        // A second contact's SMS going out later doesn't move the first-SMS latency
+        clock.advance(500);
+        assertEquals(-1, metrics.mark(SosMetrics.STAGE_FIRST_SMS));
+        assertEquals(50, metrics.getLatencyMillis(SosMetrics.STAGE_FIRST_SMS));
+    }
+
+    @Test
+    public void unreachedStageHasNoLatency() {
+        SosMetrics metrics = new SosMetrics(new FakeClock(TRIGGERED_AT));
+        assertEquals(-1, metrics.getLatencyMillis(SosMetrics.STAGE_ALERT_RECORDED));
+    }
+
+    /**
+     * With the snapshot in memory, trigger-to-SMS is the snapshot read and nothing
+     * else; time spent recording the alert doesn't show up in it.
+     */
+    @Test
+    public void firstSmsLatencyExcludesAlertRecording() {
+        FakeClock clock = new FakeClock(TRIGGERED_AT);
+        SosMetrics metrics = new SosMetrics(clock);
+        List<EmergencyContactEntity> contacts = Collections.singletonList(
+                new EmergencyContactEntity("c1", "Asha", "+911111111111", "Sister", true, "synced"));
+        SosSnapshot snapshot = new SosSnapshot(contacts, null);
+
+        // Local and main stages run inline; the alert waits until the test lets it through
+        List<Runnable> alertQueue = new ArrayList<>();
+        SosPipeline pipeline = new SosPipeline(Runnable::run, Runnable::run, alertQueue::add);
+        pipeline.run(new SosPipeline.Stages() {
+            @Override
+            public SosSnapshot loadSnapshot() {
+                clock.advance(2);
+                return snapshot;
+            }
+
+            @Override
+            public void sendSms(List<EmergencyContactEntity> recipients, String message) {
+                clock.advance(5);
+                metrics.mark(SosMetrics.STAGE_FIRST_SMS);
+            }
+
+            @Override
+            public void call(EmergencyContactEntity primaryContact) {
+                metrics.mark(SosMetrics.STAGE_CALL);
+            }
+
+            @Override
+            public void startRecording() {
+                metrics.mark(SosMetrics.STAGE_RECORDING);
+            }
+
+            @Override
+            public void recordAlert(LocationHistoryEntity location) {
+                // A slow server, 30 s to answer
+                clock.advance(30000);
+                metrics.mark(SosMetrics.STAGE_ALERT_RECORDED);
+            }
+        }, metrics);
+
+        assertEquals(2, metrics.getLatencyMillis(SosMetrics.STAGE_LOCAL_DATA));
+        assertEquals(7, metrics.getLatencyMillis(SosMetrics.STAGE_FIRST_SMS));
+        assertEquals(7, metrics.getLatencyMillis(SosMetrics.STAGE_CALL));
+        assertEquals(7, metrics.getLatencyMillis(SosMetrics.STAGE_RECORDING));
+
+        assertEquals(1, alertQueue.size());
+        alertQueue.get(0).run();
+        assertEquals(30007, metrics.getLatencyMillis(SosMetrics.STAGE_ALERT_RECORDED));
+        assertEquals(7, metrics.getLatencyMillis(SosMetrics.STAGE_FIRST_SMS));
+    }
+}
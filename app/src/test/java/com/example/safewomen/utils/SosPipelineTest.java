@@ -0,0 +1,169 @@
+package com.example.safewomen.utils;
+
+import com.example.safewomen.models.SosSnapshot;
+import com.example.safewomen.models.entities.EmergencyContactEntity;
+import com.example.safewomen.models.entities.LocationHistoryEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SosPipelineTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private static final List<EmergencyContactEntity> CONTACTS = Arrays.asList(
+            new EmergencyContactEntity("c1", "Asha", "+911111111111", "Sister", false, "synced"),
+            new EmergencyContactEntity("c2", "Meera", "+912222222222", "Friend", true, "synced"));
+    private static final LocationHistoryEntity LOCATION = new LocationHistoryEntity(
+            "l1", 28.6139, 77.2090, "Connaught Place", 1700000000000L, 10f);
+
+    private ExecutorService localExecutor;
+    private ExecutorService mainExecutor;
+    private ExecutorService alertExecutor;
+    private SosPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        localExecutor = Executors.newSingleThreadExecutor();
+        mainExecutor = Executors.newSingleThreadExecutor();
+        alertExecutor = Executors.newSingleThreadExecutor();
+        pipeline = new SosPipeline(localExecutor, mainExecutor, alertExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        localExecutor.shutdownNow();
+        mainExecutor.shutdownNow();
+        alertExecutor.shutdownNow();
+    }
+
+    @Test
+    public void stalledServerDoesNotDelayContacts() throws InterruptedException {
+        // Recording the alert hangs, like a request to a server that never answers
+        CountDownLatch server = new CountDownLatch(1);
+        RecordingStages stages = new RecordingStages(new SosSnapshot(CONTACTS, LOCATION), server);
+
+        pipeline.run(stages, new SosMetrics(Clock.SYSTEM));
+
+        assertTrue(stages.smsSent.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(stages.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(stages.recording.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(stages.alertStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(CONTACTS, stages.smsContacts);
+        assertTrue(stages.smsMessage.contains("Connaught Place"));
+        assertEquals("c2", stages.calledContact.getId());
+        assertSame(LOCATION, stages.alertLocation);
+
+        server.countDown();
+    }
+
+    @Test
+    public void secondSosRunsWhileFirstAlertIsStalled() throws InterruptedException {
+        CountDownLatch server = new CountDownLatch(1);
+        RecordingStages first = new RecordingStages(new SosSnapshot(CONTACTS, LOCATION), server);
+        pipeline.run(first, new SosMetrics(Clock.SYSTEM));
+        assertTrue(first.alertStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // The local executor isn't held by the hanging request
+        RecordingStages second = new RecordingStages(new SosSnapshot(CONTACTS, LOCATION), server);
+        pipeline.run(second, new SosMetrics(Clock.SYSTEM));
+        assertTrue(second.smsSent.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(second.called.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        server.countDown();
+    }
+
+    @Test
+    public void localDataLatencyIsMeasuredFromTrigger() throws InterruptedException {
+        long[] now = {1000};
+        SosMetrics metrics = new SosMetrics(() -> now[0]);
+        now[0] += 40;
+
+        RecordingStages stages = new RecordingStages(new SosSnapshot(CONTACTS, LOCATION), new CountDownLatch(0));
+        pipeline.run(stages, metrics);
+        assertTrue(stages.recording.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(40, metrics.getLatencyMillis(SosMetrics.STAGE_LOCAL_DATA));
+    }
+
+    @Test
+    public void noContactsSkipsSmsButRecordsAlert() throws InterruptedException {
+        RecordingStages stages = new RecordingStages(
+                new SosSnapshot(Collections.<EmergencyContactEntity>emptyList(), null), new CountDownLatch(0));
+
+        pipeline.run(stages, new SosMetrics(Clock.SYSTEM));
+
+        assertTrue(stages.alertStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(stages.recording.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, stages.smsSent.getCount());
+        assertNull(stages.calledContact);
+        assertNull(stages.alertLocation);
+    }
+
+    private static class RecordingStages implements SosPipeline.Stages {
+        final SosSnapshot snapshot;
+        final CountDownLatch server;
+
+        final CountDownLatch smsSent = new CountDownLatch(1);
+        final CountDownLatch called = new CountDownLatch(1);
+        final CountDownLatch recording = new CountDownLatch(1);
+        final CountDownLatch alertStarted = new CountDownLatch(1);
+
+        volatile List<EmergencyContactEntity> smsContacts;
+        volatile String smsMessage;
+        volatile EmergencyContactEntity calledContact;
+        volatile LocationHistoryEntity alertLocation;
+
+        RecordingStages(SosSnapshot snapshot, CountDownLatch server) {
+            this.snapshot = snapshot;
+            this.server = server;
+        }
+
+        @Override
+        public SosSnapshot loadSnapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public void sendSms(List<EmergencyContactEntity> contacts, String message) {
+            smsContacts = contacts;
+            smsMessage = message;
+            smsSent.countDown();
+        }
+
+        @Override
+        public void call(EmergencyContactEntity primaryContact) {
+            calledContact = primaryContact;
+            called.countDown();
+        }
+
+        @Override
+        public void startRecording() {
+            recording.countDown();
+        }
+
+        @Override
+        public void recordAlert(LocationHistoryEntity location) {
+            alertLocation = location;
+            alertStarted.countDown();
+            try {
+                server.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}